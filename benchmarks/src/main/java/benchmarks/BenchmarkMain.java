@@ -0,0 +1,28 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH with its usual command line, writing the results as JSON to jmh-result.json
+ * unless another format or file is given, so runs of different builds can be compared.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        if (!arguments.contains("-rf")) {
+            arguments.add(0, "-rf");
+            arguments.add(1, "json");
+        }
+        if (!arguments.contains("-rff")) {
+            arguments.add(0, "-rff");
+            arguments.add(1, "jmh-result.json");
+        }
+        org.openjdk.jmh.Main.main(arguments.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,93 @@
+package benchmarks;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import main.Clients.ClientRegistry;
+import main.Detection.RekognitionLabelDetector;
+import main.Elastic.ElasticClient;
+import main.Lambda.BatchProcessor;
+import main.Lambda.Handler;
+import main.Lambda.RecordProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-record latency of Handler.handleRequest when every invocation builds its own clients (cold)
+ * compared to invocations that share one ClientRegistry (warm).
+ * S3 and Rekognition are in-memory stubs, so their client setup is not part of the cold numbers;
+ * the elasticsearch client is real and talks to a local stand-in. The detection cache is left out,
+ * since it would let warm invocations skip detection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientReuseBenchmark {
+
+    private StubServices.Elastic elastic;
+    private ExecutorService stageExecutor;
+    private ClientRegistry warmRegistry;
+    private Handler warmHandler;
+    private S3Event event;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        elastic = new StubServices.Elastic();
+        stageExecutor = Executors.newCachedThreadPool();
+        warmRegistry = newRegistry();
+        warmHandler = newHandler(warmRegistry);
+        event = StubServices.event(StubServices.DRONE_KEY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        warmRegistry.close();
+        stageExecutor.shutdown();
+        elastic.close();
+    }
+
+    private ClientRegistry newRegistry() {
+        int port = elastic.getPort();
+        return new ClientRegistry(StubServices.S3::new, () -> new StubServices.Rekognition(5),
+                () -> new ElasticClient("localhost", port, "http"),
+                clients -> new RekognitionLabelDetector(clients.getRekognitionClient()));
+    }
+
+    private Handler newHandler(ClientRegistry registry) {
+        // single-record events are processed on the calling thread, the stages of the record share one pool
+        return new Handler(registry, new BatchProcessor(new RecordProcessor(registry, stageExecutor), 1,
+                (ExecutorService) null, false));
+    }
+
+    @Benchmark
+    public String cold() {
+        ClientRegistry registry = newRegistry();
+        try {
+            return newHandler(registry).handleRequest(event, null);
+        }
+        finally {
+            registry.close();
+        }
+    }
+
+    @Benchmark
+    public String warm() {
+        return warmHandler.handleRequest(event, null);
+    }
+}
@@ -0,0 +1,82 @@
+package benchmarks;
+
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import main.Metadata.DroneMetadata;
+import main.Targets.DroneTargetFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to locate every target of a drone frame, one box at a time compared to the batch kernel
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeolocationBenchmark {
+
+    @Param({"1", "50", "1000"})
+    public int boxes;
+
+    private DroneTargetFinder targetFinder;
+    private List<BoundingBox> boundingBoxes;
+    private float[] left;
+    private float[] top;
+    private float[] width;
+    private float[] height;
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @Setup
+    public void setup() {
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setUserMetadata(StubServices.droneUserMetadata());
+        DroneMetadata metadata = new DroneMetadata(StubServices.BUCKET, StubServices.DRONE_KEY, objectMetadata);
+        List<Label> labels = StubServices.labels(boxes);
+        targetFinder = new DroneTargetFinder(StubServices.DRONE_KEY, StubServices.BUCKET, metadata, labels);
+        boundingBoxes = targetFinder.getBoxes();
+        left = new float[boxes];
+        top = new float[boxes];
+        width = new float[boxes];
+        height = new float[boxes];
+        for (int i = 0; i < boxes; i++) {
+            BoundingBox box = boundingBoxes.get(i);
+            left[i] = box.getLeft();
+            top[i] = box.getTop();
+            width[i] = box.getWidth();
+            height[i] = box.getHeight();
+        }
+        latitudes = new double[boxes];
+        longitudes = new double[boxes];
+    }
+
+    @Benchmark
+    public void scalar(Blackhole blackhole) {
+        for (BoundingBox box : boundingBoxes) {
+            blackhole.consume(targetFinder.calculateDroneTargetCoordinate(box));
+        }
+    }
+
+    @Benchmark
+    public double[] batch() {
+        targetFinder.calculateDroneTargetCoordinates(left, top, width, height, boxes, latitudes, longitudes);
+        return latitudes;
+    }
+}
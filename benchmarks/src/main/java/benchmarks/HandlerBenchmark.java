@@ -0,0 +1,82 @@
+package benchmarks;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import main.Clients.ClientRegistry;
+import main.Detection.RekognitionLabelDetector;
+import main.Elastic.ElasticClient;
+import main.Lambda.BatchProcessor;
+import main.Lambda.Handler;
+import main.Lambda.RecordProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of Handler.handleRequest for events of drone and handheld records, from parsing the metadata
+ * to elasticsearch acknowledging the documents. S3 and Rekognition are in-memory stubs and elasticsearch
+ * is a local stand-in; the detection cache is left out so every record is detected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandlerBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int records;
+
+    private StubServices.Elastic elastic;
+    private ExecutorService stageExecutor;
+    private ExecutorService recordExecutor;
+    private ClientRegistry registry;
+    private Handler handler;
+    private S3Event event;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        elastic = new StubServices.Elastic();
+        stageExecutor = Executors.newCachedThreadPool();
+        recordExecutor = BatchProcessor.createExecutor("platform", 8);
+        int port = elastic.getPort();
+        registry = new ClientRegistry(StubServices.S3::new, () -> new StubServices.Rekognition(5),
+                () -> new ElasticClient("localhost", port, "http"),
+                clients -> new RekognitionLabelDetector(clients.getRekognitionClient()));
+        handler = new Handler(registry, new BatchProcessor(new RecordProcessor(registry, stageExecutor), 8,
+                recordExecutor, false));
+        String[] keys = new String[records];
+        for (int i = 0; i < records; i++) {
+            keys[i] = i % 2 == 0 ? StubServices.DRONE_KEY : StubServices.HANDHELD_KEY;
+        }
+        event = StubServices.event(keys);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registry.close();
+        recordExecutor.shutdown();
+        stageExecutor.shutdown();
+        elastic.close();
+    }
+
+    @Benchmark
+    public String handleRequest() {
+        return handler.handleRequest(event, null);
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import main.Metadata.DroneMetadata;
+import main.Metadata.HandheldCameraMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to parse and check the user metadata of an object and format the sensors document
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+
+    private ObjectMetadata droneObjectMetadata;
+    private ObjectMetadata handheldObjectMetadata;
+    private ObjectMetadata invalidObjectMetadata;
+
+    @Setup
+    public void setup() {
+        droneObjectMetadata = new StubServices.S3().getObjectMetadata(StubServices.BUCKET, StubServices.DRONE_KEY);
+        handheldObjectMetadata = new StubServices.S3().getObjectMetadata(StubServices.BUCKET,
+                StubServices.HANDHELD_KEY);
+        invalidObjectMetadata = new StubServices.S3().getObjectMetadata(StubServices.BUCKET, StubServices.DRONE_KEY);
+        Map<String, String> userMetadata = new HashMap<>(invalidObjectMetadata.getUserMetadata());
+        userMetadata.remove("altitude");
+        userMetadata.put("latitude", "north");
+        invalidObjectMetadata.setUserMetadata(userMetadata);
+    }
+
+    @Benchmark
+    public DroneMetadata parseDrone() {
+        return new DroneMetadata(StubServices.BUCKET, StubServices.DRONE_KEY, droneObjectMetadata);
+    }
+
+    @Benchmark
+    public HandheldCameraMetadata parseHandheld() {
+        return new HandheldCameraMetadata(StubServices.BUCKET, StubServices.HANDHELD_KEY, handheldObjectMetadata);
+    }
+
+    @Benchmark
+    public DroneMetadata parseInvalidDrone() {
+        return new DroneMetadata(StubServices.BUCKET, StubServices.DRONE_KEY, invalidObjectMetadata);
+    }
+
+    @Benchmark
+    public Map<String, String> parseAndFormatDrone() {
+        DroneMetadata metadata = new DroneMetadata(StubServices.BUCKET, StubServices.DRONE_KEY, droneObjectMetadata);
+        metadata.setProvenance(1592399998000L);
+        return metadata.formatMetadata();
+    }
+}
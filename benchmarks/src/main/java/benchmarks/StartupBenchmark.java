@@ -0,0 +1,61 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from starting a JVM to its first processed record, measured by starting a StartupProbe
+ * process per invocation and waiting for the line it prints once the record is done.
+ * lazy creates the clients with the first record; primed runs the Initializer first, like the default Handler,
+ * which moves that work into the init phase a SnapStart snapshot is taken after.
+ * Run it on the jar built with -P cold-start to see the effect of the smaller jar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+
+    @Param({"lazy", "primed"})
+    public String init;
+
+    @Benchmark
+    public String firstRecord() throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        // the Lambda Java runtimes stop at the C1 compiler by default to start faster
+        Process process = new ProcessBuilder(java, "-XX:+TieredCompilation", "-XX:TieredStopAtLevel=1",
+                "-cp", System.getProperty("java.class.path"), StartupProbe.class.getName(), init)
+                .redirectErrorStream(true)
+                .start();
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith(StartupProbe.READY)) {
+                    return line;
+                }
+            }
+        }
+        finally {
+            process.destroy();
+        }
+        throw new IllegalStateException("The probe exited with " + process.waitFor() + " before its first record.");
+    }
+}
@@ -0,0 +1,51 @@
+package benchmarks;
+
+import main.Clients.ClientRegistry;
+import main.Detection.RekognitionLabelDetector;
+import main.Elastic.ElasticClient;
+import main.Lambda.BatchProcessor;
+import main.Lambda.Handler;
+import main.Lambda.Initializer;
+import main.Lambda.RecordProcessor;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Process started by StartupBenchmark: it starts like a Lambda container, processes a single drone record
+ * and prints a line starting with READY once the record is done.
+ * S3 and Rekognition are in-memory stubs and elasticsearch is a local stand-in.
+ * With the argument primed the Initializer runs during init, like in the default Handler,
+ * with lazy the clients are created by the first record.
+ */
+public final class StartupProbe {
+
+    public static final String READY = "processed";
+
+    private StartupProbe() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean primed = args.length > 0 && args[0].equals("primed");
+        StubServices.Elastic elastic = new StubServices.Elastic();
+        int port = elastic.getPort();
+        ClientRegistry registry = new ClientRegistry(StubServices.S3::new, () -> new StubServices.Rekognition(5),
+                () -> new ElasticClient("localhost", port, "http"),
+                clients -> new RekognitionLabelDetector(clients.getRekognitionClient()));
+        Handler handler = new Handler(registry, new BatchProcessor(new RecordProcessor(registry), 1,
+                (ExecutorService) null, false));
+        if (primed) {
+            new Initializer(registry).prime();
+        }
+        long initialized = System.currentTimeMillis();
+        String summary = handler.handleRequest(StubServices.event(StubServices.DRONE_KEY), null);
+        long processed = System.currentTimeMillis();
+        // read after the record, so loading the management classes is not part of the numbers
+        long start = ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println(READY + " init=" + (initialized - start) + "ms first record=" + (processed - start)
+                + "ms " + summary);
+        registry.close();
+        elastic.close();
+    }
+}
@@ -0,0 +1,217 @@
+package benchmarks;
+
+import com.amazonaws.services.lambda.runtime.events.S3Event;
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
+import com.amazonaws.services.rekognition.AbstractAmazonRekognition;
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.DetectLabelsRequest;
+import com.amazonaws.services.rekognition.model.DetectLabelsResult;
+import com.amazonaws.services.rekognition.model.Instance;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process stand-ins for S3, Rekognition and elasticsearch used by the benchmarks.
+ * The stubs answer immediately, so the benchmarks measure the cost of the ingestion code itself.
+ */
+public final class StubServices {
+
+    public static final String BUCKET = "benchmark-bucket";
+    public static final String DRONE_KEY = "droneIngest/person_center.jpg";
+    public static final String HANDHELD_KEY = "groundIngest/thermal-1592399997905.png";
+
+    private StubServices() {
+    }
+
+    /**
+     * @return user metadata of a drone image
+     */
+    public static Map<String, String> droneUserMetadata() {
+        Map<String, String> metadata = handheldUserMetadata();
+        metadata.put("sensor_type", "drone");
+        metadata.put("fov", "75.5");
+        metadata.put("altitude", "100");
+        return metadata;
+    }
+
+    /**
+     * @return user metadata of a handheld camera image
+     */
+    public static Map<String, String> handheldUserMetadata() {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("sensor_id", "3");
+        metadata.put("sensor_type", "thermal");
+        metadata.put("timestamp", "1592399997905");
+        metadata.put("fov", "0.6");
+        metadata.put("latitude", "40.0076");
+        metadata.put("longitude", "-105.2659");
+        metadata.put("yaw", "1.2");
+        return metadata;
+    }
+
+    /**
+     * Builds Rekognition labels holding the given number of people spread over the frame
+     * @param people is the number of person instances
+     * @return the labels
+     */
+    public static List<Label> labels(int people) {
+        List<Instance> instances = new ArrayList<>();
+        for (int i = 0; i < people; i++) {
+            float offset = (i % 10) / 10F;
+            instances.add(new Instance().withConfidence(90F).withBoundingBox(new BoundingBox()
+                    .withLeft(offset).withTop(1F - offset - 0.05F).withWidth(0.05F).withHeight(0.08F)));
+        }
+        List<Label> labels = new ArrayList<>();
+        labels.add(new Label().withName("Tree").withConfidence(80F).withInstances(new ArrayList<>()));
+        labels.add(new Label().withName("Person").withConfidence(95F).withInstances(instances));
+        labels.add(new Label().withName("Human").withConfidence(95F).withInstances(new ArrayList<>()));
+        return labels;
+    }
+
+    /**
+     * Builds an S3 event with one record per key
+     * @param keys are the object keys
+     * @return the event
+     */
+    public static S3Event event(String... keys) {
+        List<S3EventNotification.S3EventNotificationRecord> records = new ArrayList<>();
+        for (String key : keys) {
+            S3EventNotification.S3Entity entity = new S3EventNotification.S3Entity("benchmark",
+                    new S3EventNotification.S3BucketEntity(BUCKET, null, "arn:aws:s3:::" + BUCKET),
+                    new S3EventNotification.S3ObjectEntity(key, 1024L, "etag-" + key, null, "0"), "1.0");
+            records.add(new S3EventNotification.S3EventNotificationRecord("us-east-2", "ObjectCreated:Put",
+                    "aws:s3", "2020-06-17T13:19:57.905Z", "2.1", null, null, entity, null));
+        }
+        return new S3Event(records);
+    }
+
+    /**
+     * S3 client answering from memory
+     */
+    public static class S3 extends AbstractAmazonS3 {
+
+        @Override
+        public S3Object getObject(String bucketName, String key) {
+            S3Object object = new S3Object();
+            object.setBucketName(bucketName);
+            object.setKey(key);
+            object.setObjectMetadata(getObjectMetadata(bucketName, key));
+            object.setObjectContent(new ByteArrayInputStream(new byte[0]));
+            return object;
+        }
+
+        @Override
+        public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setUserMetadata(key.startsWith("droneIngest") ? droneUserMetadata() : handheldUserMetadata());
+            metadata.setLastModified(new Date(1592399998000L));
+            metadata.setHeader("ETag", "etag-" + key);
+            return metadata;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * Rekognition client answering with a fixed set of labels
+     */
+    public static class Rekognition extends AbstractAmazonRekognition {
+
+        private final List<Label> labels;
+
+        public Rekognition(int people) {
+            this.labels = labels(people);
+        }
+
+        @Override
+        public DetectLabelsResult detectLabels(DetectLabelsRequest request) {
+            return new DetectLabelsResult().withLabels(labels);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * Local http stand-in for an elasticsearch node that acknowledges every document
+     */
+    public static class Elastic implements AutoCloseable {
+
+        private final HttpServer server;
+
+        public Elastic() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/", this::handle);
+            server.start();
+        }
+
+        public int getPort() {
+            return server.getAddress().getPort();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            String body = read(exchange.getRequestBody());
+            String response;
+            if (exchange.getRequestURI().getPath().endsWith("_bulk")) {
+                StringBuilder items = new StringBuilder();
+                String[] lines = body.split("\n");
+                for (int i = 0; i + 1 < lines.length; i += 2) {
+                    if (items.length() > 0) {
+                        items.append(',');
+                    }
+                    items.append("{\"index\":{\"_index\":\"targets\",\"_type\":\"_doc\",\"_id\":\"").append(i)
+                            .append("\",\"_version\":1,\"result\":\"created\",\"_shards\":{\"total\":1,")
+                            .append("\"successful\":1,\"failed\":0},\"_seq_no\":0,\"_primary_term\":1,")
+                            .append("\"status\":201}}");
+                }
+                response = "{\"took\":1,\"errors\":false,\"items\":[" + items + "]}";
+            }
+            else {
+                response = "{\"_index\":\"targets\",\"_type\":\"_doc\",\"_id\":\"1\",\"_version\":1,"
+                        + "\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},"
+                        + "\"_seq_no\":0,\"_primary_term\":1}";
+            }
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+
+        private static String read(InputStream in) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return new String(body.toByteArray(), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() {
+            server.stop(0);
+        }
+    }
+}
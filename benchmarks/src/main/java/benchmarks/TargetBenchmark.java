@@ -0,0 +1,117 @@
+package benchmarks;
+
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import main.Documents.JsonWriter;
+import main.Documents.TargetDocument;
+import main.Metadata.DroneMetadata;
+import main.Metadata.HandheldCameraMetadata;
+import main.Targets.DroneTargetFinder;
+import main.Targets.HandheldCameraTargetFinder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent on the targets of a frame once the labels are known: filtering the labels,
+ * locating the targets, building their documents and serializing them for elasticsearch,
+ * either as maps of strings or as typed documents, both through a reused JsonWriter.
+ * A new handheld finder is built for every frame, with the provenance a real record has by then.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int people;
+
+    private List<Label> labels;
+    private ObjectMetadata handheldObjectMetadata;
+    private DroneTargetFinder droneTargetFinder;
+    private List<BoundingBox> boxes;
+    private JsonWriter writer;
+
+    @Setup
+    public void setup() {
+        labels = StubServices.labels(people);
+        StubServices.S3 s3 = new StubServices.S3();
+        DroneMetadata droneMetadata = new DroneMetadata(StubServices.BUCKET, StubServices.DRONE_KEY,
+                s3.getObjectMetadata(StubServices.BUCKET, StubServices.DRONE_KEY));
+        droneMetadata.setProvenance(1592399998000L);
+        droneTargetFinder = new DroneTargetFinder(StubServices.DRONE_KEY, StubServices.BUCKET, droneMetadata, labels);
+        boxes = droneTargetFinder.getBoxes();
+        writer = new JsonWriter();
+        handheldObjectMetadata = s3.getObjectMetadata(StubServices.BUCKET, StubServices.HANDHELD_KEY);
+    }
+
+    @Benchmark
+    public List<BoundingBox> getBoxes() {
+        return droneTargetFinder.getBoxes();
+    }
+
+    @Benchmark
+    public List<Map<String, String>> droneTargets() {
+        return droneTargetFinder.getTargets(boxes);
+    }
+
+    @Benchmark
+    public int droneTargetDocuments() {
+        int bytes = 0;
+        for (BoundingBox box : boxes) {
+            writer.reset().value(droneTargetFinder.getTarget(box));
+            bytes += writer.size();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public int droneTargetJson() {
+        int bytes = 0;
+        for (TargetDocument document : droneTargetFinder.getTargetDocuments(boxes)) {
+            document.writeTo(writer.reset());
+            bytes += writer.size();
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public List<Map<String, String>> handheldTargets() {
+        HandheldCameraMetadata metadata = new HandheldCameraMetadata(StubServices.BUCKET, StubServices.HANDHELD_KEY,
+                handheldObjectMetadata);
+        HandheldCameraTargetFinder targetFinder = new HandheldCameraTargetFinder(StubServices.HANDHELD_KEY,
+                StubServices.BUCKET, metadata, labels);
+        return targetFinder.getTargets(targetFinder.getBoxes());
+    }
+
+    @Benchmark
+    public int handheldTargetJson() {
+        HandheldCameraMetadata metadata = new HandheldCameraMetadata(StubServices.BUCKET, StubServices.HANDHELD_KEY,
+                handheldObjectMetadata);
+        metadata.setProvenance(1592399998000L);
+        HandheldCameraTargetFinder targetFinder = new HandheldCameraTargetFinder(StubServices.HANDHELD_KEY,
+                StubServices.BUCKET, metadata, labels);
+        int bytes = 0;
+        for (TargetDocument document : targetFinder.getTargetDocuments(targetFinder.getBoxes())) {
+            document.writeTo(writer.reset());
+            bytes += writer.size();
+        }
+        return bytes;
+    }
+}
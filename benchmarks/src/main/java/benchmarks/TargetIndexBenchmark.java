@@ -0,0 +1,64 @@
+package benchmarks;
+
+import main.Spatial.TargetIndex;
+import main.Spatial.TargetPoint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to answer the questions of a dashboard from the in-memory TargetIndex, with targets spread over
+ * about 5 by 5 km during the last 10 minutes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetIndexBenchmark {
+
+    private static final long NOW = 1592400000000L;
+
+    @Param({"10000", "100000"})
+    public int targets;
+
+    private TargetIndex index;
+
+    @Setup
+    public void setup() {
+        index = new TargetIndex(100, 600000, 60, 1000000);
+        Random random = new Random(7);
+        for (int i = 0; i < targets; i++) {
+            index.add(new TargetPoint(String.valueOf(i % 100), "drone", NOW - random.nextInt(600000),
+                    40.0 + random.nextDouble() * 0.045, -105.0 + random.nextDouble() * 0.06));
+        }
+    }
+
+    @Benchmark
+    public List<TargetPoint> radius200mLast5Minutes() {
+        return index.withinRadius(40.02, -104.97, 200, NOW - 300000);
+    }
+
+    @Benchmark
+    public List<TargetPoint> boundingBox() {
+        return index.withinBox(40.01, -104.98, 40.015, -104.97, NOW - 300000);
+    }
+
+    @Benchmark
+    public List<TargetPoint> nearest10() {
+        return index.nearest(40.02, -104.97, 10, 1000, NOW - 600000);
+    }
+}
@@ -0,0 +1,224 @@
+package main.Backfill;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Progress of a backfill in a local file, so a stopped backfill resumes where it was.
+ * For every key range it keeps the key up to which every key is done and whether the range is finished,
+ * along with the keys that failed, which stay recorded until a later run processes them.
+ * Keys done after the first one still in flight are not recorded, so a resumed backfill may process them again.
+ * The file is written to a temporary file first and then moved, so a crash leaves the previous version.
+ */
+public class BackfillCheckpoint {
+
+    private static final String HEADER = "# backfill checkpoint v1";
+
+    private final Path file;
+    private final String bucket;
+    private final List<KeyRange> ranges;
+    private final String[] doneUpTo;
+    private final boolean[] finished;
+    private final Set<String> failed = new LinkedHashSet<>();
+
+    /**
+     * Creates an instance of BackfillCheckpoint with nothing done
+     * @param file is where the progress is saved
+     * @param bucket is the bucket being backfilled
+     * @param ranges are the ranges the prefix is listed in
+     */
+    public BackfillCheckpoint(Path file, String bucket, List<KeyRange> ranges) {
+        this.file = file;
+        this.bucket = bucket;
+        this.ranges = ranges;
+        this.doneUpTo = new String[ranges.size()];
+        this.finished = new boolean[ranges.size()];
+    }
+
+    /**
+     * Reads the progress saved in a file, or starts from nothing if there is no file
+     * @param file is where the progress is saved
+     * @param bucket is the bucket being backfilled
+     * @param ranges are the ranges the prefix is listed in, which must be the ones of the saved progress
+     * @return the checkpoint
+     * @throws IOException if the file could not be read
+     * @throws IllegalStateException if the file belongs to another bucket, prefix or split
+     */
+    public static BackfillCheckpoint load(Path file, String bucket, List<KeyRange> ranges) throws IOException {
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(file, bucket, ranges);
+        if (!Files.exists(file)) {
+            return checkpoint;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!HEADER.equals(line)) {
+                throw new IllegalStateException(file + " is not a backfill checkpoint.");
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                switch (fields[0]) {
+                    case "bucket":
+                        if (!bucket.equals(decode(fields[1]))) {
+                            throw new IllegalStateException(file + " is the checkpoint of bucket " + decode(fields[1]));
+                        }
+                        break;
+                    case "range":
+                        checkpoint.readRange(fields);
+                        break;
+                    case "failed":
+                        checkpoint.failed.add(decode(fields[1]));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown line in " + file + ": " + line);
+                }
+            }
+        }
+        return checkpoint;
+    }
+
+    private void readRange(String[] fields) {
+        int index = Integer.parseInt(fields[1]);
+        if (index >= ranges.size()) {
+            throw new IllegalStateException(file + " was saved with more key ranges than " + ranges.size());
+        }
+        KeyRange range = ranges.get(index);
+        if (!equals(range.getStartAfter(), decode(fields[2])) || !equals(range.getLastKey(), decode(fields[3]))) {
+            throw new IllegalStateException(file + " was saved for other key ranges than " + range);
+        }
+        doneUpTo[index] = decode(fields[4]);
+        finished[index] = Boolean.parseBoolean(fields[5]);
+    }
+
+    /**
+     * Writes the progress to the file
+     * @throws IOException if the file could not be written
+     */
+    public synchronized void save() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write("bucket\t" + encode(bucket));
+            writer.newLine();
+            for (KeyRange range : ranges) {
+                int index = range.getIndex();
+                writer.write("range\t" + index + "\t" + encode(range.getStartAfter()) + "\t"
+                        + encode(range.getLastKey()) + "\t" + encode(doneUpTo[index]) + "\t" + finished[index]);
+                writer.newLine();
+            }
+            for (String key : failed) {
+                writer.write("failed\t" + encode(key));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Records the progress of a range
+     * @param range is the range
+     * @param key is the key up to which every key of the range is done, or null if none is
+     * @param rangeFinished is whether or not every key of the range is done
+     */
+    public synchronized void update(KeyRange range, String key, boolean rangeFinished) {
+        if (key != null) {
+            doneUpTo[range.getIndex()] = key;
+        }
+        finished[range.getIndex()] = rangeFinished;
+    }
+
+    /**
+     * Records a key that failed, to be retried by the next run
+     * @param key is the key
+     */
+    public synchronized void addFailed(String key) {
+        failed.add(key);
+    }
+
+    /**
+     * Forgets a key that failed in an earlier run, once it has been processed again
+     * @param key is the key
+     */
+    public synchronized void removeFailed(String key) {
+        failed.remove(key);
+    }
+
+    /**
+     * Getter
+     * @return the keys waiting for a retry
+     */
+    public synchronized List<String> getFailed() {
+        return new ArrayList<>(failed);
+    }
+
+    /**
+     * Getter
+     * @param range is the range
+     * @return the key to resume listing the range after
+     */
+    public synchronized String getResumeAfter(KeyRange range) {
+        String done = doneUpTo[range.getIndex()];
+        return done != null ? done : range.getStartAfter();
+    }
+
+    /**
+     * Getter
+     * @param range is the range
+     * @return whether or not every key of the range is done
+     */
+    public synchronized boolean isFinished(KeyRange range) {
+        return finished[range.getIndex()];
+    }
+
+    /**
+     * Getter
+     * @return the number of keys waiting for a retry
+     */
+    public synchronized int getFailedCount() {
+        return failed.size();
+    }
+
+    private static String encode(String text) {
+        if (text == null) {
+            return "-";
+        }
+        try {
+            return URLEncoder.encode(text, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String text) {
+        if (text.equals("-")) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(text, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,449 @@
+package main.Backfill;
+
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import main.Clients.ClientRegistry;
+import main.Config.Environment;
+import main.Detection.TokenBucket;
+import main.Lambda.BatchProcessor;
+import main.Lambda.IngestRecord;
+import main.Lambda.RecordProcessor;
+import main.Lambda.RecordResult;
+import main.Metrics.EmfExporter;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the objects already under an S3 prefix through the same RecordProcessor as the Handler,
+ * e.g. after the geolocation changed or an index was rebuilt.
+ * The prefix is split into KeyRanges that are listed page by page on several threads, and every listed
+ * key becomes a record as soon as fewer than maxInFlight are being processed.
+ * Progress is saved to a BackfillCheckpoint, so a stopped backfill resumes after the last key it finished
+ * and retries the keys that failed. Keys may be processed twice across a resume, never skipped.
+ * Requests to S3 and documents sent to elasticsearch are paced by TokenBuckets;
+ * calls to the label detector are paced by its DetectionScheduler.
+ */
+public class BackfillRunner {
+
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    private final ClientRegistry clients;
+    private final RecordProcessor recordProcessor;
+    private final String bucket;
+    private final List<KeyRange> ranges;
+    private final BackfillCheckpoint checkpoint;
+    private final int maxInFlight;
+    private final int listThreads;
+    private final int pageSize;
+    private final TokenBucket s3Limiter;
+    private final TokenBucket elasticLimiter;
+    private final long checkpointMillis;
+    private final Semaphore permits;
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong listed = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * Creates an instance of BackfillRunner
+     * @param clients is the registry of the S3 client and the BulkIndexer
+     * @param recordProcessor processes a single record
+     * @param bucket is the bucket to backfill
+     * @param ranges are the ranges of keys to list
+     * @param checkpoint holds the progress of earlier runs and records this one
+     * @param maxInFlight is the number of records processed at the same time
+     * @param listThreads is the number of ranges listed at the same time
+     * @param pageSize is the number of keys a listing returns at most
+     * @param s3Limiter paces the listings and the metadata requests, or null for no limit
+     * @param elasticLimiter paces the documents sent to elasticsearch, or null for no limit
+     * @param checkpointMillis is how often the progress is saved
+     */
+    public BackfillRunner(ClientRegistry clients, RecordProcessor recordProcessor, String bucket, List<KeyRange> ranges,
+                          BackfillCheckpoint checkpoint, int maxInFlight, int listThreads, int pageSize,
+                          TokenBucket s3Limiter, TokenBucket elasticLimiter, long checkpointMillis) {
+        if (maxInFlight < 1 || listThreads < 1 || pageSize < 1 || checkpointMillis < 1) {
+            throw new IllegalArgumentException("The concurrency, page size and checkpoint interval must be positive.");
+        }
+        this.clients = clients;
+        this.recordProcessor = recordProcessor;
+        this.bucket = bucket;
+        this.ranges = ranges;
+        this.checkpoint = checkpoint;
+        this.maxInFlight = maxInFlight;
+        this.listThreads = listThreads;
+        this.pageSize = pageSize;
+        this.s3Limiter = s3Limiter;
+        this.elasticLimiter = elasticLimiter;
+        this.checkpointMillis = checkpointMillis;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Creates an instance of BackfillRunner configured by the environment.
+     * BACKFILL_LIST_SHARDS sets the ranges, BACKFILL_LIST_THREADS the ranges listed at once,
+     * BACKFILL_CONCURRENCY the records in flight, BACKFILL_S3_TPS the requests to S3 per second and
+     * BACKFILL_ES_DOCS_PER_SECOND the documents per second (0 turns either limit off).
+     * The progress is saved every BACKFILL_CHECKPOINT_MILLIS to a file in BACKFILL_CHECKPOINT_DIR.
+     * @param clients is the registry of the S3 client and the BulkIndexer
+     * @param recordProcessor processes a single record
+     * @param bucket is the bucket to backfill
+     * @param prefix is the prefix of the keys to backfill
+     * @return the runner
+     * @throws IOException if the checkpoint could not be read
+     */
+    public static BackfillRunner fromEnvironment(ClientRegistry clients, RecordProcessor recordProcessor,
+                                                 String bucket, String prefix) throws IOException {
+        List<KeyRange> ranges = KeyRange.split(prefix, Environment.getInt("BACKFILL_LIST_SHARDS", 16));
+        Path file = Paths.get(Environment.getString("BACKFILL_CHECKPOINT_DIR", "backfill"),
+                fileName(bucket + "/" + prefix) + ".checkpoint");
+        int s3Tps = Environment.getInt("BACKFILL_S3_TPS", 100);
+        int documentsPerSecond = Environment.getInt("BACKFILL_ES_DOCS_PER_SECOND", 500);
+        return new BackfillRunner(clients, recordProcessor, bucket, ranges,
+                BackfillCheckpoint.load(file, bucket, ranges),
+                Environment.getInt("BACKFILL_CONCURRENCY", 64),
+                Environment.getInt("BACKFILL_LIST_THREADS", 4),
+                Environment.getInt("BACKFILL_PAGE_SIZE", 1000),
+                s3Tps > 0 ? new TokenBucket(s3Tps, s3Tps) : null,
+                documentsPerSecond > 0 ? new TokenBucket(documentsPerSecond, documentsPerSecond) : null,
+                Environment.getLong("BACKFILL_CHECKPOINT_MILLIS", 10000));
+    }
+
+    /**
+     * Backfills prefixes of a bucket one after the other with the default clients.
+     * The stages of the records run on a work-stealing pool, chosen by BACKFILL_EXECUTOR.
+     * @param args are the bucket followed by one or more prefixes, e.g. droneIngest/ groundIngest/
+     * @throws IOException if a checkpoint could not be read or written
+     * @throws InterruptedException if the backfill was interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: BackfillRunner <bucket> <prefix> [<prefix> ...]");
+            System.exit(2);
+        }
+        ClientRegistry clients = ClientRegistry.getDefault();
+        // every record in flight runs at most two stages at once
+        RecordProcessor recordProcessor = new RecordProcessor(clients,
+                BatchProcessor.createExecutor(Environment.getString("BACKFILL_EXECUTOR", "work-stealing"),
+                        2 * Math.max(1, Environment.getInt("BACKFILL_CONCURRENCY", 64))));
+        boolean finished = true;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                BackfillRunner runner = fromEnvironment(clients, recordProcessor, args[0], args[i]);
+                finished &= runner.run();
+                System.out.println("Backfilled " + args[0] + "/" + args[i] + ": " + runner);
+            }
+        }
+        finally {
+            clients.close();
+            if (Environment.getBoolean("METRICS_EMF", true)) {
+                EmfExporter.fromEnvironment().export(clients.getMetrics().drain());
+            }
+        }
+        System.exit(finished ? 0 : 1);
+    }
+
+    /**
+     * Retries the keys that failed in earlier runs, then lists the ranges that are not finished and processes
+     * their keys. Returns once elasticsearch has answered for every record, after saving the progress.
+     * @return whether or not every key is done, false if some failed or a range could not be listed
+     * @throws IOException if the progress could not be saved
+     * @throws InterruptedException if the thread was interrupted
+     */
+    public boolean run() throws IOException, InterruptedException {
+        ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "backfill-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.scheduleWithFixedDelay(this::save, checkpointMillis, checkpointMillis, TimeUnit.MILLISECONDS);
+        ExecutorService listers = Executors.newFixedThreadPool(listThreads, runnable -> {
+            Thread thread = new Thread(runnable, "backfill-lister");
+            thread.setDaemon(true);
+            return thread;
+        });
+        boolean listedAll = true;
+        try {
+            for (String key : checkpoint.getFailed()) {
+                process(new IngestRecord(bucket, key, null, 0), null);
+            }
+            List<Future<?>> listings = new ArrayList<>();
+            for (KeyRange range : ranges) {
+                if (!checkpoint.isFinished(range)) {
+                    listings.add(listers.submit(() -> {
+                        listRange(range);
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> listing : listings) {
+                try {
+                    listing.get();
+                }
+                catch (ExecutionException e) {
+                    // the range resumes from its last finished key next time
+                    e.getCause().printStackTrace();
+                    listedAll = false;
+                }
+            }
+            awaitRecords();
+        }
+        finally {
+            listers.shutdownNow();
+            saver.shutdownNow();
+        }
+        checkpoint.save();
+        return listedAll && checkpoint.getFailedCount() == 0;
+    }
+
+    /**
+     * Lists a range page by page, starting after the last key finished in an earlier run
+     * @param range is the range
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void listRange(KeyRange range) throws InterruptedException {
+        RangeProgress progress = new RangeProgress(range);
+        ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucket)
+                .withPrefix(range.getPrefix()).withStartAfter(checkpoint.getResumeAfter(range)).withMaxKeys(pageSize);
+        boolean more = true;
+        while (more) {
+            acquire(s3Limiter, 1);
+            ListObjectsV2Result page = clients.getS3Client().listObjectsV2(request);
+            pages.incrementAndGet();
+            for (S3ObjectSummary summary : page.getObjectSummaries()) {
+                if (!range.contains(summary.getKey())) {
+                    // keys are listed in order, so the rest belong to the next range
+                    more = false;
+                    break;
+                }
+                listed.incrementAndGet();
+                long lastModified = summary.getLastModified() == null ? 0 : summary.getLastModified().getTime();
+                process(new IngestRecord(bucket, summary.getKey(), summary.getETag(), lastModified), progress);
+            }
+            more &= page.isTruncated();
+            request.setContinuationToken(page.getNextContinuationToken());
+        }
+        progress.finishListing();
+    }
+
+    /**
+     * Waits for a free slot and the rate limits, then processes a record.
+     * Once elasticsearch has answered for its documents, the record is counted and its range moves on;
+     * a record that failed is recorded in the checkpoint for the next run.
+     * @param record is the record
+     * @param progress is the range of the record, or null for a key retried from an earlier run
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void process(IngestRecord record, RangeProgress progress) throws InterruptedException {
+        permits.acquire();
+        PendingKey pending = progress == null ? null : progress.add(record.getS3Key());
+        // documents are paid for after they are sent, so wait until the earlier records are paid for
+        acquire(elasticLimiter, 0);
+        // the metadata of the object is read from S3
+        acquire(s3Limiter, 1);
+        recordProcessor.processAsync(record).thenCompose(result -> {
+            if (elasticLimiter != null) {
+                result.getIndexed().thenAccept(items -> elasticLimiter.reserve(items.size()));
+            }
+            return result.isComplete().thenApply(complete -> complete ? result.getStatus() : null);
+        }).whenComplete((status, error) -> {
+            try {
+                if (error != null || status == null) {
+                    failed.incrementAndGet();
+                    checkpoint.addFailed(record.getS3Key());
+                }
+                else {
+                    count(status);
+                    if (progress == null) {
+                        checkpoint.removeFailed(record.getS3Key());
+                    }
+                }
+                if (progress != null) {
+                    progress.complete(pending);
+                }
+            }
+            finally {
+                permits.release();
+            }
+        });
+    }
+
+    private void count(RecordResult.Status status) {
+        switch (status) {
+            case PROCESSED:
+                processed.incrementAndGet();
+                break;
+            case SKIPPED:
+                skipped.incrementAndGet();
+                break;
+            case REJECTED:
+                rejected.incrementAndGet();
+                break;
+            default:
+                failed.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits until elasticsearch has answered for every record, flushing the documents still waiting in the BulkIndexer
+     * @throws InterruptedException if the thread was interrupted
+     */
+    private void awaitRecords() throws InterruptedException {
+        while (!permits.tryAcquire(maxInFlight, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+            clients.getBulkIndexer().flush();
+        }
+        permits.release(maxInFlight);
+    }
+
+    private void save() {
+        try {
+            checkpoint.save();
+            System.out.println("Backfill checkpoint: " + this);
+        }
+        catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void acquire(TokenBucket limiter, int permits) throws InterruptedException {
+        if (limiter != null) {
+            limiter.acquire(permits);
+        }
+    }
+
+    private static String fileName(String text) {
+        try {
+            return URLEncoder.encode(text, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Getter
+     * @return the number of listings made
+     */
+    public long getPages() {
+        return pages.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of keys listed
+     */
+    public long getListed() {
+        return listed.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of records whose documents elasticsearch took
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of records outside the ingest folders
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of records with invalid metadata
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of records that failed and are left for the next run
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of records being processed
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    @Override
+    public String toString() {
+        return "listed " + getListed() + " keys in " + getPages() + " pages, processed " + getProcessed()
+                + ", skipped " + getSkipped() + ", rejected " + getRejected() + ", failed " + getFailed()
+                + ", in flight " + getInFlight();
+    }
+
+    /**
+     * Keys of a range in the order they were listed, so the checkpoint only moves past a key
+     * once every key before it is done
+     */
+    private class RangeProgress {
+        private final KeyRange range;
+        private final ArrayDeque<PendingKey> pending = new ArrayDeque<>();
+        private boolean listingFinished;
+
+        private RangeProgress(KeyRange range) {
+            this.range = range;
+        }
+
+        private synchronized PendingKey add(String key) {
+            PendingKey pendingKey = new PendingKey(key);
+            pending.addLast(pendingKey);
+            return pendingKey;
+        }
+
+        private synchronized void complete(PendingKey pendingKey) {
+            pendingKey.done = true;
+            advance();
+        }
+
+        private synchronized void finishListing() {
+            listingFinished = true;
+            advance();
+        }
+
+        private void advance() {
+            String doneUpTo = null;
+            while (!pending.isEmpty() && pending.peekFirst().done) {
+                doneUpTo = pending.pollFirst().key;
+            }
+            checkpoint.update(range, doneUpTo, listingFinished && pending.isEmpty());
+        }
+    }
+
+    private static class PendingKey {
+        private final String key;
+        private boolean done;
+
+        private PendingKey(String key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package main.Backfill;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Part of the keys under a prefix, so a prefix can be listed by several threads at once.
+ * A range holds the keys after startAfter, up to and including lastKey.
+ * Listings start after a key, so ranges with these bounds cover every key exactly once.
+ */
+public class KeyRange {
+
+    // the order S3 lists keys in, for the characters keys usually start with
+    private static final String SPLIT_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+    private final int index;
+    private final String prefix;
+    private final String startAfter;
+    private final String lastKey;
+
+    /**
+     * Creates an instance of KeyRange
+     * @param index is the position of the range among the ranges of its prefix
+     * @param prefix is the prefix every key of the range starts with
+     * @param startAfter is the key the range starts after, or null to start at the prefix
+     * @param lastKey is the largest key of the range, or null for no limit
+     */
+    public KeyRange(int index, String prefix, String startAfter, String lastKey) {
+        this.index = index;
+        this.prefix = prefix;
+        this.startAfter = startAfter;
+        this.lastKey = lastKey;
+    }
+
+    /**
+     * Splits the keys under a prefix on the character that follows it
+     * @param prefix is the prefix
+     * @param ranges is the number of ranges, at most one more than the characters split on
+     * @return the ranges in the order of their keys
+     */
+    public static List<KeyRange> split(String prefix, int ranges) {
+        int count = Math.max(1, Math.min(ranges, SPLIT_CHARACTERS.length() + 1));
+        List<KeyRange> split = new ArrayList<>(count);
+        String previous = null;
+        for (int i = 1; i < count; i++) {
+            String bound = prefix + SPLIT_CHARACTERS.charAt(i * SPLIT_CHARACTERS.length() / count);
+            split.add(new KeyRange(i - 1, prefix, previous, bound));
+            previous = bound;
+        }
+        split.add(new KeyRange(count - 1, prefix, previous, null));
+        return split;
+    }
+
+    /**
+     * Whether or not a key listed from this range still belongs to it
+     * @param key is the key
+     * @return boolean
+     */
+    public boolean contains(String key) {
+        return key.startsWith(prefix) && (startAfter == null || key.compareTo(startAfter) > 0)
+                && (lastKey == null || key.compareTo(lastKey) <= 0);
+    }
+
+    /**
+     * Getter
+     * @return the position of the range among the ranges of its prefix
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Getter
+     * @return the prefix every key of the range starts with
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Getter
+     * @return the key the range starts after, or null to start at the prefix
+     */
+    public String getStartAfter() {
+        return startAfter;
+    }
+
+    /**
+     * Getter
+     * @return the largest key of the range, or null for no limit
+     */
+    public String getLastKey() {
+        return lastKey;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + (startAfter == null ? prefix : startAfter) + ", " + (lastKey == null ? "end" : lastKey) + "]";
+    }
+}
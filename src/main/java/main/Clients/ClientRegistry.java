@@ -0,0 +1,355 @@
+package main.Clients;
+
+import com.amazonaws.services.rekognition.AmazonRekognition;
+import com.amazonaws.services.rekognition.AmazonRekognitionClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import main.Config.Environment;
+import main.Detection.CachingLabelDetector;
+import main.Detection.DetectionCache;
+import main.Detection.DetectionScheduler;
+import main.Detection.LabelDetector;
+import main.Detection.OnnxLabelDetector;
+import main.Detection.RekognitionLabelDetector;
+import main.Elastic.BulkIndexer;
+import main.Elastic.ElasticClient;
+import main.Elastic.IndexTemplates;
+import main.Metrics.MemoryMetricsRegistry;
+import main.Spatial.ConeTriangulator;
+import main.Spatial.TargetIndex;
+import main.Targets.TargetClassPolicy;
+import main.Targets.TargetTracker;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Holds the AWS and elasticsearch clients used to process records.
+ * Each client is created lazily the first time it is requested and then reused, so warm
+ * Lambda containers skip the TLS handshakes, connection pool setup and credential lookups.
+ * The default registry lives for the lifetime of the container.
+ */
+public class ClientRegistry {
+
+    // the templates only need installing once per process, not again for clients created after a snapshot restore
+    private static final AtomicBoolean TEMPLATES_INSTALLED = new AtomicBoolean();
+
+    private final Supplier<AmazonS3> s3Factory;
+    private final Supplier<AmazonRekognition> rekognitionFactory;
+    private final Supplier<ElasticClient> elasticFactory;
+    private final Function<ClientRegistry, LabelDetector> labelDetectorFactory;
+    // outlives close, so metrics recorded before a snapshot are still exported after the restore
+    private final MemoryMetricsRegistry metrics = new MemoryMetricsRegistry();
+    // also outlives close, so a snapshot does not end the tracks of the sensors
+    private final TargetTracker targetTracker = TargetTracker.fromEnvironment();
+    private final TargetIndex targetIndex = TargetIndex.fromEnvironment();
+    private final ConeTriangulator coneTriangulator = ConeTriangulator.fromEnvironment();
+    private volatile AmazonS3 s3Client;
+    private volatile AmazonRekognition rekognitionClient;
+    private volatile ElasticClient elasticClient;
+    private volatile BulkIndexer bulkIndexer;
+    private volatile LabelDetector labelDetector;
+    private volatile DetectionScheduler detectionScheduler;
+    private volatile DetectionCache detectionCache;
+
+    /**
+     * Creates an instance of ClientRegistry with the default AWS credentials and location
+     */
+    public ClientRegistry() {
+        this(AmazonS3ClientBuilder::defaultClient, AmazonRekognitionClientBuilder::defaultClient,
+                ClientRegistry::createElasticClient);
+    }
+
+    /**
+     * Creates an instance of ClientRegistry
+     * @param s3Factory creates the S3 client
+     * @param rekognitionFactory creates the Rekognition client
+     * @param elasticFactory creates the elastic client
+     */
+    public ClientRegistry(Supplier<AmazonS3> s3Factory, Supplier<AmazonRekognition> rekognitionFactory,
+                          Supplier<ElasticClient> elasticFactory) {
+        this(s3Factory, rekognitionFactory, elasticFactory, ClientRegistry::createLabelDetector);
+    }
+
+    /**
+     * Creates an instance of ClientRegistry
+     * @param s3Factory creates the S3 client
+     * @param rekognitionFactory creates the Rekognition client
+     * @param elasticFactory creates the elastic client
+     * @param labelDetectorFactory creates the label detector from the clients of the registry
+     */
+    public ClientRegistry(Supplier<AmazonS3> s3Factory, Supplier<AmazonRekognition> rekognitionFactory,
+                          Supplier<ElasticClient> elasticFactory,
+                          Function<ClientRegistry, LabelDetector> labelDetectorFactory) {
+        this.s3Factory = s3Factory;
+        this.rekognitionFactory = rekognitionFactory;
+        this.elasticFactory = elasticFactory;
+        this.labelDetectorFactory = labelDetectorFactory;
+    }
+
+    /**
+     * Creates the default elastic client. The index templates are installed by IndexTemplates.main or the
+     * IngestWorker; ES_INSTALL_TEMPLATES=true also installs them the first time a container creates a client.
+     * @return the elastic client
+     */
+    public static ElasticClient createElasticClient() {
+        ElasticClient client = new ElasticClient();
+        if (Environment.getBoolean("ES_INSTALL_TEMPLATES", false) && !TEMPLATES_INSTALLED.get()) {
+            try {
+                client.installTemplates(IndexTemplates.fromEnvironment());
+                TEMPLATES_INSTALLED.set(true);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Creates the label detector chosen by LABEL_DETECTOR. It returns the labels at least as confident as
+     * DETECTOR_MIN_CONFIDENCE, by default the lowest confidence of the target classes of the TargetClassPolicy.
+     * rekognition, the default, calls AWS Rekognition through a DetectionScheduler that keeps within
+     * DETECTION_TPS (0 turns the scheduler off). onnx runs the model in ONNX_MODEL_DIR on the CPU,
+     * with ONNX_PREDICTORS images analyzed at once.
+     * Results are cached for the last DETECTION_CACHE_SIZE images (0 turns the cache off),
+     * and in DETECTION_CACHE_DIR when it is set, under the name and the thresholds of the detector.
+     * @param clients is the registry whose clients the detector uses
+     * @return the label detector
+     */
+    public static LabelDetector createLabelDetector(ClientRegistry clients) {
+        TargetClassPolicy policy = TargetClassPolicy.getDefault();
+        float minConfidence = Environment.getFloat("DETECTOR_MIN_CONFIDENCE", policy.getLowestConfidence());
+        LabelDetector detector;
+        String configuration;
+        if (Environment.getString("LABEL_DETECTOR", "rekognition").equalsIgnoreCase("onnx")) {
+            String modelName = Environment.getString("ONNX_MODEL_NAME", "yolov5s");
+            int imageSize = Environment.getInt("ONNX_IMAGE_SIZE", 640);
+            configuration = "onnx:" + modelName + ":" + imageSize + ":" + minConfidence;
+            detector = new OnnxLabelDetector(clients.getS3Client(),
+                    Paths.get(Environment.getString("ONNX_MODEL_DIR", "/opt/model")), modelName, imageSize,
+                    minConfidence, Environment.getInt("ONNX_PREDICTORS", Runtime.getRuntime().availableProcessors()));
+        }
+        else {
+            configuration = "rekognition:" + minConfidence + ":" + policy.getMaxLabels();
+            detector = new RekognitionLabelDetector(clients.getRekognitionClient(), minConfidence,
+                    policy.getMaxLabels());
+            if (Environment.getInt("DETECTION_TPS", 10) > 0) {
+                DetectionScheduler scheduler = DetectionScheduler.fromEnvironment(detector);
+                clients.detectionScheduler = scheduler;
+                detector = scheduler;
+            }
+        }
+        int cacheSize = Environment.getInt("DETECTION_CACHE_SIZE", 1000);
+        if (cacheSize <= 0) {
+            return detector;
+        }
+        String cacheDirectory = Environment.getString("DETECTION_CACHE_DIR", null);
+        DetectionCache cache = new DetectionCache(cacheSize,
+                cacheDirectory == null ? null : Paths.get(cacheDirectory), configuration, clients.getMetrics());
+        clients.detectionCache = cache;
+        return new CachingLabelDetector(detector, cache);
+    }
+
+    /**
+     * Returns the registry shared by every invocation in this container
+     * @return the default ClientRegistry
+     */
+    public static ClientRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Getter
+     * @return the S3 client
+     */
+    public AmazonS3 getS3Client() {
+        AmazonS3 client = s3Client;
+        if (client == null) {
+            synchronized (this) {
+                client = s3Client;
+                if (client == null) {
+                    client = s3Factory.get();
+                    s3Client = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Getter
+     * @return the Rekognition client
+     */
+    public AmazonRekognition getRekognitionClient() {
+        AmazonRekognition client = rekognitionClient;
+        if (client == null) {
+            synchronized (this) {
+                client = rekognitionClient;
+                if (client == null) {
+                    client = rekognitionFactory.get();
+                    rekognitionClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Getter
+     * @return the elastic client
+     */
+    public ElasticClient getElasticClient() {
+        ElasticClient client = elasticClient;
+        if (client == null) {
+            synchronized (this) {
+                client = elasticClient;
+                if (client == null) {
+                    client = elasticFactory.get();
+                    elasticClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    /**
+     * Getter
+     * @return the bulk indexer writing through the elastic client
+     */
+    public BulkIndexer getBulkIndexer() {
+        BulkIndexer indexer = bulkIndexer;
+        if (indexer == null) {
+            ElasticClient client = getElasticClient();
+            synchronized (this) {
+                indexer = bulkIndexer;
+                if (indexer == null) {
+                    indexer = new BulkIndexer(client);
+                    bulkIndexer = indexer;
+                }
+            }
+        }
+        return indexer;
+    }
+
+    /**
+     * Getter
+     * @return the label detector
+     */
+    public LabelDetector getLabelDetector() {
+        LabelDetector detector = labelDetector;
+        if (detector == null) {
+            synchronized (this) {
+                detector = labelDetector;
+                if (detector == null) {
+                    detector = labelDetectorFactory.apply(this);
+                    labelDetector = detector;
+                }
+            }
+        }
+        return detector;
+    }
+
+    /**
+     * Getter
+     * @return the scheduler pacing the detections, or null if the label detector does not use one
+     */
+    public DetectionScheduler getDetectionScheduler() {
+        return detectionScheduler;
+    }
+
+    /**
+     * Getter
+     * @return the cache of detected labels, or null if the label detector does not use one
+     */
+    public DetectionCache getDetectionCache() {
+        return detectionCache;
+    }
+
+    /**
+     * Getter
+     * @return the registry recording the latency of every stage of a record
+     */
+    public MemoryMetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Getter
+     * @return the tracker merging the targets drones report again and again, or null if tracking is off
+     */
+    public TargetTracker getTargetTracker() {
+        return targetTracker;
+    }
+
+    /**
+     * Getter
+     * @return the index of the targets located recently, or null if it is off
+     */
+    public TargetIndex getTargetIndex() {
+        return targetIndex;
+    }
+
+    /**
+     * Getter
+     * @return the triangulator locating the targets several handheld cameras see, or null if it is off
+     */
+    public ConeTriangulator getConeTriangulator() {
+        return coneTriangulator;
+    }
+
+    /**
+     * Creates the clients a record needs now instead of on first use,
+     * e.g. during the init phase of a Lambda container, so the first invocation does not pay for them.
+     */
+    public void prime() {
+        getS3Client();
+        getBulkIndexer();
+        // also creates the Rekognition client, unless the detector runs locally
+        getLabelDetector();
+    }
+
+    /**
+     * Flushes pending documents and releases every client that has been created.
+     * Clients are created again if they are requested afterwards.
+     */
+    public synchronized void close() {
+        if (bulkIndexer != null) {
+            bulkIndexer.close();
+            bulkIndexer = null;
+        }
+        if (labelDetector != null) {
+            labelDetector.close();
+            labelDetector = null;
+            detectionScheduler = null;
+            detectionCache = null;
+        }
+        if (elasticClient != null) {
+            try {
+                elasticClient.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            elasticClient = null;
+        }
+        if (s3Client != null) {
+            s3Client.shutdown();
+            s3Client = null;
+        }
+        if (rekognitionClient != null) {
+            rekognitionClient.shutdown();
+            rekognitionClient = null;
+        }
+    }
+
+    /**
+     * Initialization-on-demand holder for the default registry
+     */
+    private static class DefaultHolder {
+        private static final ClientRegistry INSTANCE = new ClientRegistry();
+    }
+}
@@ -0,0 +1,77 @@
+package main.Config;
+
+/**
+ * Reads settings from environment variables, falling back to a default when a variable is unset or invalid
+ */
+public final class Environment {
+
+    private Environment() {
+    }
+
+    /**
+     * Gets a String setting
+     * @param name is the environment variable
+     * @param defaultValue is used when the variable is unset
+     * @return the setting
+     */
+    public static String getString(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return (value == null || value.trim().isEmpty()) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Gets an int setting
+     * @param name is the environment variable
+     * @param defaultValue is used when the variable is unset or not a number
+     * @return the setting
+     */
+    public static int getInt(String name, int defaultValue) {
+        try {
+            return Integer.parseInt(getString(name, String.valueOf(defaultValue)));
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a long setting
+     * @param name is the environment variable
+     * @param defaultValue is used when the variable is unset or not a number
+     * @return the setting
+     */
+    public static long getLong(String name, long defaultValue) {
+        try {
+            return Long.parseLong(getString(name, String.valueOf(defaultValue)));
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a float setting
+     * @param name is the environment variable
+     * @param defaultValue is used when the variable is unset or not a finite number
+     * @return the setting
+     */
+    public static float getFloat(String name, float defaultValue) {
+        try {
+            float value = Float.parseFloat(getString(name, String.valueOf(defaultValue)));
+            return Float.isNaN(value) || Float.isInfinite(value) ? defaultValue : value;
+        }
+        catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Gets a boolean setting
+     * @param name is the environment variable
+     * @param defaultValue is used when the variable is unset
+     * @return the setting
+     */
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        return Boolean.parseBoolean(getString(name, String.valueOf(defaultValue)));
+    }
+}
@@ -0,0 +1,53 @@
+package main.Detection;
+
+import com.amazonaws.services.rekognition.model.Label;
+
+import java.util.List;
+
+/**
+ * Answers from a DetectionCache when an image was already analyzed and asks another detector otherwise.
+ * Retried events, rerun records and re-ingested prefixes then skip detection entirely.
+ */
+public class CachingLabelDetector implements LabelDetector {
+
+    private final LabelDetector labelDetector;
+    private final DetectionCache cache;
+
+    /**
+     * Creates an instance of CachingLabelDetector
+     * @param labelDetector detects the labels of images that are not cached
+     * @param cache holds the labels of images that were analyzed
+     */
+    public CachingLabelDetector(LabelDetector labelDetector, DetectionCache cache) {
+        this.labelDetector = labelDetector;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<Label> detectLabels(ImageReference image) {
+        List<Label> labels = cache.get(image);
+        if (labels == null) {
+            labels = labelDetector.detectLabels(image);
+            cache.put(image, labels);
+        }
+        return labels;
+    }
+
+    @Override
+    public String getName() {
+        return labelDetector.getName();
+    }
+
+    /**
+     * Getter
+     * @return the cache
+     */
+    public DetectionCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public void close() {
+        labelDetector.close();
+    }
+}
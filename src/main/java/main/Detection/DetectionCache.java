@@ -0,0 +1,281 @@
+package main.Detection;
+
+import com.amazonaws.services.rekognition.model.Label;
+import main.DataType.DataType;
+import main.Exceptions.InvalidIndexException;
+import main.Lambda.RecordProcessor;
+import main.Metrics.Counter;
+import main.Metrics.MetricsRegistry;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the labels detected in an image, keyed by bucket, key and ETag and by the configuration of the
+ * detector, e.g. its name and minimum confidence, so results of a detector configured otherwise are never served.
+ * The most recently used results are kept in memory. When a directory is given, every result is also
+ * written to disk, where it survives a restart of the process as long as the directory does
+ * (the /tmp directory of a warm Lambda container, for example).
+ * Images without an ETag are never cached, since their content cannot be told apart.
+ */
+public class DetectionCache {
+
+    private final int maxEntries;
+    private final Path directory;
+    private final String configuration;
+    private final MetricsRegistry metrics;
+    private final LinkedHashMap<String, List<Label>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates an instance of DetectionCache
+     * @param maxEntries is the number of results kept in memory
+     * @param directory is where results are written, or null to keep them in memory only
+     */
+    public DetectionCache(int maxEntries, Path directory) {
+        this(maxEntries, directory, "", null);
+    }
+
+    /**
+     * Creates an instance of DetectionCache
+     * @param maxEntries is the number of results kept in memory
+     * @param directory is where results are written, or null to keep them in memory only
+     * @param configuration describes the detector whose results are cached, e.g. rekognition:50.0:0
+     * @param metrics counts the hits, misses and evictions per DataType, or null
+     */
+    public DetectionCache(int maxEntries, Path directory, String configuration, MetricsRegistry metrics) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.directory = directory;
+        this.configuration = configuration;
+        this.metrics = metrics;
+        // access order turns the map into an LRU list
+        this.entries = new LinkedHashMap<String, List<Label>>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<Label>> eldest) {
+                if (size() > DetectionCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Looks up the labels of an image
+     * @param image is the image
+     * @return the labels, or null if the image has not been analyzed or has no ETag
+     */
+    public List<Label> get(ImageReference image) {
+        String key = keyOf(image);
+        if (key == null) {
+            return null;
+        }
+        List<Label> labels;
+        synchronized (entries) {
+            labels = entries.get(key);
+        }
+        if (labels != null) {
+            hits.incrementAndGet();
+            count(Counter.DETECTION_CACHE_HITS, image, 1);
+            return labels;
+        }
+        labels = readFromDisk(key);
+        if (labels != null) {
+            diskHits.incrementAndGet();
+            count(Counter.DETECTION_CACHE_DISK_HITS, image, 1);
+            store(image, key, labels);
+            return labels;
+        }
+        misses.incrementAndGet();
+        count(Counter.DETECTION_CACHE_MISSES, image, 1);
+        return null;
+    }
+
+    /**
+     * Stores the labels of an image
+     * @param image is the image
+     * @param labels are the labels detected in the image
+     */
+    public void put(ImageReference image, List<Label> labels) {
+        String key = keyOf(image);
+        if (key == null || labels == null) {
+            return;
+        }
+        store(image, key, labels);
+        writeToDisk(key, labels);
+    }
+
+    private void store(ImageReference image, String key, List<Label> labels) {
+        long evicted;
+        synchronized (entries) {
+            long before = evictions.get();
+            entries.put(key, labels);
+            evicted = evictions.get() - before;
+        }
+        count(Counter.DETECTION_CACHE_EVICTIONS, image, evicted);
+    }
+
+    /**
+     * Adds to a counter of the metrics, tagged by the DataType of the folder of the image
+     * @param counter is the counter
+     * @param image is the image
+     * @param amount is the number of events
+     */
+    private void count(Counter counter, ImageReference image, long amount) {
+        if (metrics == null || amount == 0) {
+            return;
+        }
+        DataType dataType;
+        try {
+            dataType = RecordProcessor.determineDatatype(image.getS3Key());
+        }
+        catch (InvalidIndexException e) {
+            dataType = DataType.OTHER;
+        }
+        metrics.increment(counter, dataType, amount);
+    }
+
+    /**
+     * Builds the key of an image. S3 quotes the ETag in HEAD responses but not in event notifications,
+     * so the quotes are left out.
+     * @param image is the image
+     * @return the key, or null if the image has no ETag
+     */
+    private String keyOf(ImageReference image) {
+        String eTag = image.getETag();
+        if (eTag == null || eTag.isEmpty()) {
+            return null;
+        }
+        return configuration + "|" + image.getS3Bucket() + "/" + image.getS3Key() + "@" + eTag.replace("\"", "");
+    }
+
+    /**
+     * Reads the labels of a key from disk
+     * @param key is the key of the image
+     * @return the labels, or null if there is no readable file for the key
+     */
+    @SuppressWarnings("unchecked")
+    private List<Label> readFromDisk(String key) {
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(fileName(key));
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(file); ObjectInputStream objects = new ObjectInputStream(in)) {
+            return (List<Label>) objects.readObject();
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the labels of a key to disk. The file is written next to its final name and then moved,
+     * so a reader never sees half of it.
+     * @param key is the key of the image
+     * @param labels are the labels of the image
+     */
+    private void writeToDisk(String key, List<Label> labels) {
+        if (directory == null) {
+            return;
+        }
+        Path file = directory.resolve(fileName(key));
+        try {
+            Path temporary = Files.createTempFile(directory, "labels", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary);
+                 ObjectOutputStream objects = new ObjectOutputStream(out)) {
+                objects.writeObject(new ArrayList<>(labels));
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Hashes a key into a file name, since S3 keys contain slashes and can be longer than a file name
+     * @param key is the key of the image
+     * @return the file name
+     */
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return name.append(".labels").toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Getter
+     * @return the number of lookups answered from memory
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of lookups answered from disk
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of lookups of images with an ETag that were not cached
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of results dropped from memory to make room for newer ones
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Detection cache: " + hits.get() + " hits, " + diskHits.get() + " disk hits, " + misses.get()
+                + " misses, " + evictions.get() + " evictions";
+    }
+}
@@ -0,0 +1,224 @@
+package main.Detection;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.rekognition.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.rekognition.model.ThrottlingException;
+import main.Config.Environment;
+import main.Elastic.RetryPolicy;
+import main.Exceptions.DetectionException;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Paces the calls to another detector so bursts of records stay within the account's detection quota.
+ * At most maxConcurrent calls run at once and they start at the rate of a TokenBucket; the other records
+ * queue in arrival order. Calls the detector rejects as throttled are made again after a jittered backoff,
+ * keeping their place, so a burst costs latency instead of records.
+ * Rekognition has no batch DetectLabels call, so every image remains its own request.
+ */
+public class DetectionScheduler implements LabelDetector {
+
+    private final LabelDetector labelDetector;
+    private final TokenBucket rateLimiter;
+    private final int maxConcurrent;
+    private final Semaphore slots;
+    private final RetryPolicy retryPolicy;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Creates an instance of DetectionScheduler
+     * @param labelDetector is the detector the calls are made to
+     * @param rateLimiter sets the rate calls start at
+     * @param maxConcurrent is the number of calls that may run at once
+     * @param retryPolicy decides how often and after how long a throttled call is made again
+     */
+    public DetectionScheduler(LabelDetector labelDetector, TokenBucket rateLimiter, int maxConcurrent,
+                              RetryPolicy retryPolicy) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one detection must be allowed at once.");
+        }
+        this.labelDetector = labelDetector;
+        this.rateLimiter = rateLimiter;
+        this.maxConcurrent = maxConcurrent;
+        this.slots = new Semaphore(maxConcurrent, true);
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Creates an instance of DetectionScheduler configured by the environment.
+     * DETECTION_TPS and DETECTION_BURST set the rate, DETECTION_CONCURRENCY the calls at once,
+     * DETECTION_MAX_RETRIES, DETECTION_RETRY_BACKOFF_MILLIS and DETECTION_RETRY_MAX_BACKOFF_MILLIS the retries.
+     * @param labelDetector is the detector the calls are made to
+     * @return the scheduler
+     */
+    public static DetectionScheduler fromEnvironment(LabelDetector labelDetector) {
+        int tps = Environment.getInt("DETECTION_TPS", 10);
+        return new DetectionScheduler(labelDetector,
+                new TokenBucket(tps, Environment.getInt("DETECTION_BURST", tps)),
+                Environment.getInt("DETECTION_CONCURRENCY", 8),
+                new RetryPolicy(Environment.getInt("DETECTION_MAX_RETRIES", 6),
+                        Environment.getLong("DETECTION_RETRY_BACKOFF_MILLIS", 200),
+                        Environment.getLong("DETECTION_RETRY_MAX_BACKOFF_MILLIS", 10000)));
+    }
+
+    /**
+     * Waits for a free slot and a permit, then detects the labels, retrying while the detector is throttled
+     * @param image is the image to look at
+     * @return the labels of the objects that were found
+     * @throws DetectionException if the detector is still throttled after the last retry, or the wait was interrupted
+     */
+    @Override
+    public List<Label> detectLabels(ImageReference image) {
+        long enqueued = System.nanoTime();
+        maxQueued.accumulateAndGet(queued.incrementAndGet(), Math::max);
+        boolean dequeued = false;
+        try {
+            slots.acquire();
+            try {
+                rateLimiter.acquire();
+                queued.decrementAndGet();
+                dequeued = true;
+                recordWait(System.nanoTime() - enqueued);
+                for (int retries = 0; ; retries++) {
+                    try {
+                        return labelDetector.detectLabels(image);
+                    }
+                    catch (RuntimeException e) {
+                        if (!isThrottled(e)) {
+                            throw e;
+                        }
+                        throttled.incrementAndGet();
+                        if (retries >= retryPolicy.getMaxRetries()) {
+                            throw new DetectionException("Detection of " + image + " is still throttled after "
+                                    + retries + " retries.", e);
+                        }
+                    }
+                    Thread.sleep(retryPolicy.backoffMillis(retries));
+                    rateLimiter.acquire();
+                }
+            }
+            finally {
+                slots.release();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DetectionException("Interrupted while waiting to detect " + image + ".", e);
+        }
+        finally {
+            if (!dequeued) {
+                queued.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Whether or not an exception means the detector is over its quota
+     * @param error is what the call failed with
+     * @return boolean
+     */
+    public static boolean isThrottled(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ThrottlingException || cause instanceof ProvisionedThroughputExceededException) {
+                return true;
+            }
+            if (cause instanceof AmazonServiceException) {
+                AmazonServiceException serviceException = (AmazonServiceException) cause;
+                String code = serviceException.getErrorCode();
+                return serviceException.getStatusCode() == 429 || "ThrottlingException".equals(code)
+                        || "Throttling".equals(code) || "TooManyRequestsException".equals(code);
+            }
+        }
+        return false;
+    }
+
+    private void recordWait(long nanos) {
+        started.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public String getName() {
+        return labelDetector.getName();
+    }
+
+    /**
+     * Getter
+     * @return the number of records waiting for a slot or a permit
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Getter
+     * @return the largest number of records that waited at once
+     */
+    public int getMaxQueueDepth() {
+        return maxQueued.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of calls running, including ones waiting for a retry
+     */
+    public int getInFlight() {
+        return maxConcurrent - slots.availablePermits();
+    }
+
+    /**
+     * Getter
+     * @return the number of calls that got past the queue
+     */
+    public long getStarted() {
+        return started.get();
+    }
+
+    /**
+     * Getter
+     * @return the average time a call waited in the queue in milliseconds
+     */
+    public double getAverageWaitMillis() {
+        long count = started.get();
+        return count == 0 ? 0 : waitNanos.get() / (count * 1e6);
+    }
+
+    /**
+     * Getter
+     * @return the longest time a call waited in the queue in milliseconds
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * Getter
+     * @return the number of calls the detector rejected as throttled
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DetectionScheduler " + rateLimiter.getPermitsPerSecond() + "/s, queued " + getQueueDepth()
+                + " (max " + getMaxQueueDepth() + "), in flight " + getInFlight() + ", waited "
+                + String.format("%.1f", getAverageWaitMillis()) + " ms on average (max "
+                + String.format("%.1f", getMaxWaitMillis()) + " ms), throttled " + getThrottled();
+    }
+
+    @Override
+    public void close() {
+        labelDetector.close();
+    }
+}
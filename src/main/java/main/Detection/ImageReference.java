@@ -0,0 +1,52 @@
+package main.Detection;
+
+/**
+ * Identifies the image a LabelDetector works on
+ */
+public class ImageReference {
+
+    private final String s3Bucket;
+    private final String s3Key;
+    private final String eTag;
+
+    /**
+     * Creates an instance of ImageReference
+     * @param s3Bucket is the bucket of the S3Object
+     * @param s3Key is the file name of the S3Object
+     * @param eTag is the ETag of the S3Object, or null if unknown
+     */
+    public ImageReference(String s3Bucket, String s3Key, String eTag) {
+        this.s3Bucket = s3Bucket;
+        this.s3Key = s3Key;
+        this.eTag = eTag;
+    }
+
+    /**
+     * Getter
+     * @return the bucket of the S3Object
+     */
+    public String getS3Bucket() {
+        return s3Bucket;
+    }
+
+    /**
+     * Getter
+     * @return the file name of the S3Object
+     */
+    public String getS3Key() {
+        return s3Key;
+    }
+
+    /**
+     * Getter
+     * @return the ETag of the S3Object, or null if unknown
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    @Override
+    public String toString() {
+        return s3Bucket + "/" + s3Key;
+    }
+}
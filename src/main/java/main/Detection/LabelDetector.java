@@ -0,0 +1,34 @@
+package main.Detection;
+
+import com.amazonaws.services.rekognition.model.Label;
+
+import java.util.List;
+
+/**
+ * Detects objects in an image.
+ * Every implementation answers in the shape of Rekognition's DetectLabels: a Label per class of object,
+ * with an Instance and a BoundingBox relative to the image size for every object that was found.
+ * Implementations are shared by every record in flight, so they must be thread safe.
+ */
+public interface LabelDetector {
+
+    /**
+     * Detects the objects in an image
+     * @param image is the image to look at
+     * @return the labels of the objects that were found
+     * @throws main.Exceptions.DetectionException if the image could not be analyzed
+     */
+    List<Label> detectLabels(ImageReference image);
+
+    /**
+     * Getter
+     * @return the name of the detector as it appears in the provenance
+     */
+    String getName();
+
+    /**
+     * Releases the resources held by the detector
+     */
+    default void close() {
+    }
+}
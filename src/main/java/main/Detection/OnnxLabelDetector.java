@@ -0,0 +1,168 @@
+package main.Detection;
+
+import ai.djl.ModelException;
+import ai.djl.inference.Predictor;
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.djl.modality.cv.output.DetectedObjects;
+import ai.djl.modality.cv.output.Rectangle;
+import ai.djl.modality.cv.transform.Resize;
+import ai.djl.modality.cv.transform.ToTensor;
+import ai.djl.modality.cv.translator.YoloV5Translator;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.TranslateException;
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Instance;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import main.Exceptions.DetectionException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Detects labels in process on the CPU with a YOLOv5 ONNX model run by DJL.
+ * The model directory holds the exported model and a synset.txt with one class name per line.
+ * Predictors are not thread safe, so a fixed pool of them is shared by the records in flight.
+ */
+public class OnnxLabelDetector implements LabelDetector {
+
+    private final AmazonS3 s3Client;
+    private final ZooModel<Image, DetectedObjects> model;
+    private final BlockingQueue<Predictor<Image, DetectedObjects>> predictors;
+    private final float minConfidence;
+
+    /**
+     * Creates an instance of OnnxLabelDetector and loads the model
+     * @param s3Client reads the images
+     * @param modelDirectory is the directory of the model and its synset.txt
+     * @param modelName is the file name of the model without the .onnx extension
+     * @param imageSize is the width and height the model expects, 640 for the exported YOLOv5 models
+     * @param minConfidence is the lowest confidence, from 0 to 100, of the instances returned
+     * @param predictorCount is the number of images that can be analyzed at once
+     * @throws DetectionException if the model could not be loaded
+     */
+    public OnnxLabelDetector(AmazonS3 s3Client, Path modelDirectory, String modelName, int imageSize,
+                             float minConfidence, int predictorCount) {
+        this.s3Client = s3Client;
+        this.minConfidence = minConfidence;
+        // boxes come back relative to the resized image, which makes them relative to the original image too
+        YoloV5Translator translator = YoloV5Translator.builder()
+                .addTransform(new Resize(imageSize, imageSize))
+                .addTransform(new ToTensor())
+                .optRescaleSize(imageSize, imageSize)
+                .optSynsetArtifactName("synset.txt")
+                .optThreshold(minConfidence / 100F)
+                .build();
+        Criteria<Image, DetectedObjects> criteria = Criteria.builder()
+                .setTypes(Image.class, DetectedObjects.class)
+                .optModelPath(modelDirectory)
+                .optModelName(modelName)
+                .optEngine("OnnxRuntime")
+                .optTranslator(translator)
+                .build();
+        try {
+            this.model = criteria.loadModel();
+        }
+        catch (IOException | ModelException e) {
+            throw new DetectionException("The model in " + modelDirectory + " could not be loaded.", e);
+        }
+        this.predictors = new ArrayBlockingQueue<>(Math.max(1, predictorCount));
+        for (int i = 0; i < Math.max(1, predictorCount); i++) {
+            predictors.add(model.newPredictor());
+        }
+    }
+
+    @Override
+    public List<Label> detectLabels(ImageReference image) {
+        Image decoded;
+        try (S3ObjectInputStream content = s3Client.getObject(image.getS3Bucket(), image.getS3Key())
+                .getObjectContent()) {
+            decoded = ImageFactory.getInstance().fromInputStream(content);
+        }
+        catch (IOException e) {
+            throw new DetectionException("The image " + image + " could not be read.", e);
+        }
+        return detectLabels(decoded);
+    }
+
+    /**
+     * Detects the objects in an image that is already in memory
+     * @param image is the decoded image
+     * @return the labels of the objects that were found
+     */
+    public List<Label> detectLabels(Image image) {
+        Predictor<Image, DetectedObjects> predictor;
+        try {
+            predictor = predictors.take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DetectionException("Interrupted while waiting for a predictor.", e);
+        }
+        try {
+            return toLabels(predictor.predict(image), minConfidence);
+        }
+        catch (TranslateException e) {
+            throw new DetectionException("The model could not analyze the image.", e);
+        }
+        finally {
+            predictors.add(predictor);
+        }
+    }
+
+    /**
+     * Groups detected objects by class into Rekognition labels.
+     * Class names are capitalized, so the person class of the model becomes the Person label.
+     * @param detections are the objects the model found
+     * @param minConfidence is the lowest confidence, from 0 to 100, of the instances returned
+     * @return the labels, each with the confidence of its most likely instance
+     */
+    public static List<Label> toLabels(DetectedObjects detections, float minConfidence) {
+        Map<String, Label> labels = new LinkedHashMap<>();
+        for (DetectedObjects.DetectedObject detection : detections.<DetectedObjects.DetectedObject>items()) {
+            float confidence = (float) (detection.getProbability() * 100);
+            if (confidence < minConfidence) {
+                continue;
+            }
+            String name = detection.getClassName();
+            name = name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            Label label = labels.get(name);
+            if (label == null) {
+                label = new Label().withName(name).withConfidence(confidence).withInstances(new ArrayList<>());
+                labels.put(name, label);
+            }
+            Rectangle bounds = detection.getBoundingBox().getBounds();
+            label.getInstances().add(new Instance().withConfidence(confidence).withBoundingBox(new BoundingBox()
+                    .withLeft((float) bounds.getX()).withTop((float) bounds.getY())
+                    .withWidth((float) bounds.getWidth()).withHeight((float) bounds.getHeight())));
+            label.setConfidence(Math.max(label.getConfidence(), confidence));
+        }
+        return new ArrayList<>(labels.values());
+    }
+
+    @Override
+    public String getName() {
+        return "ONNX detector";
+    }
+
+    /**
+     * Closes the predictors and the model
+     */
+    @Override
+    public void close() {
+        Predictor<Image, DetectedObjects> predictor;
+        while ((predictor = predictors.poll()) != null) {
+            predictor.close();
+        }
+        model.close();
+    }
+}
@@ -0,0 +1,71 @@
+package main.Detection;
+
+import com.amazonaws.services.rekognition.AmazonRekognition;
+import com.amazonaws.services.rekognition.model.DetectLabelsRequest;
+import com.amazonaws.services.rekognition.model.Image;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.rekognition.model.S3Object;
+
+import java.util.List;
+
+/**
+ * Detects labels with AWS Rekognition, which reads the image straight from S3
+ */
+public class RekognitionLabelDetector implements LabelDetector {
+
+    private final AmazonRekognition rekognitionClient;
+    private final float minConfidence;
+    private final int maxLabels;
+
+    /**
+     * Creates an instance of RekognitionLabelDetector with a minimum confidence of 50
+     * @param rekognitionClient is the Rekognition client
+     */
+    public RekognitionLabelDetector(AmazonRekognition rekognitionClient) {
+        this(rekognitionClient, 50F);
+    }
+
+    /**
+     * Creates an instance of RekognitionLabelDetector
+     * @param rekognitionClient is the Rekognition client
+     * @param minConfidence is the lowest confidence, from 0 to 100, of the labels returned
+     */
+    public RekognitionLabelDetector(AmazonRekognition rekognitionClient, float minConfidence) {
+        this(rekognitionClient, minConfidence, 0);
+    }
+
+    /**
+     * Creates an instance of RekognitionLabelDetector
+     * @param rekognitionClient is the Rekognition client
+     * @param minConfidence is the lowest confidence, from 0 to 100, of the labels returned
+     * @param maxLabels is the number of labels returned, the most confident first, 0 for all of them
+     */
+    public RekognitionLabelDetector(AmazonRekognition rekognitionClient, float minConfidence, int maxLabels) {
+        this.rekognitionClient = rekognitionClient;
+        this.minConfidence = minConfidence;
+        this.maxLabels = maxLabels;
+    }
+
+    @Override
+    public List<Label> detectLabels(ImageReference image) {
+        DetectLabelsRequest request = new DetectLabelsRequest().withImage(new Image()
+                .withS3Object(new S3Object().withName(image.getS3Key()).withBucket(image.getS3Bucket())))
+                .withMinConfidence(minConfidence);
+        if (maxLabels > 0) {
+            request.setMaxLabels(maxLabels);
+        }
+        return rekognitionClient.detectLabels(request).getLabels();
+    }
+
+    @Override
+    public String getName() {
+        return "Rekognition";
+    }
+
+    /**
+     * The Rekognition client belongs to the ClientRegistry, which shuts it down
+     */
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,84 @@
+package main.Detection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limiter handing out permitsPerSecond permits, with up to burst of them available at once after a quiet period.
+ * A caller that finds the bucket empty reserves the next permit and sleeps until it is due,
+ * so callers are served in the order they arrived and the rate holds however many threads are waiting.
+ */
+public class TokenBucket {
+
+    private final double permitsPerNano;
+    private final double burst;
+    // negative while callers are waiting for permits that have not been refilled yet
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * Creates an instance of TokenBucket that starts full
+     * @param permitsPerSecond is the sustained rate
+     * @param burst is the number of permits that can be taken at once
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The rate and the burst must be positive.");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes a permit, waiting until it is due
+     * @return how long the caller waited in nanoseconds
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public long acquire() throws InterruptedException {
+        return acquire(1);
+    }
+
+    /**
+     * Takes several permits, waiting until they are due. Taking 0 permits waits until earlier reservations are repaid.
+     * @param permits is the number of permits
+     * @return how long the caller waited in nanoseconds
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public long acquire(int permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * Takes a permit without waiting for it
+     * @return how long until the permit is due in nanoseconds, 0 if it can be used right away
+     */
+    public long reserve() {
+        return reserve(1);
+    }
+
+    /**
+     * Takes several permits without waiting for them, e.g. to pay for work that was already done
+     * @param permits is the number of permits
+     * @return how long until the permits are due in nanoseconds, 0 if they can be used right away
+     */
+    public synchronized long reserve(int permits) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAt) * permitsPerNano);
+        refilledAt = now;
+        tokens -= permits;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / permitsPerNano);
+    }
+
+    /**
+     * Getter
+     * @return the sustained rate in permits per second
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerNano * TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,13 @@
+package main.Documents;
+
+/**
+ * A document that writes itself to elasticsearch as JSON
+ */
+public interface Document {
+
+    /**
+     * Writes the document as a JSON object
+     * @param writer is the writer to write to
+     */
+    void writeTo(JsonWriter writer);
+}
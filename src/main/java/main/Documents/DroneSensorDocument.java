@@ -0,0 +1,43 @@
+package main.Documents;
+
+import main.Metadata.Provenance;
+
+/**
+ * Immutable document of the sensors index for a drone
+ */
+public class DroneSensorDocument extends SensorDocument {
+
+    private final double altitude;
+
+    /**
+     * Creates an instance of DroneSensorDocument
+     * @param sensorId is the id of the sensor
+     * @param sensorType is the type of sensor
+     * @param timestamp is when the image was captured in Unix time
+     * @param latitude is the latitude of the drone in degrees
+     * @param longitude is the longitude of the drone in degrees
+     * @param yaw is the direction the camera is pointing in radians
+     * @param fov is the horizontal fov of the camera
+     * @param altitude is the altitude of the drone in meters
+     * @param provenance is a snapshot of the steps the image went through
+     */
+    public DroneSensorDocument(String sensorId, String sensorType, String timestamp, double latitude,
+                               double longitude, double yaw, double fov, double altitude, Provenance provenance) {
+        super(sensorId, sensorType, timestamp, latitude, longitude, yaw, fov, provenance);
+        this.altitude = altitude;
+    }
+
+    @Override
+    protected void writeFields(JsonWriter writer) {
+        super.writeFields(writer);
+        writer.field("altitude", altitude);
+    }
+
+    /**
+     * Getter
+     * @return the altitude of the drone in meters
+     */
+    public double getAltitude() {
+        return altitude;
+    }
+}
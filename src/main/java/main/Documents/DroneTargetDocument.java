@@ -0,0 +1,27 @@
+package main.Documents;
+
+import main.Metadata.Provenance;
+
+/**
+ * Immutable document of a target located by a drone. The location is the estimated position of the target.
+ */
+public class DroneTargetDocument extends TargetDocument {
+
+    /**
+     * Creates an instance of DroneTargetDocument
+     * @param sensorId is the id of the drone
+     * @param sensorType is the type of sensor
+     * @param timestamp is when the image was captured in Unix time
+     * @param latitude is the latitude of the target in degrees
+     * @param longitude is the longitude of the target in degrees
+     * @param provenance is a snapshot of the steps the image went through
+     */
+    public DroneTargetDocument(String sensorId, String sensorType, String timestamp, double latitude,
+                               double longitude, Provenance provenance) {
+        super(sensorId, sensorType, timestamp, latitude, longitude, provenance);
+    }
+
+    @Override
+    protected void writeFields(JsonWriter writer) {
+    }
+}
@@ -0,0 +1,66 @@
+package main.Documents;
+
+import main.Metadata.Provenance;
+
+/**
+ * Immutable document of a target seen by a handheld camera. The location is the position of the camera
+ * and the target is somewhere in the cone described by the angle, radius and direction.
+ */
+public class HandheldTargetDocument extends TargetDocument {
+
+    private final double coneAngle;
+    private final double coneRadius;
+    private final double coneDirection;
+
+    /**
+     * Creates an instance of HandheldTargetDocument
+     * @param sensorId is the id of the camera
+     * @param sensorType is the type of sensor
+     * @param timestamp is when the image was captured in Unix time
+     * @param latitude is the latitude of the camera in degrees
+     * @param longitude is the longitude of the camera in degrees
+     * @param coneAngle is the width of the cone in radians
+     * @param coneRadius is the length of the cone in meters
+     * @param coneDirection is the direction of the cone in radians
+     * @param provenance is a snapshot of the steps the image went through
+     */
+    public HandheldTargetDocument(String sensorId, String sensorType, String timestamp, double latitude,
+                                  double longitude, double coneAngle, double coneRadius, double coneDirection,
+                                  Provenance provenance) {
+        super(sensorId, sensorType, timestamp, latitude, longitude, provenance);
+        this.coneAngle = coneAngle;
+        this.coneRadius = coneRadius;
+        this.coneDirection = coneDirection;
+    }
+
+    @Override
+    protected void writeFields(JsonWriter writer) {
+        writer.field("cone_angle", coneAngle)
+                .field("cone_radius", coneRadius)
+                .field("cone_direction", coneDirection);
+    }
+
+    /**
+     * Getter
+     * @return the width of the cone in radians
+     */
+    public double getConeAngle() {
+        return coneAngle;
+    }
+
+    /**
+     * Getter
+     * @return the length of the cone in meters
+     */
+    public double getConeRadius() {
+        return coneRadius;
+    }
+
+    /**
+     * Getter
+     * @return the direction of the cone in radians
+     */
+    public double getConeDirection() {
+        return coneDirection;
+    }
+}
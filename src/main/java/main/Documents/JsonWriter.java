@@ -0,0 +1,419 @@
+package main.Documents;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Streams JSON into a growable byte buffer that is kept between documents.
+ * Names and separators are written as they come, so documents are serialized without building maps or strings.
+ * A JsonWriter is not thread safe.
+ */
+public class JsonWriter {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_DEPTH = 32;
+
+    private byte[] buffer;
+    private int size;
+    // whether the object or array at each depth already holds a field or element, to know when a comma is needed
+    private final boolean[] hasField = new boolean[MAX_DEPTH];
+    private final boolean[] isArray = new boolean[MAX_DEPTH];
+    private int depth;
+
+    /**
+     * Creates an instance of JsonWriter with room for a typical target document
+     */
+    public JsonWriter() {
+        this(512);
+    }
+
+    /**
+     * Creates an instance of JsonWriter
+     * @param capacity is the initial size of the buffer in bytes
+     */
+    public JsonWriter(int capacity) {
+        this.buffer = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Empties the writer so the buffer can be used for the next document
+     * @return this writer
+     */
+    public JsonWriter reset() {
+        size = 0;
+        depth = 0;
+        return this;
+    }
+
+    /**
+     * Starts an object, as a value or at the top level
+     * @return this writer
+     */
+    public JsonWriter beginObject() {
+        return begin((byte) '{', false);
+    }
+
+    /**
+     * Ends the current object
+     * @return this writer
+     */
+    public JsonWriter endObject() {
+        return end((byte) '}', false);
+    }
+
+    /**
+     * Starts an array, as a value or at the top level
+     * @return this writer
+     */
+    public JsonWriter beginArray() {
+        return begin((byte) '[', true);
+    }
+
+    /**
+     * Ends the current array
+     * @return this writer
+     */
+    public JsonWriter endArray() {
+        return end((byte) ']', true);
+    }
+
+    private JsonWriter begin(byte bracket, boolean array) {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Objects are nested too deeply.");
+        }
+        beforeValue();
+        write(bracket);
+        isArray[depth] = array;
+        hasField[depth++] = false;
+        return this;
+    }
+
+    private JsonWriter end(byte bracket, boolean array) {
+        if (depth == 0 || isArray[depth - 1] != array) {
+            throw new IllegalStateException("There is no " + (array ? "array" : "object") + " to end.");
+        }
+        depth--;
+        write(bracket);
+        return this;
+    }
+
+    /**
+     * Starts a field of the current object. The value must follow.
+     * @param name is the name of the field
+     * @return this writer
+     */
+    public JsonWriter name(String name) {
+        if (depth == 0 || isArray[depth - 1]) {
+            throw new IllegalStateException("A field must be inside an object.");
+        }
+        if (hasField[depth - 1]) {
+            write((byte) ',');
+        }
+        hasField[depth - 1] = true;
+        writeString(name);
+        write((byte) ':');
+        return this;
+    }
+
+    /**
+     * Writes a string value, or null
+     * @param value is the value
+     * @return this writer
+     */
+    public JsonWriter value(String value) {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    /**
+     * Writes a number. NaN and infinite values have no JSON form and are written as null.
+     * @param value is the value
+     * @return this writer
+     */
+    public JsonWriter value(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return nullValue();
+        }
+        if (value == (long) value && Math.abs(value) < 1e15) {
+            return value((long) value);
+        }
+        beforeValue();
+        writeAscii(Double.toString(value));
+        return this;
+    }
+
+    /**
+     * Writes a whole number
+     * @param value is the value
+     * @return this writer
+     */
+    public JsonWriter value(long value) {
+        beforeValue();
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return this;
+        }
+        if (value < 0) {
+            write((byte) '-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+        return this;
+    }
+
+    /**
+     * Writes true or false
+     * @param value is the value
+     * @return this writer
+     */
+    public JsonWriter value(boolean value) {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Writes null
+     * @return this writer
+     */
+    public JsonWriter nullValue() {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    /**
+     * Writes a string field
+     * @param name is the name of the field
+     * @param value is the value
+     * @return this writer
+     */
+    public JsonWriter field(String name, String value) {
+        return name(name).value(value);
+    }
+
+    /**
+     * Writes a number field
+     * @param name is the name of the field
+     * @param value is the value
+     * @return this writer
+     */
+    public JsonWriter field(String name, double value) {
+        return name(name).value(value);
+    }
+
+    /**
+     * Writes a boolean field
+     * @param name is the name of the field
+     * @param value is the value
+     * @return this writer
+     */
+    public JsonWriter field(String name, boolean value) {
+        return name(name).value(value);
+    }
+
+    /**
+     * Writes a geo_point field as an object of lat and lon
+     * @param name is the name of the field
+     * @param latitude is the latitude in degrees
+     * @param longitude is the longitude in degrees
+     * @return this writer
+     */
+    public JsonWriter geoPoint(String name, double latitude, double longitude) {
+        return name(name).beginObject().field("lat", latitude).field("lon", longitude).endObject();
+    }
+
+    /**
+     * Writes an object holding the entries of a map as string fields
+     * @param fields are the fields
+     * @return this writer
+     */
+    public JsonWriter value(Map<String, String> fields) {
+        beginObject();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            field(field.getKey(), field.getValue());
+        }
+        return endObject();
+    }
+
+    /**
+     * Writes JSON that was already serialized, e.g. a document written by another JsonWriter
+     * @param json is the buffer holding the JSON
+     * @param offset is where the JSON starts
+     * @param length is the number of bytes of the JSON
+     * @return this writer
+     */
+    public JsonWriter rawValue(byte[] json, int offset, int length) {
+        beforeValue();
+        ensureCapacity(length);
+        System.arraycopy(json, offset, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Ends a line of newline delimited JSON, as used by the _bulk api
+     * @return this writer
+     */
+    public JsonWriter newLine() {
+        if (depth != 0) {
+            throw new IllegalStateException("A line can only end after a top level value.");
+        }
+        write((byte) '\n');
+        return this;
+    }
+
+    /**
+     * Getter
+     * @return the number of bytes written since the last reset
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the buffer, which is only valid up to size() and until the writer is used again
+     * @return the buffer
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Copies what was written since the last reset
+     * @return the JSON as bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Writes what was written since the last reset to a stream
+     * @param out is the stream
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, size);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Separates the elements of an array. Fields are separated by name().
+     */
+    private void beforeValue() {
+        if (depth > 0 && isArray[depth - 1]) {
+            if (hasField[depth - 1]) {
+                write((byte) ',');
+            }
+            hasField[depth - 1] = true;
+        }
+    }
+
+    /**
+     * Writes a quoted, escaped string as UTF-8
+     * @param value is the string
+     */
+    private void writeString(String value) {
+        int length = value.length();
+        // a char takes at most 6 bytes once escaped
+        ensureCapacity(length * 6 + 2);
+        byte[] bytes = buffer;
+        int position = size;
+        bytes[position++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                bytes[position++] = '\\';
+                bytes[position++] = (byte) c;
+            }
+            else if (c < 0x20) {
+                bytes[position++] = '\\';
+                switch (c) {
+                    case '\n':
+                        bytes[position++] = 'n';
+                        break;
+                    case '\r':
+                        bytes[position++] = 'r';
+                        break;
+                    case '\t':
+                        bytes[position++] = 't';
+                        break;
+                    default:
+                        bytes[position++] = 'u';
+                        bytes[position++] = '0';
+                        bytes[position++] = '0';
+                        bytes[position++] = HEX[c >> 4];
+                        bytes[position++] = HEX[c & 0xF];
+                }
+            }
+            else if (c < 0x80) {
+                bytes[position++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                bytes[position++] = (byte) (0xC0 | (c >> 6));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                bytes[position++] = (byte) (0xF0 | (codePoint >> 18));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                bytes[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            }
+            else if (Character.isSurrogate(c)) {
+                // an unpaired surrogate cannot be encoded, so it is replaced like String.getBytes does
+                bytes[position++] = '?';
+            }
+            else {
+                bytes[position++] = (byte) (0xE0 | (c >> 12));
+                bytes[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        bytes[position++] = '"';
+        size = position;
+    }
+
+    /**
+     * Writes text that is known to be ASCII, like numbers
+     * @param text is the text
+     */
+    private void writeAscii(String text) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void write(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
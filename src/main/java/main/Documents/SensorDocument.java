@@ -0,0 +1,126 @@
+package main.Documents;
+
+import main.Metadata.Provenance;
+
+/**
+ * Immutable document of the sensors index
+ */
+public class SensorDocument implements Document {
+
+    private final String sensorId;
+    private final String sensorType;
+    private final String timestamp;
+    private final double latitude;
+    private final double longitude;
+    private final double yaw;
+    private final double fov;
+    private final Provenance provenance;
+
+    /**
+     * Creates an instance of SensorDocument
+     * @param sensorId is the id of the sensor
+     * @param sensorType is the type of sensor (e.g., drone or thermal)
+     * @param timestamp is when the image was captured in Unix time
+     * @param latitude is the latitude of the sensor in degrees
+     * @param longitude is the longitude of the sensor in degrees
+     * @param yaw is the direction the camera is pointing in radians
+     * @param fov is the horizontal fov of the camera
+     * @param provenance is a snapshot of the steps the image went through
+     */
+    public SensorDocument(String sensorId, String sensorType, String timestamp, double latitude, double longitude,
+                          double yaw, double fov, Provenance provenance) {
+        this.sensorId = sensorId;
+        this.sensorType = sensorType;
+        this.timestamp = timestamp;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.yaw = yaw;
+        this.fov = fov;
+        this.provenance = provenance;
+    }
+
+    @Override
+    public void writeTo(JsonWriter writer) {
+        writer.beginObject();
+        writeFields(writer);
+        provenance.writeTo(writer.name("provenance"));
+        writer.endObject();
+    }
+
+    /**
+     * Writes the fields every sensor has, apart from the provenance
+     * @param writer is the writer to write to
+     */
+    protected void writeFields(JsonWriter writer) {
+        writer.field("sensor_id", sensorId)
+                .field("sensor_type", sensorType)
+                .field("timestamp", timestamp)
+                .geoPoint("location", latitude, longitude)
+                .field("yaw", yaw)
+                .field("fov", fov);
+    }
+
+    /**
+     * Getter
+     * @return the id of the sensor
+     */
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Getter
+     * @return the type of sensor
+     */
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Getter
+     * @return when the image was captured in Unix time
+     */
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Getter
+     * @return the latitude of the sensor in degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Getter
+     * @return the longitude of the sensor in degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Getter
+     * @return the direction the camera is pointing in radians
+     */
+    public double getYaw() {
+        return yaw;
+    }
+
+    /**
+     * Getter
+     * @return the horizontal fov of the camera
+     */
+    public double getFov() {
+        return fov;
+    }
+
+    /**
+     * Getter
+     * @return the provenance of the image
+     */
+    public Provenance getProvenance() {
+        return provenance;
+    }
+}
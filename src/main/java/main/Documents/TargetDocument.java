@@ -0,0 +1,109 @@
+package main.Documents;
+
+import main.Metadata.Provenance;
+
+/**
+ * Immutable document of the targets index
+ */
+public abstract class TargetDocument implements Document {
+
+    private final String sensorId;
+    private final String sensorType;
+    private final String timestamp;
+    private final double latitude;
+    private final double longitude;
+    private final Provenance provenance;
+
+    /**
+     * Superclass constructor
+     * @param sensorId is the id of the sensor that saw the target
+     * @param sensorType is the type of sensor
+     * @param timestamp is when the image was captured in Unix time
+     * @param latitude is the latitude of the location in degrees
+     * @param longitude is the longitude of the location in degrees
+     * @param provenance is a snapshot of the steps the image went through
+     */
+    public TargetDocument(String sensorId, String sensorType, String timestamp, double latitude, double longitude,
+                          Provenance provenance) {
+        this.sensorId = sensorId;
+        this.sensorType = sensorType;
+        this.timestamp = timestamp;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.provenance = provenance;
+    }
+
+    @Override
+    public void writeTo(JsonWriter writer) {
+        writer.beginObject();
+        writeMembers(writer);
+        writer.endObject();
+    }
+
+    /**
+     * Writes the fields of the document into an object that is already open, so a wrapper can add its own
+     * @param writer is the writer to write to
+     */
+    public void writeMembers(JsonWriter writer) {
+        writer.field("sensor_id", sensorId)
+                .field("sensor_type", sensorType)
+                .field("timestamp", timestamp)
+                .geoPoint("location", latitude, longitude);
+        writeFields(writer);
+        provenance.writeTo(writer.name("provenance"));
+    }
+
+    /**
+     * Writes the fields that are specific to the type of sensor
+     * @param writer is the writer to write to
+     */
+    protected abstract void writeFields(JsonWriter writer);
+
+    /**
+     * Getter
+     * @return the id of the sensor that saw the target
+     */
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Getter
+     * @return the type of sensor
+     */
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Getter
+     * @return when the image was captured in Unix time
+     */
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Getter
+     * @return the latitude of the location in degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Getter
+     * @return the longitude of the location in degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Getter
+     * @return the provenance of the image
+     */
+    public Provenance getProvenance() {
+        return provenance;
+    }
+}
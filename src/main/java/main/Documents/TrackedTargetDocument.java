@@ -0,0 +1,69 @@
+package main.Documents;
+
+/**
+ * Document of a target that has been seen in several frames of the same sensor.
+ * It is indexed with the id of the track, so every update replaces the previous document of the target.
+ */
+public class TrackedTargetDocument implements Document {
+
+    private final TargetDocument target;
+    private final String trackId;
+    private final long firstSeen;
+    private final int detections;
+
+    /**
+     * Creates an instance of TrackedTargetDocument
+     * @param target is the latest sighting of the target
+     * @param trackId is the id of the track, which is the id of the document
+     * @param firstSeen is when the target was first seen in Unix time
+     * @param detections is the number of frames the target was seen in
+     */
+    public TrackedTargetDocument(TargetDocument target, String trackId, long firstSeen, int detections) {
+        this.target = target;
+        this.trackId = trackId;
+        this.firstSeen = firstSeen;
+        this.detections = detections;
+    }
+
+    @Override
+    public void writeTo(JsonWriter writer) {
+        writer.beginObject();
+        target.writeMembers(writer);
+        writer.field("track_id", trackId)
+                .name("first_seen").value(firstSeen)
+                .name("detections").value(detections);
+        writer.endObject();
+    }
+
+    /**
+     * Getter
+     * @return the latest sighting of the target
+     */
+    public TargetDocument getTarget() {
+        return target;
+    }
+
+    /**
+     * Getter
+     * @return the id of the track, which is the id of the document
+     */
+    public String getTrackId() {
+        return trackId;
+    }
+
+    /**
+     * Getter
+     * @return when the target was first seen in Unix time
+     */
+    public long getFirstSeen() {
+        return firstSeen;
+    }
+
+    /**
+     * Getter
+     * @return the number of frames the target was seen in
+     */
+    public int getDetections() {
+        return detections;
+    }
+}
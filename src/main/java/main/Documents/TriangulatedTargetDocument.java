@@ -0,0 +1,113 @@
+package main.Documents;
+
+import java.util.List;
+
+/**
+ * Immutable document of a target located by intersecting the cones of several handheld cameras.
+ * The sensor_id field lists every camera that saw the target.
+ * The document is indexed under its id, so locating the same target again replaces it.
+ */
+public class TriangulatedTargetDocument implements Document {
+
+    public static final String SENSOR_TYPE = "triangulated";
+
+    private final String id;
+    private final List<String> sensorIds;
+    private final long timestamp;
+    private final double latitude;
+    private final double longitude;
+    private final double confidence;
+    private final int coneCount;
+
+    /**
+     * Creates an instance of TriangulatedTargetDocument
+     * @param id is the id of the target, the same every time its cameras locate it at the same place
+     * @param sensorIds are the ids of the cameras that saw the target
+     * @param timestamp is when the latest of the images was captured in Unix time
+     * @param latitude is the latitude of the estimated location in degrees
+     * @param longitude is the longitude of the estimated location in degrees
+     * @param confidence is how likely the location is right, from 0 to 1
+     * @param coneCount is the number of cones the location was computed from
+     */
+    public TriangulatedTargetDocument(String id, List<String> sensorIds, long timestamp, double latitude,
+                                      double longitude, double confidence, int coneCount) {
+        this.id = id;
+        this.sensorIds = sensorIds;
+        this.timestamp = timestamp;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.confidence = confidence;
+        this.coneCount = coneCount;
+    }
+
+    @Override
+    public void writeTo(JsonWriter writer) {
+        writer.beginObject().name("sensor_id").beginArray();
+        for (String sensorId : sensorIds) {
+            writer.value(sensorId);
+        }
+        writer.endArray()
+                .field("sensor_type", SENSOR_TYPE)
+                .field("timestamp", String.valueOf(timestamp))
+                .geoPoint("location", latitude, longitude)
+                .field("confidence", confidence)
+                .name("cone_count").value(coneCount)
+                .endObject();
+    }
+
+    /**
+     * Getter
+     * @return the id of the target, the same every time its cameras locate it at the same place
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Getter
+     * @return the ids of the cameras that saw the target
+     */
+    public List<String> getSensorIds() {
+        return sensorIds;
+    }
+
+    /**
+     * Getter
+     * @return when the latest of the images was captured in Unix time
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Getter
+     * @return the latitude of the estimated location in degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Getter
+     * @return the longitude of the estimated location in degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Getter
+     * @return how likely the location is right, from 0 to 1
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Getter
+     * @return the number of cones the location was computed from
+     */
+    public int getConeCount() {
+        return coneCount;
+    }
+}
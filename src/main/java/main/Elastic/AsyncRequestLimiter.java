@@ -0,0 +1,135 @@
+package main.Elastic;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Sends asynchronous elasticsearch requests with at most maxInFlight of them waiting for an answer.
+ * Submitting blocks while the limit is reached, so producers slow down to the pace elasticsearch
+ * answers at instead of buffering without bound. Requests rejected with 429 or 503 are sent again
+ * after a jittered backoff, and keep their slot while they wait.
+ */
+public class AsyncRequestLimiter implements AutoCloseable {
+
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService retryScheduler;
+    private final AtomicLong retries = new AtomicLong();
+
+    /**
+     * Creates an instance of AsyncRequestLimiter
+     * @param maxInFlight is the number of requests that may wait for an answer at once
+     * @param retryPolicy decides which failed requests are sent again
+     */
+    public AsyncRequestLimiter(int maxInFlight, RetryPolicy retryPolicy) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one request must be allowed in flight.");
+        }
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight, true);
+        this.retryPolicy = retryPolicy;
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "elastic-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends a request once a slot is free, waiting for one if needed
+     * @param call starts the request and returns the future of its answer, e.g. a _bulk request
+     * @param <T> is the type of the response
+     * @return a future that completes with the response, or with the last failure once retries are exhausted
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            permits.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        future.whenComplete((response, error) -> permits.release());
+        attempt(call, future, 0);
+        return future;
+    }
+
+    /**
+     * Getter
+     * @return the retry policy
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Getter
+     * @return the number of requests waiting for an answer or a retry
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * Getter
+     * @return the number of times a request has been sent again
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Stops scheduling retries. Requests waiting for a retry fail.
+     */
+    @Override
+    public void close() {
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * Sends a request and schedules a retry if elasticsearch pushes back
+     * @param call starts the request
+     * @param future is completed with the outcome
+     * @param attempt is the number of times the request has already been sent again
+     */
+    private <T> void attempt(Supplier<CompletableFuture<T>> call, CompletableFuture<T> future, int attempt) {
+        CompletableFuture<T> answer;
+        try {
+            answer = call.get();
+        }
+        catch (RuntimeException e) {
+            answer = new CompletableFuture<>();
+            answer.completeExceptionally(e);
+        }
+        answer.whenComplete((response, error) -> {
+            if (error == null) {
+                future.complete(response);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (!retryPolicy.shouldRetry(RetryPolicy.statusOf(cause), attempt)) {
+                future.completeExceptionally(cause);
+                return;
+            }
+            retries.incrementAndGet();
+            try {
+                retryScheduler.schedule(() -> attempt(call, future, attempt + 1),
+                        retryPolicy.backoffMillis(attempt), TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException rejected) {
+                future.completeExceptionally(cause);
+            }
+        });
+    }
+}
@@ -0,0 +1,149 @@
+package main.Elastic;
+
+import main.Documents.Document;
+import main.Documents.JsonWriter;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Body of a _bulk request in newline delimited JSON: an action line naming the index, and the id if there is one,
+ * then the document, for every document.
+ * Documents are written straight into the body, so it is sent without another copy. A BulkBody is not thread safe.
+ */
+public class BulkBody {
+
+    private final JsonWriter writer;
+    // where the action line of each document starts
+    private int[] starts = new int[16];
+    private int actions;
+
+    /**
+     * Creates an instance of BulkBody
+     */
+    public BulkBody() {
+        this.writer = new JsonWriter(16 * 1024);
+    }
+
+    /**
+     * Adds a typed document
+     * @param index is the elasticsearch index to post to
+     * @param document is the document
+     * @return this body
+     */
+    public BulkBody add(String index, Document document) {
+        return add(index, null, document);
+    }
+
+    /**
+     * Adds a typed document with an id, which replaces the document elasticsearch already has with that id
+     * @param index is the elasticsearch index to post to
+     * @param id is the id of the document, or null to let elasticsearch choose one
+     * @param document is the document
+     * @return this body
+     */
+    public BulkBody add(String index, String id, Document document) {
+        writeAction(index, id);
+        document.writeTo(writer);
+        writer.newLine();
+        return this;
+    }
+
+    /**
+     * Adds a document of string fields
+     * @param index is the elasticsearch index to post to
+     * @param data is a HashMap containing data to post
+     * @return this body
+     */
+    public BulkBody add(String index, Map<String, String> data) {
+        writeAction(index, null);
+        writer.value(data).newLine();
+        return this;
+    }
+
+    /**
+     * Adds a document that was already serialized
+     * @param index is the elasticsearch index to post to
+     * @param json is the buffer holding the document
+     * @param offset is where the document starts
+     * @param length is the number of bytes of the document
+     * @return this body
+     */
+    public BulkBody add(String index, byte[] json, int offset, int length) {
+        return add(index, null, json, offset, length);
+    }
+
+    /**
+     * Adds a document that was already serialized, with an id
+     * @param index is the elasticsearch index to post to
+     * @param id is the id of the document, or null to let elasticsearch choose one
+     * @param json is the buffer holding the document
+     * @param offset is where the document starts
+     * @param length is the number of bytes of the document
+     * @return this body
+     */
+    public BulkBody add(String index, String id, byte[] json, int offset, int length) {
+        writeAction(index, id);
+        writer.rawValue(json, offset, length).newLine();
+        return this;
+    }
+
+    /**
+     * Adds a document of another body, with its action line
+     * @param other is the body holding the document
+     * @param item is the position of the document in the other body
+     * @return this body
+     */
+    public BulkBody addFrom(BulkBody other, int item) {
+        int start = other.starts[item];
+        int end = item + 1 < other.actions ? other.starts[item + 1] : other.writer.size();
+        mark();
+        writer.rawValue(other.writer.getBuffer(), start, end - start);
+        return this;
+    }
+
+    /**
+     * Getter
+     * @return the number of documents
+     */
+    public int size() {
+        return actions;
+    }
+
+    /**
+     * Getter
+     * @return the size of the body in bytes
+     */
+    public int sizeInBytes() {
+        return writer.size();
+    }
+
+    /**
+     * Returns the buffer, which is only valid up to sizeInBytes() and until a document is added
+     * @return the buffer
+     */
+    public byte[] getBuffer() {
+        return writer.getBuffer();
+    }
+
+    @Override
+    public String toString() {
+        return writer.toString();
+    }
+
+    private void writeAction(String index, String id) {
+        mark();
+        writer.beginObject().name("index").beginObject().field("_index", index);
+        if (id != null) {
+            writer.field("_id", id);
+        }
+        writer.endObject().endObject().newLine();
+    }
+
+    private void mark() {
+        if (actions == starts.length) {
+            starts = Arrays.copyOf(starts, actions * 2);
+        }
+        starts[actions++] = writer.size();
+    }
+}
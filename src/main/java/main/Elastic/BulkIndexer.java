@@ -0,0 +1,367 @@
+package main.Elastic;
+
+import main.Documents.Document;
+import main.Documents.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers documents for the targets and sensors indices and sends them to elasticsearch
+ * through the _bulk api. Documents are serialized once, into the body of the request that sends them.
+ * A batch is flushed when it holds maxActions documents, when it grows past maxBytes, or when its first
+ * document has waited lingerMillis.
+ * Batches are sent asynchronously, so several can be in flight up to the limit of the elastic client,
+ * and adding a document blocks once that limit is reached. Documents elasticsearch rejects with 429 or 503
+ * are sent again in a smaller batch after a jittered backoff.
+ */
+public class BulkIndexer implements Closeable {
+
+    public static final int DEFAULT_MAX_ACTIONS = 500;
+    public static final long DEFAULT_MAX_BYTES = 5 * 1024 * 1024;
+    public static final long DEFAULT_LINGER_MILLIS = 200;
+
+    private final ElasticClient elasticClient;
+    private final int maxActions;
+    private final long maxBytes;
+    private final long lingerMillis;
+    private final RetryPolicy retryPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final List<BulkItemResult> failures = Collections.synchronizedList(new ArrayList<>());
+    // batches that have been taken from the buffer and not fully answered yet
+    private final Set<CompletableFuture<Void>> pending = ConcurrentHashMap.newKeySet();
+    // writers are reused between documents, one per thread serializing at the same time
+    private final Queue<JsonWriter> writers = new ConcurrentLinkedQueue<>();
+    private Batch batch;
+    private boolean closed;
+
+    /**
+     * Creates an instance of BulkIndexer with the default thresholds
+     * @param elasticClient is the elastic client
+     */
+    public BulkIndexer(ElasticClient elasticClient) {
+        this(elasticClient, DEFAULT_MAX_ACTIONS, DEFAULT_MAX_BYTES, DEFAULT_LINGER_MILLIS);
+    }
+
+    /**
+     * Creates an instance of BulkIndexer
+     * @param elasticClient is the elastic client
+     * @param maxActions is the number of documents that triggers a flush
+     * @param maxBytes is the request size that triggers a flush
+     * @param lingerMillis is how long a document may wait before it is flushed (0 disables the timer)
+     */
+    public BulkIndexer(ElasticClient elasticClient, int maxActions, long maxBytes, long lingerMillis) {
+        if (maxActions < 1 || maxBytes < 1 || lingerMillis < 0) {
+            throw new IllegalArgumentException("Invalid bulk thresholds.");
+        }
+        this.elasticClient = elasticClient;
+        this.maxActions = maxActions;
+        this.maxBytes = maxBytes;
+        this.lingerMillis = lingerMillis;
+        this.retryPolicy = elasticClient.getLimiter().getRetryPolicy();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bulk-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a document for the given index
+     * @param index is the elasticsearch index to post to
+     * @param data is a HashMap containing data to post
+     * @return a future that completes once elasticsearch has answered for the document
+     */
+    public CompletableFuture<BulkItemResult> add(String index, Map<String, String> data) {
+        JsonWriter writer = borrowWriter();
+        try {
+            return add(index, null, writer.value(data));
+        }
+        finally {
+            writers.offer(writer);
+        }
+    }
+
+    /**
+     * Queues a typed document for the given index. The document is serialized straight to JSON bytes.
+     * @param index is the elasticsearch index to post to
+     * @param document is the document to post
+     * @return a future that completes once elasticsearch has answered for the document
+     */
+    public CompletableFuture<BulkItemResult> add(String index, Document document) {
+        return add(index, null, document);
+    }
+
+    /**
+     * Queues a typed document with an id, which replaces the document elasticsearch already has with that id
+     * @param index is the elasticsearch index to post to
+     * @param id is the id of the document, or null to let elasticsearch choose one
+     * @param document is the document to post
+     * @return a future that completes once elasticsearch has answered for the document
+     */
+    public CompletableFuture<BulkItemResult> add(String index, String id, Document document) {
+        JsonWriter writer = borrowWriter();
+        try {
+            document.writeTo(writer);
+            return add(index, id, writer);
+        }
+        finally {
+            writers.offer(writer);
+        }
+    }
+
+    /**
+     * Takes a writer from the pool
+     * @return an empty writer
+     */
+    private JsonWriter borrowWriter() {
+        JsonWriter writer = writers.poll();
+        return writer == null ? new JsonWriter() : writer.reset();
+    }
+
+    /**
+     * Copies a serialized document into the current batch.
+     * Serializing happens before, outside the lock, so only the copy is done while holding it.
+     * Blocks while the elastic client has the maximum number of requests in flight.
+     * @param index is the elasticsearch index to post to
+     * @param id is the id of the document, or null to let elasticsearch choose one
+     * @param document holds the serialized document
+     * @return a future that completes once elasticsearch has answered for the document
+     */
+    private CompletableFuture<BulkItemResult> add(String index, String id, JsonWriter document) {
+        CompletableFuture<BulkItemResult> future = new CompletableFuture<>();
+        Batch full = null;
+        CompletableFuture<Void> sent = null;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("The BulkIndexer has been closed.");
+            }
+            if (batch == null) {
+                batch = new Batch(0);
+                scheduleLinger(batch);
+            }
+            batch.body.add(index, id, document.getBuffer(), 0, document.size());
+            batch.futures.add(future);
+            if (batch.size() >= maxActions || batch.body.sizeInBytes() >= maxBytes) {
+                full = batch;
+                batch = null;
+                sent = reserve();
+            }
+        }
+        if (full != null) {
+            dispatch(full, sent);
+        }
+        return future;
+    }
+
+    /**
+     * Sends any buffered documents right away.
+     * When this returns, every document added before the call has been answered.
+     */
+    public void flush() {
+        Batch buffered;
+        CompletableFuture<Void> sent = null;
+        synchronized (this) {
+            buffered = batch;
+            batch = null;
+            if (buffered != null) {
+                sent = reserve();
+            }
+        }
+        if (buffered != null) {
+            dispatch(buffered, sent);
+        }
+        // batches are reserved before they leave the buffer, so this also waits for ones the linger timer took
+        for (CompletableFuture<Void> inFlight : new ArrayList<>(pending)) {
+            inFlight.join();
+        }
+    }
+
+    /**
+     * Getter
+     * @return the items elasticsearch rejected so far
+     */
+    public List<BulkItemResult> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    /**
+     * Returns the items elasticsearch rejected so far and forgets them
+     * @return the rejected items
+     */
+    public List<BulkItemResult> drainFailures() {
+        synchronized (failures) {
+            List<BulkItemResult> drained = new ArrayList<>(failures);
+            failures.clear();
+            return drained;
+        }
+    }
+
+    /**
+     * Flushes the remaining documents and stops the linger timer
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        flush();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Starts the linger timer for a new batch
+     * @param target is the batch that was just created
+     */
+    private void scheduleLinger(Batch target) {
+        if (lingerMillis == 0) {
+            return;
+        }
+        scheduler.schedule(() -> {
+            CompletableFuture<Void> sent;
+            synchronized (this) {
+                if (batch != target) {
+                    return;
+                }
+                batch = null;
+                sent = reserve();
+            }
+            dispatch(target, sent);
+        }, lingerMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Registers a batch that is about to leave the buffer, so flush waits for it.
+     * Called while holding the lock of the indexer.
+     * @return the future to complete once the batch has been answered
+     */
+    private CompletableFuture<Void> reserve() {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        pending.add(sent);
+        return sent;
+    }
+
+    /**
+     * Sends a batch that was reserved and releases the reservation once it has been answered
+     * @param target is the batch to send
+     * @param sent is the reservation of the batch
+     */
+    private void dispatch(Batch target, CompletableFuture<Void> sent) {
+        send(target).whenComplete((done, error) -> {
+            pending.remove(sent);
+            sent.complete(null);
+        });
+    }
+
+    /**
+     * Sends a batch and completes the futures of its documents
+     * @param target is the batch to send
+     * @return a future that completes once every document of the batch, including retries, has been answered
+     */
+    private CompletableFuture<Void> send(Batch target) {
+        CompletableFuture<List<BulkItemResult>> response;
+        try {
+            response = elasticClient.postBulkAsync(target.body);
+        }
+        catch (RuntimeException e) {
+            response = new CompletableFuture<>();
+            response.completeExceptionally(e);
+        }
+        return response.handle((answer, error) -> complete(target, answer, error)).thenCompose(retry -> retry);
+    }
+
+    /**
+     * Completes the futures of the documents elasticsearch answered for and sends the rejected ones again
+     * @param target is the batch that was sent
+     * @param items are the answers for the documents, or null if the request failed
+     * @param error is the reason the request failed, or null
+     * @return a future that completes once the retried documents have been answered
+     */
+    private CompletableFuture<Void> complete(Batch target, List<BulkItemResult> items, Throwable error) {
+        if (error == null && items.size() != target.size()) {
+            error = new IOException("Elasticsearch answered for " + items.size() + " of "
+                    + target.size() + " documents.");
+        }
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            for (CompletableFuture<BulkItemResult> future : target.futures) {
+                future.completeExceptionally(cause);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        Batch retry = null;
+        for (int item = 0; item < items.size(); item++) {
+            BulkItemResult result = items.get(item);
+            CompletableFuture<BulkItemResult> future = target.futures.get(item);
+            if (result.isFailed() && retryPolicy.shouldRetry(result.getStatus(), target.retries)) {
+                if (retry == null) {
+                    retry = new Batch(target.retries + 1);
+                }
+                // the document is copied from the body it was sent in, without serializing it again
+                retry.body.addFrom(target.body, item);
+                retry.futures.add(future);
+                continue;
+            }
+            if (result.isFailed()) {
+                failures.add(result);
+            }
+            future.complete(result);
+        }
+        return retry == null ? CompletableFuture.completedFuture(null) : sendLater(retry);
+    }
+
+    /**
+     * Sends a batch of rejected documents after a backoff
+     * @param retry is the batch to send again
+     * @return a future that completes once the batch has been answered
+     */
+    private CompletableFuture<Void> sendLater(Batch retry) {
+        CompletableFuture<Void> sent = new CompletableFuture<>();
+        try {
+            // the retry waits for a free request slot on the indexer thread, not on the thread that got the answer
+            scheduler.schedule(() -> send(retry).whenComplete((done, error) -> sent.complete(null)),
+                    retryPolicy.backoffMillis(retry.retries - 1), TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            for (CompletableFuture<BulkItemResult> future : retry.futures) {
+                future.completeExceptionally(e);
+            }
+            sent.complete(null);
+        }
+        return sent;
+    }
+
+    /**
+     * Documents waiting to be sent together
+     */
+    private static class Batch {
+        private final BulkBody body = new BulkBody();
+        private final List<CompletableFuture<BulkItemResult>> futures = new ArrayList<>();
+        private final int retries;
+
+        private Batch(int retries) {
+            this.retries = retries;
+        }
+
+        private int size() {
+            return futures.size();
+        }
+    }
+}
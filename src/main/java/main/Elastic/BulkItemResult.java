@@ -0,0 +1,193 @@
+package main.Elastic;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a single document sent through the BulkIndexer.
+ * Results are read from the answers of elasticsearch with a streaming parser, only keeping the fields used here.
+ */
+public class BulkItemResult {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String index;
+    private final String id;
+    private final int status;
+    private final String failureMessage;
+
+    /**
+     * Creates an instance of BulkItemResult
+     * @param index is the index the document was sent to
+     * @param id is the id elasticsearch assigned to the document
+     * @param status is the http status of the item
+     * @param failureMessage is the reason the item failed, or null if it succeeded
+     */
+    public BulkItemResult(String index, String id, int status, String failureMessage) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+        this.failureMessage = failureMessage;
+    }
+
+    /**
+     * Reads the items of a _bulk answer, in the order the documents were sent
+     * @param body is the body of the answer
+     * @return one BulkItemResult per document
+     * @throws IOException if the answer could not be read
+     */
+    public static List<BulkItemResult> fromBulkResponse(InputStream body) throws IOException {
+        List<BulkItemResult> items = new ArrayList<>();
+        try (JsonParser parser = JSON.createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (!"items".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                expect(parser, value, JsonToken.START_ARRAY);
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    // every item is wrapped in its action, e.g. {"index":{...}}
+                    expect(parser, parser.nextToken(), JsonToken.FIELD_NAME);
+                    expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+                    items.add(read(parser, 0));
+                    expect(parser, parser.nextToken(), JsonToken.END_OBJECT);
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Reads the answer to a single index request
+     * @param status is the http status of the answer
+     * @param body is the body of the answer
+     * @return the BulkItemResult
+     * @throws IOException if the answer could not be read
+     */
+    public static BulkItemResult fromIndexResponse(int status, InputStream body) throws IOException {
+        try (JsonParser parser = JSON.createParser(body)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            return read(parser, status);
+        }
+    }
+
+    /**
+     * Reads the fields of an item, the parser being just past the start of the item
+     * @param parser is the parser
+     * @param status is the status to use when the item has none
+     * @return the BulkItemResult
+     * @throws IOException if the item could not be read
+     */
+    private static BulkItemResult read(JsonParser parser, int status) throws IOException {
+        String index = null;
+        String id = null;
+        String failureMessage = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "_index":
+                    index = parser.getValueAsString();
+                    break;
+                case "_id":
+                    id = parser.getValueAsString();
+                    break;
+                case "status":
+                    status = parser.getIntValue();
+                    break;
+                case "error":
+                    failureMessage = value == JsonToken.START_OBJECT ? readError(parser) : parser.getValueAsString();
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new BulkItemResult(index, id, status, failureMessage);
+    }
+
+    /**
+     * Reads the error of an item as "type: reason"
+     * @param parser is the parser, just past the start of the error
+     * @return the failure message
+     * @throws IOException if the error could not be read
+     */
+    private static String readError(JsonParser parser) throws IOException {
+        String type = null;
+        String reason = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("type".equals(field)) {
+                type = parser.getValueAsString();
+            }
+            else if ("reason".equals(field)) {
+                reason = parser.getValueAsString();
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+        return type + ": " + reason;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected elasticsearch answer at " + parser.getCurrentLocation()
+                    + ": expected " + expected + " but found " + actual);
+        }
+    }
+
+    /**
+     * Getter
+     * @return the index of the document
+     */
+    public String getIndex() {
+        return index;
+    }
+
+    /**
+     * Getter
+     * @return the id of the document
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Getter
+     * @return the http status of the item
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Getter
+     * @return the failure reason, or null if the item succeeded
+     */
+    public String getFailureMessage() {
+        return failureMessage;
+    }
+
+    /**
+     * Whether or not elasticsearch rejected the document
+     * @return boolean
+     */
+    public boolean isFailed() {
+        return failureMessage != null;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + id + " [" + status + "]" + (isFailed() ? " " + failureMessage : "");
+    }
+}
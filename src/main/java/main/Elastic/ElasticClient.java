@@ -1,37 +1,130 @@
 package main.Elastic;
 
+import main.Documents.JsonWriter;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
-import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.client.RequestOptions;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NByteArrayEntity;
+import org.elasticsearch.client.NodeSelector;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
-import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 
 /**
- * Creates a HighLevel Rest client for working with an elasticsearch cluster on an AWS EC2
+ * Creates a low level Rest client for working with an elasticsearch cluster.
+ * The nodes, connection pool, timeouts and compression come from ElasticSettings.
+ * Request bodies are written with JsonWriter and answers are read with a streaming parser,
+ * so the elasticsearch server classes are not needed, which keeps the Lambda package and its cold start small.
+ * Documents are sent asynchronously through an AsyncRequestLimiter, which bounds the requests in flight
+ * and retries the ones elasticsearch rejects with 429 or 503. The blocking methods wait on the same path.
  */
 public class ElasticClient {
 
-    private static final String EC2_PUBLIC_IP = "18.223.97.147";
-    private RestHighLevelClient client;
+    /**
+     * Gzip encodes request bodies. A body that is already encoded, e.g. when a request is
+     * sent again to another node, is left as it is.
+     */
+    private static final HttpRequestInterceptor GZIP_REQUESTS = (request, context) -> {
+        if (request instanceof HttpEntityEnclosingRequest) {
+            HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null && entity.getContentEncoding() == null) {
+                ((HttpEntityEnclosingRequest) request).setEntity(new GzipCompressingEntity(entity));
+            }
+        }
+    };
+
+    private static final ContentType JSON = ContentType.APPLICATION_JSON;
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson");
+
+    private final RestClient client;
+    private final AsyncRequestLimiter limiter;
+    private final Sniffer sniffer;
 
     /**
-     * Creates an instance of ElasticClient
+     * Creates an instance of ElasticClient for the nodes in ES_HOSTS, configured by the environment
      */
     public ElasticClient() {
-        client = new RestHighLevelClient(RestClient.builder(
-                new HttpHost(EC2_PUBLIC_IP, 9200, "http")
-        ));
+        this(ElasticSettings.fromEnvironment(), RetryPolicy.fromEnvironment());
+    }
+
+    /**
+     * Creates an instance of ElasticClient for the given node, configured by the environment
+     * @param hostname is the host of the elasticsearch node
+     * @param port is the port of the elasticsearch node
+     * @param scheme is either http or https
+     */
+    public ElasticClient(String hostname, int port, String scheme) {
+        this(ElasticSettings.fromEnvironment(Collections.singletonList(new HttpHost(hostname, port, scheme))),
+                RetryPolicy.fromEnvironment());
+    }
+
+    /**
+     * Creates an instance of ElasticClient
+     * @param settings are the nodes and the transport tuning
+     * @param retryPolicy decides which rejected requests are sent again
+     */
+    public ElasticClient(ElasticSettings settings, RetryPolicy retryPolicy) {
+        RestClientBuilder builder = RestClient.builder(settings.getHosts().toArray(new HttpHost[0]))
+                .setRequestConfigCallback(requestConfig -> requestConfig
+                        .setConnectTimeout(settings.getConnectTimeoutMillis())
+                        .setSocketTimeout(settings.getSocketTimeoutMillis()))
+                .setHttpClientConfigCallback(httpClient -> {
+                    httpClient.setMaxConnPerRoute(settings.getMaxConnPerRoute())
+                            .setMaxConnTotal(settings.getMaxConnTotal())
+                            .setKeepAliveStrategy((response, context) -> settings.getKeepAliveMillis());
+                    if (settings.isCompression()) {
+                        // runs before the content headers are set, so they describe the compressed body
+                        httpClient.addInterceptorFirst(GZIP_REQUESTS);
+                    }
+                    return httpClient;
+                });
+        SniffOnFailureListener sniffOnFailure = null;
+        if (settings.getSniffIntervalMillis() > 0) {
+            sniffOnFailure = new SniffOnFailureListener();
+            builder.setFailureListener(sniffOnFailure)
+                    .setNodeSelector(NodeSelector.SKIP_DEDICATED_MASTERS);
+        }
+        client = builder.build();
+        if (sniffOnFailure != null) {
+            boolean https = "https".equals(settings.getHosts().get(0).getSchemeName());
+            sniffer = Sniffer.builder(client)
+                    .setSniffIntervalMillis(settings.getSniffIntervalMillis())
+                    .setNodesSniffer(new ElasticsearchNodesSniffer(client,
+                            ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT,
+                            https ? ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP))
+                    .build();
+            sniffOnFailure.setSniffer(sniffer);
+        }
+        else {
+            sniffer = null;
+        }
+        limiter = new AsyncRequestLimiter(settings.getMaxInFlight(), retryPolicy);
     }
 
     /**
      * Returns the client
-     * @return RestHighLevelClient
+     * @return RestClient
      */
-    public RestHighLevelClient getClient() {
+    public RestClient getClient() {
         return client;
     }
 
@@ -39,12 +132,192 @@ public class ElasticClient {
      * Posts data to the client
      * @param index is the elasticsearch index to post to
      * @param data is a HashMap containing data to post
-     * @return IndexResponse for the upload
+     * @return BulkItemResult with the index and id of the document
+     * @throws IOException
+     */
+    public BulkItemResult postData(String index, Map<String, String> data) throws IOException {
+        return await(postDataAsync(index, data));
+    }
+
+    /**
+     * Posts data to the client without waiting for the answer.
+     * Blocks while the maximum number of requests is in flight.
+     * @param index is the elasticsearch index to post to
+     * @param data is a HashMap containing data to post
+     * @return a future of the BulkItemResult for the upload
+     */
+    public CompletableFuture<BulkItemResult> postDataAsync(String index, Map<String, String> data) {
+        JsonWriter writer = new JsonWriter().value(data);
+        Request request = new Request("POST", "/" + index + "/_doc");
+        request.setEntity(new NByteArrayEntity(writer.getBuffer(), 0, writer.size(), JSON));
+        return limiter.submit(() -> send(request)).thenApply(response -> {
+            try (InputStream body = response.getEntity().getContent()) {
+                return BulkItemResult.fromIndexResponse(response.getStatusLine().getStatusCode(), body);
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Posts several documents to the client in a single _bulk request
+     * @param body contains the documents to post
+     * @return one BulkItemResult per document
+     * @throws IOException
+     */
+    public List<BulkItemResult> postBulk(BulkBody body) throws IOException {
+        return await(postBulkAsync(body));
+    }
+
+    /**
+     * Posts several documents to the client in a single _bulk request without waiting for the answer.
+     * Blocks while the maximum number of requests is in flight.
+     * The body must not change until the future completes, since a retry sends it again.
+     * @param body contains the documents to post
+     * @return a future of one BulkItemResult per document
+     */
+    public CompletableFuture<List<BulkItemResult>> postBulkAsync(BulkBody body) {
+        Request request = new Request("POST", "/_bulk");
+        request.setEntity(new NByteArrayEntity(body.getBuffer(), 0, body.sizeInBytes(), NDJSON));
+        return limiter.submit(() -> send(request)).thenApply(response -> {
+            try (InputStream content = response.getEntity().getContent()) {
+                return BulkItemResult.fromBulkResponse(content);
+            }
+            catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Sends a request without waiting for the answer
+     * @param request is the request
+     * @return a future of the answer, failing with a ResponseException when elasticsearch answered with an error
+     */
+    private CompletableFuture<Response> send(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<>();
+        client.performRequestAsync(request, new ResponseListener() {
+            @Override
+            public void onSuccess(Response response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                future.completeExceptionally(exception);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Getter
+     * @return the limiter the documents are sent through
+     */
+    public AsyncRequestLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Installs the rollover policy and the index templates, then creates the first index behind the
+     * targets and sensors aliases. Templates and the policy are overwritten, so this is safe to run on every start.
+     * @param templates are the templates to install
+     * @throws IOException
+     */
+    public void installTemplates(IndexTemplates templates) throws IOException {
+        perform("PUT", "/_ilm/policy/" + IndexTemplates.POLICY, templates.policy());
+        perform("PUT", "/_template/" + IndexTemplates.TARGETS, templates.targetsTemplate());
+        perform("PUT", "/_template/" + IndexTemplates.SENSORS, templates.sensorsTemplate());
+        createWriteIndex(IndexTemplates.TARGETS, templates);
+        createWriteIndex(IndexTemplates.SENSORS, templates);
+    }
+
+    /**
+     * Creates the first index behind an alias unless the alias already exists
+     * @param alias is the alias documents are written to
+     * @param templates are the installed templates
+     * @throws IOException
+     */
+    private void createWriteIndex(String alias, IndexTemplates templates) throws IOException {
+        if (exists("/_alias/" + alias)) {
+            return;
+        }
+        if (exists("/" + alias)) {
+            System.err.println("The index " + alias + " is not an alias, so it will not roll over.");
+            return;
+        }
+        try {
+            perform("PUT", "/" + IndexTemplates.firstIndexName(alias), templates.writeIndex(alias));
+        }
+        catch (ResponseException e) {
+            // another instance created the index first
+            if (e.getResponse().getStatusLine().getStatusCode() != 400) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Checks whether an index or alias exists
+     * @param endpoint is the path of the index or alias
+     * @return whether or not elasticsearch answered 200
+     * @throws IOException
+     */
+    private boolean exists(String endpoint) throws IOException {
+        // the low level client does not treat a 404 answer to HEAD as an error
+        return client.performRequest(new Request("HEAD", endpoint))
+                .getStatusLine().getStatusCode() == 200;
+    }
+
+    /**
+     * Sends a request with a JSON body
+     * @param method is the http method
+     * @param endpoint is the path
+     * @param json is the body
+     * @throws IOException
+     */
+    private void perform(String method, String endpoint, String json) throws IOException {
+        Request request = new Request(method, endpoint);
+        request.setJsonEntity(json);
+        client.performRequest(request);
+    }
+
+    /**
+     * Waits for a request sent through the limiter
+     * @param future is the future of the request
+     * @return the response
+     * @throws IOException if the request failed
+     */
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for elasticsearch.");
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Closes the underlying connections
      * @throws IOException
      */
-    public IndexResponse postData(String index, Map<String, String> data) throws IOException {
-        IndexRequest indexRequest = new IndexRequest(index).source(data);
-        IndexResponse indexResponse = client.index(indexRequest, RequestOptions.DEFAULT);
-        return indexResponse;
+    public void close() throws IOException {
+        if (sniffer != null) {
+            sniffer.close();
+        }
+        limiter.close();
+        client.close();
     }
-}
\ No newline at end of file
+}
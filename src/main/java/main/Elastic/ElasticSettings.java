@@ -0,0 +1,198 @@
+package main.Elastic;
+
+import main.Config.Environment;
+import org.apache.http.HttpHost;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Endpoints and transport tuning of the elastic client.
+ * Requests are spread round robin over the hosts, and a host that fails is skipped until it recovers.
+ * With sniffing on, the hosts only seed the client, which then asks the cluster for its data nodes.
+ */
+public class ElasticSettings {
+
+    public static final String DEFAULT_HOSTS = "http://18.223.97.147:9200";
+    public static final int DEFAULT_MAX_CONN_PER_ROUTE = 50;
+    public static final int DEFAULT_MAX_CONN_TOTAL = 200;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 1000;
+    public static final int DEFAULT_SOCKET_TIMEOUT_MILLIS = 10000;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 60000;
+    public static final int DEFAULT_SNIFF_INTERVAL_MILLIS = 300000;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    private final List<HttpHost> hosts;
+    private final int maxConnPerRoute;
+    private final int maxConnTotal;
+    private final int connectTimeoutMillis;
+    private final int socketTimeoutMillis;
+    private final long keepAliveMillis;
+    private final boolean compression;
+    private final int sniffIntervalMillis;
+    private final int maxInFlight;
+
+    /**
+     * Creates an instance of ElasticSettings
+     * @param hosts are the elasticsearch nodes to send requests to
+     * @param maxConnPerRoute is the number of connections kept open to each node
+     * @param maxConnTotal is the number of connections kept open to all nodes
+     * @param connectTimeoutMillis is how long to wait for a connection to a node
+     * @param socketTimeoutMillis is how long to wait for data from a node before trying the next one
+     * @param keepAliveMillis is how long an idle connection is reused for
+     * @param compression is whether or not request bodies are sent gzip encoded
+     * @param sniffIntervalMillis is how often the nodes of the cluster are looked up (0 disables sniffing)
+     * @param maxInFlight is the number of requests that may wait for an answer at once
+     */
+    public ElasticSettings(List<HttpHost> hosts, int maxConnPerRoute, int maxConnTotal, int connectTimeoutMillis,
+                           int socketTimeoutMillis, long keepAliveMillis, boolean compression,
+                           int sniffIntervalMillis, int maxInFlight) {
+        if (hosts.isEmpty()) {
+            throw new IllegalArgumentException("At least one elasticsearch host is required.");
+        }
+        this.hosts = Collections.unmodifiableList(new ArrayList<>(hosts));
+        this.maxConnPerRoute = maxConnPerRoute;
+        this.maxConnTotal = maxConnTotal;
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.socketTimeoutMillis = socketTimeoutMillis;
+        this.keepAliveMillis = keepAliveMillis;
+        this.compression = compression;
+        this.sniffIntervalMillis = sniffIntervalMillis;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Creates an instance of ElasticSettings for the nodes in ES_HOSTS, a comma separated list like
+     * http://10.0.0.1:9200,http://10.0.0.2:9200, tuned by the environment
+     * @return the settings
+     */
+    public static ElasticSettings fromEnvironment() {
+        return fromEnvironment(parseHosts(Environment.getString("ES_HOSTS", DEFAULT_HOSTS)));
+    }
+
+    /**
+     * Creates an instance of ElasticSettings for the given nodes, tuned by ES_MAX_CONN_PER_ROUTE,
+     * ES_MAX_CONN_TOTAL, ES_CONNECT_TIMEOUT_MILLIS, ES_SOCKET_TIMEOUT_MILLIS, ES_KEEP_ALIVE_MILLIS,
+     * ES_COMPRESSION, ES_SNIFF, ES_SNIFF_INTERVAL_MILLIS and ES_MAX_IN_FLIGHT
+     * @param hosts are the elasticsearch nodes
+     * @return the settings
+     */
+    public static ElasticSettings fromEnvironment(List<HttpHost> hosts) {
+        return new ElasticSettings(hosts,
+                Environment.getInt("ES_MAX_CONN_PER_ROUTE", DEFAULT_MAX_CONN_PER_ROUTE),
+                Environment.getInt("ES_MAX_CONN_TOTAL", DEFAULT_MAX_CONN_TOTAL),
+                Environment.getInt("ES_CONNECT_TIMEOUT_MILLIS", DEFAULT_CONNECT_TIMEOUT_MILLIS),
+                Environment.getInt("ES_SOCKET_TIMEOUT_MILLIS", DEFAULT_SOCKET_TIMEOUT_MILLIS),
+                Environment.getLong("ES_KEEP_ALIVE_MILLIS", DEFAULT_KEEP_ALIVE_MILLIS),
+                Environment.getBoolean("ES_COMPRESSION", true),
+                // nodes often publish addresses only reachable inside their network, so sniffing is opt in
+                Environment.getBoolean("ES_SNIFF", false)
+                        ? Environment.getInt("ES_SNIFF_INTERVAL_MILLIS", DEFAULT_SNIFF_INTERVAL_MILLIS) : 0,
+                Environment.getInt("ES_MAX_IN_FLIGHT", DEFAULT_MAX_IN_FLIGHT));
+    }
+
+    /**
+     * Parses a comma separated list of nodes. The scheme defaults to http and the port to 9200.
+     * @param hosts is the list, e.g. https://search-1:9243,10.0.0.2
+     * @return the nodes
+     */
+    public static List<HttpHost> parseHosts(String hosts) {
+        List<HttpHost> parsed = new ArrayList<>();
+        for (String host : hosts.split(",")) {
+            host = host.trim();
+            if (host.isEmpty()) {
+                continue;
+            }
+            String scheme = "http";
+            int separator = host.indexOf("://");
+            if (separator >= 0) {
+                scheme = host.substring(0, separator);
+                host = host.substring(separator + 3);
+            }
+            if (host.endsWith("/")) {
+                host = host.substring(0, host.length() - 1);
+            }
+            int port = 9200;
+            int colon = host.lastIndexOf(':');
+            if (colon >= 0) {
+                port = Integer.parseInt(host.substring(colon + 1));
+                host = host.substring(0, colon);
+            }
+            parsed.add(new HttpHost(host, port, scheme));
+        }
+        return parsed;
+    }
+
+    /**
+     * Getter
+     * @return the elasticsearch nodes
+     */
+    public List<HttpHost> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Getter
+     * @return the number of connections kept open to each node
+     */
+    public int getMaxConnPerRoute() {
+        return maxConnPerRoute;
+    }
+
+    /**
+     * Getter
+     * @return the number of connections kept open to all nodes
+     */
+    public int getMaxConnTotal() {
+        return maxConnTotal;
+    }
+
+    /**
+     * Getter
+     * @return how long to wait for a connection to a node
+     */
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    /**
+     * Getter
+     * @return how long to wait for data from a node
+     */
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    /**
+     * Getter
+     * @return how long an idle connection is reused for
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * Getter
+     * @return whether or not request bodies are gzip encoded
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    /**
+     * Getter
+     * @return how often the nodes of the cluster are looked up, 0 if never
+     */
+    public int getSniffIntervalMillis() {
+        return sniffIntervalMillis;
+    }
+
+    /**
+     * Getter
+     * @return the number of requests that may wait for an answer at once
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+}
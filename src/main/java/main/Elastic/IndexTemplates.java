@@ -0,0 +1,176 @@
+package main.Elastic;
+
+import main.Config.Environment;
+import main.Documents.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Builds the index templates, the rollover policy and the first write index of the targets and sensors indices.
+ * Documents are written to the targets and sensors aliases. Behind each alias is a series of indices,
+ * e.g. targets-2020.06.17-000001, that rolls over to a new index once the current one is maxAge old or maxSize large.
+ * Every field is mapped up front and dynamic mapping is off, so new documents never change the mapping.
+ */
+public class IndexTemplates {
+
+    public static final String POLICY = "ingest-rollover";
+    public static final String TARGETS = "targets";
+    public static final String SENSORS = "sensors";
+
+    private final int shards;
+    private final int replicas;
+    private final String refreshInterval;
+    private final String maxAge;
+    private final String maxSize;
+
+    /**
+     * Creates an instance of IndexTemplates
+     * @param shards is the number of primary shards of each index
+     * @param replicas is the number of replicas of each shard
+     * @param refreshInterval is how often new documents become searchable, e.g. 30s
+     * @param maxAge is the age at which an index rolls over, e.g. 1d
+     * @param maxSize is the size at which an index rolls over, e.g. 50gb
+     */
+    public IndexTemplates(int shards, int replicas, String refreshInterval, String maxAge, String maxSize) {
+        this.shards = shards;
+        this.replicas = replicas;
+        this.refreshInterval = refreshInterval;
+        this.maxAge = maxAge;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Creates an instance of IndexTemplates configured by ES_SHARDS, ES_REPLICAS, ES_REFRESH_INTERVAL,
+     * ES_ROLLOVER_MAX_AGE and ES_ROLLOVER_MAX_SIZE
+     * @return the templates
+     */
+    public static IndexTemplates fromEnvironment() {
+        return new IndexTemplates(Environment.getInt("ES_SHARDS", 1), Environment.getInt("ES_REPLICAS", 1),
+                Environment.getString("ES_REFRESH_INTERVAL", "30s"),
+                Environment.getString("ES_ROLLOVER_MAX_AGE", "1d"),
+                Environment.getString("ES_ROLLOVER_MAX_SIZE", "50gb"));
+    }
+
+    /**
+     * Installs the policy, the templates and the first write indices with the default elastic client,
+     * once per deployment instead of on the cold start of every container
+     * @param args are not used
+     * @throws IOException if elasticsearch could not be reached
+     */
+    public static void main(String[] args) throws IOException {
+        ElasticClient client = new ElasticClient();
+        try {
+            client.installTemplates(fromEnvironment());
+        }
+        finally {
+            client.close();
+        }
+        System.out.println("Installed the index templates of " + TARGETS + " and " + SENSORS + ".");
+    }
+
+    /**
+     * Builds the lifecycle policy that rolls the indices over
+     * @return the body of PUT _ilm/policy/ingest-rollover
+     */
+    public String policy() {
+        JsonWriter writer = new JsonWriter();
+        writer.beginObject().name("policy").beginObject().name("phases").beginObject()
+                .name("hot").beginObject().name("actions").beginObject()
+                .name("rollover").beginObject().field("max_age", maxAge).field("max_size", maxSize).endObject()
+                .endObject().endObject()
+                .endObject().endObject().endObject();
+        return writer.toString();
+    }
+
+    /**
+     * Builds the template of the targets indices
+     * @return the body of PUT _template/targets
+     */
+    public String targetsTemplate() {
+        JsonWriter writer = beginTemplate(TARGETS);
+        writer.name("cone_angle").beginObject().field("type", "double").endObject();
+        writer.name("cone_radius").beginObject().field("type", "double").endObject();
+        writer.name("cone_direction").beginObject().field("type", "double").endObject();
+        writer.name("track_id").beginObject().field("type", "keyword").endObject();
+        writer.name("first_seen").beginObject().field("type", "date").field("format", "epoch_millis").endObject();
+        writer.name("detections").beginObject().field("type", "integer").endObject();
+        writer.name("confidence").beginObject().field("type", "double").endObject();
+        writer.name("cone_count").beginObject().field("type", "integer").endObject();
+        return endTemplate(writer);
+    }
+
+    /**
+     * Builds the template of the sensors indices
+     * @return the body of PUT _template/sensors
+     */
+    public String sensorsTemplate() {
+        JsonWriter writer = beginTemplate(SENSORS);
+        writer.name("yaw").beginObject().field("type", "double").endObject();
+        writer.name("fov").beginObject().field("type", "double").endObject();
+        writer.name("altitude").beginObject().field("type", "double").endObject();
+        return endTemplate(writer);
+    }
+
+    /**
+     * Builds the request that creates the first index behind an alias and makes it the write index
+     * @param alias is the alias documents are written to
+     * @return the body of the PUT request
+     */
+    public String writeIndex(String alias) {
+        JsonWriter writer = new JsonWriter();
+        writer.beginObject().name("aliases").beginObject()
+                .name(alias).beginObject().field("is_write_index", true).endObject()
+                .endObject().endObject();
+        return writer.toString();
+    }
+
+    /**
+     * Builds the name of the first index behind an alias, with the date it was created in it.
+     * The name uses date math, so it must be URL encoded.
+     * @param alias is the alias documents are written to
+     * @return the encoded index name
+     */
+    public static String firstIndexName(String alias) {
+        // <alias-{now/d}-000001>
+        return "%3C" + alias + "-%7Bnow%2Fd%7D-000001%3E";
+    }
+
+    /**
+     * Writes the settings and the mappings every index shares, leaving the properties object open
+     * @param alias is the alias of the indices
+     * @return the writer
+     */
+    private JsonWriter beginTemplate(String alias) {
+        JsonWriter writer = new JsonWriter(1024);
+        writer.beginObject();
+        writer.name("index_patterns").beginArray().value(alias + "-*").endArray();
+        writer.name("order").value(0);
+        writer.name("settings").beginObject().name("index").beginObject()
+                .name("number_of_shards").value(shards)
+                .name("number_of_replicas").value(replicas)
+                .field("refresh_interval", refreshInterval)
+                .name("lifecycle").beginObject().field("name", POLICY).field("rollover_alias", alias).endObject()
+                .endObject().endObject();
+        writer.name("mappings").beginObject();
+        // fields that are not mapped stay in _source without being indexed
+        writer.field("dynamic", false);
+        writer.name("properties").beginObject();
+        writer.name("sensor_id").beginObject().field("type", "keyword").endObject();
+        writer.name("sensor_type").beginObject().field("type", "keyword").endObject();
+        writer.name("timestamp").beginObject().field("type", "date").field("format", "epoch_millis").endObject();
+        writer.name("location").beginObject().field("type", "geo_point").endObject();
+        // the provenance is only read back with the document, so its array of steps is kept in _source unparsed
+        writer.name("provenance").beginObject().field("type", "object").field("enabled", false).endObject();
+        return writer;
+    }
+
+    /**
+     * Closes the objects opened by beginTemplate
+     * @param writer is the writer
+     * @return the template
+     */
+    private static String endTemplate(JsonWriter writer) {
+        writer.endObject().endObject().endObject();
+        return writer.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package main.Elastic;
+
+import main.Config.Environment;
+import org.elasticsearch.client.ResponseException;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether a request elasticsearch pushed back on is sent again, and how long to wait first.
+ * Only 429 Too Many Requests and 503 Service Unavailable are retried. The wait grows exponentially
+ * with each attempt and is drawn at random up to that bound, so clients that were rejected together
+ * do not come back together.
+ */
+public class RetryPolicy {
+
+    public static final int DEFAULT_MAX_RETRIES = 3;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 100;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 5000;
+
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * Creates an instance of RetryPolicy
+     * @param maxRetries is the number of times a request is sent again (0 disables retries)
+     * @param initialBackoffMillis is the longest wait before the first retry
+     * @param maxBackoffMillis is the longest wait before any retry
+     */
+    public RetryPolicy(int maxRetries, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxRetries < 0 || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid retry policy.");
+        }
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Creates an instance of RetryPolicy configured by ES_MAX_RETRIES, ES_RETRY_BACKOFF_MILLIS
+     * and ES_RETRY_MAX_BACKOFF_MILLIS
+     * @return the retry policy
+     */
+    public static RetryPolicy fromEnvironment() {
+        return new RetryPolicy(Environment.getInt("ES_MAX_RETRIES", DEFAULT_MAX_RETRIES),
+                Environment.getLong("ES_RETRY_BACKOFF_MILLIS", DEFAULT_INITIAL_BACKOFF_MILLIS),
+                Environment.getLong("ES_RETRY_MAX_BACKOFF_MILLIS", DEFAULT_MAX_BACKOFF_MILLIS));
+    }
+
+    /**
+     * Getter
+     * @return the number of times a request is sent again
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Whether or not a request that failed with the given status should be sent again
+     * @param status is the http status of the response
+     * @return boolean
+     */
+    public boolean isRetryable(int status) {
+        return status == 429 || status == 503;
+    }
+
+    /**
+     * Whether or not a request that failed after the given number of retries should be sent again
+     * @param status is the http status of the response
+     * @param retries is the number of times the request has already been sent again
+     * @return boolean
+     */
+    public boolean shouldRetry(int status, int retries) {
+        return retries < maxRetries && isRetryable(status);
+    }
+
+    /**
+     * Picks how long to wait before a retry
+     * @param retries is the number of times the request has already been sent again
+     * @return a random wait between 0 and the bound for this attempt
+     */
+    public long backoffMillis(int retries) {
+        long bound = initialBackoffMillis << Math.min(retries, 30);
+        bound = Math.min(bound < 0 ? maxBackoffMillis : bound, maxBackoffMillis);
+        return bound == 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    /**
+     * Finds the http status of a failed request
+     * @param error is what the request failed with
+     * @return the status, or 0 if the request did not get an answer
+     */
+    public static int statusOf(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ResponseException) {
+                return ((ResponseException) cause).getResponse().getStatusLine().getStatusCode();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,16 @@
+package main.Exceptions;
+
+/**
+ * Thrown when a LabelDetector cannot analyze an image.
+ * Unchecked like the exceptions of the AWS clients, since detection runs inside the stages of a record.
+ */
+public class DetectionException extends RuntimeException {
+    /**
+     * Creates an instance of DetectionException
+     * @param errorMessage is the error message
+     * @param cause is the exception that stopped the detection
+     */
+    public DetectionException(String errorMessage, Throwable cause) {
+        super(errorMessage, cause);
+    }
+}
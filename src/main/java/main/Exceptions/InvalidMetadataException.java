@@ -1,7 +1,7 @@
 package main.Exceptions;
 
 /**
- * Thrown when the metadata provided is incomplete
+ * Thrown when the metadata provided is incomplete or invalid
  */
 public class InvalidMetadataException extends Exception {
     /**
@@ -0,0 +1,210 @@
+package main.Lambda;
+
+import main.Config.Environment;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Processes the records of a batch concurrently with a bounded number of records in flight.
+ * When sensor order is preserved, records with the same sensor_id are processed one after the other
+ * in the order they arrived, while different sensors still run in parallel. The sensor_id is read from the
+ * metadata of every record, so the order does not depend on how the sensors name their objects.
+ */
+public class BatchProcessor {
+
+    private final RecordProcessor recordProcessor;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final boolean preserveSensorOrder;
+
+    /**
+     * Creates an instance of BatchProcessor configured from the environment.
+     * RECORD_CONCURRENCY sets the records in flight (1 processes them sequentially),
+     * RECORD_EXECUTOR chooses "virtual" or "platform" threads and
+     * PRESERVE_SENSOR_ORDER keeps the records with the same sensor_id in order.
+     * @param recordProcessor processes a single record
+     */
+    public BatchProcessor(RecordProcessor recordProcessor) {
+        this(recordProcessor, Environment.getInt("RECORD_CONCURRENCY", 8),
+                Environment.getString("RECORD_EXECUTOR", "virtual"),
+                Environment.getBoolean("PRESERVE_SENSOR_ORDER", false));
+    }
+
+    /**
+     * Creates an instance of BatchProcessor
+     * @param recordProcessor processes a single record
+     * @param maxInFlight is the number of records processed at the same time
+     * @param executorType is "virtual" to use virtual threads where the runtime supports them, otherwise a fixed pool
+     * @param preserveSensorOrder keeps the records of a sensor in order
+     */
+    public BatchProcessor(RecordProcessor recordProcessor, int maxInFlight, String executorType,
+                          boolean preserveSensorOrder) {
+        this(recordProcessor, maxInFlight, maxInFlight > 1 ? createExecutor(executorType, maxInFlight) : null,
+                preserveSensorOrder);
+    }
+
+    /**
+     * Creates an instance of BatchProcessor
+     * @param recordProcessor processes a single record
+     * @param maxInFlight is the number of records processed at the same time
+     * @param executor runs the records, or null to process them on the calling thread
+     * @param preserveSensorOrder keeps the records of a sensor in order
+     */
+    public BatchProcessor(RecordProcessor recordProcessor, int maxInFlight, ExecutorService executor,
+                          boolean preserveSensorOrder) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one record must be in flight.");
+        }
+        this.recordProcessor = recordProcessor;
+        this.maxInFlight = maxInFlight;
+        this.executor = executor;
+        this.preserveSensorOrder = preserveSensorOrder;
+    }
+
+    /**
+     * Processes every record and waits for all of them
+     * @param records are the records of the batch
+     * @return the summary with one result per record, in the order of the records
+     */
+    public BatchSummary processAll(List<IngestRecord> records) {
+        long start = System.currentTimeMillis();
+        RecordResult[] results = new RecordResult[records.size()];
+        if (executor == null || records.size() < 2) {
+            for (int i = 0; i < records.size(); i++) {
+                results[i] = recordProcessor.process(records.get(i));
+            }
+            return new BatchSummary(Arrays.asList(results), System.currentTimeMillis() - start);
+        }
+
+        if (preserveSensorOrder) {
+            processInSensorOrder(records, results);
+        }
+        else {
+            processInParallel(records, results);
+        }
+
+        List<RecordResult> summary = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            summary.add(results[i] != null ? results[i]
+                    : new RecordResult(records.get(i), RecordResult.Status.FAILED, "The record was not processed.", 0));
+        }
+        return new BatchSummary(summary, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Processes every record on the executor, each on its own
+     * @param records are the records of the batch
+     * @param results receives the result of every record at its position
+     */
+    private void processInParallel(List<IngestRecord> records, RecordResult[] results) {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                int index = i;
+                inFlight.acquire();
+                try {
+                    futures.add(executor.submit(() -> {
+                        try {
+                            results[index] = recordProcessor.process(records.get(index));
+                        }
+                        finally {
+                            inFlight.release();
+                        }
+                    }));
+                }
+                catch (RuntimeException e) {
+                    inFlight.release();
+                    throw e;
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Processes the records with a SensorSequencer, so that a record waits for the earlier records of its sensor
+     * after its metadata was read. Permits are taken in arrival order, so a record only ever waits for records
+     * that already hold one.
+     * @param records are the records of the batch
+     * @param results receives the result of every record at its position
+     */
+    private void processInSensorOrder(List<IngestRecord> records, RecordResult[] results) {
+        SensorSequencer sequencer = new SensorSequencer(records.size());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        List<CompletableFuture<RecordResult>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < records.size(); i++) {
+                int index = i;
+                inFlight.acquire();
+                futures.add(recordProcessor.processAsync(records.get(index),
+                        sensorId -> sequencer.turn(index, sensorId)).whenComplete((result, error) -> {
+                            results[index] = result;
+                            sequencer.finish(index);
+                            inFlight.release();
+                        }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops the threads of the executor
+     */
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Creates the executor that runs the records
+     * @param executorType is "virtual" to use virtual threads where the runtime supports them,
+     * "work-stealing" for a pool whose idle threads take queued stages from busy ones
+     * @param threads is the size of the pool, for the work stealing and the fixed pool
+     * @return the executor
+     */
+    public static ExecutorService createExecutor(String executorType, int threads) {
+        if ("work-stealing".equalsIgnoreCase(executorType)) {
+            return Executors.newWorkStealingPool(threads);
+        }
+        if ("virtual".equalsIgnoreCase(executorType)) {
+            try {
+                // virtual threads exist from Java 21 on; the project still targets Java 8
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                // fall through to platform threads
+            }
+        }
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "record-processor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
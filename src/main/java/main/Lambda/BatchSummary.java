@@ -0,0 +1,128 @@
+package main.Lambda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Aggregated outcome of the records of one batch
+ */
+public class BatchSummary {
+
+    private final List<RecordResult> results;
+    private final long elapsedMillis;
+    private int processed;
+    private int skipped;
+    private int rejected;
+    private int failed;
+    private long slowestMillis;
+
+    /**
+     * Creates an instance of BatchSummary
+     * @param results are the results in the order of the records
+     * @param elapsedMillis is how long the whole batch took
+     */
+    public BatchSummary(List<RecordResult> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.elapsedMillis = elapsedMillis;
+        for (RecordResult result : results) {
+            switch (result.getStatus()) {
+                case PROCESSED:
+                    processed++;
+                    break;
+                case SKIPPED:
+                    skipped++;
+                    break;
+                case REJECTED:
+                    rejected++;
+                    break;
+                default:
+                    failed++;
+            }
+            slowestMillis = Math.max(slowestMillis, result.getElapsedMillis());
+        }
+    }
+
+    /**
+     * Getter
+     * @return the results in the order of the records
+     */
+    public List<RecordResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Getter
+     * @return the results of the records that failed
+     */
+    public List<RecordResult> getFailures() {
+        List<RecordResult> failures = new ArrayList<>();
+        for (RecordResult result : results) {
+            if (result.getStatus() == RecordResult.Status.FAILED) {
+                failures.add(result);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Getter
+     * @return the results of the records whose metadata was invalid
+     */
+    public List<RecordResult> getRejections() {
+        List<RecordResult> rejections = new ArrayList<>();
+        for (RecordResult result : results) {
+            if (result.getStatus() == RecordResult.Status.REJECTED) {
+                rejections.add(result);
+            }
+        }
+        return rejections;
+    }
+
+    /**
+     * Getter
+     * @return the number of records that were processed
+     */
+    public int getProcessed() {
+        return processed;
+    }
+
+    /**
+     * Getter
+     * @return the number of records that were skipped
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Getter
+     * @return the number of records that were rejected for invalid metadata
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Getter
+     * @return the number of records that failed
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Getter
+     * @return how long the whole batch took in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Processed " + processed + " of " + results.size() + " records (" + skipped + " skipped, "
+                + rejected + " rejected, " + failed + " failed) in " + elapsedMillis + " ms, slowest record "
+                + slowestMillis + " ms";
+    }
+}
@@ -4,13 +4,17 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.S3Event;
 import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
-import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import main.Clients.ClientRegistry;
+import main.Config.Environment;
 import main.DataType.DataType;
-import main.Targets.Detector;
-import main.Elastic.ElasticClient;
+import main.Detection.DetectionScheduler;
+import main.Elastic.BulkIndexer;
+import main.Elastic.BulkItemResult;
 import main.Exceptions.InvalidIndexException;
-import main.Metadata.MetadataSender;
+import main.Metrics.EmfExporter;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Lambda function class that is triggered by objects added to an S3 Bucket
@@ -18,34 +22,81 @@ import main.Metadata.MetadataSender;
  */
 public class Handler implements RequestHandler<S3Event, String> {
 
+    private final ClientRegistry clients;
+    private final BatchProcessor batchProcessor;
+    private final EmfExporter metricsExporter;
+
+    /**
+     * Creates an instance of Handler using the clients shared by the container.
+     * The Lambda runtime calls this during the init phase, so the clients are created and primed here
+     * unless PRIME_ON_INIT is false. The clients are also closed before a SnapStart snapshot
+     * and created again after it.
+     */
+    public Handler() {
+        this(ClientRegistry.getDefault());
+        Initializer initializer = Initializer.register(clients);
+        if (Environment.getBoolean("PRIME_ON_INIT", true)) {
+            initializer.prime();
+        }
+    }
+
+    /**
+     * Creates an instance of Handler
+     * @param clients is the registry of reusable clients
+     */
+    public Handler(ClientRegistry clients) {
+        this(clients, new BatchProcessor(new RecordProcessor(clients)));
+    }
+
+    /**
+     * Creates an instance of Handler
+     * @param clients is the registry of reusable clients
+     * @param batchProcessor processes the records of an event
+     */
+    public Handler(ClientRegistry clients, BatchProcessor batchProcessor) {
+        this.clients = clients;
+        this.batchProcessor = batchProcessor;
+        // METRICS_EMF=false keeps the per stage metrics out of the log
+        this.metricsExporter = Environment.getBoolean("METRICS_EMF", true) ? EmfExporter.fromEnvironment() : null;
+    }
+
     /**
      * Gets invoked when an S3Object is added to an S3Bucket.
-     * The object is accessed and its information is sent to the MetadataSender and the Detector
+     * The records of the event are sent to the MetadataSender and the Detector, concurrently
+     * unless RECORD_CONCURRENCY is 1. The metrics of the invocation are written to the log in the end.
      * @param event is the S3Event that occurred
      * @param ctx is the information about the event
-     * @return null
+     * @return the summary of the processed records
      */
     public String handleRequest(S3Event event, Context ctx) {
-        // Sets up s3 client with default credentials and location
-        AmazonS3 s3Client = AmazonS3ClientBuilder.defaultClient();
-        ElasticClient elasticClient = new ElasticClient();
         // Event records stored in list
+        List<IngestRecord> records = new ArrayList<>();
         for (S3EventNotification.S3EventNotificationRecord record : event.getRecords()) {
-            // record.getEventTime()
-            String s3Key = record.getS3().getObject().getKey();
-            String s3Bucket = record.getS3().getBucket().getName();
-            DataType dataType;
-            try {
-                dataType = determineDatatype(s3Key);
-            }
-            catch(InvalidIndexException e) {
-                e.printStackTrace();
-                continue;
-            }
-            MetadataSender metadataSender = new MetadataSender(s3Key, s3Bucket, dataType, elasticClient);
-            Detector detector = new Detector(s3Key, s3Bucket, dataType, metadataSender.getMetadata(), elasticClient);
+            records.add(IngestRecord.fromEventRecord(record));
+        }
+        BatchSummary summary = batchProcessor.processAll(records);
+
+        // The clients outlive the invocation, so only the pending documents are flushed here
+        BulkIndexer bulkIndexer = clients.getBulkIndexer();
+        bulkIndexer.flush();
+        for (BulkItemResult failure : bulkIndexer.drainFailures()) {
+            System.err.println("Failed to index document: " + failure);
+        }
+        for (RecordResult rejection : summary.getRejections()) {
+            System.err.println("Rejected record: " + rejection);
+        }
+        for (RecordResult failure : summary.getFailures()) {
+            System.err.println("Failed to process record: " + failure);
         }
-        return null;
+        DetectionScheduler scheduler = clients.getDetectionScheduler();
+        if (scheduler != null && (scheduler.getMaxQueueDepth() > 1 || scheduler.getThrottled() > 0)) {
+            System.out.println(scheduler);
+        }
+        if (metricsExporter != null) {
+            // the indexing of this invocation's documents finished with the flush, so it is part of this export
+            metricsExporter.export(clients.getMetrics().drain());
+        }
+        return summary.toString();
     }
 
     /**
@@ -55,19 +106,6 @@ public class Handler implements RequestHandler<S3Event, String> {
      * @throws InvalidIndexException
      */
     public DataType determineDatatype(String s3Key) throws InvalidIndexException {
-        int endIndex = s3Key.indexOf('/');
-        if (endIndex == -1) {
-            return DataType.OTHER;
-        }
-        String index = s3Key.substring(0, endIndex);
-        if (index.equals("droneIngest")) {
-            return DataType.DRONE;
-        }
-        else if (index.equals("groundIngest")) {
-            return DataType.HANDHELD;
-        }
-        else {
-            throw new InvalidIndexException("The S3Object is from an invalid index.");
-        }
+        return RecordProcessor.determineDatatype(s3Key);
     }
 }
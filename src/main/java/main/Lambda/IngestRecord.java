@@ -0,0 +1,132 @@
+package main.Lambda;
+
+import com.amazonaws.services.lambda.runtime.events.models.s3.S3EventNotification;
+import main.Documents.JsonWriter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An S3 object waiting to be processed, independent of where the notification came from
+ */
+public class IngestRecord {
+
+    private final String s3Bucket;
+    private final String s3Key;
+    private final String eTag;
+    private final long eventTime;
+
+    /**
+     * Creates an instance of IngestRecord
+     * @param s3Bucket is the bucket of the S3Object
+     * @param s3Key is the file name of the S3Object
+     * @param eTag is the ETag of the S3Object, or null if unknown
+     * @param eventTime is when S3 reported the object in Unix time, or 0 if unknown
+     */
+    public IngestRecord(String s3Bucket, String s3Key, String eTag, long eventTime) {
+        this.s3Bucket = s3Bucket;
+        this.s3Key = s3Key;
+        this.eTag = eTag;
+        this.eventTime = eventTime;
+    }
+
+    /**
+     * Creates an IngestRecord from a Lambda S3 event record
+     * @param record is the event record
+     * @return the IngestRecord
+     */
+    public static IngestRecord fromEventRecord(S3EventNotification.S3EventNotificationRecord record) {
+        long eventTime = record.getEventTime() == null ? 0 : record.getEventTime().getMillis();
+        return new IngestRecord(record.getS3().getBucket().getName(), record.getS3().getObject().getKey(),
+                record.getS3().getObject().geteTag(), eventTime);
+    }
+
+    /**
+     * Creates the IngestRecords of an S3 event notification delivered as JSON, e.g. through SQS
+     * @param json is the notification
+     * @return one record per object, empty for the test event S3 sends when notifications are set up
+     * @throws IllegalArgumentException if the notification is not valid JSON
+     */
+    public static List<IngestRecord> fromNotification(String json) {
+        com.amazonaws.services.s3.event.S3EventNotification notification;
+        try {
+            notification = com.amazonaws.services.s3.event.S3EventNotification.parseJson(json);
+        }
+        catch (RuntimeException e) {
+            throw new IllegalArgumentException("The message is not an S3 event notification.", e);
+        }
+        List<IngestRecord> records = new ArrayList<>();
+        if (notification.getRecords() == null) {
+            return records;
+        }
+        for (com.amazonaws.services.s3.event.S3EventNotification.S3EventNotificationRecord record
+                : notification.getRecords()) {
+            long eventTime = record.getEventTime() == null ? 0 : record.getEventTime().getMillis();
+            records.add(new IngestRecord(record.getS3().getBucket().getName(), record.getS3().getObject().getKey(),
+                    record.getS3().getObject().geteTag(), eventTime));
+        }
+        return records;
+    }
+
+    /**
+     * Writes records as an S3 event notification that fromNotification reads back
+     * @param records are the records
+     * @return the notification
+     */
+    public static String toNotification(List<IngestRecord> records) {
+        JsonWriter writer = new JsonWriter();
+        writer.beginObject().name("Records").beginArray();
+        for (IngestRecord record : records) {
+            writer.beginObject().field("eventSource", "aws:s3").field("eventName", "ObjectCreated:Put");
+            if (record.eventTime > 0) {
+                writer.field("eventTime", Instant.ofEpochMilli(record.eventTime).toString());
+            }
+            writer.name("s3").beginObject()
+                    .name("bucket").beginObject().field("name", record.s3Bucket).endObject()
+                    .name("object").beginObject().field("key", record.s3Key);
+            if (record.eTag != null) {
+                writer.field("eTag", record.eTag);
+            }
+            writer.endObject().endObject().endObject();
+        }
+        return writer.endArray().endObject().toString();
+    }
+
+    /**
+     * Getter
+     * @return the bucket of the S3Object
+     */
+    public String getS3Bucket() {
+        return s3Bucket;
+    }
+
+    /**
+     * Getter
+     * @return the file name of the S3Object
+     */
+    public String getS3Key() {
+        return s3Key;
+    }
+
+    /**
+     * Getter
+     * @return the ETag of the S3Object, or null if unknown
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Getter
+     * @return when S3 reported the object in Unix time, or 0 if unknown
+     */
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    @Override
+    public String toString() {
+        return s3Bucket + "/" + s3Key;
+    }
+}
@@ -0,0 +1,126 @@
+package main.Lambda;
+
+import main.Clients.ClientRegistry;
+import main.Documents.DroneSensorDocument;
+import main.Documents.DroneTargetDocument;
+import main.Documents.HandheldTargetDocument;
+import main.Elastic.BulkBody;
+import main.Elastic.BulkItemResult;
+import main.Metadata.Provenance;
+import org.crac.Context;
+import org.crac.Core;
+import org.crac.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prepares a container before its first record and keeps its clients valid across checkpoints.
+ * prime creates the clients and runs the serialization and parsing code once, so the classes are loaded
+ * and initialized before a record arrives. With Lambda SnapStart or a CRaC JVM that work is part of the snapshot.
+ * Connections do not survive a restore, so the clients are closed before the checkpoint
+ * and created again after the restore.
+ */
+public class Initializer implements Resource {
+
+    // the global context only keeps weak references to its resources
+    private static final List<Initializer> REGISTERED = Collections.synchronizedList(new ArrayList<>());
+
+    private static final String BULK_RESPONSE = "{\"took\":1,\"errors\":true,\"items\":["
+            + "{\"index\":{\"_index\":\"targets\",\"_type\":\"_doc\",\"_id\":\"1\",\"_version\":1,"
+            + "\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"_seq_no\":0,"
+            + "\"_primary_term\":1,\"status\":201}},"
+            + "{\"index\":{\"_index\":\"sensors\",\"_type\":\"_doc\",\"_id\":\"2\",\"status\":429,"
+            + "\"error\":{\"type\":\"es_rejected_execution_exception\",\"reason\":\"rejected execution\"}}}]}";
+    private static final String INDEX_RESPONSE = "{\"_index\":\"sensors\",\"_type\":\"_doc\",\"_id\":\"3\","
+            + "\"_version\":1,\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}";
+
+    private final ClientRegistry clients;
+
+    /**
+     * Creates an instance of Initializer
+     * @param clients is the registry to prepare
+     */
+    public Initializer(ClientRegistry clients) {
+        this.clients = clients;
+    }
+
+    /**
+     * Creates an Initializer and registers it for checkpoint and restore notifications
+     * @param clients is the registry to prepare
+     * @return the Initializer
+     */
+    public static Initializer register(ClientRegistry clients) {
+        Initializer initializer = new Initializer(clients);
+        REGISTERED.add(initializer);
+        Core.getGlobalContext().register(initializer);
+        return initializer;
+    }
+
+    /**
+     * Creates the clients and warms up the code every record runs through.
+     * Failures are only reported, the clients are then created on first use.
+     */
+    public void prime() {
+        try {
+            clients.prime();
+        }
+        catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        warmUp();
+    }
+
+    /**
+     * Serializes sample documents into a _bulk body and parses sample answers of elasticsearch
+     */
+    private static void warmUp() {
+        Provenance provenance = new Provenance().record(Provenance.Stage.CAPTURED, 0)
+                .setDetector("warm up").record(Provenance.Stage.SENT_TO_DETECTOR).snapshot();
+        BulkBody body = new BulkBody()
+                .add("targets", new DroneTargetDocument("0", "drone", "0", 40.0, -105.0, provenance))
+                .add("targets", new HandheldTargetDocument("0", "thermal", "0", 40.0, -105.0, 0.6, 50, 1.2, provenance))
+                .add("sensors", new DroneSensorDocument("0", "drone", "0", 40.0, -105.0, 0.5, 75.5, 100, provenance))
+                .add("sensors", Collections.singletonMap("sensor_id", "0"));
+        BulkBody retry = new BulkBody().addFrom(body, 1);
+        try {
+            List<BulkItemResult> items = BulkItemResult.fromBulkResponse(
+                    new ByteArrayInputStream(BULK_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+            BulkItemResult.fromIndexResponse(201,
+                    new ByteArrayInputStream(INDEX_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+            if (items.size() != 2 || retry.size() != 1) {
+                System.err.println("Unexpected warm up result: " + items);
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Flushes pending documents and closes the connections before the snapshot is taken
+     * @param context is the context the Initializer is registered with
+     */
+    @Override
+    public void beforeCheckpoint(Context<? extends Resource> context) {
+        clients.close();
+    }
+
+    /**
+     * Creates the clients again, which connect on their first request
+     * @param context is the context the Initializer is registered with
+     */
+    @Override
+    public void afterRestore(Context<? extends Resource> context) {
+        try {
+            clients.prime();
+        }
+        catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package main.Lambda;
+
+import com.amazonaws.services.rekognition.model.Label;
+import main.Clients.ClientRegistry;
+import main.Config.Environment;
+import main.DataType.DataType;
+import main.Detection.ImageReference;
+import main.Documents.HandheldTargetDocument;
+import main.Documents.SensorDocument;
+import main.Documents.TargetDocument;
+import main.Documents.TrackedTargetDocument;
+import main.Documents.TriangulatedTargetDocument;
+import main.Elastic.BulkIndexer;
+import main.Elastic.BulkItemResult;
+import main.Exceptions.InvalidIndexException;
+import main.Exceptions.InvalidMetadataException;
+import main.Metadata.Metadata;
+import main.Metadata.MetadataSender;
+import main.Metrics.Counter;
+import main.Metrics.MetricsRegistry;
+import main.Metrics.Stage;
+import main.Spatial.Cone;
+import main.Spatial.ConeTriangulator;
+import main.Spatial.TargetIndex;
+import main.Spatial.TargetPoint;
+import main.Targets.Detector;
+import main.Targets.TargetFinder;
+import main.Targets.TargetTracker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * Runs a single record through the MetadataSender and the Detector as a pipeline of stages:
+ * the metadata is parsed, then sent to elasticsearch while the label detector works on the image,
+ * then the targets are computed, added to the TargetIndex and queued for elasticsearch,
+ * the targets of drones through the TargetTracker. The cones of handheld cameras also go to the ConeTriangulator,
+ * and the targets it locates are indexed with them.
+ * The latency of every stage and the outcome of every record are recorded in the registry's metrics.
+ */
+public class RecordProcessor {
+
+    private final ClientRegistry clients;
+    private final Executor executor;
+
+    /**
+     * Creates an instance of RecordProcessor whose stages run on an executor configured like the BatchProcessor's
+     * @param clients is the registry of reusable clients
+     */
+    public RecordProcessor(ClientRegistry clients) {
+        // every record in flight runs at most two stages at once
+        this(clients, BatchProcessor.createExecutor(Environment.getString("RECORD_EXECUTOR", "virtual"),
+                2 * Math.max(1, Environment.getInt("RECORD_CONCURRENCY", 8))));
+    }
+
+    /**
+     * Creates an instance of RecordProcessor
+     * @param clients is the registry of reusable clients
+     * @param executor runs the stages of a record
+     */
+    public RecordProcessor(ClientRegistry clients, Executor executor) {
+        this.clients = clients;
+        this.executor = executor;
+    }
+
+    /**
+     * Processes a record and waits until its documents are queued.
+     * Errors are caught so that one bad record does not affect the others.
+     * @param record is the record to process
+     * @return the result of the record
+     */
+    public RecordResult process(IngestRecord record) {
+        return processAsync(record).join();
+    }
+
+    /**
+     * Processes a record without blocking the calling thread
+     * @param record is the record to process
+     * @return a future with the result of the record, completed once its documents are queued
+     */
+    public CompletableFuture<RecordResult> processAsync(IngestRecord record) {
+        return processAsync(record, sensorId -> CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * Processes a record without blocking the calling thread, holding it back once its sensor is known
+     * @param record is the record to process
+     * @param sensorTurn is given the sensor_id of the record once its metadata is parsed; the metadata is sent
+     *                   and the image detected after the future it returns completes
+     * @return a future with the result of the record, completed once its documents are queued
+     */
+    public CompletableFuture<RecordResult> processAsync(IngestRecord record,
+                                                        Function<String, CompletableFuture<Void>> sensorTurn) {
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        MetricsRegistry metrics = clients.getMetrics();
+        DataType dataType;
+        try {
+            dataType = determineDatatype(record.getS3Key());
+        }
+        catch (InvalidIndexException e) {
+            e.printStackTrace();
+            metrics.increment(Counter.RECORDS_SKIPPED, DataType.OTHER, 1);
+            return CompletableFuture.completedFuture(new RecordResult(record, RecordResult.Status.SKIPPED,
+                    e.getMessage(), System.currentTimeMillis() - start));
+        }
+        if (dataType == DataType.OTHER) {
+            metrics.increment(Counter.RECORDS_SKIPPED, DataType.OTHER, 1);
+            return CompletableFuture.completedFuture(new RecordResult(record, RecordResult.Status.SKIPPED,
+                    "The S3Object is not in an ingest folder.", System.currentTimeMillis() - start));
+        }
+        String s3Key = record.getS3Key();
+        String s3Bucket = record.getS3Bucket();
+        BulkIndexer bulkIndexer = clients.getBulkIndexer();
+
+        // parse the metadata and format the sensors document before detection starts appending to the provenance.
+        // Invalid metadata stops the record here, before it costs a call to the label detector.
+        CompletableFuture<ParsedRecord> parsed = CompletableFuture.supplyAsync(() -> {
+            MetadataSender metadataSender = new MetadataSender(s3Key, s3Bucket, dataType, clients,
+                    record.getEventTime());
+            Metadata metadata = metadataSender.getMetadata();
+            if (!metadata.isValid()) {
+                throw new CompletionException(new InvalidMetadataException(String.join("; ", metadata.getErrors())));
+            }
+            return new ParsedRecord(metadataSender, metadata.toDocument());
+        }, executor).thenCompose(parsedRecord -> sensorTurn.apply(parsedRecord.getMetadata().getSensorID())
+                .thenApply(ignored -> parsedRecord));
+
+        // the metadata is indexed while the label detector works on the image
+        CompletableFuture<CompletableFuture<BulkItemResult>> metadataQueued = parsed.thenApplyAsync(parsedRecord ->
+                parsedRecord.metadataSender.sendMetadataToElastic(bulkIndexer, parsedRecord.sensorDocument), executor);
+        ImageReference image = new ImageReference(s3Bucket, s3Key, record.getETag());
+        CompletableFuture<List<Label>> detected = parsed.thenApplyAsync(parsedRecord ->
+                metrics.time(Stage.DETECTION, dataType, () ->
+                        TargetFinder.detect(clients.getLabelDetector(), image, parsedRecord.getMetadata())), executor);
+
+        CompletableFuture<List<TargetDocument>> targets = detected.thenCombine(parsed, (labels, parsedRecord) ->
+                metrics.time(Stage.TARGETS, dataType, () -> new Detector(s3Key, s3Bucket, dataType,
+                        parsedRecord.getMetadata(), labels).getTargetDocuments()));
+
+        // targets drones report in frame after frame update their track instead of adding documents
+        TargetTracker tracker = dataType == DataType.DRONE ? clients.getTargetTracker() : null;
+        TargetIndex targetIndex = clients.getTargetIndex();
+        ConeTriangulator triangulator = dataType == DataType.HANDHELD ? clients.getConeTriangulator() : null;
+        CompletableFuture<List<CompletableFuture<BulkItemResult>>> targetsQueued = targets.thenApply(documents -> {
+            // handheld targets carry where the camera stood, so only the locations triangulate() finds are added
+            if (targetIndex != null && dataType == DataType.DRONE) {
+                targetIndex.addAll(documents);
+            }
+            List<CompletableFuture<BulkItemResult>> results = new ArrayList<>();
+            if (triangulator != null) {
+                results.addAll(triangulate(triangulator, documents, targetIndex, bulkIndexer, metrics));
+            }
+            if (tracker == null) {
+                for (TargetDocument document : documents) {
+                    results.add(bulkIndexer.add("targets", document));
+                }
+                return results;
+            }
+            int merged = 0;
+            for (TrackedTargetDocument document : tracker.track(documents)) {
+                results.add(bulkIndexer.add("targets", document.getTrackId(), document));
+                if (document.getDetections() > 1) {
+                    merged++;
+                }
+            }
+            int skipped = documents.size() - results.size();
+            metrics.increment(Counter.TARGETS_MERGED, dataType, merged + skipped);
+            metrics.increment(Counter.TARGET_UPDATES_SKIPPED, dataType, skipped);
+            return results;
+        });
+
+        return metadataQueued.thenCombine(targetsQueued, (metadataResult, targetResults) -> {
+            List<CompletableFuture<BulkItemResult>> documents = new ArrayList<>(targetResults);
+            documents.add(metadataResult);
+            metrics.recordLatency(Stage.RECORD, dataType, System.nanoTime() - startNanos);
+            metrics.increment(Counter.RECORDS_PROCESSED, dataType, 1);
+            return new RecordResult(record, RecordResult.Status.PROCESSED, null,
+                    System.currentTimeMillis() - start, recordIndexing(allOf(documents), metrics, dataType));
+        }).exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof InvalidMetadataException) {
+                metrics.increment(Counter.RECORDS_REJECTED, dataType, 1);
+                return new RecordResult(record, RecordResult.Status.REJECTED, cause.getMessage(),
+                        System.currentTimeMillis() - start);
+            }
+            cause.printStackTrace();
+            metrics.increment(Counter.RECORDS_FAILED, dataType, 1);
+            return new RecordResult(record, RecordResult.Status.FAILED, cause.toString(),
+                    System.currentTimeMillis() - start);
+        });
+    }
+
+    /**
+     * Intersects the cones of a handheld camera's targets with the cones other cameras saw recently
+     * and queues the targets they locate
+     * @param triangulator is the triangulator
+     * @param documents are the targets of the image
+     * @param targetIndex is the index of recent targets, or null
+     * @param bulkIndexer queues the documents
+     * @param metrics counts the targets located
+     * @return the results of the queued documents
+     */
+    private static List<CompletableFuture<BulkItemResult>> triangulate(ConeTriangulator triangulator,
+            List<TargetDocument> documents, TargetIndex targetIndex, BulkIndexer bulkIndexer, MetricsRegistry metrics) {
+        List<Cone> cones = new ArrayList<>(documents.size());
+        for (TargetDocument document : documents) {
+            if (document instanceof HandheldTargetDocument) {
+                cones.add(Cone.fromDocument((HandheldTargetDocument) document));
+            }
+        }
+        List<CompletableFuture<BulkItemResult>> results = new ArrayList<>();
+        for (TriangulatedTargetDocument located : triangulator.add(cones)) {
+            if (targetIndex != null) {
+                targetIndex.add(new TargetPoint(String.join(",", located.getSensorIds()),
+                        TriangulatedTargetDocument.SENSOR_TYPE, located.getTimestamp(), located.getLatitude(),
+                        located.getLongitude()));
+            }
+            results.add(bulkIndexer.add("targets", located.getId(), located));
+        }
+        metrics.increment(Counter.TARGETS_TRIANGULATED, DataType.HANDHELD, results.size());
+        return results;
+    }
+
+    /**
+     * Combines the futures of several documents
+     * @param documents are the futures of the documents
+     * @return a future with every answer once all of them completed
+     */
+    private static CompletableFuture<List<BulkItemResult>> allOf(List<CompletableFuture<BulkItemResult>> documents) {
+        return CompletableFuture.allOf(documents.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<BulkItemResult> results = new ArrayList<>();
+            for (CompletableFuture<BulkItemResult> document : documents) {
+                results.add(document.join());
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Records how long elasticsearch took to answer for the documents of a record, from the moment the last one
+     * was queued, and how many of them it took
+     * @param indexed is the future of the answers
+     * @param metrics is the registry to record in
+     * @param dataType is the type of sensor of the record
+     * @return the same future
+     */
+    private static CompletableFuture<List<BulkItemResult>> recordIndexing(
+            CompletableFuture<List<BulkItemResult>> indexed, MetricsRegistry metrics, DataType dataType) {
+        long queuedAt = System.nanoTime();
+        indexed.whenComplete((items, error) -> {
+            metrics.recordLatency(Stage.INDEXING, dataType, System.nanoTime() - queuedAt);
+            if (error != null) {
+                return;
+            }
+            long failed = 0;
+            for (BulkItemResult item : items) {
+                if (item.isFailed()) {
+                    failed++;
+                }
+            }
+            metrics.increment(Counter.DOCUMENTS_INDEXED, dataType, items.size() - failed);
+            metrics.increment(Counter.DOCUMENTS_FAILED, dataType, failed);
+        });
+        return indexed;
+    }
+
+    /**
+     * Used to determine what type of sensor is provided to create appropriate datatypes
+     * @param s3Key is the file name of the object added to the bucket
+     * @return a DataType object
+     * @throws InvalidIndexException
+     */
+    public static DataType determineDatatype(String s3Key) throws InvalidIndexException {
+        int endIndex = s3Key.indexOf('/');
+        if (endIndex == -1) {
+            return DataType.OTHER;
+        }
+        String index = s3Key.substring(0, endIndex);
+        if (index.equals("droneIngest")) {
+            return DataType.DRONE;
+        }
+        else if (index.equals("groundIngest")) {
+            return DataType.HANDHELD;
+        }
+        else {
+            throw new InvalidIndexException("The S3Object is from an invalid index.");
+        }
+    }
+
+    /**
+     * Output of the parse stage
+     */
+    private static class ParsedRecord {
+        private final MetadataSender metadataSender;
+        private final SensorDocument sensorDocument;
+
+        private ParsedRecord(MetadataSender metadataSender, SensorDocument sensorDocument) {
+            this.metadataSender = metadataSender;
+            this.sensorDocument = sensorDocument;
+        }
+
+        private Metadata getMetadata() {
+            return metadataSender.getMetadata();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package main.Lambda;
+
+import main.Elastic.BulkItemResult;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Outcome of processing a single record
+ */
+public class RecordResult {
+
+    /**
+     * What happened to the record
+     */
+    public enum Status {
+        PROCESSED, SKIPPED,
+        /** the metadata of the object is invalid, so it was not sent to the label detector and cannot be retried */
+        REJECTED,
+        FAILED
+    }
+
+    private final IngestRecord record;
+    private final Status status;
+    private final String message;
+    private final long elapsedMillis;
+    private final CompletableFuture<List<BulkItemResult>> indexed;
+
+    /**
+     * Creates an instance of RecordResult for a record that queued no documents
+     * @param record is the record that was processed
+     * @param status is what happened to the record
+     * @param message explains why the record was skipped, rejected or failed, or null
+     * @param elapsedMillis is how long the record took
+     */
+    public RecordResult(IngestRecord record, Status status, String message, long elapsedMillis) {
+        this(record, status, message, elapsedMillis,
+                CompletableFuture.completedFuture(Collections.<BulkItemResult>emptyList()));
+    }
+
+    /**
+     * Creates an instance of RecordResult
+     * @param record is the record that was processed
+     * @param status is what happened to the record
+     * @param message explains why the record was skipped, rejected or failed, or null
+     * @param elapsedMillis is how long the record took
+     * @param indexed completes once elasticsearch has answered for every document of the record
+     */
+    public RecordResult(IngestRecord record, Status status, String message, long elapsedMillis,
+                        CompletableFuture<List<BulkItemResult>> indexed) {
+        this.record = record;
+        this.status = status;
+        this.message = message;
+        this.elapsedMillis = elapsedMillis;
+        this.indexed = indexed;
+    }
+
+    /**
+     * Getter
+     * @return the record
+     */
+    public IngestRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * Getter
+     * @return what happened to the record
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Getter
+     * @return why the record was skipped, rejected or failed, or null
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Getter
+     * @return how long the record took in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Waits for elasticsearch's answer for the documents of the record and reports what went wrong
+     * @return a future with whether or not the record is done, false if it should be retried
+     */
+    public CompletableFuture<Boolean> isComplete() {
+        if (status == Status.FAILED) {
+            System.err.println("Failed to process record: " + this);
+            return CompletableFuture.completedFuture(false);
+        }
+        if (status == Status.REJECTED) {
+            // the metadata would be just as invalid the next time
+            System.err.println("Rejected record: " + this);
+            return CompletableFuture.completedFuture(true);
+        }
+        return indexed.handle((items, error) -> {
+            if (error != null) {
+                System.err.println("Failed to index record " + record + ": " + error);
+                return false;
+            }
+            boolean done = true;
+            for (BulkItemResult item : items) {
+                if (item.isFailed()) {
+                    System.err.println("Failed to index document: " + item);
+                    // documents elasticsearch rejected as invalid would be rejected again
+                    done &= !(item.getStatus() == 429 || item.getStatus() >= 500);
+                }
+            }
+            return done;
+        });
+    }
+
+    /**
+     * Getter. The documents are queued on the BulkIndexer, so the future completes after it flushes.
+     * @return a future with elasticsearch's answer for every document of the record
+     */
+    public CompletableFuture<List<BulkItemResult>> getIndexed() {
+        return indexed;
+    }
+
+    @Override
+    public String toString() {
+        return record + " " + status + (message == null ? "" : ": " + message);
+    }
+}
@@ -0,0 +1,64 @@
+package main.Lambda;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Orders the records of a batch by the sensor_id in their metadata, which is only known once it has been read.
+ * A record waits until every earlier record of the batch knows its sensor, or finished without one,
+ * then until the earlier records of the same sensor finished. The metadata of every record is still read in
+ * parallel, and the records of different sensors run in parallel.
+ */
+class SensorSequencer {
+
+    private final String[] sensorIds;
+    private final CompletableFuture<?>[] known;
+    private final CompletableFuture<?>[] finished;
+
+    /**
+     * Creates an instance of SensorSequencer
+     * @param size is the number of records of the batch
+     */
+    SensorSequencer(int size) {
+        this.sensorIds = new String[size];
+        this.known = new CompletableFuture<?>[size];
+        this.finished = new CompletableFuture<?>[size];
+        for (int i = 0; i < size; i++) {
+            known[i] = new CompletableFuture<Void>();
+            finished[i] = new CompletableFuture<Void>();
+        }
+    }
+
+    /**
+     * Records the sensor of a record and waits for its turn
+     * @param position is the position of the record in the batch
+     * @param sensorId is the sensor_id of the record
+     * @return a future that completes once the earlier records of the sensor finished
+     */
+    CompletableFuture<Void> turn(int position, String sensorId) {
+        // the write is published to the later records by the completion of known
+        sensorIds[position] = sensorId;
+        known[position].complete(null);
+        return CompletableFuture.allOf(Arrays.copyOf(known, position)).thenCompose(ignored -> {
+            List<CompletableFuture<?>> earlier = new ArrayList<>();
+            for (int i = 0; i < position; i++) {
+                if (Objects.equals(sensorId, sensorIds[i])) {
+                    earlier.add(finished[i]);
+                }
+            }
+            return CompletableFuture.allOf(earlier.toArray(new CompletableFuture<?>[0]));
+        });
+    }
+
+    /**
+     * Records that a record finished, whether or not it reached its turn
+     * @param position is the position of the record in the batch
+     */
+    void finish(int position) {
+        known[position].complete(null);
+        finished[position].complete(null);
+    }
+}
@@ -1,10 +1,11 @@
 package main.Metadata;
 
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
-import main.Exceptions.InvalidMetadataException;
+import main.Documents.DroneSensorDocument;
+import main.Documents.SensorDocument;
 import main.Metadata.Metadata;
 
-import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,41 +21,19 @@ public class DroneMetadata extends Metadata {
      * @param s3Object is the object that triggered the lambda function
      */
     public DroneMetadata(S3Object s3Object) {
-        super(s3Object);
-        try {
-            setMetadata();
-        }
-        catch (InvalidMetadataException e) {
-            e.printStackTrace();
-        }
+        super(s3Object, MetadataSchema.DRONE);
+        altitude = values.getNumber(MetadataField.ALTITUDE);
     }
 
     /**
-     * Gets additional metadata from the object and sets the fields
-     * @throws InvalidMetadataException
+     * Creates a new instance of DroneMetadata from the response to a HEAD request
+     * @param s3Bucket is the bucket of the object that triggered the lambda function
+     * @param s3Key is the file name of the object that triggered the lambda function
+     * @param objectMetadata is the object's metadata
      */
-    private void setMetadata() throws InvalidMetadataException {
-        if (confirmAdditionalFields(metadata)) {
-            altitude = Double.parseDouble(metadata.get("altitude"));
-        }
-        else {
-            throw new InvalidMetadataException("Some necessary fields weren't included.");
-        }
-    }
-
-    /**
-     * Confirms that additional fields are provided
-     * @param metadata is the objects metadata
-     * @return whether or not the additional fields are present
-     */
-    public boolean confirmAdditionalFields(Map<String,String> metadata) {
-        String[] fields = {"altitude"};
-        for (String field : fields) {
-            if (!metadata.containsKey("altitude")) {
-                return false;
-            }
-        }
-        return true;
+    public DroneMetadata(String s3Bucket, String s3Key, ObjectMetadata objectMetadata) {
+        super(s3Bucket, s3Key, objectMetadata, MetadataSchema.DRONE);
+        altitude = values.getNumber(MetadataField.ALTITUDE);
     }
 
     /**
@@ -79,7 +58,18 @@ public class DroneMetadata extends Metadata {
         jsonData.put("yaw", String.valueOf(getYaw()));
         jsonData.put("fov", String.valueOf(getFov()));
         jsonData.put("altitude", String.valueOf(altitude));
-        jsonData.put("provenance", provenance.toString() + ", Sent to Elasticsearch: " + Instant.now().toEpochMilli());
+        jsonData.put("provenance", provenance.snapshot(Provenance.Stage.SENT_TO_ELASTICSEARCH).toJsonString());
         return jsonData;
     }
+
+    /**
+     * Builds the document of the sensors index
+     * @return the document
+     */
+    @Override
+    public SensorDocument toDocument() {
+        return new DroneSensorDocument(getSensorID(), getSensorType(), getTimestamp(), getLatitude(), getLongitude(),
+                getYaw(), getFov(), altitude,
+                provenance.snapshot(Provenance.Stage.SENT_TO_ELASTICSEARCH));
+    }
 }
@@ -1,6 +1,8 @@
 package main.Metadata;
 
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import main.Documents.SensorDocument;
 import main.Metadata.Metadata;
 
 import java.util.HashMap;
@@ -16,7 +18,17 @@ public class HandheldCameraMetadata extends Metadata {
      * @param s3Object is the object that triggered the lambda function
      */
     public HandheldCameraMetadata(S3Object s3Object) {
-        super(s3Object);
+        super(s3Object, MetadataSchema.HANDHELD);
+    }
+
+    /**
+     * Creates an instance of HandheldCameraMetadata from the response to a HEAD request
+     * @param s3Bucket is the bucket of the object that triggered the lambda function
+     * @param s3Key is the file name of the object that triggered the lambda function
+     * @param objectMetadata is the object's metadata
+     */
+    public HandheldCameraMetadata(String s3Bucket, String s3Key, ObjectMetadata objectMetadata) {
+        super(s3Bucket, s3Key, objectMetadata, MetadataSchema.HANDHELD);
     }
 
     /**
@@ -32,8 +44,18 @@ public class HandheldCameraMetadata extends Metadata {
         jsonData.put("location", getLatitude() + "," + getLongitude());
         jsonData.put("yaw", String.valueOf(getYaw()));
         jsonData.put("fov", String.valueOf(getFov()));
-        jsonData.put("provenance", ":)");
+        jsonData.put("provenance", provenance.snapshot(Provenance.Stage.SENT_TO_ELASTICSEARCH).toJsonString());
         return jsonData;
     }
 
+    /**
+     * Builds the document of the sensors index
+     * @return the document
+     */
+    @Override
+    public SensorDocument toDocument() {
+        return new SensorDocument(getSensorID(), getSensorType(), getTimestamp(), getLatitude(), getLongitude(),
+                getYaw(), getFov(), provenance.snapshot(Provenance.Stage.SENT_TO_ELASTICSEARCH));
+    }
+
 }
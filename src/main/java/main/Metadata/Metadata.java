@@ -1,11 +1,11 @@
 package main.Metadata;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.iterable.S3Objects;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
-import com.amazonaws.services.s3.model.S3ObjectSummary;
-import main.Exceptions.InvalidMetadataException;
+import main.Documents.SensorDocument;
 
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,72 +20,98 @@ abstract public class Metadata {
     private String timestamp;
     private double yaw;
     private String sensorType;
-    protected StringBuilder provenance;
+    protected final Provenance provenance = new Provenance();
     protected Map<String, String> metadata;
-    private S3Object s3Object;
+    protected final MetadataValues values;
+    private String s3Bucket;
+    private String s3Key;
+    private long lastModified;
 
     /**
      * Creates an instance of Metadata
      * @param s3Object is the object that triggered the lambda function
+     * @param schema declares the fields the sensor's metadata has
      */
-    public Metadata(S3Object s3Object) {
-        this.s3Object = s3Object;
-        metadata = s3Object.getObjectMetadata().getUserMetadata();
-        provenance = new StringBuilder();
-        try {
-            setMetadata();
-        }
-        catch (InvalidMetadataException e) {
-            e.printStackTrace();
-        }
+    public Metadata(S3Object s3Object, MetadataSchema schema) {
+        this(s3Object.getBucketName(), s3Object.getKey(), s3Object.getObjectMetadata(), schema);
     }
 
     /**
-     * Gets metadata from the object and sets it to the fields
-     * @throws InvalidMetadataException
+     * Creates an instance of Metadata from the response to a HEAD request, without the object's content.
+     * Invalid metadata does not throw, isValid and getErrors tell what is wrong with it.
+     * @param s3Bucket is the bucket of the object that triggered the lambda function
+     * @param s3Key is the file name of the object that triggered the lambda function
+     * @param objectMetadata is the object's metadata
+     * @param schema declares the fields the sensor's metadata has
      */
-    private void setMetadata() throws InvalidMetadataException {
-        if (confirmFields()) {
-            fov = Double.parseDouble(metadata.get("fov"));
-            latitude = Double.parseDouble(metadata.get("latitude"));
-            longitude = Double.parseDouble(metadata.get("longitude"));
-            sensorID = metadata.get("sensor_id");
-            timestamp = metadata.get("timestamp");
-            yaw = Double.parseDouble(metadata.get("yaw"));
-            sensorType = metadata.get("sensor_type");
-        }
-        else {
-            throw new InvalidMetadataException("Some necessary fields weren't included.");
-        }
+    public Metadata(String s3Bucket, String s3Key, ObjectMetadata objectMetadata, MetadataSchema schema) {
+        this.s3Bucket = s3Bucket;
+        this.s3Key = s3Key;
+        this.lastModified = objectMetadata.getLastModified() == null ? 0 : objectMetadata.getLastModified().getTime();
+        metadata = objectMetadata.getUserMetadata();
+        values = schema.parse(metadata);
+        fov = values.getNumber(MetadataField.FOV);
+        latitude = values.getNumber(MetadataField.LATITUDE);
+        longitude = values.getNumber(MetadataField.LONGITUDE);
+        sensorID = values.getText(MetadataField.SENSOR_ID);
+        timestamp = values.getText(MetadataField.TIMESTAMP);
+        yaw = values.getNumber(MetadataField.YAW);
+        sensorType = values.getText(MetadataField.SENSOR_TYPE);
     }
 
     /**
-     * Sets up the provenance field to keep track of data flow
+     * Sets up the provenance field to keep track of data flow, looking up when S3 received the object
      * @param s3 is an Amazon S3 Client
      */
     public void setProvenance(AmazonS3 s3) {
-        // create iterable of s3 object summaries based on object details
-        // SHOULD BE ONLY ONE MATCH
-        for ( S3ObjectSummary summary : S3Objects.withPrefix(s3, s3Object.getBucketName(), s3Object.getKey()) ) {
-            provenance.append("Captured: ");
-            provenance.append(timestamp);
-            provenance.append(", Received at S3: ");
-            provenance.append(summary.getLastModified().getTime());
+        setProvenance(s3.getObjectMetadata(s3Bucket, s3Key).getLastModified().getTime());
+    }
+
+    /**
+     * Sets up the provenance field to keep track of data flow
+     * @param receivedAtS3 is when S3 received the object in Unix time, or 0 to leave it out
+     */
+    public void setProvenance(long receivedAtS3) {
+        // invalid metadata has no capture time to record
+        if (values.getTimestamp(MetadataField.TIMESTAMP) > 0) {
+            provenance.record(Provenance.Stage.CAPTURED, values.getTimestamp(MetadataField.TIMESTAMP));
         }
+        if (receivedAtS3 > 0) {
+            provenance.record(Provenance.Stage.RECEIVED_AT_S3, receivedAtS3);
+        }
+    }
+
+    /**
+     * Records that a step happened now
+     * @param stage is the step
+     */
+    public void recordProvenance(Provenance.Stage stage) {
+        provenance.record(stage);
+    }
+
+    /**
+     * Returns the provenance recorded so far
+     * @return the provenance as text
+     */
+    public String describeProvenance() {
+        return provenance.toString();
     }
 
     /**
-     * Confirms that necessary fields are present
+     * Whether or not every field the sensor's metadata must have is present and valid.
+     * Records with invalid metadata are rejected before detection, their targets could not be located.
      * @return boolean
      */
-    private boolean confirmFields() {
-        String[] fields = {"fov", "latitude", "longitude", "sensor_id", "timestamp", "yaw", "sensor_type"};
-        for (String field : fields) {
-            if (!metadata.containsKey(field)) {
-                return false;
-            }
-        }
-        return true;
+    public boolean isValid() {
+        return values.isValid();
+    }
+
+    /**
+     * Getter
+     * @return a description of every missing or invalid field, empty if the metadata is valid
+     */
+    public List<String> getErrors() {
+        return values.getErrors();
     }
 
     /**
@@ -144,11 +170,31 @@ abstract public class Metadata {
         return sensorType;
     }
 
-    public StringBuilder getProvenance() { return provenance; }
+    /**
+     * Getter
+     * @return the log of the steps the image went through
+     */
+    public Provenance getProvenance() {
+        return provenance;
+    }
+
+    /**
+     * Getter
+     * @return the Last-Modified time S3 reported for the object in Unix time, or 0 if unknown
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
 
     /**
      * Formats metadata for upload to elasticsearch
      * @return Map<String, String> containing the data
      */
     abstract public Map<String, String> formatMetadata();
+
+    /**
+     * Builds the document of the sensors index without converting the values to Strings
+     * @return the document
+     */
+    abstract public SensorDocument toDocument();
 }
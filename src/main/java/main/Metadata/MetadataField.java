@@ -0,0 +1,91 @@
+package main.Metadata;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fields of the user metadata of an image, with the type and range of their values
+ */
+public enum MetadataField {
+    SENSOR_ID("sensor_id", Type.STRING, 0, 0),
+    SENSOR_TYPE("sensor_type", Type.STRING, 0, 0),
+    TIMESTAMP("timestamp", Type.TIMESTAMP, 0, Long.MAX_VALUE),
+    LATITUDE("latitude", Type.NUMBER, -90, 90),
+    LONGITUDE("longitude", Type.NUMBER, -180, 180),
+    YAW("yaw", Type.NUMBER, -Double.MAX_VALUE, Double.MAX_VALUE),
+    FOV("fov", Type.NUMBER, Double.MIN_VALUE, Double.MAX_VALUE),
+    ALTITUDE("altitude", Type.NUMBER, -Double.MAX_VALUE, Double.MAX_VALUE);
+
+    /**
+     * How the value of a field is parsed
+     */
+    public enum Type {
+        /** any text that is not empty */
+        STRING,
+        /** a finite decimal number */
+        NUMBER,
+        /** a whole number of milliseconds in Unix time */
+        TIMESTAMP
+    }
+
+    private static final Map<String, MetadataField> BY_KEY = new HashMap<>();
+
+    static {
+        for (MetadataField field : values()) {
+            BY_KEY.put(field.key, field);
+        }
+    }
+
+    private final String key;
+    private final Type type;
+    private final double min;
+    private final double max;
+
+    MetadataField(String key, Type type, double min, double max) {
+        this.key = key;
+        this.type = type;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Finds the field of a user metadata key
+     * @param key is the key, as S3 returns it in lower case
+     * @return the field, or null if the key is not a known field
+     */
+    public static MetadataField fromKey(String key) {
+        return BY_KEY.get(key);
+    }
+
+    /**
+     * Getter
+     * @return the key of the field in the user metadata
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Getter
+     * @return how the value is parsed
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Getter
+     * @return the smallest value allowed
+     */
+    public double getMin() {
+        return min;
+    }
+
+    /**
+     * Getter
+     * @return the largest value allowed
+     */
+    public double getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,196 @@
+package main.Metadata;
+
+import main.DataType.DataType;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fields the user metadata of a type of sensor must and may have.
+ * parse reads the metadata in one pass over its entries and collects every missing or invalid field
+ * instead of stopping at the first, so a rejected upload reports everything that is wrong with it.
+ */
+public class MetadataSchema {
+
+    private static final Set<MetadataField> COMMON = EnumSet.of(MetadataField.SENSOR_ID, MetadataField.SENSOR_TYPE,
+            MetadataField.TIMESTAMP, MetadataField.LATITUDE, MetadataField.LONGITUDE, MetadataField.YAW,
+            MetadataField.FOV);
+
+    public static final MetadataSchema DRONE = new MetadataSchema(with(COMMON, MetadataField.ALTITUDE),
+            EnumSet.noneOf(MetadataField.class));
+    public static final MetadataSchema HANDHELD = new MetadataSchema(COMMON, EnumSet.noneOf(MetadataField.class));
+
+    private final long requiredMask;
+    private final long knownMask;
+    private final MetadataField[] required;
+
+    /**
+     * Creates an instance of MetadataSchema
+     * @param required are the fields that must be present
+     * @param optional are the fields that are checked when they are present
+     */
+    public MetadataSchema(Set<MetadataField> required, Set<MetadataField> optional) {
+        this.required = required.toArray(new MetadataField[0]);
+        this.requiredMask = maskOf(required);
+        this.knownMask = requiredMask | maskOf(optional);
+    }
+
+    /**
+     * Getter
+     * @param dataType is the type of sensor
+     * @return the schema of its metadata, or null if the type of sensor has none
+     */
+    public static MetadataSchema forDataType(DataType dataType) {
+        switch (dataType) {
+            case DRONE:
+                return DRONE;
+            case HANDHELD:
+                return HANDHELD;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Parses and checks user metadata. Keys that are not fields of the schema are ignored.
+     * @param metadata is the user metadata of the image
+     * @return the values and the problems that were found
+     */
+    public MetadataValues parse(Map<String, String> metadata) {
+        MetadataValues values = new MetadataValues();
+        long seen = 0;
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            MetadataField field = MetadataField.fromKey(entry.getKey());
+            if (field == null || (knownMask & bit(field)) == 0) {
+                continue;
+            }
+            seen |= bit(field);
+            parseField(field, entry.getValue(), values);
+        }
+        long missing = requiredMask & ~seen;
+        if (missing != 0) {
+            for (MetadataField field : required) {
+                if ((missing & bit(field)) != 0) {
+                    values.addError(field.getKey() + " is missing");
+                }
+            }
+        }
+        return values;
+    }
+
+    private static void parseField(MetadataField field, String text, MetadataValues values) {
+        values.setText(field, text);
+        if (text == null || text.isEmpty()) {
+            values.addError(field.getKey() + " is empty");
+            return;
+        }
+        switch (field.getType()) {
+            case NUMBER:
+                if (!isDecimal(text)) {
+                    values.addError(field.getKey() + " is not a number: '" + text + "'");
+                    return;
+                }
+                double number = Double.parseDouble(text);
+                if (number < field.getMin() || number > field.getMax()) {
+                    values.addError(field.getKey() + " is out of range: " + text);
+                    return;
+                }
+                values.setNumber(field, number);
+                break;
+            case TIMESTAMP:
+                long timestamp = parseMillis(text);
+                if (timestamp < 0) {
+                    values.addError(field.getKey() + " is not a time in milliseconds: '" + text + "'");
+                    return;
+                }
+                values.setTimestamp(field, timestamp);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Checks that text is a decimal number Double.parseDouble accepts, without letting it throw.
+     * NaN, Infinity and hexadecimal numbers are not accepted.
+     * @param text is the text
+     * @return boolean
+     */
+    static boolean isDecimal(String text) {
+        int length = text.length();
+        int i = 0;
+        if (text.charAt(0) == '-' || text.charAt(0) == '+') {
+            i++;
+        }
+        int digits = 0;
+        boolean dot = false;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            }
+            else if (c == '.' && !dot) {
+                dot = true;
+            }
+            else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9'; i++) {
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    /**
+     * Parses a whole number of milliseconds
+     * @param text is the text
+     * @return the number, or -1 if it is not made of digits or does not fit in a long
+     */
+    static long parseMillis(String text) {
+        if (text.length() > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static Set<MetadataField> with(Set<MetadataField> fields, MetadataField field) {
+        EnumSet<MetadataField> copy = EnumSet.copyOf(fields);
+        copy.add(field);
+        return copy;
+    }
+
+    private static long maskOf(Set<MetadataField> fields) {
+        long mask = 0;
+        for (MetadataField field : fields) {
+            mask |= bit(field);
+        }
+        return mask;
+    }
+
+    private static long bit(MetadataField field) {
+        return 1L << field.ordinal();
+    }
+}
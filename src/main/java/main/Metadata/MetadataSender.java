@@ -1,21 +1,28 @@
 package main.Metadata;
 
 import com.amazonaws.services.s3.AmazonS3;
-import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import main.Clients.ClientRegistry;
 import main.DataType.DataType;
+import main.Documents.SensorDocument;
+import main.Elastic.BulkIndexer;
+import main.Elastic.BulkItemResult;
 import main.Elastic.ElasticClient;
-import org.elasticsearch.action.index.IndexResponse;
+import main.Metrics.MetricsRegistry;
+import main.Metrics.Stage;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Sends metadata to the sensors index in elasticsearch
  */
 public class MetadataSender {
 
-    private S3Object s3Object;
+    private String s3Key;
+    private String s3Bucket;
+    private ObjectMetadata objectMetadata;
     private Metadata metadata;
     private ElasticClient elasticClient;
 
@@ -27,11 +34,18 @@ public class MetadataSender {
      * @param elasticClient is the elasticsearch client
      */
     public MetadataSender(String s3Key, String s3Bucket, DataType dataType, ElasticClient elasticClient) {
-        AmazonS3 client = AmazonS3ClientBuilder.defaultClient();
-        this.s3Object = client.getObject(s3Bucket, s3Key);
+        AmazonS3 client = ClientRegistry.getDefault().getS3Client();
+        this.s3Key = s3Key;
+        this.s3Bucket = s3Bucket;
+        // only the user metadata is needed, so a HEAD request avoids transferring the image
+        this.objectMetadata = client.getObjectMetadata(s3Bucket, s3Key);
         this.metadata = determineMetadata(dataType);
-        metadata.setProvenance(client);
+        metadata.setProvenance(determineReceivedAtS3(0));
         this.elasticClient = elasticClient;
+        if (!metadata.isValid()) {
+            System.err.println("Not sending invalid metadata of " + s3Key + ": " + metadata.getErrors());
+            return;
+        }
         try {
             sendMetadataToElastic();
         }
@@ -40,6 +54,51 @@ public class MetadataSender {
         }
     }
 
+    /**
+     * Creates an instance of MetadataSender that loads the metadata with the registry's S3 client.
+     * Nothing is sent until sendMetadataToElastic is called.
+     * @param s3Key is the S3object file name
+     * @param s3Bucket is the bucket of the S3Object
+     * @param dataType is the type of sensor the object comes from
+     * @param clients is the registry of reusable clients
+     */
+    public MetadataSender(String s3Key, String s3Bucket, DataType dataType, ClientRegistry clients) {
+        this(s3Key, s3Bucket, dataType, clients, 0);
+    }
+
+    /**
+     * Creates an instance of MetadataSender that loads the metadata with the registry's S3 client.
+     * Nothing is sent until sendMetadataToElastic is called.
+     * @param s3Key is the S3object file name
+     * @param s3Bucket is the bucket of the S3Object
+     * @param dataType is the type of sensor the object comes from
+     * @param clients is the registry of reusable clients
+     * @param eventTime is when the S3 event reported the object in Unix time, or 0 if unknown
+     */
+    public MetadataSender(String s3Key, String s3Bucket, DataType dataType, ClientRegistry clients, long eventTime) {
+        AmazonS3 client = clients.getS3Client();
+        MetricsRegistry metrics = clients.getMetrics();
+        this.s3Key = s3Key;
+        this.s3Bucket = s3Bucket;
+        this.objectMetadata = metrics.time(Stage.S3_FETCH, dataType, () -> client.getObjectMetadata(s3Bucket, s3Key));
+        this.metadata = metrics.time(Stage.METADATA_PARSE, dataType, () -> determineMetadata(dataType));
+        metadata.setProvenance(determineReceivedAtS3(eventTime));
+        this.elasticClient = clients.getElasticClient();
+    }
+
+    /**
+     * Determines when S3 received the object without listing the bucket.
+     * The time of the event is used when there is one, otherwise the Last-Modified time of the HEAD response.
+     * @param eventTime is when the S3 event reported the object in Unix time, or 0 if unknown
+     * @return the time in Unix time, or 0 if unknown
+     */
+    private long determineReceivedAtS3(long eventTime) {
+        if (eventTime > 0) {
+            return eventTime;
+        }
+        return metadata.getLastModified();
+    }
+
     /**
      * Creates the appropriate type of metadata for the object's sensor
      * @param dataType
@@ -48,9 +107,9 @@ public class MetadataSender {
     public Metadata determineMetadata(DataType dataType) {
         switch(dataType) {
             case DRONE:
-                return new DroneMetadata(s3Object);
+                return new DroneMetadata(s3Bucket, s3Key, objectMetadata);
             case HANDHELD:
-                return new HandheldCameraMetadata(s3Object);
+                return new HandheldCameraMetadata(s3Bucket, s3Key, objectMetadata);
             default:
                 return null;
         }
@@ -58,16 +117,46 @@ public class MetadataSender {
 
     /**
      * Sends data to elasticsearch
-     * @return the IndexResponse from elasticsearch
+     * @return the BulkItemResult from elasticsearch
      * @throws IOException
      */
-    public IndexResponse sendMetadataToElastic() throws IOException {
+    public BulkItemResult sendMetadataToElastic() throws IOException {
 
         Map<String, String> jsonMetadata = metadata.formatMetadata();
-        IndexResponse indexResponse = elasticClient.postData("sensors", jsonMetadata);
+        BulkItemResult indexResponse = elasticClient.postData("sensors", jsonMetadata);
         return indexResponse;
     }
 
+    /**
+     * Queues data for elasticsearch
+     * @param bulkIndexer is the bulk indexer to queue the data on
+     * @return a future that completes once elasticsearch has answered
+     */
+    public CompletableFuture<BulkItemResult> sendMetadataToElastic(BulkIndexer bulkIndexer) {
+        return sendMetadataToElastic(bulkIndexer, metadata.toDocument());
+    }
+
+    /**
+     * Queues data that was already formatted for elasticsearch
+     * @param bulkIndexer is the bulk indexer to queue the data on
+     * @param jsonMetadata is the formatted metadata
+     * @return a future that completes once elasticsearch has answered
+     */
+    public CompletableFuture<BulkItemResult> sendMetadataToElastic(BulkIndexer bulkIndexer,
+                                                                   Map<String, String> jsonMetadata) {
+        return bulkIndexer.add("sensors", jsonMetadata);
+    }
+
+    /**
+     * Queues a document that was already built for elasticsearch
+     * @param bulkIndexer is the bulk indexer to queue the data on
+     * @param document is the document of the sensors index
+     * @return a future that completes once elasticsearch has answered
+     */
+    public CompletableFuture<BulkItemResult> sendMetadataToElastic(BulkIndexer bulkIndexer, SensorDocument document) {
+        return bulkIndexer.add("sensors", document);
+    }
+
     /**
      * Getter
      * @return the object's metadata
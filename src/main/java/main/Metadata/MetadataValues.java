@@ -0,0 +1,87 @@
+package main.Metadata;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Values of the user metadata of an image, parsed by a MetadataSchema into primitive arrays indexed by field,
+ * along with every problem found while parsing them
+ */
+public class MetadataValues {
+
+    private static final int FIELDS = MetadataField.values().length;
+
+    private final double[] numbers = new double[FIELDS];
+    private final long[] timestamps = new long[FIELDS];
+    private final String[] texts = new String[FIELDS];
+    // created on the first error, valid metadata does not allocate a list
+    private List<String> errors;
+
+    /**
+     * Getter
+     * @param field is a field of type NUMBER
+     * @return the value, or 0 if the field is missing or invalid
+     */
+    public double getNumber(MetadataField field) {
+        return numbers[field.ordinal()];
+    }
+
+    /**
+     * Getter
+     * @param field is a field of type TIMESTAMP
+     * @return the value in Unix time, or 0 if the field is missing or invalid
+     */
+    public long getTimestamp(MetadataField field) {
+        return timestamps[field.ordinal()];
+    }
+
+    /**
+     * Getter
+     * @param field is any field
+     * @return the value as it was uploaded, or null if the field is missing
+     */
+    public String getText(MetadataField field) {
+        return texts[field.ordinal()];
+    }
+
+    /**
+     * Whether or not every field of the schema is present and valid
+     * @return boolean
+     */
+    public boolean isValid() {
+        return errors == null;
+    }
+
+    /**
+     * Getter
+     * @return a description of every problem, empty if the metadata is valid
+     */
+    public List<String> getErrors() {
+        return errors == null ? Collections.<String>emptyList() : Collections.unmodifiableList(errors);
+    }
+
+    void setNumber(MetadataField field, double value) {
+        numbers[field.ordinal()] = value;
+    }
+
+    void setTimestamp(MetadataField field, long value) {
+        timestamps[field.ordinal()] = value;
+    }
+
+    void setText(MetadataField field, String value) {
+        texts[field.ordinal()] = value;
+    }
+
+    void addError(String error) {
+        if (errors == null) {
+            errors = new ArrayList<>(2);
+        }
+        errors.add(error);
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? "valid metadata" : String.join("; ", errors);
+    }
+}
@@ -0,0 +1,250 @@
+package main.Metadata;
+
+import main.Documents.JsonWriter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Log of the steps an image went through, e.g. when it was captured, sent to the label detector
+ * and sent to elasticsearch. Each event is a Stage and a time in Unix time, kept in primitive arrays.
+ * Stages of a record may run on different threads, so the log is synchronized.
+ * Documents hold a snapshot, which never changes and is serialized to a JSON array only once
+ * however many documents it is written into.
+ */
+public class Provenance {
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private final boolean frozen;
+    private byte[] stages;
+    private long[] times;
+    private int size;
+    private String detector;
+    // the last snapshot, reused until another event is recorded
+    private Provenance snapshot;
+    // the JSON of a snapshot, written the first time it is needed
+    private byte[] json;
+
+    /**
+     * Steps of the data flow of an image
+     */
+    public enum Stage {
+        CAPTURED("captured", "Captured"),
+        RECEIVED_AT_S3("received_at_s3", "Received at S3"),
+        SENT_TO_DETECTOR("sent_to_detector", "Sent to "),
+        RECEIVED_FROM_DETECTOR("received_from_detector", "Received from "),
+        SENT_TO_ELASTICSEARCH("sent_to_elasticsearch", "Sent to Elasticsearch");
+
+        private final String jsonName;
+        private final String description;
+
+        Stage(String jsonName, String description) {
+            this.jsonName = jsonName;
+            this.description = description;
+        }
+
+        /**
+         * Getter
+         * @return the name of the stage in the JSON of the provenance
+         */
+        public String getJsonName() {
+            return jsonName;
+        }
+
+        private boolean isDetection() {
+            return this == SENT_TO_DETECTOR || this == RECEIVED_FROM_DETECTOR;
+        }
+    }
+
+    /**
+     * Creates an empty instance of Provenance
+     */
+    public Provenance() {
+        this(false, new byte[8], new long[8], 0, null);
+    }
+
+    private Provenance(boolean frozen, byte[] stages, long[] times, int size, String detector) {
+        this.frozen = frozen;
+        this.stages = stages;
+        this.times = times;
+        this.size = size;
+        this.detector = detector;
+    }
+
+    /**
+     * Records a step that happened now
+     * @param stage is the step
+     * @return this provenance
+     */
+    public Provenance record(Stage stage) {
+        return record(stage, System.currentTimeMillis());
+    }
+
+    /**
+     * Records a step
+     * @param stage is the step
+     * @param time is when it happened in Unix time
+     * @return this provenance
+     * @throws IllegalStateException if this is a snapshot
+     */
+    public synchronized Provenance record(Stage stage, long time) {
+        if (frozen) {
+            throw new IllegalStateException("A snapshot of the provenance cannot change.");
+        }
+        if (size == stages.length) {
+            stages = Arrays.copyOf(stages, size * 2);
+            times = Arrays.copyOf(times, size * 2);
+        }
+        stages[size] = (byte) stage.ordinal();
+        times[size++] = time;
+        snapshot = null;
+        return this;
+    }
+
+    /**
+     * Names the label detector, which the detection steps refer to
+     * @param detector is the name of the detector
+     * @return this provenance
+     */
+    public synchronized Provenance setDetector(String detector) {
+        if (frozen) {
+            throw new IllegalStateException("A snapshot of the provenance cannot change.");
+        }
+        this.detector = detector;
+        snapshot = null;
+        return this;
+    }
+
+    /**
+     * Returns the steps recorded so far as a provenance that does not change.
+     * The same snapshot is returned until another step is recorded.
+     * @return the snapshot
+     */
+    public synchronized Provenance snapshot() {
+        if (frozen) {
+            return this;
+        }
+        if (snapshot == null) {
+            snapshot = new Provenance(true, Arrays.copyOf(stages, size), Arrays.copyOf(times, size), size, detector);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Returns the steps recorded so far followed by one more step that happened now, without recording it here
+     * @param last is the step
+     * @return the snapshot
+     */
+    public synchronized Provenance snapshot(Stage last) {
+        byte[] snapshotStages = Arrays.copyOf(stages, size + 1);
+        long[] snapshotTimes = Arrays.copyOf(times, size + 1);
+        snapshotStages[size] = (byte) last.ordinal();
+        snapshotTimes[size] = System.currentTimeMillis();
+        return new Provenance(true, snapshotStages, snapshotTimes, size + 1, detector);
+    }
+
+    /**
+     * Getter
+     * @return the number of steps
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Getter
+     * @param index is the position of the step
+     * @return the step
+     */
+    public synchronized Stage getStage(int index) {
+        checkIndex(index);
+        return STAGES[stages[index]];
+    }
+
+    /**
+     * Getter
+     * @param index is the position of the step
+     * @return when the step happened in Unix time
+     */
+    public synchronized long getTime(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    /**
+     * Getter
+     * @return the name of the label detector, or null if the image has not been sent to one
+     */
+    public synchronized String getDetector() {
+        return detector;
+    }
+
+    /**
+     * Writes the steps as a JSON array of objects with the stage, its time and, for detection, the detector
+     * @param writer is the writer to write to
+     */
+    public void writeTo(JsonWriter writer) {
+        byte[] bytes = toJson();
+        writer.rawValue(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Serializes the steps, only once for a snapshot
+     * @return the JSON array
+     */
+    public synchronized byte[] toJson() {
+        if (json != null) {
+            return json;
+        }
+        JsonWriter writer = new JsonWriter(32 + 64 * size).beginArray();
+        for (int i = 0; i < size; i++) {
+            Stage stage = STAGES[stages[i]];
+            writer.beginObject().field("stage", stage.jsonName).name("time").value(times[i]);
+            if (stage.isDetection() && detector != null) {
+                writer.field("detector", detector);
+            }
+            writer.endObject();
+        }
+        byte[] bytes = writer.endArray().toByteArray();
+        if (frozen) {
+            json = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Serializes the steps for documents that are built as maps of Strings
+     * @return the JSON array as text
+     */
+    public String toJsonString() {
+        return new String(toJson(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Describes the steps for people, e.g. "Captured: 1592399997905, Sent to Rekognition: 1592399998421"
+     * @return the description
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            Stage stage = STAGES[stages[i]];
+            if (i > 0) {
+                description.append(", ");
+            }
+            description.append(stage.description);
+            if (stage.isDetection()) {
+                description.append(detector);
+            }
+            description.append(": ").append(times[i]);
+        }
+        return description.toString();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("There is no step " + index + " in a provenance of " + size + ".");
+        }
+    }
+}
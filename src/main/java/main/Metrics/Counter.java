@@ -0,0 +1,34 @@
+package main.Metrics;
+
+/**
+ * Events that are counted per DataType
+ */
+public enum Counter {
+    RECORDS_PROCESSED("records_processed"),
+    RECORDS_SKIPPED("records_skipped"),
+    RECORDS_REJECTED("records_rejected"),
+    RECORDS_FAILED("records_failed"),
+    DOCUMENTS_INDEXED("documents_indexed"),
+    DOCUMENTS_FAILED("documents_failed"),
+    TARGETS_MERGED("targets_merged"),
+    TARGET_UPDATES_SKIPPED("target_updates_skipped"),
+    TARGETS_TRIANGULATED("targets_triangulated"),
+    DETECTION_CACHE_HITS("detection_cache_hits"),
+    DETECTION_CACHE_DISK_HITS("detection_cache_disk_hits"),
+    DETECTION_CACHE_MISSES("detection_cache_misses"),
+    DETECTION_CACHE_EVICTIONS("detection_cache_evictions");
+
+    private final String metricName;
+
+    Counter(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * Getter
+     * @return the name of the counter in exported metrics
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
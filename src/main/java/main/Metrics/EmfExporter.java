@@ -0,0 +1,105 @@
+package main.Metrics;
+
+import main.Config.Environment;
+import main.DataType.DataType;
+import main.Documents.JsonWriter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * Writes metrics as CloudWatch embedded metric format log lines, which CloudWatch turns into metrics
+ * without a call from the function. Every line holds one DataType, its dimension, with the count,
+ * p50, p99 and maximum latency of every stage in milliseconds and the counters of the interval.
+ */
+public class EmfExporter {
+
+    private static final double[] PERCENTILES = {50, 99};
+
+    private final PrintStream out;
+    private final String namespace;
+    private final JsonWriter writer = new JsonWriter(4096);
+
+    /**
+     * Creates an instance of EmfExporter
+     * @param out is where the lines are written, the function's log in Lambda
+     * @param namespace is the CloudWatch namespace of the metrics
+     */
+    public EmfExporter(PrintStream out, String namespace) {
+        this.out = out;
+        this.namespace = namespace;
+    }
+
+    /**
+     * Creates an instance of EmfExporter writing to standard output in the namespace METRICS_NAMESPACE
+     * @return the exporter
+     */
+    public static EmfExporter fromEnvironment() {
+        return new EmfExporter(System.out, Environment.getString("METRICS_NAMESPACE", "DataProcessing"));
+    }
+
+    /**
+     * Writes a line for every DataType that has values
+     * @param metrics are the values of the interval, usually from MemoryMetricsRegistry.drain()
+     */
+    public synchronized void export(MemoryMetricsRegistry metrics) {
+        long timestamp = System.currentTimeMillis();
+        for (DataType dataType : DataType.values()) {
+            if (!metrics.hasValues(dataType)) {
+                continue;
+            }
+            writeLine(metrics, dataType, timestamp);
+            try {
+                writer.writeTo(out);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            out.flush();
+        }
+    }
+
+    private void writeLine(MemoryMetricsRegistry metrics, DataType dataType, long timestamp) {
+        writer.reset().beginObject().name("_aws").beginObject()
+                .name("Timestamp").value(timestamp)
+                .name("CloudWatchMetrics").beginArray().beginObject()
+                .field("Namespace", namespace)
+                .name("Dimensions").beginArray().beginArray().value("DataType").endArray().endArray()
+                .name("Metrics").beginArray();
+        for (Stage stage : Stage.values()) {
+            if (metrics.getHistogram(stage, dataType) == null) {
+                continue;
+            }
+            definition(stage.getMetricName() + ".count", "Count");
+            for (double percentile : PERCENTILES) {
+                definition(stage.getMetricName() + ".p" + (int) percentile, "Milliseconds");
+            }
+            definition(stage.getMetricName() + ".max", "Milliseconds");
+        }
+        for (Counter counter : Counter.values()) {
+            definition(counter.getMetricName(), "Count");
+        }
+        writer.endArray().endObject().endArray().endObject()
+                .field("DataType", dataType.name());
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = metrics.getHistogram(stage, dataType);
+            if (histogram == null) {
+                continue;
+            }
+            writer.name(stage.getMetricName() + ".count").value(histogram.getCount());
+            for (double percentile : PERCENTILES) {
+                writer.field(stage.getMetricName() + ".p" + (int) percentile,
+                        histogram.getPercentileMillis(percentile));
+            }
+            writer.field(stage.getMetricName() + ".max", histogram.getMaxMillis());
+        }
+        for (Counter counter : Counter.values()) {
+            writer.name(counter.getMetricName()).value(metrics.getCount(counter, dataType));
+        }
+        writer.endObject().newLine();
+    }
+
+    private void definition(String name, String unit) {
+        writer.beginObject().field("Name", name).field("Unit", unit).endObject();
+    }
+}
@@ -0,0 +1,104 @@
+package main.Metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with buckets that grow with the value, so every percentile is within about 6%
+ * from a microsecond to days while the histogram stays a fixed array of counters.
+ * Every power of two is split into 16 buckets. Recording is lock free; reading while recording gives
+ * a view that may miss the latest values.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a duration
+     * @param nanos is the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucketOf(micros));
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Getter
+     * @return the number of durations recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Getter
+     * @return the average duration in milliseconds
+     */
+    public double getMeanMillis() {
+        long recorded = count.sum();
+        return recorded == 0 ? 0 : sumMicros.sum() / (recorded * 1000.0);
+    }
+
+    /**
+     * Getter
+     * @return the longest duration in milliseconds
+     */
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * Estimates a percentile from the buckets
+     * @param percentile is the percentile, from 0 to 100
+     * @return the duration in milliseconds, or 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                // the middle of the bucket, which never exceeds the largest value recorded
+                double middle = (lowerBound(i) + lowerBound(i + 1) - 1) / 2.0;
+                return Math.min(middle, maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (micros >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long lowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << shift;
+    }
+}
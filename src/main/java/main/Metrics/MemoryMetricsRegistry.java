@@ -0,0 +1,109 @@
+package main.Metrics;
+
+import main.DataType.DataType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the histograms and counters of every stage and DataType in memory.
+ * They are held in arrays indexed by the enums, so recording never looks anything up in a map.
+ * drain hands the values recorded so far to an exporter and starts a new interval,
+ * so each export only covers what happened since the last one.
+ */
+public class MemoryMetricsRegistry implements MetricsRegistry {
+
+    private static final int DATA_TYPES = DataType.values().length;
+
+    private volatile Interval interval;
+
+    /**
+     * Creates an instance of MemoryMetricsRegistry
+     */
+    public MemoryMetricsRegistry() {
+        this(new Interval());
+    }
+
+    private MemoryMetricsRegistry(Interval interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public void recordLatency(Stage stage, DataType dataType, long nanos) {
+        interval.histogram(stage.ordinal() * DATA_TYPES + dataType.ordinal()).record(nanos);
+    }
+
+    @Override
+    public void increment(Counter counter, DataType dataType, long amount) {
+        interval.counters.addAndGet(counter.ordinal() * DATA_TYPES + dataType.ordinal(), amount);
+    }
+
+    /**
+     * Getter
+     * @param stage is the stage
+     * @param dataType is the type of sensor
+     * @return the histogram of the stage, or null if nothing was recorded for it
+     */
+    public LatencyHistogram getHistogram(Stage stage, DataType dataType) {
+        return interval.histograms.get(stage.ordinal() * DATA_TYPES + dataType.ordinal());
+    }
+
+    /**
+     * Getter
+     * @param counter is the counter
+     * @param dataType is the type of sensor
+     * @return the value of the counter
+     */
+    public long getCount(Counter counter, DataType dataType) {
+        return interval.counters.get(counter.ordinal() * DATA_TYPES + dataType.ordinal());
+    }
+
+    /**
+     * Whether or not anything was recorded for a DataType
+     * @param dataType is the type of sensor
+     * @return boolean
+     */
+    public boolean hasValues(DataType dataType) {
+        for (Stage stage : Stage.values()) {
+            if (getHistogram(stage, dataType) != null) {
+                return true;
+            }
+        }
+        for (Counter counter : Counter.values()) {
+            if (getCount(counter, dataType) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Takes the values recorded so far and starts again from zero.
+     * A value recorded while draining may land in either interval, but is never counted twice.
+     * @return a registry holding the values recorded until now
+     */
+    public MemoryMetricsRegistry drain() {
+        Interval drained = interval;
+        interval = new Interval();
+        return new MemoryMetricsRegistry(drained);
+    }
+
+    /**
+     * Values recorded between two drains. Histograms are created on first use, as most stages
+     * only ever see one or two DataTypes.
+     */
+    private static class Interval {
+        private final AtomicReferenceArray<LatencyHistogram> histograms =
+                new AtomicReferenceArray<>(Stage.values().length * DATA_TYPES);
+        private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length * DATA_TYPES);
+
+        private LatencyHistogram histogram(int index) {
+            LatencyHistogram histogram = histograms.get(index);
+            if (histogram == null) {
+                histograms.compareAndSet(index, null, new LatencyHistogram());
+                histogram = histograms.get(index);
+            }
+            return histogram;
+        }
+    }
+}
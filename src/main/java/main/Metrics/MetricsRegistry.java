@@ -0,0 +1,46 @@
+package main.Metrics;
+
+import main.DataType.DataType;
+
+import java.util.function.Supplier;
+
+/**
+ * Records the latency of the stages of a record and counts events, tagged by the DataType of the record.
+ * Implementations are shared by every record in flight, so they must be thread safe.
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Records how long a stage took
+     * @param stage is the stage
+     * @param dataType is the type of sensor of the record
+     * @param nanos is the duration in nanoseconds
+     */
+    void recordLatency(Stage stage, DataType dataType, long nanos);
+
+    /**
+     * Adds to a counter
+     * @param counter is the counter
+     * @param dataType is the type of sensor of the record
+     * @param amount is the number of events
+     */
+    void increment(Counter counter, DataType dataType, long amount);
+
+    /**
+     * Runs a stage and records how long it took, whether or not it failed
+     * @param stage is the stage
+     * @param dataType is the type of sensor of the record
+     * @param work is the stage
+     * @param <T> is the type of the result
+     * @return the result of the stage
+     */
+    default <T> T time(Stage stage, DataType dataType, Supplier<T> work) {
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        }
+        finally {
+            recordLatency(stage, dataType, System.nanoTime() - start);
+        }
+    }
+}
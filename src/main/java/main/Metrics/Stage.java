@@ -0,0 +1,33 @@
+package main.Metrics;
+
+/**
+ * Stages of a record whose latency is measured
+ */
+public enum Stage {
+    /** HEAD request for the metadata of the object */
+    S3_FETCH("s3_fetch"),
+    /** parsing the user metadata into a Metadata */
+    METADATA_PARSE("metadata_parse"),
+    /** the label detector, including the time queued in the DetectionScheduler */
+    DETECTION("detection"),
+    /** locating the targets and building their documents */
+    TARGETS("targets"),
+    /** from the last document of a record being queued until elasticsearch answered for all of them */
+    INDEXING("indexing"),
+    /** the whole record, until its documents are queued */
+    RECORD("record");
+
+    private final String metricName;
+
+    Stage(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * Getter
+     * @return the name of the stage in exported metrics
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
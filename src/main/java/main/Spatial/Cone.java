@@ -0,0 +1,111 @@
+package main.Spatial;
+
+import main.Documents.HandheldTargetDocument;
+
+/**
+ * Area a handheld camera saw a target in: a circular sector starting at the camera,
+ * pointing in a direction and as wide as the target was in the image
+ */
+public class Cone {
+
+    private final String sensorId;
+    private final long time;
+    private final double latitude;
+    private final double longitude;
+    private final double direction;
+    private final double angle;
+    private final double radius;
+
+    /**
+     * Creates an instance of Cone
+     * @param sensorId is the id of the camera
+     * @param time is when the image was captured in Unix time
+     * @param latitude is the latitude of the camera in degrees
+     * @param longitude is the longitude of the camera in degrees
+     * @param direction is the direction of the cone in radians counterclockwise from east, from -Pi to Pi
+     * @param angle is the width of the cone in radians
+     * @param radius is the length of the cone in meters
+     */
+    public Cone(String sensorId, long time, double latitude, double longitude, double direction, double angle,
+                double radius) {
+        this.sensorId = sensorId;
+        this.time = time;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.direction = direction;
+        this.angle = angle;
+        this.radius = radius;
+    }
+
+    /**
+     * Creates the Cone of a handheld target document
+     * @param document is the document
+     * @return the cone
+     */
+    public static Cone fromDocument(HandheldTargetDocument document) {
+        return new Cone(document.getSensorId(), Long.parseLong(document.getTimestamp()), document.getLatitude(),
+                document.getLongitude(), document.getConeDirection(), document.getConeAngle(),
+                document.getConeRadius());
+    }
+
+    /**
+     * Getter
+     * @return the id of the camera
+     */
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Getter
+     * @return when the image was captured in Unix time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Getter
+     * @return the latitude of the camera in degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Getter
+     * @return the longitude of the camera in degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Getter
+     * @return the direction of the cone in radians counterclockwise from east
+     */
+    public double getDirection() {
+        return direction;
+    }
+
+    /**
+     * Getter
+     * @return the width of the cone in radians
+     */
+    public double getAngle() {
+        return angle;
+    }
+
+    /**
+     * Getter
+     * @return the length of the cone in meters
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    @Override
+    public String toString() {
+        return sensorId + " " + latitude + "," + longitude + " toward " + direction + " at " + time;
+    }
+}
@@ -0,0 +1,369 @@
+package main.Spatial;
+
+import main.Config.Environment;
+import main.Documents.TriangulatedTargetDocument;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Locates the targets several handheld cameras see at once by intersecting their cones.
+ * The center lines of two cones from different cameras, captured less than windowMillis apart, meet where
+ * both cameras look; the meeting point is an estimate when it lies within the length of both cones.
+ * Cameras are kept in a grid of cells as wide as two cones are long, so a cone is only tested against the cones
+ * of the cameras in its cell and the eight around it. Estimates closer than mergeMeters are merged into one target.
+ * The confidence of an estimate is higher when the cones cross at a right angle, are narrow and close together in
+ * time; merged estimates add up their confidence. Large sets of cones are tested on several cores.
+ * A target is identified by its cameras and the mergeMeters cell it lies in, so the frames that locate it again
+ * replace its document instead of adding near duplicates.
+ * The window only holds the cones of this instance: cones of cameras whose images another Lambda container
+ * processes are never intersected with them.
+ */
+public class ConeTriangulator {
+
+    private static final double METERS_PER_DEGREE = Math.PI * 6371008.8 / 180.0;
+    // below this many cones, splitting the work costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 64;
+    // center lines closer to parallel than this do not locate anything
+    private static final double MIN_SIN_CROSSING = 0.05;
+
+    private final long windowMillis;
+    private final double maxRadius;
+    private final double mergeMeters;
+    private final double minConfidence;
+    private final ForkJoinPool pool;
+    private final double cellDegrees;
+    // the cones of the window, oldest first, and the same cones by the cell of their camera
+    private final ArrayDeque<Cone> window = new ArrayDeque<>();
+    private final Map<Long, List<Cone>> grid = new HashMap<>();
+    private long newestTime = Long.MIN_VALUE;
+
+    /**
+     * Creates an instance of ConeTriangulator
+     * @param windowMillis is how far apart in time two cones may be captured to be intersected
+     * @param maxRadius is the longest cone in meters; longer cones are cut to this length
+     * @param mergeMeters is how close estimates must be to be merged into one target
+     * @param minConfidence is the confidence, from 0 to 1, below which targets are not reported
+     * @param pool runs the intersection tests of large sets of cones
+     */
+    public ConeTriangulator(long windowMillis, double maxRadius, double mergeMeters, double minConfidence,
+                            ForkJoinPool pool) {
+        if (windowMillis < 0 || maxRadius <= 0 || mergeMeters <= 0) {
+            throw new IllegalArgumentException("The cone length and the merge distance must be positive.");
+        }
+        this.windowMillis = windowMillis;
+        this.maxRadius = maxRadius;
+        this.mergeMeters = mergeMeters;
+        this.minConfidence = minConfidence;
+        this.pool = pool;
+        this.cellDegrees = 2 * maxRadius / METERS_PER_DEGREE;
+    }
+
+    /**
+     * Creates an instance of ConeTriangulator configured by the environment.
+     * TRIANGULATION_WINDOW_MILLIS sets the window (0 turns triangulation off), TRIANGULATION_MAX_RADIUS_METERS
+     * the longest cone, TRIANGULATION_MERGE_METERS the merge distance, TRIANGULATION_MIN_CONFIDENCE the lowest
+     * confidence reported in percent and TRIANGULATION_THREADS the cores used (0 shares the common pool).
+     * @return the triangulator, or null if triangulation is off
+     */
+    public static ConeTriangulator fromEnvironment() {
+        long windowMillis = Environment.getLong("TRIANGULATION_WINDOW_MILLIS", 2000);
+        if (windowMillis <= 0) {
+            return null;
+        }
+        int threads = Environment.getInt("TRIANGULATION_THREADS", 0);
+        return new ConeTriangulator(windowMillis, Environment.getInt("TRIANGULATION_MAX_RADIUS_METERS", 100),
+                Environment.getInt("TRIANGULATION_MERGE_METERS", 5),
+                Environment.getInt("TRIANGULATION_MIN_CONFIDENCE", 20) / 100.0,
+                threads > 0 ? new ForkJoinPool(threads) : ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Adds the cones of a frame to the window and intersects them with the cones of the other cameras in it.
+     * Cones older than the window before the newest cone leave it, and new cones that old are dropped.
+     * @param cones are the new cones
+     * @return the targets located with the new cones
+     */
+    public List<TriangulatedTargetDocument> add(List<Cone> cones) {
+        if (cones.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Cone[]> pairs = new ArrayList<>();
+        synchronized (this) {
+            for (Cone cone : cones) {
+                newestTime = Math.max(newestTime, cone.getTime());
+            }
+            long oldest = newestTime - windowMillis;
+            evict(oldest);
+            // a cone that arrives after the window moved past it would sit behind younger ones and never leave
+            List<Cone> current = new ArrayList<>(cones.size());
+            for (Cone cone : cones) {
+                if (cone.getTime() >= oldest) {
+                    current.add(cone);
+                }
+            }
+            for (Cone cone : current) {
+                for (Cone other : neighbors(grid, cone)) {
+                    if (isPair(cone, other)) {
+                        pairs.add(new Cone[] {cone, other});
+                    }
+                }
+            }
+            for (Cone cone : current) {
+                window.addLast(cone);
+                grid.computeIfAbsent(cell(cone), ignored -> new ArrayList<>()).add(cone);
+            }
+        }
+        // the intersections are computed outside the lock
+        List<Estimate> estimates = intersectAll(pairs.size(), i -> intersect(pairs.get(i)[0], pairs.get(i)[1]));
+        return merge(estimates);
+    }
+
+    /**
+     * Getter
+     * @return the number of cones in the window
+     */
+    public synchronized int getWindowSize() {
+        return window.size();
+    }
+
+    private boolean isPair(Cone cone, Cone other) {
+        return !cone.getSensorId().equals(other.getSensorId())
+                && Math.abs(cone.getTime() - other.getTime()) <= windowMillis;
+    }
+
+    private void evict(long before) {
+        while (!window.isEmpty() && window.peekFirst().getTime() < before) {
+            Cone cone = window.pollFirst();
+            long key = cell(cone);
+            List<Cone> cellCones = grid.get(key);
+            cellCones.remove(cone);
+            if (cellCones.isEmpty()) {
+                grid.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Intersects the center lines of two cones in meters east and north of the first camera
+     * @param a is the first cone
+     * @param b is the second cone
+     * @return the estimate, or null if the lines do not meet within both cones
+     */
+    private Estimate intersect(Cone a, Cone b) {
+        double metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(a.getLatitude()));
+        double bx = (b.getLongitude() - a.getLongitude()) * metersPerDegreeLongitude;
+        double by = (b.getLatitude() - a.getLatitude()) * METERS_PER_DEGREE;
+        double ax = Math.cos(a.getDirection());
+        double ay = Math.sin(a.getDirection());
+        double cx = Math.cos(b.getDirection());
+        double cy = Math.sin(b.getDirection());
+        double cross = ax * cy - ay * cx;
+        if (Math.abs(cross) < MIN_SIN_CROSSING) {
+            return null;
+        }
+        // a + s * directionA = b + t * directionB
+        double s = (bx * cy - by * cx) / cross;
+        double t = (bx * ay - by * ax) / cross;
+        if (s <= 0 || t <= 0 || s > Math.min(a.getRadius(), maxRadius) || t > Math.min(b.getRadius(), maxRadius)) {
+            return null;
+        }
+        // how far the target may be from the center lines, from the width of each cone where they meet
+        double spread = Math.hypot(s * Math.tan(a.getAngle() / 2), t * Math.tan(b.getAngle() / 2)) / Math.abs(cross);
+        double confidence = Math.abs(cross) / (1 + spread / mergeMeters)
+                * (1 - 0.5 * Math.abs(a.getTime() - b.getTime()) / Math.max(1, windowMillis));
+        return new Estimate(a.getLatitude() + s * ay / METERS_PER_DEGREE,
+                a.getLongitude() + s * ax / metersPerDegreeLongitude, Math.max(a.getTime(), b.getTime()),
+                confidence, a, b);
+    }
+
+    /**
+     * Merges estimates closer than mergeMeters, the most confident first, into targets
+     * @param estimates are the estimates
+     * @return the targets with at least minConfidence
+     */
+    private List<TriangulatedTargetDocument> merge(List<Estimate> estimates) {
+        estimates.sort((x, y) -> Double.compare(y.confidence, x.confidence));
+        double mergeDegrees = mergeMeters / METERS_PER_DEGREE;
+        Map<Long, List<Target>> cells = new HashMap<>();
+        List<Target> targets = new ArrayList<>();
+        for (Estimate estimate : estimates) {
+            long row = row(estimate.latitude, mergeDegrees);
+            long column = column(estimate.latitude, estimate.longitude, mergeDegrees);
+            Target closest = null;
+            double closestDistance = mergeMeters;
+            for (long dx = -1; dx <= 1; dx++) {
+                for (long dy = -1; dy <= 1; dy++) {
+                    List<Target> cellTargets = cells.get(key(row + dy, column + dx));
+                    if (cellTargets == null) {
+                        continue;
+                    }
+                    for (Target target : cellTargets) {
+                        double distance = TargetIndex.distanceMeters(target.latitude, target.longitude,
+                                estimate.latitude, estimate.longitude);
+                        if (distance <= closestDistance) {
+                            closest = target;
+                            closestDistance = distance;
+                        }
+                    }
+                }
+            }
+            if (closest == null) {
+                Target target = new Target(estimate);
+                targets.add(target);
+                cells.computeIfAbsent(key(row, column), ignored -> new ArrayList<>()).add(target);
+            }
+            else {
+                // the target stays in the cell of its first estimate, the most confident one
+                closest.add(estimate);
+            }
+        }
+        List<TriangulatedTargetDocument> documents = new ArrayList<>();
+        for (Target target : targets) {
+            if (target.getConfidence() >= minConfidence) {
+                documents.add(target.toDocument(mergeDegrees));
+            }
+        }
+        return documents;
+    }
+
+    private List<Estimate> intersectAll(int count, IntFunction<Estimate> task) {
+        if (count < PARALLEL_THRESHOLD || pool == null) {
+            List<Estimate> estimates = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Estimate estimate = task.apply(i);
+                if (estimate != null) {
+                    estimates.add(estimate);
+                }
+            }
+            return estimates;
+        }
+        // a parallel stream started inside the pool runs on the pool's threads
+        return pool.submit(() -> IntStream.range(0, count).parallel()
+                .mapToObj(task)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())).join();
+    }
+
+    private List<Cone> neighbors(Map<Long, List<Cone>> cells, Cone cone) {
+        List<Cone> found = new ArrayList<>();
+        long row = row(cone);
+        long column = column(cone);
+        for (long dx = -1; dx <= 1; dx++) {
+            for (long dy = -1; dy <= 1; dy++) {
+                List<Cone> cellCones = cells.get(key(row + dy, column + dx));
+                if (cellCones != null) {
+                    found.addAll(cellCones);
+                }
+            }
+        }
+        return found;
+    }
+
+    private long cell(Cone cone) {
+        return key(row(cone), column(cone));
+    }
+
+    private long row(Cone cone) {
+        return row(cone.getLatitude(), cellDegrees);
+    }
+
+    private long column(Cone cone) {
+        return column(cone.getLatitude(), cone.getLongitude(), cellDegrees);
+    }
+
+    private static long row(double latitude, double degrees) {
+        return (long) Math.floor(latitude / degrees);
+    }
+
+    private static long column(double latitude, double longitude, double degrees) {
+        // cells narrow toward the poles, so longitudes are scaled to keep them about as wide as they are high
+        double scale = Math.cos(Math.toRadians(Math.min(89.0, Math.abs(latitude))));
+        return (long) Math.floor(longitude * scale / degrees);
+    }
+
+    private static long key(long row, long column) {
+        return (row << 32) ^ (column & 0xffffffffL);
+    }
+
+    /**
+     * Location where the center lines of two cones meet
+     */
+    private static class Estimate {
+        private final double latitude;
+        private final double longitude;
+        private final long time;
+        private final double confidence;
+        private final Cone a;
+        private final Cone b;
+
+        private Estimate(double latitude, double longitude, long time, double confidence, Cone a, Cone b) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.time = time;
+            this.confidence = confidence;
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    /**
+     * Estimates of the same target, averaged by their confidence
+     */
+    private static class Target {
+        private final TreeSet<String> sensorIds = new TreeSet<>();
+        private final Set<Cone> cones = new HashSet<>();
+        private double latitude;
+        private double longitude;
+        private double weight;
+        private double missProbability = 1;
+        private long time;
+
+        private Target(Estimate estimate) {
+            add(estimate);
+        }
+
+        private void add(Estimate estimate) {
+            double total = weight + estimate.confidence;
+            if (total > 0) {
+                latitude = (latitude * weight + estimate.latitude * estimate.confidence) / total;
+                longitude = (longitude * weight + estimate.longitude * estimate.confidence) / total;
+            }
+            weight = total;
+            missProbability *= 1 - Math.min(1, estimate.confidence);
+            time = Math.max(time, estimate.time);
+            sensorIds.add(estimate.a.getSensorId());
+            sensorIds.add(estimate.b.getSensorId());
+            cones.add(estimate.a);
+            cones.add(estimate.b);
+        }
+
+        private double getConfidence() {
+            return 1 - missProbability;
+        }
+
+        /**
+         * Builds the document of the target
+         * @param mergeDegrees is the size of the cells the id is taken from
+         * @return the document, whose id is the same whenever the same cameras locate the target in the same cell
+         */
+        private TriangulatedTargetDocument toDocument(double mergeDegrees) {
+            String id = String.join(",", sensorIds) + "@" + row(latitude, mergeDegrees) + ":"
+                    + column(latitude, longitude, mergeDegrees);
+            return new TriangulatedTargetDocument(id, new ArrayList<>(sensorIds), time, latitude, longitude,
+                    getConfidence(), cones.size());
+        }
+    }
+}
@@ -0,0 +1,537 @@
+package main.Spatial;
+
+import main.Config.Environment;
+import main.Documents.TargetDocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the targets located in the last retentionMillis, answering radius, bounding box and
+ * nearest neighbour queries without a round trip to elasticsearch.
+ * Targets are kept in a ring of time buckets, each a grid of cells cellMeters high, so a query only looks at the
+ * buckets after its start time and the cells around its area, and old targets are dropped a whole bucket at a time.
+ * When maxPoints targets are kept, the oldest bucket is dropped early.
+ * Queries share a read lock, so they run in parallel with each other; adding a target takes the write lock.
+ * Areas that cross the antimeridian are not supported.
+ */
+public class TargetIndex {
+
+    private static final double EARTH_RADIUS_METERS = 6371008.8;
+    private static final double METERS_PER_DEGREE = Math.PI * EARTH_RADIUS_METERS / 180.0;
+    private static final Comparator<Neighbor> BY_DISTANCE = Comparator.comparingDouble(neighbor -> neighbor.distance);
+
+    private final double cellDegrees;
+    private final long bucketMillis;
+    private final int maxPoints;
+    private final Bucket[] buckets;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private long newestEpoch = Long.MIN_VALUE;
+    private int size;
+    private long dropped;
+
+    /**
+     * Creates an instance of TargetIndex
+     * @param cellMeters is the height of a cell of the grid, about the radius of typical queries
+     * @param retentionMillis is how long a target is kept after it was captured
+     * @param bucketCount is the number of time buckets the retention is split into
+     * @param maxPoints is the number of targets kept at most
+     */
+    public TargetIndex(double cellMeters, long retentionMillis, int bucketCount, int maxPoints) {
+        if (cellMeters <= 0 || retentionMillis < 1 || bucketCount < 1 || maxPoints < 1) {
+            throw new IllegalArgumentException("The cell size, retention, buckets and points must be positive.");
+        }
+        this.cellDegrees = cellMeters / METERS_PER_DEGREE;
+        this.bucketMillis = Math.max(1, (retentionMillis + bucketCount - 1) / bucketCount);
+        this.maxPoints = maxPoints;
+        // one more bucket than the retention needs, so the oldest one is still whole
+        this.buckets = new Bucket[bucketCount + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Creates an instance of TargetIndex configured by the environment.
+     * TARGET_INDEX_MAX_POINTS sets the targets kept (0, the default, turns the index off since nothing in the
+     * pipeline queries it yet), TARGET_INDEX_RETENTION_MILLIS how long, TARGET_INDEX_BUCKETS the time buckets
+     * and TARGET_INDEX_CELL_METERS the size of a cell.
+     * @return the index, or null if it is off
+     */
+    public static TargetIndex fromEnvironment() {
+        int maxPoints = Environment.getInt("TARGET_INDEX_MAX_POINTS", 0);
+        if (maxPoints <= 0) {
+            return null;
+        }
+        return new TargetIndex(Environment.getInt("TARGET_INDEX_CELL_METERS", 100),
+                Environment.getLong("TARGET_INDEX_RETENTION_MILLIS", 600000),
+                Environment.getInt("TARGET_INDEX_BUCKETS", 60), maxPoints);
+    }
+
+    /**
+     * Adds the location of a target document
+     * @param document is the document
+     * @return whether or not the target was kept, false if it is older than the retention
+     */
+    public boolean add(TargetDocument document) {
+        return add(new TargetPoint(document.getSensorId(), document.getSensorType(),
+                Long.parseLong(document.getTimestamp()), document.getLatitude(), document.getLongitude()));
+    }
+
+    /**
+     * Adds the locations of several target documents
+     * @param documents are the documents
+     */
+    public void addAll(List<? extends TargetDocument> documents) {
+        for (TargetDocument document : documents) {
+            add(document);
+        }
+    }
+
+    /**
+     * Adds a target. A target newer than every other one starts a new time bucket and drops the buckets that
+     * fell out of the retention.
+     * @param point is the target
+     * @return whether or not the target was kept, false if it is older than the retention
+     */
+    public boolean add(TargetPoint point) {
+        long epoch = Math.floorDiv(point.getTime(), bucketMillis);
+        long row = row(point.getLatitude());
+        long column = column(point.getLongitude());
+        lock.writeLock().lock();
+        try {
+            if (newestEpoch != Long.MIN_VALUE && epoch <= newestEpoch - buckets.length) {
+                dropped++;
+                return false;
+            }
+            if (epoch > newestEpoch) {
+                newestEpoch = epoch;
+                clearBefore(epoch - buckets.length + 1);
+            }
+            while (size >= maxPoints) {
+                if (!clearOldest(epoch)) {
+                    dropped++;
+                    return false;
+                }
+            }
+            Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) buckets.length)];
+            bucket.epoch = epoch;
+            bucket.add(row, column, point);
+            size++;
+            return true;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the targets of the time buckets that end before a time, e.g. on a timer when no new targets arrive
+     * @param time is the time in Unix time
+     */
+    public void evictBefore(long time) {
+        lock.writeLock().lock();
+        try {
+            clearBefore(Math.floorDiv(time, bucketMillis));
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the targets within a distance of a point
+     * @param latitude is the latitude of the point in degrees
+     * @param longitude is the longitude of the point in degrees
+     * @param meters is the distance
+     * @param since is the earliest capture time of the targets in Unix time
+     * @return the targets, closest first
+     */
+    public List<TargetPoint> withinRadius(double latitude, double longitude, double meters, long since) {
+        double latitudeDegrees = meters / METERS_PER_DEGREE;
+        double longitudeDegrees = Math.min(180, meters / metersPerDegreeLongitude(
+                Math.abs(latitude) + latitudeDegrees));
+        List<Neighbor> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Bucket bucket : buckets) {
+                if (!isLive(bucket, since)) {
+                    continue;
+                }
+                for (Cell cell : bucket.cells(row(latitude - latitudeDegrees), row(latitude + latitudeDegrees),
+                        column(longitude - longitudeDegrees), column(longitude + longitudeDegrees))) {
+                    for (int i = 0; i < cell.count; i++) {
+                        if (cell.times[i] < since) {
+                            continue;
+                        }
+                        double distance = distanceMeters(latitude, longitude, cell.latitudes[i], cell.longitudes[i]);
+                        if (distance <= meters) {
+                            found.add(new Neighbor(cell.points[i], distance));
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        found.sort(BY_DISTANCE);
+        return toPoints(found);
+    }
+
+    /**
+     * Finds the targets inside a bounding box
+     * @param minLatitude is the southern edge in degrees
+     * @param minLongitude is the western edge in degrees
+     * @param maxLatitude is the northern edge in degrees
+     * @param maxLongitude is the eastern edge in degrees
+     * @param since is the earliest capture time of the targets in Unix time
+     * @return the targets, in no particular order
+     */
+    public List<TargetPoint> withinBox(double minLatitude, double minLongitude, double maxLatitude,
+                                       double maxLongitude, long since) {
+        List<TargetPoint> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Bucket bucket : buckets) {
+                if (!isLive(bucket, since)) {
+                    continue;
+                }
+                for (Cell cell : bucket.cells(row(minLatitude), row(maxLatitude), column(minLongitude),
+                        column(maxLongitude))) {
+                    for (int i = 0; i < cell.count; i++) {
+                        if (cell.times[i] >= since && cell.latitudes[i] >= minLatitude
+                                && cell.latitudes[i] <= maxLatitude && cell.longitudes[i] >= minLongitude
+                                && cell.longitudes[i] <= maxLongitude) {
+                            found.add(cell.points[i]);
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return found;
+    }
+
+    /**
+     * Finds the targets closest to a point. The cells are searched in square rings around the point,
+     * stopping once the next ring cannot hold anything closer than the k-th target found or lies outside the cells
+     * of the live buckets. Once the rings cover more cells than the live buckets hold, e.g. when there are fewer
+     * than k targets and they are far apart, the remaining cells of the buckets are scanned instead.
+     * @param latitude is the latitude of the point in degrees
+     * @param longitude is the longitude of the point in degrees
+     * @param k is the number of targets to find
+     * @param maxMeters is the distance beyond which targets are not looked for
+     * @param since is the earliest capture time of the targets in Unix time
+     * @return at most k targets, closest first
+     */
+    public List<TargetPoint> nearest(double latitude, double longitude, int k, double maxMeters, long since) {
+        if (k < 1) {
+            return Collections.emptyList();
+        }
+        // the farthest of the k closest targets found so far is at the head
+        PriorityQueue<Neighbor> closest = new PriorityQueue<>(k, BY_DISTANCE.reversed());
+        long centerRow = row(latitude);
+        long centerColumn = column(longitude);
+        lock.readLock().lock();
+        try {
+            // extent of the cells of the live buckets, which bounds the search
+            long minRow = Long.MAX_VALUE;
+            long maxRow = Long.MIN_VALUE;
+            long minColumn = Long.MAX_VALUE;
+            long maxColumn = Long.MIN_VALUE;
+            int liveCells = 0;
+            for (Bucket bucket : buckets) {
+                if (isLive(bucket, since)) {
+                    minRow = Math.min(minRow, bucket.minRow);
+                    maxRow = Math.max(maxRow, bucket.maxRow);
+                    minColumn = Math.min(minColumn, bucket.minColumn);
+                    maxColumn = Math.max(maxColumn, bucket.maxColumn);
+                    liveCells += bucket.cells.size();
+                }
+            }
+            if (liveCells == 0) {
+                return Collections.emptyList();
+            }
+            long lastRing = Math.max(Math.max(centerRow - minRow, maxRow - centerRow),
+                    Math.max(centerColumn - minColumn, maxColumn - centerColumn));
+            for (long ring = 0; ring <= lastRing; ring++) {
+                if ((double) (2 * ring + 1) * (2 * ring + 1) > liveCells) {
+                    // the cells inside the previous ring were searched already
+                    for (Bucket bucket : buckets) {
+                        if (!isLive(bucket, since)) {
+                            continue;
+                        }
+                        for (Cell cell : bucket.cells.values()) {
+                            if (Math.abs(cell.row - centerRow) >= ring
+                                    || Math.abs(cell.column - centerColumn) >= ring) {
+                                collect(cell, latitude, longitude, k, maxMeters, since, closest);
+                            }
+                        }
+                    }
+                    break;
+                }
+                for (long row = centerRow - ring; row <= centerRow + ring; row++) {
+                    boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                    long step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                    for (long column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                        collect(row, column, latitude, longitude, k, maxMeters, since, closest);
+                    }
+                }
+                // every target outside the rings searched so far is at least this far away
+                double reach = ring * cellDegrees * metersPerDegreeLongitude(Math.abs(latitude)
+                        + (ring + 1) * cellDegrees);
+                if (reach > maxMeters || (closest.size() == k && closest.peek().distance <= reach)) {
+                    break;
+                }
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        List<Neighbor> sorted = new ArrayList<>(closest);
+        sorted.sort(BY_DISTANCE);
+        return toPoints(sorted);
+    }
+
+    private void collect(long row, long column, double latitude, double longitude, int k, double maxMeters,
+                         long since, PriorityQueue<Neighbor> closest) {
+        Long key = key(row, column);
+        for (Bucket bucket : buckets) {
+            if (!isLive(bucket, since)) {
+                continue;
+            }
+            Cell cell = bucket.cells.get(key);
+            if (cell != null) {
+                collect(cell, latitude, longitude, k, maxMeters, since, closest);
+            }
+        }
+    }
+
+    private static void collect(Cell cell, double latitude, double longitude, int k, double maxMeters, long since,
+                                PriorityQueue<Neighbor> closest) {
+        for (int i = 0; i < cell.count; i++) {
+            if (cell.times[i] < since) {
+                continue;
+            }
+            double distance = distanceMeters(latitude, longitude, cell.latitudes[i], cell.longitudes[i]);
+            if (distance > maxMeters || (closest.size() == k && distance >= closest.peek().distance)) {
+                continue;
+            }
+            if (closest.size() == k) {
+                closest.poll();
+            }
+            closest.add(new Neighbor(cell.points[i], distance));
+        }
+    }
+
+    /**
+     * Great circle distance between two points
+     * @param latitude1 is the latitude of the first point in degrees
+     * @param longitude1 is the longitude of the first point in degrees
+     * @param latitude2 is the latitude of the second point in degrees
+     * @param longitude2 is the longitude of the second point in degrees
+     * @return the distance in meters
+     */
+    public static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double sinLatitude = Math.sin(Math.toRadians(latitude2 - latitude1) / 2);
+        double sinLongitude = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinLatitude * sinLatitude + Math.cos(Math.toRadians(latitude1))
+                * Math.cos(Math.toRadians(latitude2)) * sinLongitude * sinLongitude;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Getter
+     * @return the number of targets kept
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter
+     * @return the number of targets that were not kept because they were too old or the index was full
+     */
+    public long getDropped() {
+        lock.readLock().lock();
+        try {
+            return dropped;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isLive(Bucket bucket, long since) {
+        return bucket.size > 0 && (bucket.epoch + 1) * bucketMillis > since;
+    }
+
+    private void clearBefore(long epoch) {
+        for (Bucket bucket : buckets) {
+            if (bucket.size > 0 && bucket.epoch < epoch) {
+                size -= bucket.clear();
+            }
+        }
+    }
+
+    /**
+     * Drops the oldest bucket to make room, unless it is the bucket of the target being added
+     * @param epoch is the bucket of the target being added
+     * @return whether or not a bucket was dropped
+     */
+    private boolean clearOldest(long epoch) {
+        Bucket oldest = null;
+        for (Bucket bucket : buckets) {
+            if (bucket.size > 0 && (oldest == null || bucket.epoch < oldest.epoch)) {
+                oldest = bucket;
+            }
+        }
+        if (oldest == null || oldest.epoch == epoch) {
+            return false;
+        }
+        size -= oldest.clear();
+        return true;
+    }
+
+    private long row(double latitude) {
+        return (long) Math.floor(latitude / cellDegrees);
+    }
+
+    private long column(double longitude) {
+        return (long) Math.floor(longitude / cellDegrees);
+    }
+
+    private static double metersPerDegreeLongitude(double latitude) {
+        return METERS_PER_DEGREE * Math.cos(Math.toRadians(Math.min(89.9, latitude)));
+    }
+
+    private static Long key(long row, long column) {
+        return (row << 32) ^ (column & 0xffffffffL);
+    }
+
+    private static List<TargetPoint> toPoints(List<Neighbor> neighbors) {
+        List<TargetPoint> points = new ArrayList<>(neighbors.size());
+        for (Neighbor neighbor : neighbors) {
+            points.add(neighbor.point);
+        }
+        return points;
+    }
+
+    /**
+     * Targets captured within one bucketMillis, by cell
+     */
+    private static class Bucket {
+        private final Map<Long, Cell> cells = new HashMap<>();
+        private long epoch;
+        private int size;
+        // extent of the cells of the bucket, which bounds the nearest neighbour search
+        private long minRow = Long.MAX_VALUE;
+        private long maxRow = Long.MIN_VALUE;
+        private long minColumn = Long.MAX_VALUE;
+        private long maxColumn = Long.MIN_VALUE;
+
+        private void add(long row, long column, TargetPoint point) {
+            cells.computeIfAbsent(key(row, column), ignored -> new Cell(row, column)).add(point);
+            size++;
+            minRow = Math.min(minRow, row);
+            maxRow = Math.max(maxRow, row);
+            minColumn = Math.min(minColumn, column);
+            maxColumn = Math.max(maxColumn, column);
+        }
+
+        /**
+         * Returns the cells of an area, looking them up one by one or scanning the bucket, whichever is less work
+         */
+        private List<Cell> cells(long minRow, long maxRow, long minColumn, long maxColumn) {
+            List<Cell> found = new ArrayList<>();
+            double area = (double) (maxRow - minRow + 1) * (maxColumn - minColumn + 1);
+            if (area > cells.size()) {
+                for (Cell cell : cells.values()) {
+                    if (cell.row >= minRow && cell.row <= maxRow && cell.column >= minColumn
+                            && cell.column <= maxColumn) {
+                        found.add(cell);
+                    }
+                }
+                return found;
+            }
+            for (long row = minRow; row <= maxRow; row++) {
+                for (long column = minColumn; column <= maxColumn; column++) {
+                    Cell cell = cells.get(key(row, column));
+                    if (cell != null) {
+                        found.add(cell);
+                    }
+                }
+            }
+            return found;
+        }
+
+        private int clear() {
+            int cleared = size;
+            cells.clear();
+            size = 0;
+            minRow = Long.MAX_VALUE;
+            maxRow = Long.MIN_VALUE;
+            minColumn = Long.MAX_VALUE;
+            maxColumn = Long.MIN_VALUE;
+            return cleared;
+        }
+    }
+
+    /**
+     * Targets of a cell in parallel arrays, so a query scans coordinates without following references
+     */
+    private static class Cell {
+        private final long row;
+        private final long column;
+        private int count;
+        private double[] latitudes = new double[4];
+        private double[] longitudes = new double[4];
+        private long[] times = new long[4];
+        private TargetPoint[] points = new TargetPoint[4];
+
+        private Cell(long row, long column) {
+            this.row = row;
+            this.column = column;
+        }
+
+        private void add(TargetPoint point) {
+            if (count == points.length) {
+                int capacity = count * 2;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                times = Arrays.copyOf(times, capacity);
+                points = Arrays.copyOf(points, capacity);
+            }
+            latitudes[count] = point.getLatitude();
+            longitudes[count] = point.getLongitude();
+            times[count] = point.getTime();
+            points[count++] = point;
+        }
+    }
+
+    private static class Neighbor {
+        private final TargetPoint point;
+        private final double distance;
+
+        private Neighbor(TargetPoint point, double distance) {
+            this.point = point;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package main.Spatial;
+
+/**
+ * Immutable location of a target at a point in time, as kept by the TargetIndex
+ */
+public class TargetPoint {
+
+    private final String sensorId;
+    private final String sensorType;
+    private final long time;
+    private final double latitude;
+    private final double longitude;
+
+    /**
+     * Creates an instance of TargetPoint
+     * @param sensorId is the id of the sensor that saw the target
+     * @param sensorType is the type of sensor
+     * @param time is when the image was captured in Unix time
+     * @param latitude is the latitude of the target in degrees
+     * @param longitude is the longitude of the target in degrees
+     */
+    public TargetPoint(String sensorId, String sensorType, long time, double latitude, double longitude) {
+        this.sensorId = sensorId;
+        this.sensorType = sensorType;
+        this.time = time;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Getter
+     * @return the id of the sensor that saw the target
+     */
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    /**
+     * Getter
+     * @return the type of sensor
+     */
+    public String getSensorType() {
+        return sensorType;
+    }
+
+    /**
+     * Getter
+     * @return when the image was captured in Unix time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Getter
+     * @return the latitude of the target in degrees
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Getter
+     * @return the longitude of the target in degrees
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    @Override
+    public String toString() {
+        return sensorId + " " + latitude + "," + longitude + " at " + time;
+    }
+}
@@ -2,25 +2,36 @@ package main.Targets;
 
 
 import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Label;
+import main.Clients.ClientRegistry;
 import main.DataType.DataType;
+import main.Detection.LabelDetector;
+import main.Documents.TargetDocument;
+import main.Elastic.BulkIndexer;
+import main.Elastic.BulkItemResult;
 import main.Elastic.ElasticClient;
 import main.Metadata.DroneMetadata;
 import main.Metadata.HandheldCameraMetadata;
 import main.Metadata.Metadata;
-import org.elasticsearch.action.index.IndexResponse;
+import main.Metadata.Provenance;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 
 /**
- * Uses AWS Rekognition to detect targets in an image.
+ * Uses a LabelDetector to detect targets in an image.
  * Calculates information about targets that will be used in visualization.
  * Sends information to elasticsearch
  */
 public class Detector {
 
     private ElasticClient elasticClient;
+    private LabelDetector labelDetector;
+    private List<Label> labels;
     private Metadata metadata;
     private TargetFinder targetFinder;
     private String s3Key;
@@ -35,11 +46,36 @@ public class Detector {
      * @param elasticClient is the elastic client
      */
     public Detector(String s3Key, String s3Bucket, DataType dataType, Metadata metadata, ElasticClient elasticClient) {
+        this(s3Key, s3Bucket, dataType, metadata, elasticClient, () -> ClientRegistry.getDefault().getLabelDetector());
+    }
+
+    /**
+     * Creates an instance of Detector
+     * @param s3Key is the file of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param dataType is the type of sensor the S3Object comes from
+     * @param metadata is the object's metadata
+     * @param elasticClient is the elastic client
+     * @param labelDetector detects the labels in the S3Object
+     */
+    public Detector(String s3Key, String s3Bucket, DataType dataType, Metadata metadata, ElasticClient elasticClient,
+                    LabelDetector labelDetector) {
+        this(s3Key, s3Bucket, dataType, metadata, elasticClient, () -> labelDetector);
+    }
+
+    private Detector(String s3Key, String s3Bucket, DataType dataType, Metadata metadata, ElasticClient elasticClient,
+                     Supplier<LabelDetector> labelDetector) {
         this.s3Key = s3Key;
         this.s3Bucket = s3Bucket;
         this.metadata = metadata;
-        this.targetFinder = determineTargetFinder(s3Key, s3Bucket, dataType);
         this.elasticClient = elasticClient;
+        if (!metadata.isValid()) {
+            // the targets could not be located, so the image is not sent to the label detector
+            System.err.println("Not detecting targets of " + s3Key + ": " + metadata.getErrors());
+            return;
+        }
+        this.labelDetector = labelDetector.get();
+        this.targetFinder = determineTargetFinder(s3Key, s3Bucket, dataType);
         try {
             sendTargetsToElastic();
         }
@@ -48,6 +84,23 @@ public class Detector {
         }
     }
 
+    /**
+     * Creates an instance of Detector for labels that were already detected.
+     * Nothing is sent until sendTargetsToElastic is called.
+     * @param s3Key is the file of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param dataType is the type of sensor the S3Object comes from
+     * @param metadata is the object's metadata
+     * @param labels are the labels detected in the S3Object
+     */
+    public Detector(String s3Key, String s3Bucket, DataType dataType, Metadata metadata, List<Label> labels) {
+        this.s3Key = s3Key;
+        this.s3Bucket = s3Bucket;
+        this.metadata = metadata;
+        this.labels = labels;
+        this.targetFinder = determineTargetFinder(s3Key, s3Bucket, dataType);
+    }
+
     /**
      * Determines the type of targetFinder based on the object's sensor type
      * @param s3Key is the file for the S3Object
@@ -58,9 +111,14 @@ public class Detector {
     public TargetFinder determineTargetFinder(String s3Key, String s3Bucket, DataType dataType) {
         switch(dataType) {
             case DRONE:
-                return new DroneTargetFinder(s3Key, s3Bucket, (DroneMetadata) metadata);
+                return labels != null
+                        ? new DroneTargetFinder(s3Key, s3Bucket, (DroneMetadata) metadata, labels)
+                        : new DroneTargetFinder(s3Key, s3Bucket, (DroneMetadata) metadata, labelDetector);
             case HANDHELD:
-                return new HandheldCameraTargetFinder(s3Key, s3Bucket, (HandheldCameraMetadata) metadata);
+                return labels != null
+                        ? new HandheldCameraTargetFinder(s3Key, s3Bucket, (HandheldCameraMetadata) metadata, labels)
+                        : new HandheldCameraTargetFinder(s3Key, s3Bucket, (HandheldCameraMetadata) metadata,
+                        labelDetector);
             default:
                 return null;
         }
@@ -71,16 +129,62 @@ public class Detector {
      * @return a list of responses for the target information uploads
      * @throws IOException
      */
-    public List<IndexResponse> sendTargetsToElastic() throws IOException {
-        List<IndexResponse> responses = new ArrayList<>();
-        targetFinder.updateProvenance(", Sent to Elasticsearch: ");
+    public List<BulkItemResult> sendTargetsToElastic() throws IOException {
+        List<BulkItemResult> responses = new ArrayList<>();
+        targetFinder.updateProvenance(Provenance.Stage.SENT_TO_ELASTICSEARCH);
         for (BoundingBox box: targetFinder.getBoxes()) {
-            IndexResponse response = elasticClient.postData("targets", targetFinder.getTarget(box));
+            BulkItemResult response = elasticClient.postData("targets", targetFinder.getTarget(box));
             responses.add(response);
         }
         return responses;
     }
 
+    /**
+     * Queues target information for elasticsearch
+     * @param bulkIndexer is the bulk indexer to queue the targets on
+     * @return a list of futures that complete once elasticsearch has answered for each target
+     */
+    public List<CompletableFuture<BulkItemResult>> sendTargetsToElastic(BulkIndexer bulkIndexer) {
+        List<CompletableFuture<BulkItemResult>> results = new ArrayList<>();
+        for (TargetDocument document : getTargetDocuments()) {
+            results.add(bulkIndexer.add("targets", document));
+        }
+        return results;
+    }
+
+    /**
+     * Queues target information that was already computed
+     * @param bulkIndexer is the bulk indexer to queue the targets on
+     * @param targets are the formatted targets
+     * @return a list of futures that complete once elasticsearch has answered for each target
+     */
+    public List<CompletableFuture<BulkItemResult>> sendTargetsToElastic(BulkIndexer bulkIndexer,
+                                                                       List<Map<String, String>> targets) {
+        List<CompletableFuture<BulkItemResult>> results = new ArrayList<>();
+        for (Map<String, String> target : targets) {
+            results.add(bulkIndexer.add("targets", target));
+        }
+        return results;
+    }
+
+    /**
+     * Computes the formatted information of every target in the image
+     * @return the formatted targets
+     */
+    public List<Map<String, String>> getTargets() {
+        targetFinder.updateProvenance(Provenance.Stage.SENT_TO_ELASTICSEARCH);
+        return targetFinder.getTargets(targetFinder.getBoxes());
+    }
+
+    /**
+     * Builds the document of every target in the image
+     * @return the documents
+     */
+    public List<TargetDocument> getTargetDocuments() {
+        targetFinder.updateProvenance(Provenance.Stage.SENT_TO_ELASTICSEARCH);
+        return targetFinder.getTargetDocuments(targetFinder.getBoxes());
+    }
+
     public Metadata getMetadata() {
         return metadata;
     }
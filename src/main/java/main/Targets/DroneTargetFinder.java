@@ -1,9 +1,16 @@
 package main.Targets;
 
 import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Label;
+import main.Detection.LabelDetector;
+import main.Documents.DroneTargetDocument;
+import main.Documents.TargetDocument;
 import main.Metadata.DroneMetadata;
+import main.Metadata.Provenance;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,7 +20,18 @@ public class DroneTargetFinder extends TargetFinder {
 
     DroneMetadata metadata;
     private static final double earthRadius = 6378.137;
+    // Temporary hardcoded fov
+    // FOV in degrees. 4:3 aspect ratio for jpeg rect photos
+    // Info found at: https://www.parrot.com/files/s3fs-public/firmware/anafi_user_guide_v2.6.2.pdf
+    private static final double horizontalFov = 75.5;
+    private static final double verticalFov = 56.625;
     private double droneDirectionRelativeNorth;
+    // values shared by every target in the frame, computed once by precomputeFrame()
+    private double horizontalImageLength;
+    private double verticalImageLength;
+    private double droneLongitude;
+    private double sinDroneLatitude;
+    private double cosDroneLatitude;
 
     /**
      * Creates an instance of DroneTargetFinder
@@ -24,8 +42,48 @@ public class DroneTargetFinder extends TargetFinder {
     public DroneTargetFinder(String s3Key, String s3Bucket, DroneMetadata metadata) {
         super(s3Key, s3Bucket, metadata);
         this.metadata = metadata;
+        precomputeFrame();
+    }
+
+    /**
+     * Creates an instance of DroneTargetFinder
+     * @param s3Key is the file name of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param metadata is the metadata for the S3Object
+     * @param labelDetector detects the labels in the S3Object
+     */
+    public DroneTargetFinder(String s3Key, String s3Bucket, DroneMetadata metadata, LabelDetector labelDetector) {
+        super(s3Key, s3Bucket, metadata, labelDetector);
+        this.metadata = metadata;
+        precomputeFrame();
+    }
+
+    /**
+     * Creates an instance of DroneTargetFinder for labels that were already detected
+     * @param s3Key is the file name of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param metadata is the metadata for the S3Object
+     * @param labels are the labels detected in the S3Object
+     */
+    public DroneTargetFinder(String s3Key, String s3Bucket, DroneMetadata metadata, List<Label> labels) {
+        super(s3Key, s3Bucket, metadata, labels);
+        this.metadata = metadata;
+        precomputeFrame();
+    }
+
+    /**
+     * Computes the values that are the same for every target in the frame
+     */
+    private void precomputeFrame() {
         double convertedDroneDirection = convert180to360CWRelativeEast(metadata.getYaw());
         this.droneDirectionRelativeNorth = convert360CWEastToNorth(convertedDroneDirection);
+        // Arc length calculation using altitude and fov
+        this.horizontalImageLength = 2 * Math.PI * metadata.getAltitude() * (horizontalFov / 360);
+        this.verticalImageLength = 2 * Math.PI * metadata.getAltitude() * (verticalFov / 360);
+        double droneLatitude = convertDegreesToRadians(metadata.getLatitude());
+        this.droneLongitude = convertDegreesToRadians(metadata.getLongitude());
+        this.sinDroneLatitude = Math.sin(droneLatitude);
+        this.cosDroneLatitude = Math.cos(droneLatitude);
     }
 
     /**
@@ -48,6 +106,33 @@ public class DroneTargetFinder extends TargetFinder {
         return calculateCoordinate(targetDistance, targetDirection);
     }
 
+    /**
+     * Computes the GPS coordinates of a batch of targets without allocating.
+     * Boxes are given as parallel arrays and the results are written to the caller's arrays,
+     * bit for bit the same as calculateDroneTargetCoordinate.
+     * @param left are the left edges of the boxes
+     * @param top are the top edges of the boxes
+     * @param width are the widths of the boxes
+     * @param height are the heights of the boxes
+     * @param count is the number of boxes to read from the arrays
+     * @param latitudes receives the latitude of each target in radians
+     * @param longitudes receives the longitude of each target in radians
+     */
+    public void calculateDroneTargetCoordinates(float[] left, float[] top, float[] width, float[] height, int count,
+                                                double[] latitudes, double[] longitudes) {
+        for (int i = 0; i < count; i++) {
+            double imageX = left[i] + width[i] / 2.0 - 0.5;
+            double imageY = 0.5 - (top[i] + height[i] / 2.0);
+            double angularDistance = (calculateDroneTargetDistance(imageX, imageY) * 0.001) / earthRadius;
+            double direction = calculateDroneTargetDirection(imageX, imageY);
+            double sinAngularDistance = Math.sin(angularDistance);
+            double cosAngularDistance = Math.cos(angularDistance);
+            double latitude = calculateLatitude(sinAngularDistance, cosAngularDistance, direction);
+            latitudes[i] = latitude;
+            longitudes[i] = calculateLongitude(sinAngularDistance, cosAngularDistance, direction, latitude);
+        }
+    }
+
     /**
      * Get actual distance to target from image x and y (at Origin)
      * @param x is the x coordinate
@@ -55,22 +140,12 @@ public class DroneTargetFinder extends TargetFinder {
      * @return The distance in meters
      */
     public double calculateDroneTargetDistance(double x, double y) {
-        // Temporary hardcoded fov
-        // FOV in degrees. 4:3 aspect ratio for jpeg rect photos
-        // Info found at: https://www.parrot.com/files/s3fs-public/firmware/anafi_user_guide_v2.6.2.pdf
-        double horizontalFov = 75.5;
-        double verticalFov = 56.625;
-
-        // Arc length calculation using altitude and fov
-        double horizontalImageLength = 2 * Math.PI * metadata.getAltitude() * (horizontalFov / 360);
-        double verticalImageLength = 2 * Math.PI * metadata.getAltitude() * (verticalFov / 360);
-
         // x and y displacements
         double disX = x * horizontalImageLength;
         double disY = y * verticalImageLength;
 
         // pythagorean distance
-        return Math.sqrt(Math.pow(disX, 2) + Math.pow(disY, 2));
+        return Math.sqrt(disX * disX + disY * disY);
     }
 
     /**
@@ -84,10 +159,8 @@ public class DroneTargetFinder extends TargetFinder {
         // Q1 and Q2: 0 to Pi     Q3 and Q4: 0 to -PI
         double angle = Math.atan2(y, x);
         double convertedTargetAngle = convert180to360CWRelativeEast(angle);
-        double convertedDroneDirection = convert180to360CWRelativeEast(metadata.getYaw());
         double targetAngleNorth = convert360CWEastToNorth(convertedTargetAngle);
-        double droneDirectionNorth = convert360CWEastToNorth(convertedDroneDirection);
-        return (targetAngleNorth + droneDirectionNorth) % (2 * Math.PI);
+        return (targetAngleNorth + droneDirectionRelativeNorth) % (2 * Math.PI);
     }
 
     /**
@@ -113,16 +186,40 @@ public class DroneTargetFinder extends TargetFinder {
         // where	φ is latitude, λ is longitude, θ is the bearing (clockwise from north),
         // δ is the angular distance d/R; d being the distance travelled, R the earth’s radius
         double angularDistance = (distance * 0.001) / this.earthRadius;
-        double lat1 = convertDegreesToRadians(metadata.getLatitude());
-        double long1 = convertDegreesToRadians(metadata.getLongitude());
-        double lat2 = Math.asin(Math.sin(lat1) * Math.cos(angularDistance) +
-                Math.cos(lat1) * Math.sin(angularDistance) * Math.cos(direction));
-        double long2 = long1 + Math.atan2(Math.sin(direction) * Math.sin(angularDistance) *
-                Math.cos(lat1), Math.cos(angularDistance) - Math.sin(lat1) * Math.sin(lat2));
+        double sinAngularDistance = Math.sin(angularDistance);
+        double cosAngularDistance = Math.cos(angularDistance);
+        double lat2 = calculateLatitude(sinAngularDistance, cosAngularDistance, direction);
+        double long2 = calculateLongitude(sinAngularDistance, cosAngularDistance, direction, lat2);
         double[] coordinates = new double[] {lat2, long2};
         return coordinates;
     }
 
+    /**
+     * Calculates the latitude of a target, φ2 in calculateCoordinate
+     * @param sinAngularDistance is sin δ
+     * @param cosAngularDistance is cos δ
+     * @param direction is the direction relative north (0 - 2Pi)
+     * @return the latitude in radians
+     */
+    private double calculateLatitude(double sinAngularDistance, double cosAngularDistance, double direction) {
+        return Math.asin(sinDroneLatitude * cosAngularDistance +
+                cosDroneLatitude * sinAngularDistance * Math.cos(direction));
+    }
+
+    /**
+     * Calculates the longitude of a target, λ2 in calculateCoordinate
+     * @param sinAngularDistance is sin δ
+     * @param cosAngularDistance is cos δ
+     * @param direction is the direction relative north (0 - 2Pi)
+     * @param latitude is the latitude of the target in radians
+     * @return the longitude in radians
+     */
+    private double calculateLongitude(double sinAngularDistance, double cosAngularDistance, double direction,
+                                      double latitude) {
+        return droneLongitude + Math.atan2(Math.sin(direction) * sinAngularDistance *
+                cosDroneLatitude, cosAngularDistance - sinDroneLatitude * Math.sin(latitude));
+    }
+
     /**
      * Gets json formatted data for a target
      * @param box is the BoundingBox around a target
@@ -130,13 +227,99 @@ public class DroneTargetFinder extends TargetFinder {
      */
     @Override
     public Map<String, String> getTarget(BoundingBox box) {
+        double[] target = calculateDroneTargetCoordinate(box);
+        return formatTarget(target[0], target[1], metadata.getProvenance().snapshot().toJsonString());
+    }
+
+    /**
+     * Gets json formatted data for every target in the frame, locating them with one batch computation
+     * @param boxes are the BoundingBoxes around the targets
+     * @return a Map<String, String> containing the data of each target
+     */
+    @Override
+    public List<Map<String, String>> getTargets(List<BoundingBox> boxes) {
+        double[][] coordinates = calculateDroneTargetCoordinates(boxes);
+        double[] latitudes = coordinates[0];
+        double[] longitudes = coordinates[1];
+        String provenance = metadata.getProvenance().snapshot().toJsonString();
+        List<Map<String, String>> targets = new ArrayList<>(latitudes.length);
+        for (int i = 0; i < latitudes.length; i++) {
+            targets.add(formatTarget(latitudes[i], longitudes[i], provenance));
+        }
+        return targets;
+    }
+
+    /**
+     * Builds the document of a target
+     * @param box is the BoundingBox around a target
+     * @return the document
+     */
+    @Override
+    public TargetDocument getTargetDocument(BoundingBox box) {
+        double[] target = calculateDroneTargetCoordinate(box);
+        return new DroneTargetDocument(metadata.getSensorID(), metadata.getSensorType(), metadata.getTimestamp(),
+                convertRadiansToDegrees(target[0]), convertRadiansToDegrees(target[1]),
+                metadata.getProvenance().snapshot());
+    }
+
+    /**
+     * Builds the documents of every target in the frame, locating them with one batch computation
+     * @param boxes are the BoundingBoxes around the targets
+     * @return the document of each target
+     */
+    @Override
+    public List<TargetDocument> getTargetDocuments(List<BoundingBox> boxes) {
+        double[][] coordinates = calculateDroneTargetCoordinates(boxes);
+        double[] latitudes = coordinates[0];
+        double[] longitudes = coordinates[1];
+        Provenance provenance = metadata.getProvenance().snapshot();
+        List<TargetDocument> documents = new ArrayList<>(latitudes.length);
+        for (int i = 0; i < latitudes.length; i++) {
+            documents.add(new DroneTargetDocument(metadata.getSensorID(), metadata.getSensorType(),
+                    metadata.getTimestamp(), convertRadiansToDegrees(latitudes[i]),
+                    convertRadiansToDegrees(longitudes[i]), provenance));
+        }
+        return documents;
+    }
+
+    /**
+     * Locates every target in the frame with one batch computation
+     * @param boxes are the BoundingBoxes around the targets
+     * @return the latitudes and the longitudes of the targets in radians
+     */
+    private double[][] calculateDroneTargetCoordinates(List<BoundingBox> boxes) {
+        int count = boxes.size();
+        float[] left = new float[count];
+        float[] top = new float[count];
+        float[] width = new float[count];
+        float[] height = new float[count];
+        for (int i = 0; i < count; i++) {
+            BoundingBox box = boxes.get(i);
+            left[i] = box.getLeft();
+            top[i] = box.getTop();
+            width[i] = box.getWidth();
+            height[i] = box.getHeight();
+        }
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        calculateDroneTargetCoordinates(left, top, width, height, count, latitudes, longitudes);
+        return new double[][] {latitudes, longitudes};
+    }
+
+    /**
+     * Formats the data of a target
+     * @param latitude is the latitude of the target in radians
+     * @param longitude is the longitude of the target in radians
+     * @param provenance is the provenance of the frame as a JSON array
+     * @return Map<String, String> containing the data
+     */
+    private Map<String, String> formatTarget(double latitude, double longitude, String provenance) {
         Map<String, String> jsonMap = new HashMap<>();
         jsonMap.put("sensor_id", metadata.getSensorID());
         jsonMap.put("sensor_type", metadata.getSensorType());
         jsonMap.put("timestamp", metadata.getTimestamp());
-        double[] target = calculateDroneTargetCoordinate(box);
-        jsonMap.put("location", convertRadiansToDegrees(target[0]) + "," + convertRadiansToDegrees(target[1]));
-        jsonMap.put("provenance", metadata.getProvenance().toString());
+        jsonMap.put("location", convertRadiansToDegrees(latitude) + "," + convertRadiansToDegrees(longitude));
+        jsonMap.put("provenance", provenance);
         return jsonMap;
     }
 }
@@ -1,9 +1,15 @@
 package main.Targets;
 
 import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Label;
+import main.Detection.LabelDetector;
+import main.Documents.HandheldTargetDocument;
+import main.Documents.TargetDocument;
 import main.Metadata.HandheldCameraMetadata;
+import main.Metadata.Provenance;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -24,6 +30,32 @@ public class HandheldCameraTargetFinder extends TargetFinder {
         this.metadata = metadata;
     }
 
+    /**
+     * Creates and instance of HandheldCameraTargetFinder
+     * @param s3Key is the file name of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param metadata is the metadata of the S3Object
+     * @param labelDetector detects the labels in the S3Object
+     */
+    public HandheldCameraTargetFinder(String s3Key, String s3Bucket, HandheldCameraMetadata metadata,
+                                      LabelDetector labelDetector) {
+        super(s3Key, s3Bucket, metadata, labelDetector);
+        this.metadata = metadata;
+    }
+
+    /**
+     * Creates and instance of HandheldCameraTargetFinder for labels that were already detected
+     * @param s3Key is the file name of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param metadata is the metadata of the S3Object
+     * @param labels are the labels detected in the S3Object
+     */
+    public HandheldCameraTargetFinder(String s3Key, String s3Bucket, HandheldCameraMetadata metadata,
+                                      List<Label> labels) {
+        super(s3Key, s3Bucket, metadata, labels);
+        this.metadata = metadata;
+    }
+
     /**
      * Calculates the target Direction relative to East (0 to Pi (1,2))
      * (0 to -Pi (3, 4)). Takes account of camera direction.
@@ -104,8 +136,22 @@ public class HandheldCameraTargetFinder extends TargetFinder {
         jsonMap.put("cone_angle", Double.toString(calculateConeAngle(box)));
         jsonMap.put("cone_radius", "100");
         jsonMap.put("cone_direction", Double.toString(calculateTargetDirection(box)));
-        updateProvenance(", Sent to Elasticsearch: ");
-        jsonMap.put("provenance", metadata.getProvenance().toString());
+        jsonMap.put("provenance", metadata.getProvenance().snapshot().toJsonString());
         return jsonMap;
     }
+
+    /**
+     * Builds the document of a target
+     * @param box is the BoundingBox around a target
+     * @return the document
+     */
+    @Override
+    public TargetDocument getTargetDocument(BoundingBox box) {
+        double coneAngle = calculateConeAngle(box);
+        double coneDirection = calculateTargetDirection(box);
+        // every target of the frame shares the snapshot, and so its JSON
+        Provenance provenance = metadata.getProvenance().snapshot();
+        return new HandheldTargetDocument(metadata.getSensorID(), metadata.getSensorType(), metadata.getTimestamp(),
+                metadata.getLatitude(), metadata.getLongitude(), coneAngle, 100, coneDirection, provenance);
+    }
 }
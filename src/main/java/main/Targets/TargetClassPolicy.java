@@ -0,0 +1,163 @@
+package main.Targets;
+
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Instance;
+import com.amazonaws.services.rekognition.model.Label;
+import main.Config.Environment;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which detected labels are targets: the classes that are targets, the lowest confidence of each class,
+ * the smallest box and the number of labels requested from the detector.
+ * The classes are looked up in a map built once, so a label costs a single hash lookup of its name,
+ * whose hash the String caches.
+ */
+public class TargetClassPolicy {
+
+    private final Map<String, Float> minConfidences;
+    private final float minBoxSize;
+    private final int maxLabels;
+    private final float lowestConfidence;
+
+    /**
+     * Creates an instance of TargetClassPolicy
+     * @param minConfidences are the names of the target classes, e.g. Person, with the lowest confidence,
+     *                       from 0 to 100, of their instances
+     * @param minBoxSize is the smallest width and height of a box, as a fraction of the image
+     * @param maxLabels is the number of labels requested from the detector, 0 for all of them
+     */
+    public TargetClassPolicy(Map<String, Float> minConfidences, float minBoxSize, int maxLabels) {
+        if (minConfidences.isEmpty() || minBoxSize < 0 || maxLabels < 0) {
+            throw new IllegalArgumentException("There must be a target class and the limits cannot be negative.");
+        }
+        this.minConfidences = new HashMap<>(minConfidences);
+        this.minBoxSize = minBoxSize;
+        this.maxLabels = maxLabels;
+        this.lowestConfidence = Collections.min(minConfidences.values());
+    }
+
+    /**
+     * Creates an instance of TargetClassPolicy configured by the environment.
+     * TARGET_CLASSES lists the classes, e.g. Person:60,Human, where a class without a confidence takes
+     * TARGET_MIN_CONFIDENCE. TARGET_MIN_BOX_PERMILLE sets the smallest box in thousandths of the image
+     * and DETECTOR_MAX_LABELS the labels requested (0 requests all of them).
+     * @return the policy
+     */
+    public static TargetClassPolicy fromEnvironment() {
+        return new TargetClassPolicy(parseClasses(Environment.getString("TARGET_CLASSES", "Human,Person"),
+                Environment.getFloat("TARGET_MIN_CONFIDENCE", 50)),
+                Environment.getInt("TARGET_MIN_BOX_PERMILLE", 0) / 1000F,
+                Environment.getInt("DETECTOR_MAX_LABELS", 0));
+    }
+
+    /**
+     * Returns the policy shared by every invocation in this container
+     * @return the policy configured by the environment
+     */
+    public static TargetClassPolicy getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Parses a comma separated list of classes
+     * @param classes is the list, e.g. Person:60,Human
+     * @param defaultConfidence is the confidence of the classes without one
+     * @return the lowest confidence of each class
+     */
+    public static Map<String, Float> parseClasses(String classes, float defaultConfidence) {
+        Map<String, Float> parsed = new LinkedHashMap<>();
+        for (String entry : classes.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            float confidence = defaultConfidence;
+            int colon = entry.lastIndexOf(':');
+            if (colon >= 0) {
+                try {
+                    confidence = Float.parseFloat(entry.substring(colon + 1).trim());
+                }
+                catch (NumberFormatException e) {
+                    System.err.println("The confidence of " + entry + " is not a number, using "
+                            + defaultConfidence + ".");
+                }
+                entry = entry.substring(0, colon).trim();
+            }
+            parsed.put(entry, confidence);
+        }
+        return parsed;
+    }
+
+    /**
+     * Collects the boxes of the instances of target classes that are confident and large enough.
+     * An instance without a confidence takes the confidence of its label, and one without either is kept,
+     * the detector having applied its own minimum.
+     * @param labels are the labels detected in an image
+     * @return the boxes of the targets
+     */
+    public List<BoundingBox> getBoxes(List<Label> labels) {
+        List<BoundingBox> boxes = new ArrayList<>();
+        for (Label label : labels) {
+            Float minConfidence = minConfidences.get(label.getName());
+            if (minConfidence == null || label.getInstances() == null) {
+                continue;
+            }
+            for (Instance instance : label.getInstances()) {
+                Float confidence = instance.getConfidence() != null ? instance.getConfidence() : label.getConfidence();
+                BoundingBox box = instance.getBoundingBox();
+                if ((confidence == null || confidence >= minConfidence) && box != null && isLargeEnough(box)) {
+                    boxes.add(box);
+                }
+            }
+        }
+        return boxes;
+    }
+
+    private boolean isLargeEnough(BoundingBox box) {
+        return minBoxSize == 0 || (box.getWidth() != null && box.getWidth() >= minBoxSize
+                && box.getHeight() != null && box.getHeight() >= minBoxSize);
+    }
+
+    /**
+     * Getter
+     * @param name is the name of a class
+     * @return whether or not the class is a target class
+     */
+    public boolean isTargetClass(String name) {
+        return minConfidences.containsKey(name);
+    }
+
+    /**
+     * Getter
+     * @return the lowest confidence of any target class, which is all the detector needs to return
+     */
+    public float getLowestConfidence() {
+        return lowestConfidence;
+    }
+
+    /**
+     * Getter
+     * @return the number of labels requested from the detector, 0 for all of them
+     */
+    public int getMaxLabels() {
+        return maxLabels;
+    }
+
+    /**
+     * Getter
+     * @return the smallest width and height of a box, as a fraction of the image
+     */
+    public float getMinBoxSize() {
+        return minBoxSize;
+    }
+
+    private static class DefaultHolder {
+        private static final TargetClassPolicy INSTANCE = fromEnvironment();
+    }
+}
@@ -1,13 +1,15 @@
 package main.Targets;
 
-import com.amazonaws.services.rekognition.AmazonRekognition;
-import com.amazonaws.services.rekognition.AmazonRekognitionClientBuilder;
 import com.amazonaws.services.rekognition.model.*;
+import main.Clients.ClientRegistry;
+import main.Detection.ImageReference;
+import main.Detection.LabelDetector;
+import main.Documents.TargetDocument;
 import main.Metadata.Metadata;
+import main.Metadata.Provenance;
 
 import java.lang.Math.*;
 
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +23,7 @@ abstract public class TargetFinder {
     private String s3Key;
     private String s3Bucket;
     private Metadata metadata;
+    private LabelDetector labelDetector;
 
     /**
      * Superclass constructor
@@ -28,54 +31,84 @@ abstract public class TargetFinder {
      * @param s3Bucket is the bucket of the S3Object
      */
     public TargetFinder(String s3Key, String s3Bucket, Metadata metadata) {
+        this(s3Key, s3Bucket, metadata, ClientRegistry.getDefault().getLabelDetector());
+    }
+
+    /**
+     * Superclass constructor
+     * @param s3Key is the file name of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param labelDetector detects the labels in the S3Object
+     */
+    public TargetFinder(String s3Key, String s3Bucket, Metadata metadata, LabelDetector labelDetector) {
         this.s3Key = s3Key;
         this.s3Bucket = s3Bucket;
         this.metadata = metadata;
+        this.labelDetector = labelDetector;
         this.labels = detect();
     }
 
     /**
-     * Creates a Rekognition client and calls teh detectLabels() function.
+     * Superclass constructor for labels that were already detected
+     * @param s3Key is the file name of the S3Object
+     * @param s3Bucket is the bucket of the S3Object
+     * @param labels are the labels detected in the S3Object
+     */
+    public TargetFinder(String s3Key, String s3Bucket, Metadata metadata, List<Label> labels) {
+        this.s3Key = s3Key;
+        this.s3Bucket = s3Bucket;
+        this.metadata = metadata;
+        this.labels = labels;
+    }
+
+    /**
+     * Calls the detectLabels() function of the label detector.
      * @return List<Label> this list of labels
      */
     public List<Label> detect() {
-        AmazonRekognition rekognitionClient = AmazonRekognitionClientBuilder.defaultClient();
-        updateProvenance(", Sent to Rekognition: ");
-        DetectLabelsRequest request = new DetectLabelsRequest().withImage(new Image()
-                .withS3Object(new S3Object().withName(s3Key).withBucket(s3Bucket))).withMinConfidence(50F);
-        updateProvenance(", Received from Rekognition: ");
-        DetectLabelsResult result = rekognitionClient.detectLabels(request);
-        List<Label> labels = result.getLabels();
+        return detect(labelDetector, new ImageReference(s3Bucket, s3Key, null), metadata);
+    }
+
+    /**
+     * Calls the detectLabels() function of a label detector for an S3Object
+     * @param labelDetector detects the labels
+     * @param image is the S3Object
+     * @param metadata is the metadata whose provenance records the call
+     * @return List<Label> this list of labels
+     */
+    public static List<Label> detect(LabelDetector labelDetector, ImageReference image, Metadata metadata) {
+        metadata.getProvenance().setDetector(labelDetector.getName());
+        metadata.recordProvenance(Provenance.Stage.SENT_TO_DETECTOR);
+        List<Label> labels = labelDetector.detectLabels(image);
+        metadata.recordProvenance(Provenance.Stage.RECEIVED_FROM_DETECTOR);
         return labels;
     }
 
     /**
-     * Update the provenance field with the provided body and current time
-     * @param body
+     * Records in the provenance that a step happened now
+     * @param stage is the step
      */
-    public void updateProvenance(String body) {
-        StringBuilder provenance = metadata.getProvenance();
-        provenance.append(body);
-        long unixTime = Instant.now().toEpochMilli();
-        provenance.append(unixTime);
+    public void updateProvenance(Provenance.Stage stage) {
+        metadata.recordProvenance(stage);
     }
 
     /**
-     * Scans through Rekognition labels for Human and Person labels.
+     * Scans through the labels for the target classes of the default TargetClassPolicy, e.g. Human and Person.
      *
      * @return Bounding boxes for the targets identified
      */
     public List<BoundingBox> getBoxes() {
-        List<BoundingBox> boxes = new ArrayList<BoundingBox>();
-        for (Label label : labels) {
-            String name = label.getName();
-            if (name.equals("Human") || name.equals("Person")) {
-                for (Instance instance : label.getInstances()) {
-                    boxes.add(instance.getBoundingBox());
-                }
-            }
-        }
-        return boxes;
+        return getBoxes(TargetClassPolicy.getDefault());
+    }
+
+    /**
+     * Scans through the labels for the targets a policy accepts.
+     *
+     * @param policy decides which labels are targets
+     * @return Bounding boxes for the targets identified
+     */
+    public List<BoundingBox> getBoxes(TargetClassPolicy policy) {
+        return policy.getBoxes(labels);
     }
 
     /**
@@ -117,4 +150,37 @@ abstract public class TargetFinder {
      * @return Map<String, String> containing the data
      */
     abstract public Map<String, String> getTarget(BoundingBox box);
+
+    /**
+     * Returns the json formatted data of several targets
+     * @param boxes are the BoundingBoxes around the targets
+     * @return a Map<String, String> containing the data of each target
+     */
+    public List<Map<String, String>> getTargets(List<BoundingBox> boxes) {
+        List<Map<String, String>> targets = new ArrayList<>();
+        for (BoundingBox box : boxes) {
+            targets.add(getTarget(box));
+        }
+        return targets;
+    }
+
+    /**
+     * Builds the document of a target without converting the values to Strings
+     * @param box is the BoundingBox around the target
+     * @return the document
+     */
+    abstract public TargetDocument getTargetDocument(BoundingBox box);
+
+    /**
+     * Builds the documents of several targets
+     * @param boxes are the BoundingBoxes around the targets
+     * @return the document of each target
+     */
+    public List<TargetDocument> getTargetDocuments(List<BoundingBox> boxes) {
+        List<TargetDocument> documents = new ArrayList<>(boxes.size());
+        for (BoundingBox box : boxes) {
+            documents.add(getTargetDocument(box));
+        }
+        return documents;
+    }
 }
@@ -0,0 +1,340 @@
+package main.Targets;
+
+import main.Config.Environment;
+import main.Documents.TargetDocument;
+import main.Documents.TrackedTargetDocument;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Merges the targets a sensor reports again and again, e.g. the people below a hovering drone, into tracks.
+ * Every sensor keeps the tracks it saw within the last windowMillis in a spatial hash grid whose cells are
+ * distanceMeters wide, so a target is only compared with the tracks in its cell and the eight around it.
+ * A target closer than distanceMeters to a track continues it, the others start new tracks.
+ * A track is indexed under its own id, so an update replaces its document instead of adding one,
+ * and it is only indexed again once it moved by distanceMeters or updateMillis passed since it was last indexed.
+ * The state of a track changes before elasticsearch answers, so a frame that is processed again, e.g. because
+ * its documents were rejected, writes the last document of each of its tracks again instead of nothing.
+ * A track remembers the times of the last FRAME_HISTORY frames it took a target from to tell such a replay
+ * from a frame that merely arrived late, which is counted but writes nothing.
+ */
+public class TargetTracker {
+
+    private static final double METERS_PER_DEGREE = Math.PI * 6378137.0 / 180.0;
+    private static final int FRAME_HISTORY = 64;
+
+    private final double distanceMeters;
+    private final long windowMillis;
+    private final long updateMillis;
+    private final int maxSensors;
+    // least recently seen sensor first, so the sensors that stopped reporting are evicted
+    private final LinkedHashMap<String, SensorTracks> sensors;
+
+    /**
+     * Creates an instance of TargetTracker
+     * @param distanceMeters is how close a target must be to a track to continue it
+     * @param windowMillis is how long a track waits for its next target before it ends
+     * @param updateMillis is how often a track that did not move is indexed again
+     * @param maxSensors is the number of sensors whose tracks are kept
+     */
+    public TargetTracker(double distanceMeters, long windowMillis, long updateMillis, int maxSensors) {
+        if (distanceMeters <= 0 || windowMillis < 0 || updateMillis < 0 || maxSensors < 1) {
+            throw new IllegalArgumentException("The distance and the number of sensors must be positive.");
+        }
+        this.distanceMeters = distanceMeters;
+        this.windowMillis = windowMillis;
+        this.updateMillis = updateMillis;
+        this.maxSensors = maxSensors;
+        this.sensors = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Creates an instance of TargetTracker configured by the environment.
+     * TRACKING_DISTANCE_METERS sets the distance (0 turns tracking off), TRACKING_WINDOW_MILLIS the window,
+     * TRACKING_UPDATE_MILLIS how often a track is indexed again and TRACKING_MAX_SENSORS the sensors kept.
+     * @return the tracker, or null if tracking is off
+     */
+    public static TargetTracker fromEnvironment() {
+        int distanceMeters = Environment.getInt("TRACKING_DISTANCE_METERS", 5);
+        if (distanceMeters <= 0) {
+            return null;
+        }
+        return new TargetTracker(distanceMeters, Environment.getLong("TRACKING_WINDOW_MILLIS", 10000),
+                Environment.getLong("TRACKING_UPDATE_MILLIS", 5000), Environment.getInt("TRACKING_MAX_SENSORS", 10000));
+    }
+
+    /**
+     * Assigns the targets of a frame to the tracks of its sensor. Each track takes at most one target of the frame,
+     * the closest pairs being matched first.
+     * @param targets are the targets of one frame, all seen by the same sensor at the same time
+     * @return the documents of the tracks that need to be indexed, fewer than the targets when tracks did not move
+     */
+    public List<TrackedTargetDocument> track(List<TargetDocument> targets) {
+        if (targets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        TargetDocument first = targets.get(0);
+        long time = Long.parseLong(first.getTimestamp());
+        SensorTracks tracks = getTracks(first.getSensorId(), first.getLatitude());
+        synchronized (tracks) {
+            return tracks.track(targets, time);
+        }
+    }
+
+    /**
+     * Getter
+     * @return the number of sensors whose tracks are kept
+     */
+    public synchronized int getSensorCount() {
+        return sensors.size();
+    }
+
+    /**
+     * Getter
+     * @param sensorId is the id of the sensor
+     * @return the number of tracks of the sensor that have not ended
+     */
+    public int getTrackCount(String sensorId) {
+        SensorTracks tracks;
+        synchronized (this) {
+            tracks = sensors.get(sensorId);
+        }
+        if (tracks == null) {
+            return 0;
+        }
+        synchronized (tracks) {
+            return tracks.tracks.size();
+        }
+    }
+
+    private synchronized SensorTracks getTracks(String sensorId, double latitude) {
+        SensorTracks tracks = sensors.get(sensorId);
+        if (tracks == null) {
+            tracks = new SensorTracks(sensorId, latitude);
+            sensors.put(sensorId, tracks);
+            if (sensors.size() > maxSensors) {
+                Iterator<SensorTracks> eldest = sensors.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return tracks;
+    }
+
+    /**
+     * Tracks of one sensor, in a grid of cells distanceMeters wide. Longitudes are scaled by the latitude
+     * the sensor was first seen at, which is enough over the area a sensor covers.
+     */
+    private class SensorTracks {
+        private final String sensorId;
+        private final double metersPerDegreeLongitude;
+        private final Map<Long, List<Track>> grid = new HashMap<>();
+        private final List<Track> tracks = new ArrayList<>();
+
+        private SensorTracks(String sensorId, double latitude) {
+            this.sensorId = sensorId;
+            this.metersPerDegreeLongitude = METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude)));
+        }
+
+        private List<TrackedTargetDocument> track(List<TargetDocument> targets, long time) {
+            evict(time);
+            int count = targets.size();
+            double[] x = new double[count];
+            double[] y = new double[count];
+            List<Candidate> candidates = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                TargetDocument target = targets.get(i);
+                x[i] = target.getLongitude() * metersPerDegreeLongitude;
+                y[i] = target.getLatitude() * METERS_PER_DEGREE;
+                long column = cell(x[i]);
+                long row = cell(y[i]);
+                for (long dx = -1; dx <= 1; dx++) {
+                    for (long dy = -1; dy <= 1; dy++) {
+                        List<Track> cellTracks = grid.get(key(column + dx, row + dy));
+                        if (cellTracks == null) {
+                            continue;
+                        }
+                        for (Track track : cellTracks) {
+                            double distance = Math.hypot(track.x - x[i], track.y - y[i]);
+                            if (distance <= distanceMeters && Math.abs(time - track.lastSeen) <= windowMillis) {
+                                candidates.add(new Candidate(i, track, distance));
+                            }
+                        }
+                    }
+                }
+            }
+            candidates.sort((a, b) -> Double.compare(a.distance, b.distance));
+
+            Track[] assigned = new Track[count];
+            Set<Track> taken = new HashSet<>();
+            for (Candidate candidate : candidates) {
+                if (assigned[candidate.target] == null && taken.add(candidate.track)) {
+                    assigned[candidate.target] = candidate.track;
+                }
+            }
+
+            List<TrackedTargetDocument> documents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Track track = assigned[i];
+                if (track == null) {
+                    // the id only depends on the frame, so a frame processed twice writes the same documents
+                    track = new Track(sensorId + "-" + time + "-" + i, time, x[i], y[i]);
+                    track.consume(time);
+                    tracks.add(track);
+                    add(track);
+                    track.indexed(time, targets.get(i));
+                    documents.add(track.toDocument());
+                    continue;
+                }
+                if (!track.consume(time)) {
+                    // a frame processed again, whose document may not have been written
+                    documents.add(track.toDocument());
+                    continue;
+                }
+                track.detections++;
+                if (time < track.lastSeen) {
+                    // an older frame that arrived late does not move the track
+                    continue;
+                }
+                move(track, x[i], y[i]);
+                track.lastSeen = time;
+                if (time - track.indexedAt >= updateMillis
+                        || Math.hypot(track.x - track.indexedX, track.y - track.indexedY) >= distanceMeters) {
+                    track.indexed(time, targets.get(i));
+                    documents.add(track.toDocument());
+                }
+            }
+            return documents;
+        }
+
+        /**
+         * Ends the tracks that have not been seen within the window before a frame
+         * @param time is when the frame was captured in Unix time
+         */
+        private void evict(long time) {
+            Iterator<Track> iterator = tracks.iterator();
+            while (iterator.hasNext()) {
+                Track track = iterator.next();
+                if (time - track.lastSeen > windowMillis) {
+                    iterator.remove();
+                    remove(track);
+                }
+            }
+        }
+
+        private void move(Track track, double x, double y) {
+            long cellKey = key(cell(x), cell(y));
+            if (cellKey != track.cellKey) {
+                remove(track);
+                track.x = x;
+                track.y = y;
+                add(track);
+            }
+            else {
+                track.x = x;
+                track.y = y;
+            }
+        }
+
+        private void add(Track track) {
+            track.cellKey = key(cell(track.x), cell(track.y));
+            grid.computeIfAbsent(track.cellKey, ignored -> new ArrayList<>(2)).add(track);
+        }
+
+        private void remove(Track track) {
+            List<Track> cellTracks = grid.get(track.cellKey);
+            cellTracks.remove(track);
+            if (cellTracks.isEmpty()) {
+                grid.remove(track.cellKey);
+            }
+        }
+
+        private long cell(double meters) {
+            return (long) Math.floor(meters / distanceMeters);
+        }
+    }
+
+    private static long key(long column, long row) {
+        return (column << 32) ^ (row & 0xffffffffL);
+    }
+
+    /**
+     * A target followed across frames, in meters on the grid of its sensor
+     */
+    private static class Track {
+        private final String id;
+        private final long firstSeen;
+        private long lastSeen;
+        private int detections = 1;
+        private double x;
+        private double y;
+        private long cellKey;
+        private long indexedAt;
+        private double indexedX;
+        private double indexedY;
+        private TargetDocument indexedTarget;
+        // the capture times of the last frames the track took a target from, as a ring
+        private final long[] frames = new long[FRAME_HISTORY];
+        private int frameCount;
+        private int nextFrame;
+
+        private Track(String id, long firstSeen, double x, double y) {
+            this.id = id;
+            this.firstSeen = firstSeen;
+            this.lastSeen = firstSeen;
+            this.x = x;
+            this.y = y;
+        }
+
+        /**
+         * Remembers that the track took a target from a frame
+         * @param time is when the frame was captured in Unix time
+         * @return false if the track already took a target from the frame
+         */
+        private boolean consume(long time) {
+            for (int i = 0; i < frameCount; i++) {
+                if (frames[i] == time) {
+                    return false;
+                }
+            }
+            frames[nextFrame] = time;
+            nextFrame = (nextFrame + 1) % frames.length;
+            frameCount = Math.min(frameCount + 1, frames.length);
+            return true;
+        }
+
+        private void indexed(long time, TargetDocument target) {
+            indexedAt = time;
+            indexedX = x;
+            indexedY = y;
+            indexedTarget = target;
+        }
+
+        private TrackedTargetDocument toDocument() {
+            return new TrackedTargetDocument(indexedTarget, id, firstSeen, detections);
+        }
+    }
+
+    /**
+     * A track close enough to a target of the frame to continue with it
+     */
+    private static class Candidate {
+        private final int target;
+        private final Track track;
+        private final double distance;
+
+        private Candidate(int target, Track track, double distance) {
+            this.target = target;
+            this.track = track;
+            this.distance = distance;
+        }
+    }
+}
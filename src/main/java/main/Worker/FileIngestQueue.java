@@ -0,0 +1,147 @@
+package main.Worker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IngestQueue stored as one file per message, for running a worker locally without SQS.
+ * Messages wait in the pending folder and are moved to the inflight folder while they are processed.
+ * The file name holds the id of the message and the number of times it was received, e.g. 1592399997905-000001.2.json.
+ * Messages left in flight by a worker that stopped are made pending again when the queue is opened,
+ * so the folder must only be used by one worker at a time.
+ */
+public class FileIngestQueue implements IngestQueue {
+
+    private static final String SUFFIX = ".json";
+    private static final long POLL_MILLIS = 50;
+
+    private final Path directory;
+    private final Path pending;
+    private final Path inFlight;
+    private final AtomicInteger sequence = new AtomicInteger();
+
+    /**
+     * Creates an instance of FileIngestQueue and recovers the messages a previous worker left in flight
+     * @param directory is the folder of the queue
+     * @throws IOException if the folders could not be created
+     */
+    public FileIngestQueue(Path directory) throws IOException {
+        this.directory = directory;
+        this.pending = directory.resolve("pending");
+        this.inFlight = directory.resolve("inflight");
+        Files.createDirectories(pending);
+        Files.createDirectories(inFlight);
+        for (Path file : list(inFlight)) {
+            move(file, pending.resolve(file.getFileName()));
+        }
+    }
+
+    /**
+     * Adds a message to the queue
+     * @param body is the S3 event notification
+     * @return the id of the message
+     * @throws IOException if the message could not be written
+     */
+    @Override
+    public String send(String body) throws IOException {
+        String id = String.format("%013d-%06d", System.currentTimeMillis(), sequence.incrementAndGet() % 1000000);
+        // written next to the folders first, so a receiver never sees a partial message
+        Path temp = directory.resolve(id + ".tmp");
+        Files.write(temp, body.getBytes(StandardCharsets.UTF_8));
+        move(temp, pending.resolve(id + ".0" + SUFFIX));
+        return id;
+    }
+
+    @Override
+    public List<QueueMessage> receive(int maxMessages, long waitMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        List<QueueMessage> messages = new ArrayList<>();
+        while (true) {
+            for (Path file : list(pending)) {
+                if (messages.size() == maxMessages) {
+                    break;
+                }
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                String id = name.substring(0, dot);
+                int receiveCount = Integer.parseInt(name.substring(dot + 1, name.length() - SUFFIX.length())) + 1;
+                String receipt = id + "." + receiveCount + SUFFIX;
+                try {
+                    move(file, inFlight.resolve(receipt));
+                }
+                catch (NoSuchFileException e) {
+                    continue;
+                }
+                String body = new String(Files.readAllBytes(inFlight.resolve(receipt)), StandardCharsets.UTF_8);
+                messages.add(new QueueMessage(id, receipt, body, receiveCount));
+            }
+            if (!messages.isEmpty() || System.currentTimeMillis() >= deadline) {
+                return messages;
+            }
+            try {
+                Thread.sleep(Math.min(POLL_MILLIS, Math.max(1, deadline - System.currentTimeMillis())));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return messages;
+            }
+        }
+    }
+
+    @Override
+    public void acknowledge(QueueMessage message) throws IOException {
+        Files.deleteIfExists(inFlight.resolve(message.getReceipt()));
+    }
+
+    @Override
+    public void release(QueueMessage message) throws IOException {
+        try {
+            move(inFlight.resolve(message.getReceipt()), pending.resolve(message.getReceipt()));
+        }
+        catch (NoSuchFileException e) {
+            // already acknowledged or released
+        }
+    }
+
+    /**
+     * Lists the messages of a folder, oldest first
+     * @param folder is the pending or inflight folder
+     * @return the files of the messages
+     * @throws IOException if the folder could not be read
+     */
+    private static List<Path> list(Path folder) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * Moves a file, atomically where the file system allows it
+     * @param source is the file
+     * @param target is where it goes
+     * @throws IOException if the file could not be moved
+     */
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package main.Worker;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Queue of S3 event notifications waiting to be processed.
+ * A received message stays hidden from other receivers until it is acknowledged, which removes it,
+ * or released, which makes it available again.
+ */
+public interface IngestQueue {
+
+    /**
+     * Receives the next messages, waiting up to waitMillis for one to arrive
+     * @param maxMessages is the largest number of messages returned
+     * @param waitMillis is how long to wait when the queue is empty
+     * @return the messages, empty if none arrived in time
+     * @throws IOException if the queue could not be read
+     */
+    List<QueueMessage> receive(int maxMessages, long waitMillis) throws IOException;
+
+    /**
+     * Adds a message to the queue
+     * @param body is the S3 event notification
+     * @return the id of the message
+     * @throws IOException if the message could not be sent
+     */
+    String send(String body) throws IOException;
+
+    /**
+     * Removes a message once it has been processed
+     * @param message is the message
+     * @throws IOException if the queue could not be updated
+     */
+    void acknowledge(QueueMessage message) throws IOException;
+
+    /**
+     * Makes a message available again so that it is retried
+     * @param message is the message
+     * @throws IOException if the queue could not be updated
+     */
+    void release(QueueMessage message) throws IOException;
+
+    /**
+     * Releases the connections of the queue
+     */
+    default void close() {
+    }
+}
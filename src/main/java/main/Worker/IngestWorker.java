@@ -0,0 +1,317 @@
+package main.Worker;
+
+import com.amazonaws.services.sqs.AmazonSQSClientBuilder;
+import main.Clients.ClientRegistry;
+import main.Config.Environment;
+import main.Elastic.IndexTemplates;
+import main.Lambda.BatchProcessor;
+import main.Lambda.IngestRecord;
+import main.Lambda.RecordProcessor;
+import main.Lambda.RecordResult;
+import main.Metrics.EmfExporter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running alternative to the Lambda Handler that pulls S3 event notifications from a queue.
+ * Records go through the same RecordProcessor as in the Handler, with clients that live as long as the worker.
+ * A message is acknowledged only after elasticsearch has answered for every document of its records.
+ * It is released, and so retried, when every record failed or elasticsearch could not take their documents.
+ * When only some records of a message failed, a message with just those is sent and the original acknowledged,
+ * so the records that were indexed are not processed, and their targets written, again.
+ * The new message starts its receive count over, but it holds fewer records every time,
+ * and one whose records all fail is released until the queue moves it to the dead-letter queue.
+ */
+public class IngestWorker implements Runnable {
+
+    private static final int ACK_THREADS = 4;
+    private static final long RECEIVE_ERROR_BACKOFF_MILLIS = 1000;
+
+    private final IngestQueue queue;
+    private final RecordProcessor recordProcessor;
+    private final int maxInFlight;
+    private final long waitMillis;
+    private final Semaphore permits;
+    // acknowledging calls the queue, which must not happen on the threads that deliver elasticsearch's answers
+    private final ExecutorService acknowledger;
+    private final AtomicLong acknowledged = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Creates an instance of IngestWorker
+     * @param queue is the queue of S3 event notifications
+     * @param recordProcessor processes a single record
+     * @param maxInFlight is the number of messages processed at the same time
+     * @param waitMillis is how long a receive waits for messages
+     */
+    public IngestWorker(IngestQueue queue, RecordProcessor recordProcessor, int maxInFlight, long waitMillis) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one message must be in flight.");
+        }
+        this.queue = queue;
+        this.recordProcessor = recordProcessor;
+        this.maxInFlight = maxInFlight;
+        this.waitMillis = waitMillis;
+        this.permits = new Semaphore(maxInFlight);
+        this.acknowledger = Executors.newFixedThreadPool(ACK_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "queue-acknowledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs the worker with the default clients. The queue is the folder WORKER_QUEUE_DIR when it is set,
+     * otherwise the SQS queue WORKER_QUEUE_URL. WORKER_CONCURRENCY sets the messages in flight.
+     * The index templates are installed before the first message, unless WORKER_INSTALL_TEMPLATES is false.
+     * @param args are not used
+     * @throws IOException if the queue could not be opened or the templates could not be installed
+     */
+    public static void main(String[] args) throws IOException {
+        ClientRegistry clients = ClientRegistry.getDefault();
+        if (Environment.getBoolean("WORKER_INSTALL_TEMPLATES", true)) {
+            clients.getElasticClient().installTemplates(IndexTemplates.fromEnvironment());
+        }
+        int concurrency = Environment.getInt("WORKER_CONCURRENCY", 32);
+        // every record in flight runs at most two stages at once
+        RecordProcessor recordProcessor = new RecordProcessor(clients,
+                BatchProcessor.createExecutor(Environment.getString("RECORD_EXECUTOR", "virtual"), 2 * concurrency));
+        IngestWorker worker = new IngestWorker(createQueue(), recordProcessor, concurrency,
+                Environment.getLong("WORKER_WAIT_MILLIS", 20000));
+        ScheduledExecutorService metricsExporter = exportMetrics(clients);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            worker.close(Environment.getLong("WORKER_SHUTDOWN_MILLIS", 30000));
+            clients.close();
+            if (metricsExporter != null) {
+                metricsExporter.shutdownNow();
+                EmfExporter.fromEnvironment().export(clients.getMetrics().drain());
+            }
+        }));
+        worker.run();
+    }
+
+    /**
+     * Writes the metrics of the clients to standard output every METRICS_INTERVAL_MILLIS, unless METRICS_EMF is false
+     * @param clients is the registry whose metrics are written
+     * @return the thread writing them, or null if they are not written
+     */
+    private static ScheduledExecutorService exportMetrics(ClientRegistry clients) {
+        if (!Environment.getBoolean("METRICS_EMF", true)) {
+            return null;
+        }
+        EmfExporter exporter = EmfExporter.fromEnvironment();
+        long intervalMillis = Environment.getLong("METRICS_INTERVAL_MILLIS", 60000);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(() -> exporter.export(clients.getMetrics().drain()),
+                intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return scheduler;
+    }
+
+    /**
+     * Creates the queue chosen by the environment
+     * @return the queue
+     * @throws IOException if the queue folder could not be created
+     */
+    public static IngestQueue createQueue() throws IOException {
+        String directory = Environment.getString("WORKER_QUEUE_DIR", null);
+        if (directory != null) {
+            return new FileIngestQueue(Paths.get(directory));
+        }
+        String queueUrl = Environment.getString("WORKER_QUEUE_URL", null);
+        if (queueUrl == null) {
+            throw new IllegalStateException("Set WORKER_QUEUE_URL or WORKER_QUEUE_DIR.");
+        }
+        return new SqsIngestQueue(AmazonSQSClientBuilder.defaultClient(), queueUrl,
+                Environment.getInt("WORKER_RETRY_DELAY_SECONDS", 30));
+    }
+
+    /**
+     * Receives and processes messages until the worker is stopped.
+     * Messages are only received while fewer than maxInFlight are being processed.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            int capacity;
+            try {
+                permits.acquire();
+                capacity = 1 + permits.drainPermits();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            List<QueueMessage> messages;
+            try {
+                messages = running ? queue.receive(capacity, waitMillis) : new ArrayList<>();
+            }
+            catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                permits.release(capacity);
+                sleep(RECEIVE_ERROR_BACKOFF_MILLIS);
+                continue;
+            }
+            permits.release(capacity - messages.size());
+            for (QueueMessage message : messages) {
+                processRecords(message).whenCompleteAsync((outcome, error) -> {
+                    try {
+                        if (error == null && outcome.incomplete.isEmpty()) {
+                            queue.acknowledge(message);
+                            acknowledged.incrementAndGet();
+                        }
+                        else if (error == null && outcome.incomplete.size() < outcome.recordCount) {
+                            // sent first, so a crash in between repeats the records instead of losing them
+                            queue.send(IngestRecord.toNotification(outcome.incomplete));
+                            queue.acknowledge(message);
+                            requeued.incrementAndGet();
+                        }
+                        else {
+                            queue.release(message);
+                            released.incrementAndGet();
+                        }
+                    }
+                    catch (IOException | RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                    finally {
+                        permits.release();
+                    }
+                }, acknowledger);
+            }
+        }
+    }
+
+    /**
+     * Processes the records of a message
+     * @param message is the message
+     * @return a future that completes with whether or not the message can be acknowledged
+     */
+    public CompletableFuture<Boolean> process(QueueMessage message) {
+        return processRecords(message).thenApply(outcome -> outcome.incomplete.isEmpty());
+    }
+
+    /**
+     * Processes the records of a message and collects the ones that need to be retried
+     * @param message is the message
+     * @return a future that completes with the records whose documents were not all indexed
+     */
+    private CompletableFuture<Outcome> processRecords(QueueMessage message) {
+        List<IngestRecord> records;
+        try {
+            records = IngestRecord.fromNotification(message.getBody());
+        }
+        catch (IllegalArgumentException e) {
+            // retrying cannot fix the message, so it is dropped
+            System.err.println("Dropping message " + message + ": " + e.getMessage());
+            return CompletableFuture.completedFuture(new Outcome(0, new ArrayList<>()));
+        }
+        List<CompletableFuture<Boolean>> outcomes = new ArrayList<>();
+        for (IngestRecord record : records) {
+            outcomes.add(recordProcessor.processAsync(record).thenCompose(RecordResult::isComplete));
+        }
+        return CompletableFuture.allOf(outcomes.toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            List<IngestRecord> incomplete = new ArrayList<>();
+            for (int i = 0; i < records.size(); i++) {
+                if (!outcomes.get(i).join()) {
+                    incomplete.add(records.get(i));
+                }
+            }
+            return new Outcome(records.size(), incomplete);
+        });
+    }
+
+    /**
+     * Getter
+     * @return the number of messages acknowledged
+     */
+    public long getAcknowledged() {
+        return acknowledged.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of messages released for a retry
+     */
+    public long getReleased() {
+        return released.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of messages acknowledged after their failed records were sent as a new message
+     */
+    public long getRequeued() {
+        return requeued.get();
+    }
+
+    /**
+     * Getter
+     * @return the number of messages being received or processed
+     */
+    public int getInFlight() {
+        return maxInFlight - permits.availablePermits();
+    }
+
+    /**
+     * Stops receiving messages. Messages already received are still processed.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * Stops the worker, waits for the messages in flight and closes the queue
+     * @param timeoutMillis is how long to wait for the messages in flight
+     */
+    public void close(long timeoutMillis) {
+        stop();
+        try {
+            if (permits.tryAcquire(maxInFlight, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                permits.release(maxInFlight);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        acknowledger.shutdown();
+        queue.close();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records of a message that need to be retried
+     */
+    private static class Outcome {
+        private final int recordCount;
+        private final List<IngestRecord> incomplete;
+
+        private Outcome(int recordCount, List<IngestRecord> incomplete) {
+            this.recordCount = recordCount;
+            this.incomplete = incomplete;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package main.Worker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IngestQueue held in memory, for tests and for feeding a worker from the same process.
+ * Messages are lost when the process exits.
+ */
+public class MemoryIngestQueue implements IngestQueue {
+
+    private final BlockingQueue<QueueMessage> pending = new LinkedBlockingQueue<>();
+    private final Map<String, QueueMessage> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger acknowledged = new AtomicInteger();
+
+    /**
+     * Adds a message to the queue
+     * @param body is the S3 event notification
+     * @return the id of the message
+     */
+    @Override
+    public String send(String body) {
+        String id = String.valueOf(ids.incrementAndGet());
+        pending.add(new QueueMessage(id, id, body, 0));
+        return id;
+    }
+
+    @Override
+    public List<QueueMessage> receive(int maxMessages, long waitMillis) {
+        List<QueueMessage> messages = new ArrayList<>();
+        try {
+            QueueMessage first = pending.poll(waitMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return messages;
+            }
+            messages.add(first);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return messages;
+        }
+        pending.drainTo(messages, maxMessages - 1);
+        List<QueueMessage> received = new ArrayList<>();
+        for (QueueMessage message : messages) {
+            // every delivery gets its own receipt, so a stale receipt cannot acknowledge a later delivery
+            String receipt = message.getId() + "-" + (message.getReceiveCount() + 1);
+            QueueMessage delivery = new QueueMessage(message.getId(), receipt, message.getBody(),
+                    message.getReceiveCount() + 1);
+            inFlight.put(receipt, delivery);
+            received.add(delivery);
+        }
+        return received;
+    }
+
+    @Override
+    public void acknowledge(QueueMessage message) {
+        if (inFlight.remove(message.getReceipt()) != null) {
+            acknowledged.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void release(QueueMessage message) {
+        if (inFlight.remove(message.getReceipt()) != null) {
+            pending.add(message);
+        }
+    }
+
+    /**
+     * Getter
+     * @return the number of messages waiting to be received
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Getter
+     * @return the number of messages received and neither acknowledged nor released
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Getter
+     * @return the number of messages acknowledged
+     */
+    public int getAcknowledgedCount() {
+        return acknowledged.get();
+    }
+}
@@ -0,0 +1,63 @@
+package main.Worker;
+
+/**
+ * A message received from an IngestQueue
+ */
+public class QueueMessage {
+
+    private final String id;
+    private final String receipt;
+    private final String body;
+    private final int receiveCount;
+
+    /**
+     * Creates an instance of QueueMessage
+     * @param id identifies the message
+     * @param receipt identifies this delivery of the message to the queue
+     * @param body is the S3 event notification
+     * @param receiveCount is the number of times the message has been received, including this one
+     */
+    public QueueMessage(String id, String receipt, String body, int receiveCount) {
+        this.id = id;
+        this.receipt = receipt;
+        this.body = body;
+        this.receiveCount = receiveCount;
+    }
+
+    /**
+     * Getter
+     * @return the id of the message
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Getter
+     * @return the receipt of this delivery
+     */
+    public String getReceipt() {
+        return receipt;
+    }
+
+    /**
+     * Getter
+     * @return the S3 event notification
+     */
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * Getter
+     * @return the number of times the message has been received
+     */
+    public int getReceiveCount() {
+        return receiveCount;
+    }
+
+    @Override
+    public String toString() {
+        return id + " (received " + receiveCount + " times)";
+    }
+}
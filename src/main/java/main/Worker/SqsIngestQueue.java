@@ -0,0 +1,77 @@
+package main.Worker;
+
+import com.amazonaws.services.sqs.AmazonSQS;
+import com.amazonaws.services.sqs.model.Message;
+import com.amazonaws.services.sqs.model.ReceiveMessageRequest;
+import com.amazonaws.services.sqs.model.SendMessageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IngestQueue backed by an SQS queue the bucket sends its event notifications to.
+ * A released message becomes visible again after retryDelaySeconds, so a record that keeps failing
+ * is retried at that pace and ends up in the dead-letter queue configured on the queue.
+ */
+public class SqsIngestQueue implements IngestQueue {
+
+    private static final String RECEIVE_COUNT = "ApproximateReceiveCount";
+
+    private final AmazonSQS sqs;
+    private final String queueUrl;
+    private final int retryDelaySeconds;
+
+    /**
+     * Creates an instance of SqsIngestQueue
+     * @param sqs is the SQS client
+     * @param queueUrl is the url of the queue
+     * @param retryDelaySeconds is how long a released message stays hidden
+     */
+    public SqsIngestQueue(AmazonSQS sqs, String queueUrl, int retryDelaySeconds) {
+        this.sqs = sqs;
+        this.queueUrl = queueUrl;
+        this.retryDelaySeconds = retryDelaySeconds;
+    }
+
+    @Override
+    public List<QueueMessage> receive(int maxMessages, long waitMillis) {
+        // SQS returns at most 10 messages and long polls for at most 20 seconds
+        ReceiveMessageRequest request = new ReceiveMessageRequest(queueUrl)
+                .withMaxNumberOfMessages(Math.max(1, Math.min(10, maxMessages)))
+                .withWaitTimeSeconds((int) Math.min(20, waitMillis / 1000))
+                .withAttributeNames(RECEIVE_COUNT);
+        List<QueueMessage> messages = new ArrayList<>();
+        for (Message message : sqs.receiveMessage(request).getMessages()) {
+            String receiveCount = message.getAttributes().get(RECEIVE_COUNT);
+            messages.add(new QueueMessage(message.getMessageId(), message.getReceiptHandle(), message.getBody(),
+                    receiveCount == null ? 1 : Integer.parseInt(receiveCount)));
+        }
+        return messages;
+    }
+
+    /**
+     * Sends a message that becomes visible after retryDelaySeconds, like a released one
+     * @param body is the S3 event notification
+     * @return the id of the message
+     */
+    @Override
+    public String send(String body) {
+        return sqs.sendMessage(new SendMessageRequest(queueUrl, body).withDelaySeconds(retryDelaySeconds))
+                .getMessageId();
+    }
+
+    @Override
+    public void acknowledge(QueueMessage message) {
+        sqs.deleteMessage(queueUrl, message.getReceipt());
+    }
+
+    @Override
+    public void release(QueueMessage message) {
+        sqs.changeMessageVisibility(queueUrl, message.getReceipt(), retryDelaySeconds);
+    }
+
+    @Override
+    public void close() {
+        sqs.shutdown();
+    }
+}
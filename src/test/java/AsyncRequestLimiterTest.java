@@ -0,0 +1,127 @@
+import main.Elastic.AsyncRequestLimiter;
+import main.Elastic.RetryPolicy;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncRequestLimiterTest {
+
+    private static final RetryPolicy RETRY = new RetryPolicy(3, 1, 10);
+
+    private static ResponseException throttled;
+    private static ResponseException unavailable;
+    private static ResponseException badRequest;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        throttled = rejection(429);
+        unavailable = rejection(503);
+        badRequest = rejection(400);
+    }
+
+    /**
+     * Gets the exception the rest client fails with when elasticsearch answers with the given status
+     */
+    private static ResponseException rejection(int status) throws IOException {
+        try (ElasticStandIn standIn = new ElasticStandIn();
+             RestClient client = RestClient.builder(new HttpHost("localhost", standIn.getPort(), "http")).build()) {
+            standIn.rejectRequests(status, 1);
+            return assertThrows(ResponseException.class, () -> client.performRequest(new Request("GET", "/")));
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Exception e) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    @Test
+    void retriesThrottledRequestsTest() throws Exception {
+        try (AsyncRequestLimiter limiter = new AsyncRequestLimiter(2, RETRY)) {
+            AtomicInteger attempts = new AtomicInteger();
+            CompletableFuture<String> future = limiter.submit(() -> attempts.incrementAndGet() < 3
+                    ? failed(throttled) : CompletableFuture.completedFuture("indexed"));
+            assertEquals("indexed", future.get(5, TimeUnit.SECONDS));
+            assertEquals(3, attempts.get());
+            assertEquals(2, limiter.getRetries());
+            assertEquals(0, limiter.getInFlight());
+        }
+    }
+
+    @Test
+    void givesUpAfterMaxRetriesTest() throws Exception {
+        try (AsyncRequestLimiter limiter = new AsyncRequestLimiter(2, RETRY)) {
+            AtomicInteger attempts = new AtomicInteger();
+            CompletableFuture<String> future = limiter.submit(() -> {
+                attempts.incrementAndGet();
+                return failed(unavailable);
+            });
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertSame(unavailable, e.getCause());
+            assertEquals(4, attempts.get());
+        }
+    }
+
+    @Test
+    void doesNotRetryBadRequestsTest() {
+        try (AsyncRequestLimiter limiter = new AsyncRequestLimiter(2, RETRY)) {
+            AtomicInteger attempts = new AtomicInteger();
+            CompletableFuture<String> invalid = limiter.submit(() -> {
+                attempts.incrementAndGet();
+                return failed(badRequest);
+            });
+            assertTrue(invalid.isCompletedExceptionally());
+            assertEquals(1, attempts.get());
+        }
+    }
+
+    @Test
+    void blocksWhenFullTest() throws Exception {
+        try (AsyncRequestLimiter limiter = new AsyncRequestLimiter(2, RETRY)) {
+            List<CompletableFuture<String>> waiting = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                limiter.submit(() -> {
+                    CompletableFuture<String> answer = new CompletableFuture<>();
+                    waiting.add(answer);
+                    return answer;
+                });
+            }
+            assertEquals(2, limiter.getInFlight());
+            CountDownLatch submitted = new CountDownLatch(1);
+            Thread producer = new Thread(() -> {
+                limiter.submit(() -> CompletableFuture.completedFuture("third"));
+                submitted.countDown();
+            });
+            producer.start();
+            assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+            waiting.get(0).complete("first");
+            assertTrue(submitted.await(5, TimeUnit.SECONDS));
+            waiting.get(1).complete("second");
+            producer.join();
+            assertEquals(0, limiter.getInFlight());
+        }
+    }
+
+    @Test
+    void backoffIsBoundedTest() {
+        for (int retries = 0; retries < 40; retries++) {
+            long backoff = RETRY.backoffMillis(retries);
+            assertTrue(backoff >= 0 && backoff <= Math.min(10, 1L << Math.min(retries, 30)), "backoff " + backoff);
+        }
+    }
+}
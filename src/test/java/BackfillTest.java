@@ -0,0 +1,197 @@
+import com.amazonaws.services.rekognition.AbstractAmazonRekognition;
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.DetectLabelsRequest;
+import com.amazonaws.services.rekognition.model.DetectLabelsResult;
+import com.amazonaws.services.rekognition.model.Instance;
+import com.amazonaws.services.rekognition.model.Label;
+import main.Backfill.BackfillCheckpoint;
+import main.Backfill.BackfillRunner;
+import main.Backfill.KeyRange;
+import main.Clients.ClientRegistry;
+import main.Detection.RekognitionLabelDetector;
+import main.Detection.TokenBucket;
+import main.Elastic.ElasticClient;
+import main.Lambda.BatchProcessor;
+import main.Lambda.RecordProcessor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackfillTest {
+
+    private static final String BUCKET = "archive";
+    private static final Set<String> FAILING_KEYS = ConcurrentHashMap.newKeySet();
+    private static final Set<String> DETECTED_KEYS = ConcurrentHashMap.newKeySet();
+
+    private static S3StandIn s3StandIn;
+    private static ElasticStandIn elasticStandIn;
+    private static ExecutorService executor;
+    private static ClientRegistry clients;
+
+    /**
+     * Rekognition client that finds one person, and fails for the keys in FAILING_KEYS
+     */
+    private static class StubRekognition extends AbstractAmazonRekognition {
+        @Override
+        public DetectLabelsResult detectLabels(DetectLabelsRequest request) {
+            String key = request.getImage().getS3Object().getName();
+            if (FAILING_KEYS.contains(key)) {
+                throw new IllegalStateException("Detection of " + key + " failed.");
+            }
+            DETECTED_KEYS.add(key);
+            Instance person = new Instance().withBoundingBox(new BoundingBox()
+                    .withLeft(0.4F).withTop(0.4F).withWidth(0.1F).withHeight(0.2F));
+            return new DetectLabelsResult().withLabels(new Label().withName("Person").withInstances(person));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    @BeforeAll
+    static void setup() throws IOException {
+        s3StandIn = new S3StandIn();
+        elasticStandIn = new ElasticStandIn();
+        executor = BatchProcessor.createExecutor("work-stealing", 8);
+        int port = elasticStandIn.getPort();
+        clients = new ClientRegistry(s3StandIn::createClient, StubRekognition::new,
+                () -> new ElasticClient("localhost", port, "http"),
+                registry -> new RekognitionLabelDetector(registry.getRekognitionClient()));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        clients.close();
+        executor.shutdown();
+        elasticStandIn.close();
+        s3StandIn.close();
+    }
+
+    private static List<String> putFrames(String prefix, String... names) {
+        Map<String, String> userMetadata = new HashMap<>();
+        userMetadata.put("sensor_id", "7");
+        userMetadata.put("sensor_type", "drone");
+        userMetadata.put("timestamp", "1592399997905");
+        userMetadata.put("fov", "75.5");
+        userMetadata.put("latitude", "40.0");
+        userMetadata.put("longitude", "-105.0");
+        userMetadata.put("yaw", "0.5");
+        userMetadata.put("altitude", "100");
+        List<String> keys = new ArrayList<>();
+        for (String name : names) {
+            s3StandIn.putObject(BUCKET, prefix + name, new byte[]{1, 2, 3}, userMetadata);
+            keys.add(prefix + name);
+        }
+        return keys;
+    }
+
+    private static BackfillRunner runner(String prefix, Path file, int ranges) throws IOException {
+        List<KeyRange> split = KeyRange.split(prefix, ranges);
+        return new BackfillRunner(clients, new RecordProcessor(clients, executor), BUCKET, split,
+                BackfillCheckpoint.load(file, BUCKET, split), 8, 2, 3,
+                new TokenBucket(1000, 100), new TokenBucket(1000, 100), 50);
+    }
+
+    @Test
+    void splitCoversEveryKeyOnceTest() {
+        List<KeyRange> ranges = KeyRange.split("droneIngest/", 16);
+        assertEquals(16, ranges.size());
+        for (String key : Arrays.asList("droneIngest/", "droneIngest/0", "droneIngest/-a", "droneIngest/9z",
+                "droneIngest/A", "droneIngest/Zz", "droneIngest/a", "droneIngest/m/frame.jpg", "droneIngest/z",
+                "droneIngest/~", "droneIngest/é")) {
+            int containing = 0;
+            for (KeyRange range : ranges) {
+                if (range.contains(key)) {
+                    containing++;
+                }
+            }
+            assertEquals(1, containing, key);
+        }
+        assertFalse(ranges.get(0).contains("groundIngest/a"));
+    }
+
+    @Test
+    void backfillsEveryKeyAcrossPagesAndRangesTest() throws Exception {
+        List<String> keys = putFrames("droneIngest/all/", "0.jpg", "1.jpg", "5.jpg", "9.jpg", "A.jpg", "M.jpg",
+                "Q.jpg", "Z.jpg", "a.jpg", "b.jpg", "k/1.jpg", "k/2.jpg", "q.jpg", "x.jpg", "z.jpg", "~.jpg");
+        Path file = Files.createTempDirectory("backfill").resolve("all.checkpoint");
+        BackfillRunner runner = runner("droneIngest/all/", file, 4);
+        assertTrue(runner.run());
+        assertEquals(keys.size(), runner.getListed());
+        assertEquals(keys.size(), runner.getProcessed());
+        assertEquals(0, runner.getInFlight());
+        // pages of three keys, and every range ends on a page of its own
+        assertTrue(runner.getPages() >= keys.size() / 3 + 1);
+        assertTrue(DETECTED_KEYS.containsAll(keys));
+
+        // a finished backfill lists nothing again
+        BackfillRunner again = runner("droneIngest/all/", file, 4);
+        assertTrue(again.run());
+        assertEquals(0, again.getListed());
+        assertEquals(0, again.getPages());
+    }
+
+    @Test
+    void retriesFailedKeysOnResumeTest() throws Exception {
+        List<String> keys = putFrames("droneIngest/retry/", "a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg");
+        FAILING_KEYS.add("droneIngest/retry/c.jpg");
+        Path file = Files.createTempDirectory("backfill").resolve("retry.checkpoint");
+        BackfillRunner first = runner("droneIngest/retry/", file, 2);
+        assertFalse(first.run());
+        assertEquals(4, first.getProcessed());
+        assertEquals(1, first.getFailed());
+        assertEquals(Collections.singletonList("droneIngest/retry/c.jpg"),
+                BackfillCheckpoint.load(file, BUCKET, KeyRange.split("droneIngest/retry/", 2)).getFailed());
+
+        FAILING_KEYS.clear();
+        BackfillRunner second = runner("droneIngest/retry/", file, 2);
+        assertTrue(second.run());
+        assertEquals(0, second.getListed());
+        assertEquals(1, second.getProcessed());
+        assertEquals(0, BackfillCheckpoint.load(file, BUCKET, KeyRange.split("droneIngest/retry/", 2))
+                .getFailedCount());
+        assertTrue(DETECTED_KEYS.containsAll(keys));
+    }
+
+    @Test
+    void resumesAfterLastFinishedKeyTest() throws Exception {
+        putFrames("droneIngest/resume/", "a.jpg", "b.jpg", "c.jpg", "d.jpg", "e.jpg", "f.jpg");
+        Path file = Files.createTempDirectory("backfill").resolve("resume.checkpoint");
+        List<KeyRange> ranges = KeyRange.split("droneIngest/resume/", 1);
+        BackfillCheckpoint checkpoint = new BackfillCheckpoint(file, BUCKET, ranges);
+        checkpoint.update(ranges.get(0), "droneIngest/resume/c.jpg", false);
+        checkpoint.save();
+
+        BackfillRunner runner = runner("droneIngest/resume/", file, 1);
+        assertTrue(runner.run());
+        assertEquals(3, runner.getListed());
+        assertEquals(3, runner.getProcessed());
+        assertTrue(BackfillCheckpoint.load(file, BUCKET, ranges).isFinished(ranges.get(0)));
+    }
+
+    @Test
+    void rejectsCheckpointOfOtherRangesTest() throws Exception {
+        Path file = Files.createTempDirectory("backfill").resolve("other.checkpoint");
+        new BackfillCheckpoint(file, BUCKET, KeyRange.split("droneIngest/", 4)).save();
+        assertThrows(IllegalStateException.class,
+                () -> BackfillCheckpoint.load(file, BUCKET, KeyRange.split("groundIngest/", 4)));
+        assertThrows(IllegalStateException.class,
+                () -> BackfillCheckpoint.load(file, "other", KeyRange.split("droneIngest/", 4)));
+    }
+}
@@ -0,0 +1,128 @@
+import main.Lambda.BatchProcessor;
+import main.Lambda.BatchSummary;
+import main.Lambda.IngestRecord;
+import main.Lambda.RecordProcessor;
+import main.Lambda.RecordResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchProcessorTest {
+
+    /**
+     * Record processor that sleeps instead of calling AWS and fails keys containing "bad"
+     */
+    private static class SlowRecordProcessor extends RecordProcessor {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        SlowRecordProcessor() {
+            super(null);
+        }
+
+        @Override
+        public RecordResult process(IngestRecord record) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+                order.add(record.getS3Key());
+                if (record.getS3Key().contains("bad")) {
+                    throw new IllegalStateException("broken record");
+                }
+                return new RecordResult(record, RecordResult.Status.PROCESSED, null, 20);
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            catch (IllegalStateException e) {
+                return new RecordResult(record, RecordResult.Status.FAILED, e.getMessage(), 20);
+            }
+            finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * Reads the sensor from the name of the object, e.g. droneIngest/d1-2.jpg is from d1, before its turn
+         */
+        @Override
+        public CompletableFuture<RecordResult> processAsync(IngestRecord record,
+                                                            Function<String, CompletableFuture<Void>> sensorTurn) {
+            String name = record.getS3Key().substring(record.getS3Key().lastIndexOf('/') + 1);
+            return CompletableFuture.supplyAsync(() -> name.substring(0, name.indexOf('-')))
+                    .thenCompose(sensorTurn)
+                    .thenApplyAsync(ignored -> process(record));
+        }
+    }
+
+    private static List<IngestRecord> records(String... keys) {
+        List<IngestRecord> records = new ArrayList<>();
+        for (String key : keys) {
+            records.add(new IngestRecord("bucket", key, null, 0));
+        }
+        return records;
+    }
+
+    @Test
+    void boundsRecordsInFlightTest() {
+        SlowRecordProcessor processor = new SlowRecordProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        BatchProcessor batchProcessor = new BatchProcessor(processor, 3, executor, false);
+        List<IngestRecord> records = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            records.add(new IngestRecord("bucket", "droneIngest/d" + i + "/frame.jpg", null, 0));
+        }
+        BatchSummary summary = batchProcessor.processAll(records);
+        executor.shutdown();
+        assertEquals(12, summary.getProcessed());
+        assertTrue(processor.maxInFlight.get() <= 3);
+        assertTrue(processor.maxInFlight.get() > 1);
+    }
+
+    @Test
+    void isolatesFailedRecordsTest() {
+        SlowRecordProcessor processor = new SlowRecordProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        BatchProcessor batchProcessor = new BatchProcessor(processor, 4, executor, false);
+        BatchSummary summary = batchProcessor.processAll(records("droneIngest/a.jpg", "droneIngest/bad.jpg",
+                "droneIngest/c.jpg"));
+        executor.shutdown();
+        assertEquals(2, summary.getProcessed());
+        assertEquals(1, summary.getFailed());
+        assertEquals(RecordResult.Status.FAILED, summary.getResults().get(1).getStatus());
+        assertEquals("droneIngest/c.jpg", summary.getResults().get(2).getRecord().getS3Key());
+    }
+
+    @Test
+    void preservesSensorOrderTest() {
+        SlowRecordProcessor processor = new SlowRecordProcessor();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        BatchProcessor batchProcessor = new BatchProcessor(processor, 4, executor, true);
+        // every sensor uploads to the same folder, so only the sensor_id tells them apart
+        BatchSummary summary = batchProcessor.processAll(records("droneIngest/d1-1.jpg", "droneIngest/d2-1.jpg",
+                "droneIngest/d1-2.jpg", "droneIngest/d1-3.jpg", "droneIngest/d2-2.jpg", "droneIngest/d3-1.jpg"));
+        executor.shutdown();
+        assertEquals(6, summary.getProcessed());
+        List<String> drone1 = new ArrayList<>();
+        for (String key : processor.order) {
+            if (key.startsWith("droneIngest/d1-")) {
+                drone1.add(key);
+            }
+        }
+        assertEquals(Arrays.asList("droneIngest/d1-1.jpg", "droneIngest/d1-2.jpg", "droneIngest/d1-3.jpg"), drone1);
+        assertTrue(processor.order.indexOf("droneIngest/d2-1.jpg") < processor.order.indexOf("droneIngest/d2-2.jpg"));
+        // the sensors still run in parallel
+        assertTrue(processor.maxInFlight.get() > 1);
+    }
+}
@@ -0,0 +1,82 @@
+import com.fasterxml.jackson.databind.ObjectMapper;
+import main.Documents.DroneTargetDocument;
+import main.Documents.TrackedTargetDocument;
+import main.Elastic.BulkBody;
+import main.Elastic.BulkItemResult;
+import main.Metadata.Provenance;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkBodyTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void writesNewlineDelimitedJsonTest() throws IOException {
+        BulkBody body = new BulkBody()
+                .add("targets", new DroneTargetDocument("7", "drone", "1592399997905", 40.0, -105.0,
+                        new Provenance().snapshot()))
+                .add("sensors", Collections.singletonMap("sensor_id", "7"));
+        String[] lines = body.toString().split("\n", -1);
+        assertEquals(5, lines.length);
+        assertEquals("", lines[4]);
+        assertEquals("targets", MAPPER.readTree(lines[0]).get("index").get("_index").asText());
+        assertEquals(40.0, MAPPER.readTree(lines[1]).get("location").get("lat").asDouble());
+        assertEquals("sensors", MAPPER.readTree(lines[2]).get("index").get("_index").asText());
+        assertEquals("7", MAPPER.readTree(lines[3]).get("sensor_id").asText());
+        assertEquals(2, body.size());
+        assertEquals(body.toString().getBytes(StandardCharsets.UTF_8).length, body.sizeInBytes());
+    }
+
+    @Test
+    void copiesItemsTest() {
+        BulkBody body = new BulkBody();
+        for (int i = 0; i < 20; i++) {
+            body.add("sensors", Collections.singletonMap("sensor_id", String.valueOf(i)));
+        }
+        BulkBody retry = new BulkBody().addFrom(body, 3).addFrom(body, 19);
+        assertEquals(2, retry.size());
+        assertEquals("{\"index\":{\"_index\":\"sensors\"}}\n{\"sensor_id\":\"3\"}\n"
+                + "{\"index\":{\"_index\":\"sensors\"}}\n{\"sensor_id\":\"19\"}\n", retry.toString());
+    }
+
+    @Test
+    void writesDocumentIdTest() throws IOException {
+        DroneTargetDocument target = new DroneTargetDocument("7", "drone", "1592399998905", 40.0, -105.0,
+                new Provenance().snapshot());
+        BulkBody body = new BulkBody().add("targets", "7-1592399997905-0",
+                new TrackedTargetDocument(target, "7-1592399997905-0", 1592399997905L, 2));
+        String[] lines = body.toString().split("\n");
+        assertEquals("7-1592399997905-0", MAPPER.readTree(lines[0]).get("index").get("_id").asText());
+        assertEquals("7-1592399997905-0", MAPPER.readTree(lines[1]).get("track_id").asText());
+        assertEquals(1592399997905L, MAPPER.readTree(lines[1]).get("first_seen").asLong());
+        assertEquals(2, MAPPER.readTree(lines[1]).get("detections").asInt());
+        assertEquals("1592399998905", MAPPER.readTree(lines[1]).get("timestamp").asText());
+    }
+
+    @Test
+    void parsesBulkResponseTest() throws IOException {
+        String response = "{\"took\":3,\"errors\":true,\"items\":["
+                + "{\"index\":{\"_index\":\"targets-000001\",\"_type\":\"_doc\",\"_id\":\"a\",\"_version\":1,"
+                + "\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},\"status\":201}},"
+                + "{\"index\":{\"_index\":\"targets-000001\",\"_type\":\"_doc\",\"_id\":\"b\",\"status\":400,"
+                + "\"error\":{\"type\":\"mapper_parsing_exception\",\"reason\":\"failed to parse\","
+                + "\"caused_by\":{\"type\":\"number_format_exception\",\"reason\":\"x\"}}}}]}";
+        List<BulkItemResult> items = BulkItemResult.fromBulkResponse(
+                new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(2, items.size());
+        assertEquals("targets-000001", items.get(0).getIndex());
+        assertEquals("a", items.get(0).getId());
+        assertEquals(201, items.get(0).getStatus());
+        assertFalse(items.get(0).isFailed());
+        assertEquals(400, items.get(1).getStatus());
+        assertEquals("mapper_parsing_exception: failed to parse", items.get(1).getFailureMessage());
+    }
+}
@@ -0,0 +1,103 @@
+import main.Elastic.BulkIndexer;
+import main.Elastic.BulkItemResult;
+import main.Elastic.ElasticClient;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkIndexerTest {
+
+    private static ElasticStandIn standIn;
+    private static ElasticClient elasticClient;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        standIn = new ElasticStandIn();
+        elasticClient = new ElasticClient("localhost", standIn.getPort(), "http");
+    }
+
+    @AfterAll
+    static void tearDown() throws IOException {
+        elasticClient.close();
+        standIn.close();
+    }
+
+    private static Map<String, String> target(String sensorID) {
+        Map<String, String> data = new HashMap<>();
+        data.put("sensor_id", sensorID);
+        data.put("location", "40.0,-75.0");
+        return data;
+    }
+
+    private static long bulkRequests() {
+        return standIn.getRequests().stream().filter(request -> request.endsWith("_bulk")).count();
+    }
+
+    @Test
+    void flushesOnActionCountTest() throws Exception {
+        long before = bulkRequests();
+        BulkIndexer bulkIndexer = new BulkIndexer(elasticClient, 3, Long.MAX_VALUE, 0);
+        CompletableFuture<BulkItemResult> first = bulkIndexer.add("targets", target("1"));
+        bulkIndexer.add("targets", target("2"));
+        assertFalse(first.isDone());
+        bulkIndexer.add("sensors", target("3"));
+        assertEquals(201, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(before + 1, bulkRequests());
+        bulkIndexer.close();
+    }
+
+    @Test
+    void flushesOnLingerTest() throws Exception {
+        BulkIndexer bulkIndexer = new BulkIndexer(elasticClient, 100, Long.MAX_VALUE, 20);
+        CompletableFuture<BulkItemResult> result = bulkIndexer.add("targets", target("4"));
+        assertEquals("targets", result.get(5, TimeUnit.SECONDS).getIndex());
+        bulkIndexer.close();
+    }
+
+    @Test
+    void flushesOnSizeTest() throws Exception {
+        BulkIndexer bulkIndexer = new BulkIndexer(elasticClient, 100, 1, 0);
+        CompletableFuture<BulkItemResult> result = bulkIndexer.add("targets", target("5"));
+        assertFalse(result.get(5, TimeUnit.SECONDS).isFailed());
+        bulkIndexer.close();
+    }
+
+    @Test
+    void reportsItemFailuresTest() throws Exception {
+        standIn.failDocumentsContaining("broken");
+        BulkIndexer bulkIndexer = new BulkIndexer(elasticClient);
+        CompletableFuture<BulkItemResult> good = bulkIndexer.add("targets", target("6"));
+        CompletableFuture<BulkItemResult> bad = bulkIndexer.add("targets", target("broken"));
+        bulkIndexer.close();
+        standIn.failDocumentsContaining(null);
+        assertFalse(good.get().isFailed());
+        assertTrue(bad.get().isFailed());
+        assertEquals(400, bad.get().getStatus());
+        assertEquals(1, bulkIndexer.getFailures().size());
+    }
+
+    @Test
+    void retriesThrottledItemsTest() throws Exception {
+        standIn.throttleDocumentsContaining("busy", 2);
+        long before = bulkRequests();
+        BulkIndexer bulkIndexer = new BulkIndexer(elasticClient);
+        CompletableFuture<BulkItemResult> good = bulkIndexer.add("targets", target("7"));
+        CompletableFuture<BulkItemResult> busy = bulkIndexer.add("targets", target("busy"));
+        bulkIndexer.flush();
+        // the throttled document was sent again, alone, until elasticsearch accepted it
+        assertTrue(busy.isDone());
+        assertEquals(before + 3, bulkRequests());
+        assertEquals(201, good.get().getStatus());
+        assertEquals(201, busy.get().getStatus());
+        assertTrue(bulkIndexer.getFailures().isEmpty());
+        bulkIndexer.close();
+    }
+}
@@ -0,0 +1,146 @@
+import main.Documents.TriangulatedTargetDocument;
+import main.Spatial.Cone;
+import main.Spatial.ConeTriangulator;
+import main.Spatial.TargetIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConeTriangulatorTest {
+
+    private static final double METERS_PER_DEGREE = Math.PI * 6371008.8 / 180.0;
+    private static final double LATITUDE = 40.0;
+    private static final double LONGITUDE = -105.0;
+
+    /**
+     * Creates the cone of a camera some meters east and north of a target, pointing at the target
+     */
+    private static Cone coneAt(String sensorId, long time, double targetLatitude, double targetLongitude,
+                               double east, double north) {
+        double metersPerDegreeLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(targetLatitude));
+        return new Cone(sensorId, time, targetLatitude + north / METERS_PER_DEGREE,
+                targetLongitude + east / metersPerDegreeLongitude, Math.atan2(-north, -east), 0.02, 100);
+    }
+
+    private static ConeTriangulator triangulator(ForkJoinPool pool) {
+        return new ConeTriangulator(2000, 100, 5, 0.2, pool);
+    }
+
+    /**
+     * Adds the cone of one camera and then the cone of another to a new triangulator
+     */
+    private static List<TriangulatedTargetDocument> locate(Cone first, Cone second) {
+        ConeTriangulator triangulator = triangulator(null);
+        triangulator.add(Collections.singletonList(first));
+        return triangulator.add(Collections.singletonList(second));
+    }
+
+    @Test
+    void locatesTargetSeenByTwoCamerasTest() {
+        ConeTriangulator triangulator = triangulator(null);
+        assertTrue(triangulator.add(Collections.singletonList(
+                coneAt("a", 1000, LATITUDE, LONGITUDE, -50, 0))).isEmpty());
+        List<TriangulatedTargetDocument> located = triangulator.add(Collections.singletonList(
+                coneAt("b", 1500, LATITUDE, LONGITUDE, 0, -50)));
+        assertEquals(1, located.size());
+        TriangulatedTargetDocument target = located.get(0);
+        assertTrue(TargetIndex.distanceMeters(LATITUDE, LONGITUDE, target.getLatitude(), target.getLongitude()) < 1);
+        assertEquals(Arrays.asList("a", "b"), target.getSensorIds());
+        assertEquals(2, target.getConeCount());
+        assertEquals(1500, target.getTimestamp());
+        assertTrue(target.getConfidence() > 0.5);
+
+        // the next frame locates the same target, which keeps its id
+        List<TriangulatedTargetDocument> again = triangulator.add(Collections.singletonList(
+                coneAt("b", 1600, LATITUDE, LONGITUDE, 0, -50)));
+        assertEquals(1, again.size());
+        assertEquals(target.getId(), again.get(0).getId());
+        assertEquals(1600, again.get(0).getTimestamp());
+    }
+
+    @Test
+    void ignoresParallelDistantAndSameSensorConesTest() {
+        // parallel cones never meet
+        assertTrue(locate(coneAt("a", 1000, LATITUDE, LONGITUDE, -50, 0),
+                coneAt("b", 1000, LATITUDE, LONGITUDE, -60, 0)).isEmpty());
+        // the cones meet 150 m from the cameras, beyond their length
+        assertTrue(locate(coneAt("a", 1000, LATITUDE, LONGITUDE, -150, 0),
+                coneAt("b", 1000, LATITUDE, LONGITUDE, 0, -150)).isEmpty());
+        // two images of the same camera are not intersected
+        assertTrue(locate(coneAt("a", 1000, LATITUDE, LONGITUDE, -50, 0),
+                coneAt("a", 1000, LATITUDE, LONGITUDE, 0, -50)).isEmpty());
+        // images captured further apart than the window are not intersected
+        assertTrue(locate(coneAt("a", 1000, LATITUDE, LONGITUDE, -50, 0),
+                coneAt("b", 3500, LATITUDE, LONGITUDE, 0, -50)).isEmpty());
+    }
+
+    @Test
+    void forgetsConesOlderThanWindowTest() {
+        ConeTriangulator triangulator = triangulator(null);
+        triangulator.add(Collections.singletonList(coneAt("a", 1000, LATITUDE, LONGITUDE, -50, 0)));
+        assertEquals(1, triangulator.getWindowSize());
+        assertTrue(triangulator.add(Collections.singletonList(
+                coneAt("b", 5000, LATITUDE, LONGITUDE, 0, -50))).isEmpty());
+        assertEquals(1, triangulator.getWindowSize());
+        assertEquals(1, triangulator.add(Collections.singletonList(
+                coneAt("c", 5500, LATITUDE, LONGITUDE, 50, 0))).size());
+        assertEquals(2, triangulator.getWindowSize());
+        // a cone that arrives once the window moved past it is dropped
+        assertTrue(triangulator.add(Collections.singletonList(
+                coneAt("d", 1000, LATITUDE, LONGITUDE, 0, 50))).isEmpty());
+        assertEquals(2, triangulator.getWindowSize());
+    }
+
+    @Test
+    void mergesEstimatesOfManyCamerasInParallelTest() {
+        Random random = new Random(7);
+        double[][] targets = {{LATITUDE, LONGITUDE}, {LATITUDE + 0.02, LONGITUDE}, {LATITUDE, LONGITUDE + 0.02}};
+        // the cameras of each target report in two frames, so the second frame brings many pairs at once
+        List<Cone> first = new ArrayList<>();
+        List<Cone> second = new ArrayList<>();
+        for (int t = 0; t < targets.length; t++) {
+            for (int camera = 0; camera < 30; camera++) {
+                double bearing = random.nextDouble() * 2 * Math.PI;
+                double distance = 20 + random.nextDouble() * 60;
+                (camera % 2 == 0 ? first : second).add(coneAt(t + "-" + camera, 1000 + random.nextInt(1000),
+                        targets[t][0], targets[t][1], distance * Math.cos(bearing), distance * Math.sin(bearing)));
+            }
+        }
+        ConeTriangulator sequentialTriangulator = triangulator(null);
+        ConeTriangulator parallelTriangulator = triangulator(new ForkJoinPool(4));
+        assertTrue(sequentialTriangulator.add(first).isEmpty());
+        assertTrue(parallelTriangulator.add(first).isEmpty());
+        List<TriangulatedTargetDocument> sequential = sequentialTriangulator.add(second);
+        List<TriangulatedTargetDocument> parallel = parallelTriangulator.add(second);
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(sequential.get(i).getLatitude(), parallel.get(i).getLatitude(), 1e-9);
+            assertEquals(sequential.get(i).getLongitude(), parallel.get(i).getLongitude(), 1e-9);
+            assertEquals(sequential.get(i).getConeCount(), parallel.get(i).getConeCount());
+            assertEquals(sequential.get(i).getId(), parallel.get(i).getId());
+        }
+        for (double[] target : targets) {
+            TriangulatedTargetDocument closest = null;
+            double closestDistance = Double.MAX_VALUE;
+            for (TriangulatedTargetDocument document : parallel) {
+                double distance = TargetIndex.distanceMeters(target[0], target[1], document.getLatitude(),
+                        document.getLongitude());
+                if (distance < closestDistance) {
+                    closest = document;
+                    closestDistance = distance;
+                }
+            }
+            assertNotNull(closest);
+            assertTrue(closestDistance < 2, String.valueOf(closestDistance));
+            assertTrue(closest.getConeCount() > 20);
+            assertTrue(closest.getConfidence() > 0.99);
+        }
+    }
+}
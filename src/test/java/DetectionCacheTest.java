@@ -0,0 +1,132 @@
+import com.amazonaws.services.rekognition.model.Label;
+import main.DataType.DataType;
+import main.Detection.CachingLabelDetector;
+import main.Detection.DetectionCache;
+import main.Detection.ImageReference;
+import main.Detection.LabelDetector;
+import main.Metrics.Counter;
+import main.Metrics.MemoryMetricsRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DetectionCacheTest {
+
+    /**
+     * Detector that counts its calls
+     */
+    private static class CountingDetector implements LabelDetector {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public List<Label> detectLabels(ImageReference image) {
+            calls.incrementAndGet();
+            return Collections.singletonList(new Label().withName("Person").withConfidence(90F));
+        }
+
+        @Override
+        public String getName() {
+            return "Counting";
+        }
+    }
+
+    @Test
+    void repeatedImagesSkipDetectionTest() {
+        CountingDetector counting = new CountingDetector();
+        DetectionCache cache = new DetectionCache(10, null);
+        LabelDetector detector = new CachingLabelDetector(counting, cache);
+
+        detector.detectLabels(new ImageReference("bucket", "droneIngest/a.jpg", "\"abc\""));
+        List<Label> labels = detector.detectLabels(new ImageReference("bucket", "droneIngest/a.jpg", "abc"));
+        assertEquals("Person", labels.get(0).getName());
+        assertEquals(1, counting.calls.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // a new version of the object is analyzed again
+        detector.detectLabels(new ImageReference("bucket", "droneIngest/a.jpg", "def"));
+        assertEquals(2, counting.calls.get());
+    }
+
+    @Test
+    void imagesWithoutETagAreNotCachedTest() {
+        CountingDetector counting = new CountingDetector();
+        DetectionCache cache = new DetectionCache(10, null);
+        LabelDetector detector = new CachingLabelDetector(counting, cache);
+
+        detector.detectLabels(new ImageReference("bucket", "droneIngest/a.jpg", null));
+        detector.detectLabels(new ImageReference("bucket", "droneIngest/a.jpg", null));
+        assertEquals(2, counting.calls.get());
+        assertEquals(0, cache.getHits() + cache.getMisses());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTest() {
+        DetectionCache cache = new DetectionCache(2, null);
+        List<Label> labels = Collections.singletonList(new Label().withName("Person"));
+        ImageReference a = new ImageReference("bucket", "a.jpg", "1");
+        ImageReference b = new ImageReference("bucket", "b.jpg", "1");
+        ImageReference c = new ImageReference("bucket", "c.jpg", "1");
+        cache.put(a, labels);
+        cache.put(b, labels);
+        cache.get(a);
+        cache.put(c, labels);
+
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.get(a));
+        assertNull(cache.get(b));
+        assertNotNull(cache.get(c));
+    }
+
+    @Test
+    void diskTierSurvivesRestartTest() throws IOException {
+        Path directory = Files.createTempDirectory("detections");
+        ImageReference image = new ImageReference("bucket", "groundIngest/b.png", "etag");
+        new DetectionCache(10, directory).put(image,
+                Collections.singletonList(new Label().withName("Person").withConfidence(80F)));
+
+        DetectionCache restarted = new DetectionCache(10, directory);
+        List<Label> labels = restarted.get(image);
+        assertNotNull(labels);
+        assertEquals(80F, labels.get(0).getConfidence(), 0.01);
+        assertEquals(1, restarted.getDiskHits());
+        restarted.get(image);
+        assertEquals(1, restarted.getHits());
+    }
+
+    @Test
+    void otherDetectorConfigurationMissesDiskTierTest() throws IOException {
+        Path directory = Files.createTempDirectory("detections");
+        ImageReference image = new ImageReference("bucket", "droneIngest/c.jpg", "etag");
+        new DetectionCache(10, directory, "rekognition:50.0:0", null).put(image,
+                Collections.singletonList(new Label().withName("Person").withConfidence(80F)));
+
+        assertNotNull(new DetectionCache(10, directory, "rekognition:50.0:0", null).get(image));
+        assertNull(new DetectionCache(10, directory, "rekognition:40.0:0", null).get(image));
+        assertNull(new DetectionCache(10, directory, "onnx:yolov5s:50.0", null).get(image));
+    }
+
+    @Test
+    void countsLookupsInMetricsTest() {
+        MemoryMetricsRegistry metrics = new MemoryMetricsRegistry();
+        DetectionCache cache = new DetectionCache(1, null, "rekognition:50.0:0", metrics);
+        List<Label> labels = Collections.singletonList(new Label().withName("Person"));
+        ImageReference a = new ImageReference("bucket", "droneIngest/a.jpg", "1");
+        ImageReference b = new ImageReference("bucket", "groundIngest/b.jpg", "1");
+        cache.get(a);
+        cache.put(a, labels);
+        cache.get(a);
+        cache.put(b, labels);
+
+        assertEquals(1, metrics.getCount(Counter.DETECTION_CACHE_MISSES, DataType.DRONE));
+        assertEquals(1, metrics.getCount(Counter.DETECTION_CACHE_HITS, DataType.DRONE));
+        assertEquals(1, metrics.getCount(Counter.DETECTION_CACHE_EVICTIONS, DataType.HANDHELD));
+    }
+}
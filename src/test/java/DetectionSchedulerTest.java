@@ -0,0 +1,140 @@
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.rekognition.model.ThrottlingException;
+import main.Detection.DetectionScheduler;
+import main.Detection.ImageReference;
+import main.Detection.LabelDetector;
+import main.Detection.TokenBucket;
+import main.Elastic.RetryPolicy;
+import main.Exceptions.DetectionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DetectionSchedulerTest {
+
+    private static final ImageReference IMAGE = new ImageReference("bucket", "droneIngest/frame.jpg", null);
+    private static final RetryPolicy RETRY = new RetryPolicy(3, 1, 5);
+
+    /**
+     * Detector that is throttled a given number of times, then answers after a pause
+     */
+    private static class BusyDetector implements LabelDetector {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final int throttledCalls;
+        private final long pauseMillis;
+
+        BusyDetector(int throttledCalls, long pauseMillis) {
+            this.throttledCalls = throttledCalls;
+            this.pauseMillis = pauseMillis;
+        }
+
+        @Override
+        public List<Label> detectLabels(ImageReference image) {
+            if (calls.incrementAndGet() <= throttledCalls) {
+                throw new ThrottlingException("Rate exceeded");
+            }
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(pauseMillis);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                running.decrementAndGet();
+            }
+            return Collections.singletonList(new Label().withName("Person").withConfidence(90F));
+        }
+
+        @Override
+        public String getName() {
+            return "Busy";
+        }
+    }
+
+    @Test
+    void retriesThrottledCallsTest() {
+        BusyDetector detector = new BusyDetector(2, 0);
+        DetectionScheduler scheduler = new DetectionScheduler(detector, new TokenBucket(1000, 10), 2, RETRY);
+        assertEquals("Person", scheduler.detectLabels(IMAGE).get(0).getName());
+        assertEquals(3, detector.calls.get());
+        assertEquals(2, scheduler.getThrottled());
+        assertEquals(0, scheduler.getInFlight());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    void givesUpAfterMaxRetriesTest() {
+        BusyDetector detector = new BusyDetector(Integer.MAX_VALUE, 0);
+        DetectionScheduler scheduler = new DetectionScheduler(detector, new TokenBucket(1000, 10), 2, RETRY);
+        DetectionException e = assertThrows(DetectionException.class, () -> scheduler.detectLabels(IMAGE));
+        assertTrue(e.getCause() instanceof ThrottlingException);
+        assertEquals(4, detector.calls.get());
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    void doesNotRetryOtherFailuresTest() {
+        AtomicInteger calls = new AtomicInteger();
+        LabelDetector broken = new LabelDetector() {
+            @Override
+            public List<Label> detectLabels(ImageReference image) {
+                calls.incrementAndGet();
+                throw new IllegalStateException("broken");
+            }
+
+            @Override
+            public String getName() {
+                return "Broken";
+            }
+        };
+        DetectionScheduler scheduler = new DetectionScheduler(broken, new TokenBucket(1000, 10), 2, RETRY);
+        assertThrows(IllegalStateException.class, () -> scheduler.detectLabels(IMAGE));
+        assertEquals(1, calls.get());
+        assertEquals(0, scheduler.getThrottled());
+    }
+
+    @Test
+    void queuesCallsOverTheLimitTest() throws Exception {
+        BusyDetector detector = new BusyDetector(0, 20);
+        DetectionScheduler scheduler = new DetectionScheduler(detector, new TokenBucket(1000, 100), 2, RETRY);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<List<Label>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> scheduler.detectLabels(IMAGE)));
+        }
+        for (Future<List<Label>> result : results) {
+            assertEquals(1, result.get(5, TimeUnit.SECONDS).size());
+        }
+        executor.shutdown();
+        assertEquals(2, detector.maxRunning.get());
+        assertEquals(8, scheduler.getStarted());
+        assertTrue(scheduler.getMaxQueueDepth() > 2, "max queue depth " + scheduler.getMaxQueueDepth());
+        // the last two calls waited for three rounds of 20 ms
+        assertTrue(scheduler.getMaxWaitMillis() >= 50, "max wait " + scheduler.getMaxWaitMillis());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    void keepsToTheRateTest() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(50, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < 11; i++) {
+            bucket.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // the first permit is there from the start, the next ten come every 20 ms
+        assertTrue(elapsedMillis >= 190, "took " + elapsedMillis + " ms");
+    }
+}
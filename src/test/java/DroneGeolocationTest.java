@@ -0,0 +1,79 @@
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import main.Metadata.DroneMetadata;
+import main.Targets.DroneTargetFinder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DroneGeolocationTest {
+
+    private static DroneTargetFinder targetFinder;
+
+    @BeforeAll
+    static void setup() {
+        Map<String, String> userMetadata = new HashMap<>();
+        userMetadata.put("sensor_id", "7");
+        userMetadata.put("sensor_type", "drone");
+        userMetadata.put("timestamp", "1592399997905");
+        userMetadata.put("fov", "75.5");
+        userMetadata.put("latitude", "40.0076");
+        userMetadata.put("longitude", "-105.2659");
+        userMetadata.put("yaw", "-2.3");
+        userMetadata.put("altitude", "120");
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setUserMetadata(userMetadata);
+        DroneMetadata metadata = new DroneMetadata("bucket", "droneIngest/frame.jpg", objectMetadata);
+        targetFinder = new DroneTargetFinder("droneIngest/frame.jpg", "bucket", metadata,
+                Collections.<Label>emptyList());
+    }
+
+    @Test
+    void batchMatchesScalarTest() {
+        Random random = new Random(42);
+        int count = 200;
+        float[] left = new float[count];
+        float[] top = new float[count];
+        float[] width = new float[count];
+        float[] height = new float[count];
+        List<BoundingBox> boxes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            width[i] = random.nextFloat() * 0.2F;
+            height[i] = random.nextFloat() * 0.2F;
+            left[i] = random.nextFloat() * (1F - width[i]);
+            top[i] = random.nextFloat() * (1F - height[i]);
+            boxes.add(new BoundingBox().withLeft(left[i]).withTop(top[i]).withWidth(width[i]).withHeight(height[i]));
+        }
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        targetFinder.calculateDroneTargetCoordinates(left, top, width, height, count, latitudes, longitudes);
+
+        for (int i = 0; i < count; i++) {
+            double[] scalar = targetFinder.calculateDroneTargetCoordinate(boxes.get(i));
+            assertEquals(Double.doubleToRawLongBits(scalar[0]), Double.doubleToRawLongBits(latitudes[i]));
+            assertEquals(Double.doubleToRawLongBits(scalar[1]), Double.doubleToRawLongBits(longitudes[i]));
+        }
+    }
+
+    @Test
+    void batchTargetsMatchSingleTargetsTest() {
+        List<BoundingBox> boxes = new ArrayList<>();
+        boxes.add(new BoundingBox().withLeft(0.1F).withTop(0.2F).withWidth(0.05F).withHeight(0.1F));
+        boxes.add(new BoundingBox().withLeft(0.7F).withTop(0.6F).withWidth(0.1F).withHeight(0.2F));
+        List<Map<String, String>> targets = targetFinder.getTargets(boxes);
+
+        assertEquals(2, targets.size());
+        for (int i = 0; i < boxes.size(); i++) {
+            assertEquals(targetFinder.getTarget(boxes.get(i)), targets.get(i));
+        }
+    }
+}
@@ -1,8 +1,8 @@
 import main.DataType.DataType;
+import main.Elastic.BulkItemResult;
 import main.Elastic.ElasticClient;
 import main.Metadata.MetadataSender;
 import main.Targets.Detector;
-import org.elasticsearch.action.index.IndexResponse;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -32,8 +32,8 @@ public class ElasticClientTest {
     @Test
     void sendMetadataToElasticTest() {
         try {
-            IndexResponse indexResponse = droneMetadataSender.sendMetadataToElastic();
-            System.out.println(indexResponse.status());
+            BulkItemResult indexResponse = droneMetadataSender.sendMetadataToElastic();
+            System.out.println(indexResponse.getStatus());
             System.out.println(indexResponse.getIndex());
         }
         catch (IOException e) {
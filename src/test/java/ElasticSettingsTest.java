@@ -0,0 +1,47 @@
+import main.Elastic.BulkBody;
+import main.Elastic.BulkItemResult;
+import main.Elastic.ElasticClient;
+import main.Elastic.ElasticSettings;
+import main.Elastic.RetryPolicy;
+import org.apache.http.HttpHost;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ElasticSettingsTest {
+
+    @Test
+    void parsesHostsTest() {
+        List<HttpHost> hosts = ElasticSettings.parseHosts("https://search-1:9243, 10.0.0.2 ,http://10.0.0.3:9201/");
+        assertEquals(3, hosts.size());
+        assertEquals(new HttpHost("search-1", 9243, "https"), hosts.get(0));
+        assertEquals(new HttpHost("10.0.0.2", 9200, "http"), hosts.get(1));
+        assertEquals(new HttpHost("10.0.0.3", 9201, "http"), hosts.get(2));
+    }
+
+    @Test
+    void requiresAHostTest() {
+        assertThrows(IllegalArgumentException.class, () -> new ElasticSettings(ElasticSettings.parseHosts(" , "),
+                10, 30, 1000, 1000, 1000, false, 0, 1));
+    }
+
+    @Test
+    void compressesRequestsTest() throws Exception {
+        try (ElasticStandIn standIn = new ElasticStandIn()) {
+            ElasticSettings settings = new ElasticSettings(
+                    Collections.singletonList(new HttpHost("localhost", standIn.getPort(), "http")),
+                    2, 4, 1000, 5000, 1000, true, 0, 2);
+            ElasticClient elasticClient = new ElasticClient(settings, new RetryPolicy(0, 0, 0));
+            BulkBody body = new BulkBody().add("targets", Collections.singletonMap("sensor_id", "9"));
+            List<BulkItemResult> items = elasticClient.postBulk(body);
+            elasticClient.close();
+            assertEquals(1, items.size());
+            assertFalse(items.get(0).isFailed());
+            assertEquals(1, standIn.getCompressedRequests());
+            assertTrue(standIn.getBodies().get(0).contains("\"sensor_id\":\"9\""));
+        }
+    }
+}
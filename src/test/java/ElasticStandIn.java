@@ -0,0 +1,206 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local http stand-in for an elasticsearch node.
+ * Answers _bulk requests with one item per document, index requests with the id of the document,
+ * and records every request it receives.
+ * Documents containing the text set with failDocumentsContaining are rejected with a 400.
+ * HEAD requests find only the indices and aliases added with addExisting.
+ * throttleDocumentsContaining answers with 429 items a given number of times, like a busy node,
+ * and rejectRequests answers whole requests with an error status.
+ */
+public class ElasticStandIn implements AutoCloseable {
+
+    private final HttpServer server;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> bodies = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> existing = Collections.synchronizedSet(new HashSet<>());
+    private volatile String failMarker;
+    private volatile String throttleMarker;
+    private final AtomicInteger throttledDocuments = new AtomicInteger();
+    private final AtomicInteger rejectedRequests = new AtomicInteger();
+    private volatile int rejectStatus;
+    private final AtomicInteger compressedRequests = new AtomicInteger();
+
+    public ElasticStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void failDocumentsContaining(String marker) {
+        failMarker = marker;
+    }
+
+    /**
+     * Rejects documents containing the marker with a 429 item the given number of times
+     */
+    public void throttleDocumentsContaining(String marker, int times) {
+        throttleMarker = marker;
+        throttledDocuments.set(times);
+    }
+
+    /**
+     * Rejects the next requests with the given status, e.g. 429 or 503
+     */
+    public void rejectRequests(int status, int times) {
+        rejectStatus = status;
+        rejectedRequests.set(times);
+    }
+
+    /**
+     * @param path is a path HEAD requests should find, e.g. /_alias/targets
+     */
+    public void addExisting(String path) {
+        existing.add(path);
+    }
+
+    /**
+     * @return the number of requests whose body was gzip encoded
+     */
+    public int getCompressedRequests() {
+        return compressedRequests.get();
+    }
+
+    /**
+     * @return "METHOD /path" for every request received
+     */
+    public List<String> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    public List<String> getBodies() {
+        synchronized (bodies) {
+            return new ArrayList<>(bodies);
+        }
+    }
+
+    /**
+     * Waits until a request body containing the text has been received
+     * @return whether or not it arrived before the timeout
+     */
+    public boolean awaitBodyContaining(String text, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            for (String body : getBodies()) {
+                if (body.contains(text)) {
+                    return true;
+                }
+            }
+            Thread.sleep(5);
+        }
+        return false;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            compressedRequests.incrementAndGet();
+            in = new GZIPInputStream(in);
+        }
+        String body = read(in);
+        requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+        bodies.add(body);
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.sendResponseHeaders(existing.contains(exchange.getRequestURI().getPath()) ? 200 : 404, -1);
+            exchange.close();
+            return;
+        }
+        String response;
+        int status = 200;
+        String path = exchange.getRequestURI().getPath();
+        if (rejectedRequests.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            status = rejectStatus;
+            response = "{\"error\":{\"root_cause\":[{\"type\":\"es_rejected_execution_exception\","
+                    + "\"reason\":\"rejected execution\"}],\"type\":\"es_rejected_execution_exception\","
+                    + "\"reason\":\"rejected execution\"},\"status\":" + status + "}";
+        }
+        else if (path.endsWith("_bulk")) {
+            response = bulkResponse(body);
+        }
+        else if (path.endsWith("/_doc")) {
+            status = 201;
+            response = "{\"_index\":\"" + path.substring(1, path.length() - "/_doc".length())
+                    + "\",\"_type\":\"_doc\",\"_id\":\"doc-" + requests.size() + "\",\"_version\":1,"
+                    + "\"result\":\"created\",\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}";
+        }
+        else {
+            response = "{\"acknowledged\":true}";
+        }
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private String bulkResponse(String body) {
+        String[] lines = body.split("\n");
+        StringBuilder items = new StringBuilder();
+        boolean errors = false;
+        for (int i = 0; i + 1 < lines.length; i += 2) {
+            String index = lines[i].replaceAll(".*\"_index\":\"([^\"]+)\".*", "$1");
+            String id = "doc-" + (i / 2);
+            if (items.length() > 0) {
+                items.append(',');
+            }
+            if (throttleMarker != null && lines[i + 1].contains(throttleMarker)
+                    && throttledDocuments.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+                errors = true;
+                items.append("{\"index\":{\"_index\":\"").append(index).append("\",\"_type\":\"_doc\",\"_id\":\"")
+                        .append(id).append("\",\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\",")
+                        .append("\"reason\":\"rejected execution\"}}}");
+            }
+            else if (failMarker != null && lines[i + 1].contains(failMarker)) {
+                errors = true;
+                items.append("{\"index\":{\"_index\":\"").append(index).append("\",\"_type\":\"_doc\",\"_id\":\"")
+                        .append(id).append("\",\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\",")
+                        .append("\"reason\":\"failed to parse\"}}}");
+            }
+            else {
+                items.append("{\"index\":{\"_index\":\"").append(index).append("\",\"_type\":\"_doc\",\"_id\":\"")
+                        .append(id).append("\",\"_version\":1,\"result\":\"created\",")
+                        .append("\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0},")
+                        .append("\"_seq_no\":0,\"_primary_term\":1,\"status\":201}}");
+            }
+        }
+        return "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}";
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,77 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import main.Elastic.ElasticClient;
+import main.Elastic.IndexTemplates;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexTemplatesTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final IndexTemplates templates = new IndexTemplates(2, 1, "30s", "1d", "50gb");
+
+    @Test
+    void targetsMappingTest() throws IOException {
+        JsonNode template = MAPPER.readTree(templates.targetsTemplate());
+        assertEquals("targets-*", template.get("index_patterns").get(0).asText());
+        JsonNode settings = template.get("settings").get("index");
+        assertEquals(2, settings.get("number_of_shards").asInt());
+        assertEquals("30s", settings.get("refresh_interval").asText());
+        assertEquals("targets", settings.get("lifecycle").get("rollover_alias").asText());
+        JsonNode properties = template.get("mappings").get("properties");
+        assertEquals("geo_point", properties.get("location").get("type").asText());
+        assertEquals("date", properties.get("timestamp").get("type").asText());
+        assertEquals("keyword", properties.get("sensor_id").get("type").asText());
+        assertEquals("double", properties.get("cone_radius").get("type").asText());
+        assertEquals("keyword", properties.get("track_id").get("type").asText());
+        assertEquals("double", properties.get("confidence").get("type").asText());
+        assertEquals("integer", properties.get("cone_count").get("type").asText());
+        assertEquals("date", properties.get("first_seen").get("type").asText());
+        assertFalse(properties.get("provenance").get("enabled").asBoolean());
+    }
+
+    @Test
+    void sensorsMappingTest() throws IOException {
+        JsonNode properties = MAPPER.readTree(templates.sensorsTemplate()).get("mappings").get("properties");
+        assertEquals("geo_point", properties.get("location").get("type").asText());
+        assertEquals("double", properties.get("altitude").get("type").asText());
+        assertEquals("double", properties.get("yaw").get("type").asText());
+        assertFalse(properties.get("provenance").get("enabled").asBoolean());
+    }
+
+    @Test
+    void installTemplatesTest() throws Exception {
+        try (ElasticStandIn standIn = new ElasticStandIn()) {
+            ElasticClient client = new ElasticClient("localhost", standIn.getPort(), "http");
+            client.installTemplates(templates);
+            client.close();
+            List<String> requests = standIn.getRequests();
+            assertTrue(requests.contains("PUT /_ilm/policy/ingest-rollover"));
+            assertTrue(requests.contains("PUT /_template/targets"));
+            assertTrue(requests.contains("PUT /_template/sensors"));
+            assertTrue(requests.contains("PUT /<targets-{now/d}-000001>"));
+            assertTrue(requests.contains("PUT /<sensors-{now/d}-000001>"));
+            JsonNode writeIndex = MAPPER.readTree(templates.writeIndex("targets"));
+            assertTrue(writeIndex.get("aliases").get("targets").get("is_write_index").asBoolean());
+        }
+    }
+
+    @Test
+    void existingAliasTest() throws Exception {
+        try (ElasticStandIn standIn = new ElasticStandIn()) {
+            standIn.addExisting("/_alias/targets");
+            standIn.addExisting("/sensors");
+            ElasticClient client = new ElasticClient("localhost", standIn.getPort(), "http");
+            client.installTemplates(templates);
+            client.close();
+            for (String request : standIn.getRequests()) {
+                assertFalse(request.startsWith("PUT /<"), request);
+            }
+        }
+    }
+}
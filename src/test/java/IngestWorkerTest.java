@@ -0,0 +1,189 @@
+import main.Clients.ClientRegistry;
+import main.Elastic.BulkItemResult;
+import main.Lambda.IngestRecord;
+import main.Lambda.RecordProcessor;
+import main.Lambda.RecordResult;
+import main.Worker.FileIngestQueue;
+import main.Worker.IngestWorker;
+import main.Worker.MemoryIngestQueue;
+import main.Worker.QueueMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IngestWorkerTest {
+
+    /**
+     * RecordProcessor whose documents are answered when the test decides
+     */
+    private static class ControlledProcessor extends RecordProcessor {
+        private final Map<String, CompletableFuture<List<BulkItemResult>>> indexed = new ConcurrentHashMap<>();
+
+        private ControlledProcessor() {
+            super(new ClientRegistry(() -> null, () -> null, () -> null), Runnable::run);
+        }
+
+        @Override
+        public CompletableFuture<RecordResult> processAsync(IngestRecord record) {
+            return CompletableFuture.completedFuture(new RecordResult(record, RecordResult.Status.PROCESSED, null, 0,
+                    indexed.computeIfAbsent(record.getS3Key(), key -> new CompletableFuture<>())));
+        }
+
+        private void answer(String s3Key, int status) {
+            indexed.computeIfAbsent(s3Key, key -> new CompletableFuture<>()).complete(Collections.singletonList(
+                    new BulkItemResult("targets", "1", status, status >= 400 ? "rejected" : null)));
+        }
+    }
+
+    private static String notification(String... keys) {
+        StringBuilder records = new StringBuilder();
+        for (String key : keys) {
+            if (records.length() > 0) {
+                records.append(',');
+            }
+            records.append("{\"eventVersion\":\"2.1\",\"eventSource\":\"aws:s3\",\"awsRegion\":\"us-east-2\",")
+                    .append("\"eventTime\":\"2020-06-17T13:19:57.905Z\",\"eventName\":\"ObjectCreated:Put\",")
+                    .append("\"s3\":{\"s3SchemaVersion\":\"1.0\",\"bucket\":{\"name\":\"s3triggertest\"},")
+                    .append("\"object\":{\"key\":\"").append(key).append("\",\"size\":1024,\"eTag\":\"abc\"}}}");
+        }
+        return "{\"Records\":[" + records + "]}";
+    }
+
+    private static void awaitAcknowledged(IngestWorker worker, long acknowledged, long released)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((worker.getAcknowledged() < acknowledged || worker.getReleased() < released)
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void parsesNotificationTest() {
+        List<IngestRecord> records = IngestRecord.fromNotification(notification("droneIngest/a.jpg",
+                "groundIngest/b.png"));
+        assertEquals(2, records.size());
+        assertEquals("s3triggertest", records.get(0).getS3Bucket());
+        assertEquals("groundIngest/b.png", records.get(1).getS3Key());
+        assertEquals("abc", records.get(0).getETag());
+        assertEquals(1592399997905L, records.get(0).getEventTime());
+        assertTrue(IngestRecord.fromNotification("{\"Service\":\"Amazon S3\",\"Event\":\"s3:TestEvent\"}").isEmpty());
+    }
+
+    @Test
+    void acknowledgesAfterIndexingTest() throws Exception {
+        MemoryIngestQueue queue = new MemoryIngestQueue();
+        ControlledProcessor processor = new ControlledProcessor();
+        IngestWorker worker = new IngestWorker(queue, processor, 4, 10);
+        queue.send(notification("droneIngest/a.jpg", "droneIngest/b.jpg"));
+        queue.send(notification("droneIngest/c.jpg"));
+        Thread thread = new Thread(worker);
+        thread.start();
+        processor.answer("droneIngest/a.jpg", 201);
+        processor.answer("droneIngest/c.jpg", 201);
+        awaitAcknowledged(worker, 1, 0);
+        // the first message still waits for the answer for b.jpg
+        assertEquals(1, queue.getAcknowledgedCount());
+        assertEquals(1, queue.getInFlightCount());
+        processor.answer("droneIngest/b.jpg", 201);
+        awaitAcknowledged(worker, 2, 0);
+        assertEquals(2, queue.getAcknowledgedCount());
+        assertEquals(0, queue.getInFlightCount());
+        worker.close(1000);
+        thread.join(5000);
+    }
+
+    @Test
+    void releasesThrottledRecordsTest() throws Exception {
+        MemoryIngestQueue queue = new MemoryIngestQueue();
+        ControlledProcessor processor = new ControlledProcessor();
+        IngestWorker worker = new IngestWorker(queue, processor, 4, 10);
+        queue.send(notification("droneIngest/busy.jpg"));
+        queue.send(notification("droneIngest/invalid.jpg"));
+        queue.send("not json");
+        processor.answer("droneIngest/busy.jpg", 429);
+        processor.answer("droneIngest/invalid.jpg", 400);
+        worker.stop();
+        for (QueueMessage message : queue.receive(3, 0)) {
+            boolean done = worker.process(message).get();
+            if (done) {
+                queue.acknowledge(message);
+            }
+            else {
+                queue.release(message);
+            }
+        }
+        // only the throttled record is worth retrying
+        assertEquals(2, queue.getAcknowledgedCount());
+        assertEquals(1, queue.getPendingCount());
+        assertEquals(2, queue.receive(1, 0).get(0).getReceiveCount());
+    }
+
+    @Test
+    void writesNotificationThatParsesBackTest() {
+        List<IngestRecord> records = IngestRecord.fromNotification(notification("droneIngest/a b.jpg",
+                "groundIngest/b.png"));
+        List<IngestRecord> parsed = IngestRecord.fromNotification(IngestRecord.toNotification(records));
+        assertEquals(2, parsed.size());
+        assertEquals("s3triggertest", parsed.get(0).getS3Bucket());
+        assertEquals("droneIngest/a b.jpg", parsed.get(0).getS3Key());
+        assertEquals("abc", parsed.get(1).getETag());
+        assertEquals(1592399997905L, parsed.get(1).getEventTime());
+    }
+
+    @Test
+    void requeuesOnlyIncompleteRecordsTest() throws Exception {
+        MemoryIngestQueue queue = new MemoryIngestQueue();
+        ControlledProcessor processor = new ControlledProcessor();
+        IngestWorker worker = new IngestWorker(queue, processor, 4, 10);
+        processor.answer("droneIngest/a.jpg", 201);
+        processor.answer("droneIngest/b.jpg", 429);
+        queue.send(notification("droneIngest/a.jpg", "droneIngest/b.jpg"));
+        Thread thread = new Thread(worker);
+        thread.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (worker.getRequeued() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        worker.close(1000);
+        thread.join(5000);
+        // the original is done with, and the new message, received again at once, only ever holds b.jpg
+        assertEquals(1, worker.getRequeued());
+        assertEquals(1, queue.getAcknowledgedCount());
+        List<QueueMessage> retried = queue.receive(5, 0);
+        assertEquals(1, retried.size());
+        List<IngestRecord> records = IngestRecord.fromNotification(retried.get(0).getBody());
+        assertEquals(1, records.size());
+        assertEquals("droneIngest/b.jpg", records.get(0).getS3Key());
+    }
+
+    @Test
+    void fileQueueRecoversInFlightTest() throws Exception {
+        Path directory = Files.createTempDirectory("ingest-queue");
+        FileIngestQueue queue = new FileIngestQueue(directory);
+        String first = queue.send(notification("droneIngest/a.jpg"));
+        queue.send(notification("droneIngest/b.jpg"));
+        List<QueueMessage> received = queue.receive(1, 0);
+        assertEquals(first, received.get(0).getId());
+        assertEquals(1, queue.receive(5, 0).size());
+        assertTrue(queue.receive(5, 20).isEmpty());
+        queue.acknowledge(received.get(0));
+
+        // a worker that stopped left b.jpg in flight
+        FileIngestQueue reopened = new FileIngestQueue(directory);
+        List<QueueMessage> recovered = reopened.receive(5, 0);
+        assertEquals(1, recovered.size());
+        assertEquals(2, recovered.get(0).getReceiveCount());
+        assertEquals("droneIngest/b.jpg", IngestRecord.fromNotification(recovered.get(0).getBody()).get(0).getS3Key());
+        reopened.release(recovered.get(0));
+        assertEquals(3, reopened.receive(5, 0).get(0).getReceiveCount());
+    }
+}
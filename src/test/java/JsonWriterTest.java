@@ -0,0 +1,72 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import main.Documents.DroneSensorDocument;
+import main.Documents.DroneTargetDocument;
+import main.Documents.HandheldTargetDocument;
+import main.Documents.JsonWriter;
+import main.Metadata.Provenance;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonWriterTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Provenance CAPTURED = new Provenance()
+            .record(Provenance.Stage.CAPTURED, 1592399997905L).snapshot();
+
+    @Test
+    void escapesStringsTest() throws IOException {
+        JsonWriter writer = new JsonWriter(16);
+        String text = "quote \" backslash \\ newline \n tab \t bell \u0007 é 中 😀";
+        writer.beginObject().field("text", text).endObject();
+        assertEquals(text, MAPPER.readTree(writer.toByteArray()).get("text").asText());
+    }
+
+    @Test
+    void writesNumbersTest() throws IOException {
+        JsonWriter writer = new JsonWriter();
+        writer.beginObject().field("whole", 100).field("fraction", -105.2659).field("small", 1.5e-7)
+                .field("nan", Double.NaN).name("long").value(Long.MIN_VALUE).endObject();
+        assertEquals("{\"whole\":100,\"fraction\":-105.2659,\"small\":1.5E-7,\"nan\":null,"
+                + "\"long\":-9223372036854775808}", writer.toString());
+        JsonNode node = MAPPER.readTree(writer.toByteArray());
+        assertEquals(1.5e-7, node.get("small").asDouble());
+    }
+
+    @Test
+    void reusesBufferTest() {
+        JsonWriter writer = new JsonWriter(16);
+        new DroneTargetDocument("7", "drone", "1592399997905", 40.0, -105.0, CAPTURED).writeTo(writer);
+        byte[] buffer = writer.getBuffer();
+        int size = writer.size();
+        writer.reset();
+        new DroneTargetDocument("7", "drone", "1592399997905", 40.0, -105.0, CAPTURED).writeTo(writer);
+        assertSame(buffer, writer.getBuffer());
+        assertEquals(size, writer.size());
+    }
+
+    @Test
+    void writesDocumentsTest() throws IOException {
+        JsonWriter writer = new JsonWriter();
+        new HandheldTargetDocument("3", "thermal", "1592399997905", 40.0076, -105.2659, 0.06, 100, -1.2,
+                CAPTURED).writeTo(writer);
+        JsonNode target = MAPPER.readTree(writer.toByteArray());
+        assertEquals("3", target.get("sensor_id").asText());
+        assertEquals(40.0076, target.get("location").get("lat").asDouble());
+        assertEquals(-105.2659, target.get("location").get("lon").asDouble());
+        assertTrue(target.get("cone_angle").isNumber());
+        assertEquals(100, target.get("cone_radius").asInt());
+        assertEquals(-1.2, target.get("cone_direction").asDouble());
+
+        new DroneSensorDocument("7", "drone", "1592399997905", 40.0, -105.0, 0.5, 75.5, 120.5, CAPTURED)
+                .writeTo(writer.reset());
+        JsonNode sensor = MAPPER.readTree(writer.toByteArray());
+        assertEquals(120.5, sensor.get("altitude").asDouble());
+        assertEquals(75.5, sensor.get("fov").asDouble());
+        assertEquals("captured", sensor.get("provenance").get(0).get("stage").asText());
+        assertEquals(1592399997905L, sensor.get("provenance").get(0).get("time").asLong());
+    }
+}
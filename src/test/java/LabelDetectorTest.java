@@ -0,0 +1,134 @@
+import ai.djl.modality.cv.output.BoundingBox;
+import ai.djl.modality.cv.output.DetectedObjects;
+import ai.djl.modality.cv.output.Rectangle;
+import com.amazonaws.services.rekognition.AbstractAmazonRekognition;
+import com.amazonaws.services.rekognition.model.DetectLabelsRequest;
+import com.amazonaws.services.rekognition.model.DetectLabelsResult;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import main.Detection.ImageReference;
+import main.Detection.LabelDetector;
+import main.Detection.OnnxLabelDetector;
+import main.Detection.RekognitionLabelDetector;
+import main.DataType.DataType;
+import main.Metadata.DroneMetadata;
+import main.Targets.Detector;
+import main.Targets.DroneTargetFinder;
+import main.Targets.TargetFinder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LabelDetectorTest {
+
+    @Test
+    void onnxDetectionsBecomeRekognitionLabelsTest() {
+        DetectedObjects detections = new DetectedObjects(Arrays.asList("person", "dog", "person", "person"),
+                Arrays.asList(0.9, 0.8, 0.6, 0.3),
+                Arrays.<BoundingBox>asList(new Rectangle(0.1, 0.2, 0.3, 0.4), new Rectangle(0, 0, 1, 1),
+                        new Rectangle(0.5, 0.5, 0.1, 0.1), new Rectangle(0.7, 0.7, 0.1, 0.1)));
+        List<Label> labels = OnnxLabelDetector.toLabels(detections, 50F);
+
+        assertEquals(2, labels.size());
+        Label person = labels.get(0);
+        assertEquals("Person", person.getName());
+        assertEquals(90F, person.getConfidence(), 0.01);
+        // the instance below the minimum confidence is dropped
+        assertEquals(2, person.getInstances().size());
+        assertEquals(0.1F, person.getInstances().get(0).getBoundingBox().getLeft(), 0.0001);
+        assertEquals(0.2F, person.getInstances().get(0).getBoundingBox().getTop(), 0.0001);
+        assertEquals(0.3F, person.getInstances().get(0).getBoundingBox().getWidth(), 0.0001);
+        assertEquals(0.4F, person.getInstances().get(0).getBoundingBox().getHeight(), 0.0001);
+        assertEquals("Dog", labels.get(1).getName());
+    }
+
+    @Test
+    void rekognitionDetectorSendsMinConfidenceTest() {
+        DetectLabelsRequest[] sent = new DetectLabelsRequest[1];
+        LabelDetector detector = new RekognitionLabelDetector(new AbstractAmazonRekognition() {
+            @Override
+            public DetectLabelsResult detectLabels(DetectLabelsRequest request) {
+                sent[0] = request;
+                return new DetectLabelsResult().withLabels(new Label().withName("Person"));
+            }
+        }, 70F, 10);
+        List<Label> labels = detector.detectLabels(new ImageReference("bucket", "droneIngest/frame.jpg", null));
+
+        assertEquals("Person", labels.get(0).getName());
+        assertEquals(70F, sent[0].getMinConfidence(), 0.01);
+        assertEquals(Integer.valueOf(10), sent[0].getMaxLabels());
+        assertEquals("bucket", sent[0].getImage().getS3Object().getBucket());
+        assertEquals("droneIngest/frame.jpg", sent[0].getImage().getS3Object().getName());
+    }
+
+    @Test
+    void targetFinderUsesDetectorTest() {
+        Map<String, String> userMetadata = new HashMap<>();
+        userMetadata.put("sensor_id", "7");
+        userMetadata.put("sensor_type", "drone");
+        userMetadata.put("timestamp", "1592399997905");
+        userMetadata.put("fov", "75.5");
+        userMetadata.put("latitude", "40.0");
+        userMetadata.put("longitude", "-105.0");
+        userMetadata.put("yaw", "0.5");
+        userMetadata.put("altitude", "100");
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setUserMetadata(userMetadata);
+        DroneMetadata metadata = new DroneMetadata("bucket", "droneIngest/frame.jpg", objectMetadata);
+
+        LabelDetector detector = new LabelDetector() {
+            @Override
+            public List<Label> detectLabels(ImageReference image) {
+                return Collections.singletonList(OnnxLabelDetector.toLabels(new DetectedObjects(
+                        Collections.singletonList("person"), Collections.singletonList(0.9),
+                        Collections.<BoundingBox>singletonList(new Rectangle(0.4, 0.4, 0.2, 0.2))), 50F).get(0));
+            }
+
+            @Override
+            public String getName() {
+                return "Local";
+            }
+        };
+        TargetFinder targetFinder = new DroneTargetFinder("droneIngest/frame.jpg", "bucket", metadata, detector);
+
+        assertEquals(1, targetFinder.getBoxes().size());
+        assertTrue(metadata.describeProvenance().contains("Sent to Local"));
+        assertTrue(metadata.describeProvenance().contains("Received from Local"));
+    }
+
+    @Test
+    void detectorSkipsInvalidMetadataTest() {
+        Map<String, String> userMetadata = new HashMap<>();
+        userMetadata.put("sensor_id", "7");
+        userMetadata.put("sensor_type", "drone");
+        userMetadata.put("timestamp", "1592399997905");
+        // the location of the drone is missing
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setUserMetadata(userMetadata);
+        DroneMetadata metadata = new DroneMetadata("bucket", "droneIngest/frame.jpg", objectMetadata);
+        assertFalse(metadata.isValid());
+
+        AtomicInteger calls = new AtomicInteger();
+        LabelDetector detector = new LabelDetector() {
+            @Override
+            public List<Label> detectLabels(ImageReference image) {
+                calls.incrementAndGet();
+                return Collections.emptyList();
+            }
+
+            @Override
+            public String getName() {
+                return "Counting";
+            }
+        };
+        new Detector("droneIngest/frame.jpg", "bucket", DataType.DRONE, metadata, null, detector);
+        assertEquals(0, calls.get());
+    }
+}
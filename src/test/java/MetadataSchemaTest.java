@@ -0,0 +1,76 @@
+import main.DataType.DataType;
+import main.Metadata.MetadataField;
+import main.Metadata.MetadataSchema;
+import main.Metadata.MetadataValues;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetadataSchemaTest {
+
+    private static Map<String, String> droneMetadata() {
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("sensor_id", "7");
+        metadata.put("sensor_type", "drone");
+        metadata.put("timestamp", "1592399997905");
+        metadata.put("fov", "75.5");
+        metadata.put("latitude", "40.0076");
+        metadata.put("longitude", "-105.2659");
+        metadata.put("yaw", "-2.3e0");
+        metadata.put("altitude", "120");
+        metadata.put("camera", "ignored");
+        return metadata;
+    }
+
+    @Test
+    void parsesValidMetadataTest() {
+        MetadataValues values = MetadataSchema.forDataType(DataType.DRONE).parse(droneMetadata());
+        assertTrue(values.isValid());
+        assertTrue(values.getErrors().isEmpty());
+        assertEquals(1592399997905L, values.getTimestamp(MetadataField.TIMESTAMP));
+        assertEquals(-105.2659, values.getNumber(MetadataField.LONGITUDE));
+        assertEquals(-2.3, values.getNumber(MetadataField.YAW));
+        assertEquals(120, values.getNumber(MetadataField.ALTITUDE));
+        assertEquals("7", values.getText(MetadataField.SENSOR_ID));
+        // altitude is not part of the handheld schema
+        assertEquals(0, MetadataSchema.HANDHELD.parse(droneMetadata()).getNumber(MetadataField.ALTITUDE));
+    }
+
+    @Test
+    void collectsEveryErrorTest() {
+        Map<String, String> metadata = droneMetadata();
+        metadata.remove("altitude");
+        metadata.remove("sensor_id");
+        metadata.put("latitude", "95");
+        metadata.put("fov", "NaN");
+        metadata.put("timestamp", "2020-06-17");
+        metadata.put("yaw", "1.2.3");
+
+        MetadataValues values = MetadataSchema.DRONE.parse(metadata);
+        assertFalse(values.isValid());
+        assertEquals(6, values.getErrors().size());
+        assertTrue(values.getErrors().contains("latitude is out of range: 95"));
+        assertTrue(values.getErrors().contains("fov is not a number: 'NaN'"));
+        assertTrue(values.getErrors().contains("altitude is missing"));
+        assertTrue(values.getErrors().contains("sensor_id is missing"));
+        assertTrue(values.getErrors().contains("timestamp is not a time in milliseconds: '2020-06-17'"));
+        assertTrue(values.getErrors().contains("yaw is not a number: '1.2.3'"));
+        assertTrue(MetadataSchema.HANDHELD.parse(droneMetadata()).isValid());
+    }
+
+    @Test
+    void checksOptionalFieldsOnlyWhenPresentTest() {
+        MetadataSchema schema = new MetadataSchema(EnumSet.of(MetadataField.SENSOR_ID),
+                EnumSet.of(MetadataField.ALTITUDE));
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("sensor_id", "3");
+        assertTrue(schema.parse(metadata).isValid());
+
+        metadata.put("altitude", "");
+        assertEquals("altitude is empty", schema.parse(metadata).toString());
+    }
+}
@@ -0,0 +1,77 @@
+import com.amazonaws.services.s3.AmazonS3;
+import main.Clients.ClientRegistry;
+import main.DataType.DataType;
+import main.Elastic.ElasticClient;
+import main.Metadata.DroneMetadata;
+import main.Metadata.MetadataSender;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetadataSenderTest {
+
+    private static S3StandIn s3StandIn;
+    private static AmazonS3 s3Client;
+    private static ClientRegistry clients;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        s3StandIn = new S3StandIn();
+        Map<String, String> userMetadata = new HashMap<>();
+        userMetadata.put("sensor_id", "7");
+        userMetadata.put("sensor_type", "drone");
+        userMetadata.put("timestamp", "1592399997905");
+        userMetadata.put("fov", "75.5");
+        userMetadata.put("latitude", "40.0");
+        userMetadata.put("longitude", "-105.0");
+        userMetadata.put("yaw", "0.5");
+        userMetadata.put("altitude", "100");
+        s3StandIn.putObject("s3triggertest", "droneIngest/frame.jpg", new byte[256 * 1024], userMetadata);
+        s3Client = s3StandIn.createClient();
+        clients = new ClientRegistry(() -> s3Client, () -> null, () -> new ElasticClient("localhost", 9, "http"));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        clients.close();
+        s3StandIn.close();
+    }
+
+    @Test
+    void loadsMetadataWithoutBodyTest() {
+        MetadataSender metadataSender = new MetadataSender("droneIngest/frame.jpg", "s3triggertest",
+                DataType.DRONE, clients);
+        DroneMetadata metadata = (DroneMetadata) metadataSender.getMetadata();
+        assertEquals("7", metadata.getSensorID());
+        assertEquals(100, metadata.getAltitude(), 0.01);
+        assertEquals(75.5, metadata.getFov(), 0.01);
+        assertEquals(0, s3StandIn.getBodyBytesSent());
+        assertTrue(s3StandIn.getRequests().contains("HEAD /s3triggertest/droneIngest/frame.jpg"));
+        assertFalse(s3StandIn.getRequests().contains("GET /s3triggertest/droneIngest/frame.jpg"));
+    }
+
+    @Test
+    void provenanceWithoutListingTest() {
+        int before = s3StandIn.getRequests().size();
+        MetadataSender metadataSender = new MetadataSender("droneIngest/frame.jpg", "s3triggertest",
+                DataType.DRONE, clients, 1592399998123L);
+        // only the HEAD request, no bucket listing
+        assertEquals(before + 1, s3StandIn.getRequests().size());
+        assertEquals("Captured: 1592399997905, Received at S3: 1592399998123",
+                metadataSender.getMetadata().describeProvenance());
+    }
+
+    @Test
+    void provenanceFromLastModifiedTest() {
+        MetadataSender metadataSender = new MetadataSender("droneIngest/frame.jpg", "s3triggertest",
+                DataType.DRONE, clients);
+        assertEquals("Captured: 1592399997905, Received at S3: 1592399998000",
+                metadataSender.getMetadata().describeProvenance());
+    }
+}
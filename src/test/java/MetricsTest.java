@@ -0,0 +1,74 @@
+import main.DataType.DataType;
+import main.Metrics.Counter;
+import main.Metrics.EmfExporter;
+import main.Metrics.LatencyHistogram;
+import main.Metrics.MemoryMetricsRegistry;
+import main.Metrics.Stage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    public void percentilesAreWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getPercentileMillis(50), 500 * 0.07);
+        assertEquals(990, histogram.getPercentileMillis(99), 990 * 0.07);
+        assertEquals(1000, histogram.getMaxMillis(), 0.001);
+        assertEquals(500.5, histogram.getMeanMillis(), 0.001);
+        assertTrue(histogram.getPercentileMillis(100) <= histogram.getMaxMillis());
+        assertEquals(0, new LatencyHistogram().getPercentileMillis(99), 0);
+    }
+
+    @Test
+    public void registryKeepsStagesAndDataTypesApartAndDrains() {
+        MemoryMetricsRegistry metrics = new MemoryMetricsRegistry();
+        metrics.recordLatency(Stage.DETECTION, DataType.DRONE, TimeUnit.MILLISECONDS.toNanos(120));
+        metrics.recordLatency(Stage.DETECTION, DataType.DRONE, TimeUnit.MILLISECONDS.toNanos(80));
+        String value = metrics.time(Stage.TARGETS, DataType.HANDHELD, () -> "targets");
+        metrics.increment(Counter.RECORDS_PROCESSED, DataType.DRONE, 2);
+
+        assertEquals("targets", value);
+        assertEquals(2, metrics.getHistogram(Stage.DETECTION, DataType.DRONE).getCount());
+        assertNull(metrics.getHistogram(Stage.DETECTION, DataType.HANDHELD));
+        assertEquals(1, metrics.getHistogram(Stage.TARGETS, DataType.HANDHELD).getCount());
+        assertEquals(2, metrics.getCount(Counter.RECORDS_PROCESSED, DataType.DRONE));
+        assertFalse(metrics.hasValues(DataType.OTHER));
+
+        MemoryMetricsRegistry drained = metrics.drain();
+        assertEquals(2, drained.getCount(Counter.RECORDS_PROCESSED, DataType.DRONE));
+        assertEquals(0, metrics.getCount(Counter.RECORDS_PROCESSED, DataType.DRONE));
+        assertNull(metrics.getHistogram(Stage.DETECTION, DataType.DRONE));
+    }
+
+    @Test
+    public void exporterWritesOneEmfLinePerDataType() {
+        MemoryMetricsRegistry metrics = new MemoryMetricsRegistry();
+        metrics.recordLatency(Stage.S3_FETCH, DataType.DRONE, TimeUnit.MILLISECONDS.toNanos(30));
+        metrics.recordLatency(Stage.INDEXING, DataType.HANDHELD, TimeUnit.MILLISECONDS.toNanos(5));
+        metrics.increment(Counter.DOCUMENTS_FAILED, DataType.HANDHELD, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new EmfExporter(new PrintStream(out), "Test").export(metrics);
+
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"_aws\":{\"Timestamp\":"));
+        assertTrue(lines[0].contains("\"Namespace\":\"Test\",\"Dimensions\":[[\"DataType\"]]"));
+        assertTrue(lines[0].contains("{\"Name\":\"s3_fetch.p99\",\"Unit\":\"Milliseconds\"}"));
+        assertTrue(lines[0].contains("\"DataType\":\"DRONE\",\"s3_fetch.count\":1,"));
+        assertFalse(lines[0].contains("indexing"));
+        assertTrue(lines[1].contains("\"DataType\":\"HANDHELD\""));
+        assertTrue(lines[1].contains("\"documents_failed\":1"));
+    }
+}
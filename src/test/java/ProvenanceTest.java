@@ -0,0 +1,79 @@
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import main.Metadata.Provenance;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProvenanceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void serializesStepsTest() throws IOException {
+        Provenance provenance = new Provenance()
+                .record(Provenance.Stage.CAPTURED, 1592399997905L)
+                .record(Provenance.Stage.RECEIVED_AT_S3, 1592399998000L)
+                .setDetector("Rekognition")
+                .record(Provenance.Stage.SENT_TO_DETECTOR, 1592399998100L);
+
+        JsonNode steps = MAPPER.readTree(provenance.toJson());
+        assertEquals(3, steps.size());
+        assertEquals("received_at_s3", steps.get(1).get("stage").asText());
+        assertFalse(steps.get(1).has("detector"));
+        assertEquals("Rekognition", steps.get(2).get("detector").asText());
+        assertEquals(1592399998100L, steps.get(2).get("time").asLong());
+        assertEquals("Captured: 1592399997905, Received at S3: 1592399998000, Sent to Rekognition: 1592399998100",
+                provenance.toString());
+    }
+
+    @Test
+    void snapshotIsSharedUntilTheNextStepTest() {
+        Provenance provenance = new Provenance().record(Provenance.Stage.CAPTURED, 1);
+        Provenance snapshot = provenance.snapshot();
+
+        assertSame(snapshot, provenance.snapshot());
+        assertSame(snapshot.toJson(), snapshot.toJson());
+        assertThrows(IllegalStateException.class, () -> snapshot.record(Provenance.Stage.SENT_TO_ELASTICSEARCH));
+
+        provenance.record(Provenance.Stage.SENT_TO_ELASTICSEARCH, 2);
+        assertNotSame(snapshot, provenance.snapshot());
+        assertEquals(1, snapshot.size());
+        assertEquals(2, provenance.snapshot().size());
+
+        Provenance sent = provenance.snapshot(Provenance.Stage.SENT_TO_ELASTICSEARCH);
+        assertEquals(3, sent.size());
+        assertEquals(2, provenance.size());
+    }
+
+    @Test
+    void recordsConcurrentStepsTest() throws Exception {
+        Provenance provenance = new Provenance();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        provenance.record(Provenance.Stage.SENT_TO_ELASTICSEARCH, j);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertEquals(4000, provenance.size());
+        assertEquals(4000, MAPPER.readTree(provenance.toJson()).size());
+    }
+}
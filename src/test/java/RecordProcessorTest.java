@@ -0,0 +1,137 @@
+import com.amazonaws.services.rekognition.AbstractAmazonRekognition;
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.DetectLabelsRequest;
+import com.amazonaws.services.rekognition.model.DetectLabelsResult;
+import com.amazonaws.services.rekognition.model.Instance;
+import com.amazonaws.services.rekognition.model.Label;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import main.Clients.ClientRegistry;
+import main.Elastic.BulkItemResult;
+import main.Elastic.ElasticClient;
+import main.Lambda.IngestRecord;
+import main.Lambda.RecordProcessor;
+import main.Lambda.RecordResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecordProcessorTest {
+
+    private static ElasticStandIn standIn;
+    private static ExecutorService executor;
+    private static ClientRegistry clients;
+    private static volatile boolean metadataIndexedDuringDetection;
+    private static final AtomicInteger detections = new AtomicInteger();
+
+    /**
+     * S3 client answering with the metadata of a drone image
+     */
+    private static class StubS3 extends AbstractAmazonS3 {
+        @Override
+        public ObjectMetadata getObjectMetadata(String bucketName, String key) {
+            Map<String, String> userMetadata = new HashMap<>();
+            userMetadata.put("sensor_id", "7");
+            userMetadata.put("sensor_type", "drone");
+            userMetadata.put("timestamp", "1592399997905");
+            userMetadata.put("fov", "75.5");
+            userMetadata.put("latitude", "40.0");
+            userMetadata.put("longitude", "-105.0");
+            userMetadata.put("yaw", "0.5");
+            userMetadata.put("altitude", "100");
+            if (key.contains("invalid")) {
+                userMetadata.remove("latitude");
+                userMetadata.put("fov", "wide");
+            }
+            ObjectMetadata objectMetadata = new ObjectMetadata();
+            objectMetadata.setUserMetadata(userMetadata);
+            return objectMetadata;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    /**
+     * Rekognition client that only answers once the sensors document reached elasticsearch
+     */
+    private static class WaitingRekognition extends AbstractAmazonRekognition {
+        @Override
+        public DetectLabelsResult detectLabels(DetectLabelsRequest request) {
+            detections.incrementAndGet();
+            try {
+                metadataIndexedDuringDetection = standIn.awaitBodyContaining("altitude", 5000);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            Instance person = new Instance().withBoundingBox(new BoundingBox()
+                    .withLeft(0.4F).withTop(0.4F).withWidth(0.1F).withHeight(0.2F));
+            return new DetectLabelsResult().withLabels(new Label().withName("Person").withInstances(person));
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+
+    @BeforeAll
+    static void setup() throws IOException {
+        standIn = new ElasticStandIn();
+        executor = Executors.newCachedThreadPool();
+        int port = standIn.getPort();
+        clients = new ClientRegistry(StubS3::new, WaitingRekognition::new,
+                () -> new ElasticClient("localhost", port, "http"));
+    }
+
+    @AfterAll
+    static void tearDown() {
+        clients.close();
+        executor.shutdown();
+        standIn.close();
+    }
+
+    @Test
+    void indexesMetadataWhileDetectingTest() throws Exception {
+        RecordProcessor recordProcessor = new RecordProcessor(clients, executor);
+        RecordResult result = recordProcessor.processAsync(
+                new IngestRecord("bucket", "droneIngest/frame.jpg", null, 0)).get(10, TimeUnit.SECONDS);
+        assertEquals(RecordResult.Status.PROCESSED, result.getStatus());
+        assertTrue(metadataIndexedDuringDetection);
+
+        clients.getBulkIndexer().flush();
+        List<BulkItemResult> documents = result.getIndexed().get(10, TimeUnit.SECONDS);
+        // one target and the sensors document
+        assertEquals(2, documents.size());
+    }
+
+    @Test
+    void skipsObjectsOutsideIngestFoldersTest() {
+        RecordProcessor recordProcessor = new RecordProcessor(clients, executor);
+        RecordResult result = recordProcessor.process(new IngestRecord("bucket", "frame.jpg", null, 0));
+        assertEquals(RecordResult.Status.SKIPPED, result.getStatus());
+    }
+
+    @Test
+    void rejectsInvalidMetadataBeforeDetectionTest() {
+        RecordProcessor recordProcessor = new RecordProcessor(clients, executor);
+        int before = detections.get();
+        RecordResult result = recordProcessor.process(new IngestRecord("bucket", "droneIngest/invalid.jpg", null, 0));
+        assertEquals(RecordResult.Status.REJECTED, result.getStatus());
+        assertTrue(result.getMessage().contains("latitude is missing"));
+        assertTrue(result.getMessage().contains("fov is not a number"));
+        assertEquals(before, detections.get());
+    }
+}
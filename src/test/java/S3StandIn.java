@@ -0,0 +1,194 @@
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local http stand-in for S3 with path-style addressing.
+ * Serves HEAD and GET for the objects put into it, answers bucket listings (V1, and V2 page by page),
+ * and counts the requests and the object body bytes it sends.
+ */
+public class S3StandIn implements AutoCloseable {
+
+    private static final String LAST_MODIFIED = "Wed, 17 Jun 2020 13:19:58 GMT";
+
+    private final HttpServer server;
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicLong bodyBytesSent = new AtomicLong();
+
+    public S3StandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public void putObject(String bucket, String key, byte[] content, Map<String, String> userMetadata) {
+        objects.put(bucket + "/" + key, new StoredObject(content, new HashMap<>(userMetadata)));
+    }
+
+    /**
+     * @return an S3 client that talks to this stand-in
+     */
+    public AmazonS3 createClient() {
+        return AmazonS3ClientBuilder.standard()
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(
+                        "http://localhost:" + server.getAddress().getPort(), "us-east-1"))
+                .withPathStyleAccessEnabled(true)
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("test", "test")))
+                .build();
+    }
+
+    /**
+     * @return "METHOD /path?query" for every request received
+     */
+    public List<String> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<>(requests);
+        }
+    }
+
+    public long getBodyBytesSent() {
+        return bodyBytesSent.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath().substring(1);
+        String query = exchange.getRequestURI().getRawQuery();
+        requests.add(method + " /" + path + (query == null ? "" : "?" + query));
+        exchange.getRequestBody().close();
+
+        if (!path.contains("/") || path.endsWith("/")) {
+            sendListing(exchange, path.replace("/", ""));
+            return;
+        }
+        StoredObject object = objects.get(path);
+        if (object == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+        for (Map.Entry<String, String> entry : object.userMetadata.entrySet()) {
+            exchange.getResponseHeaders().add("x-amz-meta-" + entry.getKey(), entry.getValue());
+        }
+        exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+        exchange.getResponseHeaders().add("ETag", "\"" + Integer.toHexString(path.hashCode()) + "\"");
+        exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+        if (method.equals("HEAD")) {
+            exchange.getResponseHeaders().add("Content-Length", String.valueOf(object.content.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, object.content.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(object.content);
+        }
+        bodyBytesSent.addAndGet(object.content.length);
+    }
+
+    private void sendListing(HttpExchange exchange, String bucket) throws IOException {
+        Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+        boolean v2 = "2".equals(parameters.get("list-type"));
+        boolean urlEncoded = "url".equals(parameters.get("encoding-type"));
+        String prefix = parameters.getOrDefault("prefix", "");
+        String after = parameters.containsKey("continuation-token")
+                ? new String(Base64.getDecoder().decode(parameters.get("continuation-token")), StandardCharsets.UTF_8)
+                : parameters.getOrDefault(v2 ? "start-after" : "marker", "");
+        int maxKeys = parameters.containsKey("max-keys") ? Integer.parseInt(parameters.get("max-keys")) : 1000;
+        TreeMap<String, StoredObject> keys = new TreeMap<>();
+        for (Map.Entry<String, StoredObject> entry : objects.entrySet()) {
+            String key = entry.getKey().substring(entry.getKey().indexOf('/') + 1);
+            if (entry.getKey().startsWith(bucket + "/") && key.startsWith(prefix) && key.compareTo(after) > 0) {
+                keys.put(key, entry.getValue());
+            }
+        }
+        StringBuilder contents = new StringBuilder();
+        int count = 0;
+        String lastKey = null;
+        for (Map.Entry<String, StoredObject> entry : keys.entrySet()) {
+            if (count == maxKeys) {
+                break;
+            }
+            contents.append("<Contents><Key>").append(escape(entry.getKey(), urlEncoded))
+                    .append("</Key><LastModified>2020-06-17T13:19:58.000Z</LastModified><ETag>&quot;")
+                    .append(Integer.toHexString((bucket + "/" + entry.getKey()).hashCode())).append("&quot;</ETag>")
+                    .append("<Size>").append(entry.getValue().content.length)
+                    .append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            count++;
+            lastKey = entry.getKey();
+        }
+        boolean truncated = count < keys.size();
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Name>" + bucket
+                + "</Name><Prefix>" + escape(prefix, urlEncoded) + "</Prefix>"
+                + (v2 ? "<KeyCount>" + count + "</KeyCount>" : "<Marker></Marker>")
+                + "<MaxKeys>" + maxKeys + "</MaxKeys><IsTruncated>" + truncated + "</IsTruncated>"
+                + (v2 && truncated ? "<NextContinuationToken>"
+                        + Base64.getEncoder().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8))
+                        + "</NextContinuationToken>" : "")
+                + contents + "</ListBucketResult>";
+        byte[] bytes = xml.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals == -1 ? parameter : parameter.substring(0, equals);
+            String value = equals == -1 ? "" : parameter.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static String escape(String text, boolean urlEncoded) throws IOException {
+        if (urlEncoded) {
+            return URLEncoder.encode(text, "UTF-8").replace("+", "%20");
+        }
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private static class StoredObject {
+        private final byte[] content;
+        private final Map<String, String> userMetadata;
+
+        private StoredObject(byte[] content, Map<String, String> userMetadata) {
+            this.content = content;
+            this.userMetadata = userMetadata;
+        }
+    }
+}
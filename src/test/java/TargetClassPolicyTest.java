@@ -0,0 +1,66 @@
+import com.amazonaws.services.rekognition.model.BoundingBox;
+import com.amazonaws.services.rekognition.model.Instance;
+import com.amazonaws.services.rekognition.model.Label;
+import main.Targets.TargetClassPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TargetClassPolicyTest {
+
+    private static Instance instance(Float confidence, float size) {
+        return new Instance().withConfidence(confidence)
+                .withBoundingBox(new BoundingBox().withLeft(0.1F).withTop(0.1F).withWidth(size).withHeight(size));
+    }
+
+    @Test
+    void parsesClassesWithAndWithoutConfidenceTest() {
+        Map<String, Float> classes = TargetClassPolicy.parseClasses(" Person:60, Human ,,Car:x", 50);
+        assertEquals(3, classes.size());
+        assertEquals(60F, classes.get("Person"), 0.01);
+        assertEquals(50F, classes.get("Human"), 0.01);
+        // a confidence that is not a number falls back to the default
+        assertEquals(50F, classes.get("Car"), 0.01);
+    }
+
+    @Test
+    void keepsConfidentAndLargeInstancesOfTargetClassesTest() {
+        TargetClassPolicy policy = new TargetClassPolicy(TargetClassPolicy.parseClasses("Person:60,Human:80", 50),
+                0.05F, 0);
+        Instance confident = instance(90F, 0.2F);
+        Instance weak = instance(55F, 0.2F);
+        Instance small = instance(90F, 0.01F);
+        Instance inherited = instance(null, 0.2F);
+        List<Label> labels = Arrays.asList(
+                new Label().withName("Person").withConfidence(90F).withInstances(confident, weak, small),
+                new Label().withName("Human").withConfidence(85F).withInstances(inherited),
+                new Label().withName("Dog").withConfidence(99F).withInstances(instance(99F, 0.5F)),
+                new Label().withName("Human").withConfidence(70F).withInstances(instance(null, 0.2F)),
+                new Label().withName("Person").withConfidence(99F));
+
+        List<BoundingBox> boxes = policy.getBoxes(labels);
+        assertEquals(Arrays.asList(confident.getBoundingBox(), inherited.getBoundingBox()), boxes);
+        assertTrue(policy.isTargetClass("Person"));
+        assertFalse(policy.isTargetClass("person"));
+        assertEquals(60F, policy.getLowestConfidence(), 0.01);
+    }
+
+    @Test
+    void keepsInstancesWithoutConfidenceTest() {
+        TargetClassPolicy policy = new TargetClassPolicy(Collections.singletonMap("Person", 50F), 0, 0);
+        Instance unknown = instance(null, 0.001F);
+        assertEquals(Collections.singletonList(unknown.getBoundingBox()),
+                policy.getBoxes(Collections.singletonList(new Label().withName("Person").withInstances(unknown))));
+    }
+
+    @Test
+    void rejectsPolicyWithoutClassesTest() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new TargetClassPolicy(Collections.<String, Float>emptyMap(), 0, 0));
+    }
+}
@@ -0,0 +1,131 @@
+import main.Spatial.TargetIndex;
+import main.Spatial.TargetPoint;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TargetIndexTest {
+
+    private static List<TargetPoint> randomPoints(TargetIndex index, int count, long time) {
+        Random random = new Random(7);
+        List<TargetPoint> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            TargetPoint point = new TargetPoint(String.valueOf(i % 10), "drone", time + random.nextInt(60000),
+                    40.0 + random.nextDouble() * 0.05, -105.0 + random.nextDouble() * 0.05);
+            points.add(point);
+            assertTrue(index.add(point));
+        }
+        return points;
+    }
+
+    @Test
+    void radiusAndBoxMatchAFullScanTest() {
+        TargetIndex index = new TargetIndex(100, 600000, 60, 100000);
+        List<TargetPoint> points = randomPoints(index, 5000, 1_000_000);
+        long since = 1_030_000;
+        List<TargetPoint> within = index.withinRadius(40.02, -104.98, 500, since);
+        int expected = 0;
+        for (TargetPoint point : points) {
+            if (point.getTime() >= since
+                    && TargetIndex.distanceMeters(40.02, -104.98, point.getLatitude(), point.getLongitude()) <= 500) {
+                expected++;
+            }
+        }
+        assertEquals(expected, within.size());
+        assertTrue(expected > 0);
+        for (int i = 1; i < within.size(); i++) {
+            assertTrue(distance(within.get(i - 1)) <= distance(within.get(i)));
+        }
+
+        List<TargetPoint> box = index.withinBox(40.01, -104.99, 40.02, -104.97, 0);
+        int inBox = 0;
+        for (TargetPoint point : points) {
+            if (point.getLatitude() >= 40.01 && point.getLatitude() <= 40.02 && point.getLongitude() >= -104.99
+                    && point.getLongitude() <= -104.97) {
+                inBox++;
+            }
+        }
+        assertEquals(inBox, box.size());
+        assertEquals(inBox, new HashSet<>(box).size());
+    }
+
+    @Test
+    void nearestMatchesAFullScanTest() {
+        TargetIndex index = new TargetIndex(100, 600000, 60, 100000);
+        List<TargetPoint> points = randomPoints(index, 5000, 1_000_000);
+        // inside the points, and far outside them
+        double[][] queries = {{40.025, -104.975}, {40.2, -104.8}};
+        for (double[] query : queries) {
+            List<TargetPoint> nearest = index.nearest(query[0], query[1], 5, 100000, 0);
+            points.sort(Comparator.comparingDouble(point ->
+                    TargetIndex.distanceMeters(query[0], query[1], point.getLatitude(), point.getLongitude())));
+            assertEquals(points.subList(0, 5), nearest);
+        }
+        assertTrue(index.nearest(40.2, -104.8, 5, 1000, 0).isEmpty());
+    }
+
+    @Test
+    void nearestOfSparseFarApartTargetsTest() {
+        TargetIndex index = new TargetIndex(10, 600000, 60, 100000);
+        // an old outlier on the other side of the world, which later leaves the index
+        assertTrue(index.add(new TargetPoint("1", "drone", 1000, -40.0, 75.0)));
+        assertTrue(index.add(new TargetPoint("2", "drone", 700000, 40.0, -105.0)));
+        assertTrue(index.add(new TargetPoint("3", "drone", 700000, 41.0, -100.0)));
+        assertEquals(2, index.size());
+
+        long start = System.nanoTime();
+        List<TargetPoint> nearest = index.nearest(40.0, -104.9, 5, Double.POSITIVE_INFINITY, 0);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(2, nearest.size());
+        assertEquals("2", nearest.get(0).getSensorId());
+        assertEquals("3", nearest.get(1).getSensorId());
+
+        // the outlier still in a live bucket is found without walking to it ring by ring
+        assertTrue(index.add(new TargetPoint("4", "drone", 700000, -40.0, 75.0)));
+        List<TargetPoint> all = index.nearest(40.0, -104.9, 5, Double.POSITIVE_INFINITY, 0);
+        assertEquals(3, all.size());
+        assertEquals("4", all.get(2).getSensorId());
+    }
+
+    @Test
+    void evictsOldBucketsTest() {
+        TargetIndex index = new TargetIndex(100, 60000, 6, 100000);
+        assertTrue(index.add(new TargetPoint("1", "drone", 1000, 40.0, -105.0)));
+        assertTrue(index.add(new TargetPoint("1", "drone", 50000, 40.0, -105.0)));
+        assertEquals(2, index.size());
+
+        // a target a retention later drops the first bucket
+        assertTrue(index.add(new TargetPoint("1", "drone", 75000, 40.0, -105.0)));
+        assertEquals(2, index.size());
+        assertEquals(2, index.withinRadius(40.0, -105.0, 10, 0).size());
+        assertFalse(index.add(new TargetPoint("1", "drone", 2000, 40.0, -105.0)));
+        assertEquals(1, index.getDropped());
+
+        index.evictBefore(70000);
+        assertEquals(1, index.size());
+        assertEquals(75000, index.nearest(40.0, -105.0, 3, 100, 0).get(0).getTime());
+    }
+
+    @Test
+    void keepsAtMostMaxPointsTest() {
+        TargetIndex index = new TargetIndex(100, 60000, 6, 3);
+        for (long time = 0; time < 6; time++) {
+            index.add(new TargetPoint("1", "drone", time * 10000, 40.0, -105.0));
+        }
+        assertTrue(index.size() <= 3);
+        // the newest targets are the ones kept
+        assertEquals(1, index.withinRadius(40.0, -105.0, 10, 50000).size());
+        assertTrue(index.withinRadius(40.0, -105.0, 10, 0).get(0).getTime() >= 30000);
+        assertTrue(index.withinRadius(40.0, -105.0, 10, 0).size() <= 3);
+    }
+
+    private static double distance(TargetPoint point) {
+        return TargetIndex.distanceMeters(40.02, -104.98, point.getLatitude(), point.getLongitude());
+    }
+}
@@ -0,0 +1,141 @@
+import main.Documents.DroneTargetDocument;
+import main.Documents.TargetDocument;
+import main.Documents.TrackedTargetDocument;
+import main.Metadata.Provenance;
+import main.Targets.TargetTracker;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TargetTrackerTest {
+
+    // about one meter north
+    private static final double METER = 1 / 111319.49;
+
+    private static TargetDocument target(String sensorId, long time, double latitude, double longitude) {
+        return new DroneTargetDocument(sensorId, "drone", String.valueOf(time), latitude, longitude,
+                new Provenance().snapshot());
+    }
+
+    @Test
+    void mergesTargetsOfConsecutiveFramesTest() {
+        TargetTracker tracker = new TargetTracker(5, 10000, 5000, 100);
+        List<TrackedTargetDocument> first = tracker.track(Arrays.asList(
+                target("7", 1000, 40.0, -105.0), target("7", 1000, 40.0 + 50 * METER, -105.0)));
+        assertEquals(2, first.size());
+        assertNotEquals(first.get(0).getTrackId(), first.get(1).getTrackId());
+
+        // both people moved by a meter, which is not worth another document
+        assertTrue(tracker.track(Arrays.asList(target("7", 2000, 40.0 + 51 * METER, -105.0),
+                target("7", 2000, 40.0 + METER, -105.0))).isEmpty());
+        assertEquals(2, tracker.getTrackCount("7"));
+
+        // after updateMillis the tracks are indexed again, under the ids they started with
+        List<TrackedTargetDocument> later = tracker.track(Arrays.asList(target("7", 6000, 40.0 + 2 * METER, -105.0),
+                target("7", 6000, 40.0 + 52 * METER, -105.0)));
+        assertEquals(2, later.size());
+        assertEquals(first.get(0).getTrackId(), later.get(0).getTrackId());
+        assertEquals(first.get(1).getTrackId(), later.get(1).getTrackId());
+        assertEquals(3, later.get(0).getDetections());
+        assertEquals(1000, later.get(0).getFirstSeen());
+        assertEquals("6000", later.get(0).getTarget().getTimestamp());
+    }
+
+    @Test
+    void startsNewTracksForDistantOrLateTargetsTest() {
+        TargetTracker tracker = new TargetTracker(5, 10000, 5000, 100);
+        String id = tracker.track(Collections.singletonList(target("7", 1000, 40.0, -105.0))).get(0).getTrackId();
+
+        // a target that moved further than the distance is someone else
+        List<TrackedTargetDocument> moved = tracker.track(
+                Collections.singletonList(target("7", 2000, 40.0 + 20 * METER, -105.0)));
+        assertNotEquals(id, moved.get(0).getTrackId());
+
+        // the tracks end once the window passed without a target
+        List<TrackedTargetDocument> late = tracker.track(Collections.singletonList(target("7", 20000, 40.0, -105.0)));
+        assertNotEquals(id, late.get(0).getTrackId());
+        assertEquals(1, tracker.getTrackCount("7"));
+
+        // other sensors keep their own tracks
+        List<TrackedTargetDocument> other = tracker.track(Collections.singletonList(target("8", 20000, 40.0, -105.0)));
+        assertEquals(1, other.get(0).getDetections());
+        assertEquals(2, tracker.getSensorCount());
+    }
+
+    @Test
+    void matchesEachTrackOnceTest() {
+        TargetTracker tracker = new TargetTracker(5, 10000, 0, 100);
+        tracker.track(Collections.singletonList(target("7", 1000, 40.0, -105.0)));
+        // two people next to where one was: the closer one continues the track, the other starts a new one
+        List<TrackedTargetDocument> next = tracker.track(Arrays.asList(target("7", 2000, 40.0 + 2 * METER, -105.0),
+                target("7", 2000, 40.0 + METER, -105.0)));
+        assertEquals(2, next.size());
+        assertEquals(1, next.get(0).getDetections());
+        assertEquals(2, next.get(1).getDetections());
+        assertEquals(2, tracker.getTrackCount("7"));
+    }
+
+    @Test
+    void writesReplayedFramesAgainTest() {
+        TargetTracker tracker = new TargetTracker(5, 10000, 5000, 100);
+        List<TargetDocument> frame = Arrays.asList(target("7", 1000, 40.0, -105.0),
+                target("7", 1000, 40.0 + 50 * METER, -105.0));
+        List<TrackedTargetDocument> first = tracker.track(frame);
+        tracker.track(Collections.singletonList(target("7", 2000, 40.0 + METER, -105.0)));
+
+        // the documents of the first attempt were rejected, so the retry must write them again
+        List<TrackedTargetDocument> retried = tracker.track(frame);
+        assertEquals(2, retried.size());
+        assertEquals(first.get(0).getTrackId(), retried.get(0).getTrackId());
+        assertEquals(first.get(1).getTrackId(), retried.get(1).getTrackId());
+        assertEquals("1000", retried.get(1).getTarget().getTimestamp());
+        assertEquals(2, tracker.getTrackCount("7"));
+        assertEquals(1, retried.get(1).getDetections());
+    }
+
+    @Test
+    void countsLateFramesWithoutWritingTest() {
+        TargetTracker tracker = new TargetTracker(5, 10000, 5000, 100);
+        tracker.track(Collections.singletonList(target("7", 1000, 40.0, -105.0)));
+        tracker.track(Collections.singletonList(target("7", 3000, 40.0 + METER, -105.0)));
+
+        // a frame captured in between arrives last: it is a detection, not a replay
+        assertTrue(tracker.track(Collections.singletonList(target("7", 2000, 40.0, -105.0))).isEmpty());
+        List<TrackedTargetDocument> later = tracker.track(
+                Collections.singletonList(target("7", 7000, 40.0 + METER, -105.0)));
+        assertEquals(1, later.size());
+        assertEquals(4, later.get(0).getDetections());
+    }
+
+    @Test
+    void replaysSkippedFrameOnceTest() {
+        TargetTracker tracker = new TargetTracker(5, 10000, 5000, 100);
+        String id = tracker.track(Collections.singletonList(target("7", 1000, 40.0, -105.0))).get(0).getTrackId();
+        List<TargetDocument> skipped = Collections.singletonList(target("7", 2000, 40.0 + METER, -105.0));
+        assertTrue(tracker.track(skipped).isEmpty());
+
+        // the replay writes the track's document again and is not counted twice
+        List<TrackedTargetDocument> replayed = tracker.track(skipped);
+        assertEquals(1, replayed.size());
+        assertEquals(id, replayed.get(0).getTrackId());
+        assertEquals("1000", replayed.get(0).getTarget().getTimestamp());
+        List<TrackedTargetDocument> later = tracker.track(
+                Collections.singletonList(target("7", 7000, 40.0 + METER, -105.0)));
+        assertEquals(3, later.get(0).getDetections());
+    }
+
+    @Test
+    void evictsLeastRecentSensorsTest() {
+        TargetTracker tracker = new TargetTracker(5, 10000, 5000, 2);
+        for (String sensorId : Arrays.asList("1", "2", "3")) {
+            tracker.track(Collections.singletonList(target(sensorId, 1000, 40.0, -105.0)));
+        }
+        assertEquals(2, tracker.getSensorCount());
+        assertEquals(0, tracker.getTrackCount("1"));
+        assertEquals(1, tracker.getTrackCount("3"));
+    }
+}